@@ -0,0 +1,273 @@
+package gw.util
+uses java.lang.Iterable
+uses java.lang.StringBuilder
+uses java.util.ArrayList
+uses java.util.Collection
+uses java.util.HashSet
+uses java.util.List
+uses java.util.Set
+
+/**
+ * A lazily evaluated pipeline over the elements of an Iterable or array, obtained
+ * via asSequence().  Intermediate operations such as map() and where() don't touch
+ * the elements, they only add a stage to the pipeline.  A terminal operation such as
+ * toList() or firstWhere() then pushes each element through all of the stages in a
+ * single pass without allocating intermediate lists, and the short-circuiting
+ * terminal operations stop reading from the source as soon as their result is known.
+ * <p>
+ * A sequence can be evaluated more than once, each terminal operation re-reads the
+ * source.
+ *
+ *  Copyright 2014 Guidewire Software, Inc.
+ */
+final class Sequence<T>
+{
+  /**
+   * Pushes elements into the sink until it returns false or the elements run out.
+   * Returns false if the traversal stopped early, which may also be because a stage
+   * such as take() stopped it, so terminal operations don't rely on the result.
+   */
+  var _traverse : block(sink:block(elt:T):boolean):boolean
+
+  private construct( traverse : block(sink:block(elt:T):boolean):boolean )
+  {
+    _traverse = traverse
+  }
+
+  static function of<E>( source : Iterable<E> ) : Sequence<E> {
+    return new Sequence<E>( \ sink -> {
+      for( elt in source ) {
+        if( not sink( elt ) ) {
+          return false
+        }
+      }
+      return true
+    } )
+  }
+
+  static function of<E>( source : E[] ) : Sequence<E> {
+    return new Sequence<E>( \ sink -> {
+      for( elt in source ) {
+        if( not sink( elt ) ) {
+          return false
+        }
+      }
+      return true
+    } )
+  }
+
+//#######################################################
+// Intermediate operations
+
+  /**
+   * Maps each element by calling the mapper block on it.
+   */
+  function map<Q>( mapper(elt:T):Q ) : Sequence<Q> {
+    return new Sequence<Q>( \ sink -> _traverse( \ elt -> sink( mapper( elt ) ) ) )
+  }
+
+  /**
+   * Keeps only the elements for which the given condition is true.
+   */
+  function where( cond(elt:T):boolean ) : Sequence<T> {
+    return new Sequence<T>( \ sink -> _traverse( \ elt -> not cond( elt ) or sink( elt ) ) )
+  }
+
+  /**
+   * Keeps only the elements that are assignable to the given type.
+   */
+  function whereTypeIs<R>( type : Type<R> ) : Sequence<R> {
+    return new Sequence<R>( \ sink -> _traverse( \ elt -> not type.isAssignableFrom( typeof elt ) or sink( elt as R ) ) )
+  }
+
+  /**
+   * Replaces each element with the elements of the collection the mapper returns for it.
+   */
+  function flatMap<R>( mapper(elt:T):Collection<R> ) : Sequence<R> {
+    return new Sequence<R>( \ sink -> _traverse( \ elt -> {
+      for( result in mapper( elt ) ) {
+        if( not sink( result ) ) {
+          return false
+        }
+      }
+      return true
+    } ) )
+  }
+
+  /**
+   * Keeps at most the first n elements and stops reading the source after them.
+   */
+  function take( n : int ) : Sequence<T> {
+    return new Sequence<T>( \ sink -> {
+      if( n <= 0 ) {
+        return true
+      }
+      var i = 0
+      return _traverse( \ elt -> {
+        i++
+        return sink( elt ) and i < n
+      } )
+    } )
+  }
+
+  /**
+   * Drops the first n elements.
+   */
+  function skip( n : int ) : Sequence<T> {
+    return new Sequence<T>( \ sink -> {
+      var i = 0
+      return _traverse( \ elt -> {
+        if( i < n ) {
+          i++
+          return true
+        }
+        return sink( elt )
+      } )
+    } )
+  }
+
+  /**
+   * Drops elements equal to one already seen.
+   */
+  function distinct() : Sequence<T> {
+    return new Sequence<T>( \ sink -> {
+      var seen = new HashSet<T>()
+      return _traverse( \ elt -> not seen.add( elt ) or sink( elt ) )
+    } )
+  }
+
+//#######################################################
+// Terminal operations
+
+  /**
+   * Evaluates the sequence into a new List.
+   */
+  function toList() : List<T> {
+    var list = new ArrayList<T>()
+    _traverse( \ elt -> {
+      list.add( elt )
+      return true
+    } )
+    return list
+  }
+
+  /**
+   * Evaluates the sequence into a new Set.
+   */
+  function toSet() : Set<T> {
+    var set = new HashSet<T>()
+    _traverse( \ elt -> {
+      set.add( elt )
+      return true
+    } )
+    return set
+  }
+
+  /**
+   * Invokes the operation on each element.
+   */
+  function each( operation(elt:T) ) {
+    _traverse( \ elt -> {
+      operation( elt )
+      return true
+    } )
+  }
+
+  /**
+   * Returns the first element, or null if there are none.
+   */
+  function first() : T {
+    return firstWhere( \ elt -> true )
+  }
+
+  /**
+   * Returns the first element for which the condition is true, or null if there is none.
+   */
+  function firstWhere( cond(elt:T):boolean ) : T {
+    var result : T = null
+    _traverse( \ elt -> {
+      if( cond( elt ) ) {
+        result = elt
+        return false
+      }
+      return true
+    } )
+    return result
+  }
+
+  /**
+   * Returns true if any element matches the condition.
+   */
+  function hasMatch( cond(elt:T):boolean ) : boolean {
+    var found = false
+    _traverse( \ elt -> {
+      found = cond( elt )
+      return not found
+    } )
+    return found
+  }
+
+  /**
+   * Returns true if all elements match the condition.
+   */
+  function allMatch( cond(elt:T):boolean ) : boolean {
+    var all = true
+    _traverse( \ elt -> {
+      all = cond( elt )
+      return all
+    } )
+    return all
+  }
+
+  /**
+   * Returns the number of elements.
+   */
+  property get Count() : int {
+    return countWhere( \ elt -> true )
+  }
+
+  /**
+   * Returns the number of elements that match the condition.
+   */
+  function countWhere( cond(elt:T):boolean ) : int {
+    var count = 0
+    _traverse( \ elt -> {
+      if( cond( elt ) ) {
+        count++
+      }
+      return true
+    } )
+    return count
+  }
+
+  /**
+   * Accumulates the elements into a single value, starting with init.
+   */
+  function reduce<V>( init : V, aggregator(val:V, elt:T):V ) : V {
+    var result = init
+    _traverse( \ elt -> {
+      result = aggregator( result, elt )
+      return true
+    } )
+    return result
+  }
+
+  /**
+   * Joins the elements' string values with the delimiter.
+   */
+  function join( delimiter : String ) : String {
+    var sb = new StringBuilder()
+    var first = true
+    _traverse( \ elt -> {
+      if( first ) {
+        first = false
+      }
+      else {
+        sb.append( delimiter )
+      }
+      sb.append( elt )
+      return true
+    } )
+    return sb.toString()
+  }
+}
@@ -0,0 +1,137 @@
+package gw.util.concurrent
+uses java.lang.Math
+uses java.lang.Runtime
+uses java.util.ArrayList
+uses java.util.List
+uses java.util.RandomAccess
+uses java.util.concurrent.ForkJoinPool
+uses java.util.concurrent.ForkJoinTask
+uses java.util.concurrent.RecursiveAction
+uses java.util.concurrent.RecursiveTask
+
+/**
+ * Fork/join support for the parallel collection enhancements e.g., List#parallelMap().
+ * A list is split in halves recursively until a slice is no larger than the sequential
+ * threshold, slices are processed on the pool and their results are combined in list
+ * order, so order is preserved wherever the sequential version preserves it.
+ * <p>
+ * Unless the caller supplies its own pool, work runs on a pool shared by all of the
+ * parallel enhancements, sized to the number of available processors.
+ *
+ *  Copyright 2014 Guidewire Software, Inc.
+ */
+class ParallelTasks
+{
+  /**
+   * Lists smaller than this are processed sequentially on the calling thread
+   */
+  public static final var MIN_PARALLEL_SIZE : int = 1024
+
+  static var _defaultPool : LocklessLazyVar<ForkJoinPool> = LocklessLazyVar.make( \ -> new ForkJoinPool( Runtime.getRuntime().availableProcessors() ) )
+
+  private construct()
+  {
+  }
+
+  static property get DefaultPool() : ForkJoinPool {
+    return _defaultPool.get()
+  }
+
+  /**
+   * Calls op with consecutive [from, to) slices covering all of list, in parallel on the
+   * pool if the list is large enough.
+   */
+  static function forEachSlice<T>( list : List<T>, pool : ForkJoinPool, op(slice:List<T>, from:int) ) {
+    var ra = randomAccess( list )
+    var threshold = getThreshold( ra.size(), pool )
+    if( ra.size() <= threshold ) {
+      op( ra, 0 )
+    }
+    else {
+      getPool( pool ).invoke( new SliceAction<T>( ra, 0, ra.size(), threshold, op ) )
+    }
+  }
+
+  /**
+   * Computes a result for each consecutive slice of list and combines adjacent results
+   * in list order, in parallel on the pool if the list is large enough.
+   */
+  static function reduceSlices<T, R>( list : List<T>, pool : ForkJoinPool, leaf(slice:List<T>):R, combiner(left:R, right:R):R ) : R {
+    var ra = randomAccess( list )
+    var threshold = getThreshold( ra.size(), pool )
+    if( ra.size() <= threshold ) {
+      return leaf( ra )
+    }
+    return getPool( pool ).invoke( new SliceTask<T, R>( ra, 0, ra.size(), threshold, leaf, combiner ) )
+  }
+
+  private static function getPool( pool : ForkJoinPool ) : ForkJoinPool {
+    return pool == null ? DefaultPool : pool
+  }
+
+  private static function getThreshold( size : int, pool : ForkJoinPool ) : int {
+    // Aim for a few slices per worker so stealing can even out uneven elements
+    return Math.max( MIN_PARALLEL_SIZE, size / (getPool( pool ).getParallelism() * 4) )
+  }
+
+  private static function randomAccess<T>( list : List<T> ) : List<T> {
+    return list typeis RandomAccess ? list : new ArrayList<T>( list )
+  }
+
+  private static class SliceAction<T> extends RecursiveAction {
+    var _list : List<T>
+    var _from : int
+    var _to : int
+    var _threshold : int
+    var _op : block(slice:List<T>, from:int)
+
+    construct( list : List<T>, from : int, to : int, threshold : int, op : block(slice:List<T>, from:int) ) {
+      _list = list
+      _from = from
+      _to = to
+      _threshold = threshold
+      _op = op
+    }
+
+    override function compute() {
+      if( _to - _from <= _threshold ) {
+        _op( _list.subList( _from, _to ), _from )
+      }
+      else {
+        var mid = (_from + _to) >>> 1
+        ForkJoinTask.invokeAll( new SliceAction<T>( _list, _from, mid, _threshold, _op ),
+                                new SliceAction<T>( _list, mid, _to, _threshold, _op ) )
+      }
+    }
+  }
+
+  private static class SliceTask<T, R> extends RecursiveTask<R> {
+    var _list : List<T>
+    var _from : int
+    var _to : int
+    var _threshold : int
+    var _leaf : block(slice:List<T>):R
+    var _combiner : block(left:R, right:R):R
+
+    construct( list : List<T>, from : int, to : int, threshold : int, leaf : block(slice:List<T>):R, combiner : block(left:R, right:R):R ) {
+      _list = list
+      _from = from
+      _to = to
+      _threshold = threshold
+      _leaf = leaf
+      _combiner = combiner
+    }
+
+    override function compute() : R {
+      if( _to - _from <= _threshold ) {
+        return _leaf( _list.subList( _from, _to ) )
+      }
+      var mid = (_from + _to) >>> 1
+      var left = new SliceTask<T, R>( _list, _from, mid, _threshold, _leaf, _combiner )
+      var right = new SliceTask<T, R>( _list, mid, _to, _threshold, _leaf, _combiner )
+      left.fork()
+      var rightResult = right.compute()
+      return _combiner( left.join(), rightResult )
+    }
+  }
+}
@@ -22,14 +22,30 @@ public class JarEntryDirectoryImpl extends JarEntryResourceImpl implements IJarF
   private Map<String, IResource> _resources = new HashMap<String, IResource>();
   private List<IDirectory> _childDirs = new ArrayList<IDirectory>();
   private List<IFile> _childFiles = new ArrayList<IFile>();
+  private boolean _bLoaded;
 
   public JarEntryDirectoryImpl(String name, IJarFileDirectory parent, JarFileDirectoryImpl jarFile) {
     super(name, parent, jarFile);
   }
 
+  private synchronized void ensureLoaded() {
+    if (!_bLoaded) {
+      _bLoaded = true;
+      // A directory that doesn't exist has no entries, don't bother looking
+      if (exists()) {
+        _jarFile.loadChildren(getEntryPath() + "/", this);
+      }
+    }
+  }
+
   @Override
-  public JarEntryDirectoryImpl getOrCreateDirectory(String relativeName) {
-    JarEntryDirectoryImpl result = (JarEntryDirectoryImpl) _resources.get(relativeName);
+  public synchronized JarEntryDirectoryImpl getOrCreateDirectory(String relativeName) {
+    ensureLoaded();
+    IResource resource = _resources.get(relativeName);
+    if (resource instanceof IFile) {
+      throw new UnsupportedOperationException("The requested resource " + relativeName + " is now being accessed as a directory, but was previously accessed as a file.");
+    }
+    JarEntryDirectoryImpl result = (JarEntryDirectoryImpl) resource;
     if (result == null) {
       result = new JarEntryDirectoryImpl(relativeName, this, _jarFile);
       _resources.put(relativeName, result);
@@ -39,8 +55,13 @@ public class JarEntryDirectoryImpl extends JarEntryResourceImpl implements IJarF
   }
 
   @Override
-  public JarEntryFileImpl getOrCreateFile(String relativeName) {
-    JarEntryFileImpl result = (JarEntryFileImpl) _resources.get(relativeName);
+  public synchronized JarEntryFileImpl getOrCreateFile(String relativeName) {
+    ensureLoaded();
+    IResource resource = _resources.get(relativeName);
+    if (resource instanceof IDirectory) {
+      throw new UnsupportedOperationException("The requested resource " + relativeName + " is now being accessed as a file, but was previously accessed as a directory.");
+    }
+    JarEntryFileImpl result = (JarEntryFileImpl) resource;
     if (result == null) {
       result = new JarEntryFileImpl(relativeName, this, _jarFile);
       _resources.put(relativeName, result);
@@ -65,7 +86,8 @@ public class JarEntryDirectoryImpl extends JarEntryResourceImpl implements IJarF
   }
 
   @Override
-  public List<? extends IDirectory> listDirs() {
+  public synchronized List<? extends IDirectory> listDirs() {
+    ensureLoaded();
     List<IDirectory> results = new ArrayList<IDirectory>();
     for (IDirectory child : _childDirs) {
       if (child.exists()) {
@@ -76,7 +98,8 @@ public class JarEntryDirectoryImpl extends JarEntryResourceImpl implements IJarF
   }
 
   @Override
-  public List<? extends IFile> listFiles() {
+  public synchronized List<? extends IFile> listFiles() {
+    ensureLoaded();
     List<IFile> results = new ArrayList<IFile>();
     for (IFile child : _childFiles) {
       if (child.exists()) {
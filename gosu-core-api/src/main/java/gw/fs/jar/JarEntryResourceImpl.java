@@ -19,6 +19,7 @@ import java.util.jar.JarEntry;
 public abstract class JarEntryResourceImpl implements IResource {
 
   protected JarEntry _entry;
+  protected String _entryName;
   protected IJarFileDirectory _parent;
   protected JarFileDirectoryImpl _jarFile;
   protected String _name;
@@ -35,6 +36,17 @@ public abstract class JarEntryResourceImpl implements IResource {
     setExists();
   }
 
+  /**
+   * Marks the resource as existing in the jar. Its JarEntry is looked up when it's
+   * first read.
+   *
+   * @param entryName The entry's name, or null for a directory that has no entry of its own
+   */
+  void setEntryName(String entryName) {
+    _entryName = entryName;
+    setExists();
+  }
+
   protected void setExists() {
     _exists = true;
     if (getParent() instanceof JarEntryResourceImpl) {
@@ -74,15 +86,24 @@ public abstract class JarEntryResourceImpl implements IResource {
   private String getEntryName() {
     if (_entry != null) {
       return _entry.getName();
+    } else if (_entryName != null) {
+      return _entryName;
     } else {
-      String result = _name;
-      IDirectory parent = _parent;
-      while (!(parent instanceof JarFileDirectoryImpl)) {
-        result = parent.getName() + "/" + result;
-        parent = parent.getParent();
-      }
-      return result;
+      return getEntryPath();
+    }
+  }
+
+  /**
+   * @return The resource's path within the jar, without a trailing '/' for directories
+   */
+  String getEntryPath() {
+    String result = _name;
+    IDirectory parent = _parent;
+    while (!(parent instanceof JarFileDirectoryImpl)) {
+      result = parent.getName() + "/" + result;
+      parent = parent.getParent();
     }
+    return result;
   }
 
   @Override
@@ -16,7 +16,6 @@ import java.io.IOException;
 import java.io.File;
 import java.io.InputStream;
 import java.util.List;
-import java.util.Enumeration;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
@@ -24,14 +23,21 @@ import java.util.jar.JarFile;
 import java.util.jar.JarEntry;
 import java.net.URI;
 
+/**
+ * A jar as a directory. The jar's entry names are read into a {@link JarIndex} up front,
+ * but the resources for the entries of a directory are only created when the directory
+ * is first visited, and the jar itself is only opened once an entry is read.
+ */
 @UnstableAPI
 public class JarFileDirectoryImpl implements IJarFileDirectory {
 
   private File _file;
   private JarFile _jarFile;
+  private JarIndex _index;
   private Map<String, IResource> _resources;
   private List<IDirectory> _childDirs;
   private List<IFile> _childFiles;
+  private boolean _bLoaded;
 
   public JarFileDirectoryImpl(File file) {
     _resources = new HashMap<String, IResource>();
@@ -41,56 +47,58 @@ public class JarFileDirectoryImpl implements IJarFileDirectory {
 
     if (file.exists()) {
       try {
-        _jarFile = new JarFile(file);
-        Enumeration<JarEntry> entries = _jarFile.entries();
-        while (entries.hasMoreElements()) {
-          JarEntry e = entries.nextElement();
-          processJarEntry(e);
-        }
+        _index = JarIndex.read(file);
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
+    } else {
+      _index = JarIndex.EMPTY;
     }
   }
 
-  private void processJarEntry(JarEntry e) {
-    List<String> pathComponents = IDirectoryUtil.splitPath(e.getName());
-    if (pathComponents.isEmpty()) {
-      return;
-    }
-    if (pathComponents.size() == 1) {
-      String name = pathComponents.get(0);
-      if (e.isDirectory()) {
-        JarEntryDirectoryImpl resource = getOrCreateDirectory(name);
-        resource.setEntry(e);
-      } else {
-        JarEntryFileImpl resource = getOrCreateFile(name);
-        resource.setEntry(e);
-      }
-    } else {
-      JarEntryDirectoryImpl parentDirectory = getOrCreateDirectory(pathComponents.get(0));
-      for (int i = 1; i < pathComponents.size() - 1; i++) {
-        parentDirectory = parentDirectory.getOrCreateDirectory(pathComponents.get(i));
+  /**
+   * Creates the resources for the entries directly within a directory of this jar.
+   *
+   * @param prefix The directory's path within the jar followed by '/', or "" for the jar's root
+   */
+  void loadChildren(String prefix, final IJarFileDirectory dir) {
+    _index.visitChildren(prefix, new JarIndex.ChildVisitor() {
+      @Override
+      public void file(String name, String entryName) {
+        try {
+          dir.getOrCreateFile(name).setEntryName(entryName);
+        } catch (UnsupportedOperationException e) {
+          // The jar has a file and a directory with the same name, keep the first one
+        }
       }
 
-      if (e.isDirectory()) {
-        JarEntryDirectoryImpl leafDir = parentDirectory.getOrCreateDirectory(pathComponents.get(pathComponents.size() - 1));
-        leafDir.setEntry(e);
-      } else {
-        JarEntryFileImpl leafFile = parentDirectory.getOrCreateFile(pathComponents.get(pathComponents.size() - 1));
-        leafFile.setEntry(e);
+      @Override
+      public void directory(String name, String entryName) {
+        try {
+          dir.getOrCreateDirectory(name).setEntryName(entryName);
+        } catch (UnsupportedOperationException e) {
+          // The jar has a file and a directory with the same name, keep the first one
+        }
       }
+    });
+  }
+
+  private synchronized void ensureLoaded() {
+    if (!_bLoaded) {
+      _bLoaded = true;
+      loadChildren("", this);
     }
   }
 
   public InputStream getInputStream(JarEntry entry) throws IOException {
-    return _jarFile.getInputStream(entry);
+    return getJarFile().getInputStream(entry);
   }
 
   // IJarFileDirectory methods
 
   @Override
-  public JarEntryDirectoryImpl getOrCreateDirectory(String relativeName) {
+  public synchronized JarEntryDirectoryImpl getOrCreateDirectory(String relativeName) {
+    ensureLoaded();
     IResource resource = _resources.get(relativeName);
     if(resource instanceof IFile){
       throw new UnsupportedOperationException("The requested resource " + relativeName + " is now being accessed as a directory, but was previously accessed as a file.");
@@ -105,7 +113,8 @@ public class JarFileDirectoryImpl implements IJarFileDirectory {
   }
 
   @Override
-  public JarEntryFileImpl getOrCreateFile(String relativeName) {
+  public synchronized JarEntryFileImpl getOrCreateFile(String relativeName) {
+    ensureLoaded();
     IResource resource = _resources.get(relativeName);
     if(resource instanceof IDirectory){
       throw new UnsupportedOperationException("The requested resource " + relativeName + " is now being accessed as a file, but was previously accessed as a directory.");
@@ -137,7 +146,8 @@ public class JarFileDirectoryImpl implements IJarFileDirectory {
   }
 
   @Override
-  public List<? extends IDirectory> listDirs() {
+  public synchronized List<? extends IDirectory> listDirs() {
+    ensureLoaded();
     List<IDirectory> results = new ArrayList<IDirectory>();
     for (IDirectory child : _childDirs) {
       if (child.exists()) {
@@ -148,7 +158,8 @@ public class JarFileDirectoryImpl implements IJarFileDirectory {
   }
 
   @Override
-  public List<? extends IFile> listFiles() {
+  public synchronized List<? extends IFile> listFiles() {
+    ensureLoaded();
     List<IFile> results = new ArrayList<IFile>();
     for (IFile child : _childFiles) {
       if (child.exists()) {
@@ -213,8 +224,15 @@ public class JarFileDirectoryImpl implements IJarFileDirectory {
     return _file;
   }
 
-  public JarFile getJarFile()
+  public synchronized JarFile getJarFile()
   {
+    if (_jarFile == null && _file.exists()) {
+      try {
+        _jarFile = new JarFile(_file);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
     return _jarFile;
   }
 
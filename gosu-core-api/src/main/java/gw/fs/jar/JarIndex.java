@@ -0,0 +1,384 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.fs.jar;
+
+import gw.fs.IDirectoryUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A sorted index of the entry names in a jar, read from the jar's central directory.
+ * <p/>
+ * The central directory is memory-mapped and the index only stores the offset and
+ * length of each name within it, sorted by name, so no per-entry objects are created.
+ * Since names sort by path, the entries in a directory are a contiguous range that is
+ * found with a binary search, which lets {@link JarFileDirectoryImpl} create resource
+ * objects a directory at a time, as directories are visited.
+ * <p/>
+ * Jars whose central directory can't be read directly (e.g. with data prepended to
+ * the zip) or with names that aren't normalized paths are indexed from the names
+ * {@link JarFile} reports instead, normalized as {@link IDirectoryUtil#splitPath(String)}
+ * does.
+ */
+class JarIndex {
+  static final JarIndex EMPTY = new JarIndex(ByteBuffer.allocate(0), new int[0], new char[0], 0, Collections.<String, String>emptyMap());
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int END_SIG = 0x06054b50;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_SIG = 0x06064b50;
+  private static final int ZIP64_END_SIZE = 56;
+  private static final int CENTRAL_SIG = 0x02014b50;
+  private static final int CENTRAL_SIZE = 46;
+  private static final int MAX_COMMENT = 0xFFFF;
+
+  /**
+   * Visits the entries directly within a directory, once per name.
+   */
+  interface ChildVisitor {
+    /**
+     * @param entryName The entry's full name
+     */
+    void file(String name, String entryName);
+
+    /**
+     * @param entryName The directory entry's full name, or null if the jar has no entry
+     *   for the directory itself, only for entries within it
+     */
+    void directory(String name, String entryName);
+  }
+
+  private final ByteBuffer _names;
+  private final int[] _offsets;
+  // Zip entry names are at most 64K bytes
+  private final char[] _lengths;
+  private final int _size;
+  // Normalized name -> name in the jar, for the names that differ
+  private final Map<String, String> _entryNames;
+
+  private JarIndex(ByteBuffer names, int[] offsets, char[] lengths, int size, Map<String, String> entryNames) {
+    _names = names;
+    _offsets = offsets;
+    _lengths = lengths;
+    _size = size;
+    _entryNames = entryNames;
+    sort(0, size, new int[size], new char[size]);
+  }
+
+  static JarIndex read(File file) throws IOException {
+    JarIndex index = readCentralDirectory(file);
+    return index != null ? index : readEntries(file);
+  }
+
+  int size() {
+    return _size;
+  }
+
+  String getName(int i) {
+    return decode(_offsets[i], _lengths[i]);
+  }
+
+  /**
+   * @param prefix The directory's path within the jar followed by '/', or "" for the
+   *   root of the jar
+   */
+  void visitChildren(String prefix, ChildVisitor visitor) {
+    byte[] prefixBytes = prefix.getBytes(UTF8);
+    int i = lowerBound(prefixBytes);
+    while (i < _size && startsWith(i, prefixBytes)) {
+      int offset = _offsets[i] + prefixBytes.length;
+      int length = _lengths[i] - prefixBytes.length;
+      if (length == 0) {
+        // The directory's own entry
+        i++;
+        continue;
+      }
+      int slash = indexOfSlash(offset, length);
+      if (slash < 0) {
+        visitor.file(decode(offset, length), getEntryName(i));
+        i++;
+      }
+      else {
+        String name = decode(offset, slash);
+        // A directory's own entry sorts before the entries within it
+        visitor.directory(name, slash == length - 1 ? getEntryName(i) : null);
+        // Skip the rest of the directory, i.e. up to its path followed by the character after '/'
+        byte[] next = (prefix + name + '0').getBytes(UTF8);
+        i = lowerBound(next);
+      }
+    }
+  }
+
+  private String getEntryName(int i) {
+    String name = getName(i);
+    String entryName = _entryNames.get(name);
+    return entryName != null ? entryName : name;
+  }
+
+  private static JarIndex readCentralDirectory(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long fileSize = channel.size();
+      int tailSize = (int)Math.min(fileSize, END_SIZE + MAX_COMMENT);
+      if (tailSize < END_SIZE) {
+        return null;
+      }
+      long tailStart = fileSize - tailSize;
+      ByteBuffer tail = map(channel, tailStart, tailSize);
+      int end = -1;
+      for (int pos = tailSize - END_SIZE; pos >= 0; pos--) {
+        if (tail.getInt(pos) == END_SIG) {
+          end = pos;
+          break;
+        }
+      }
+      if (end < 0) {
+        return null;
+      }
+      long count = tail.getShort(end + 10) & 0xFFFF;
+      long cdSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+      long cdOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+      if (count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIG) {
+          return null;
+        }
+        long zip64End = tail.getLong(locator + 8);
+        if (zip64End < 0 || zip64End + ZIP64_END_SIZE > fileSize) {
+          return null;
+        }
+        ByteBuffer end64 = map(channel, zip64End, ZIP64_END_SIZE);
+        if (end64.getInt(0) != ZIP64_END_SIG) {
+          return null;
+        }
+        count = end64.getLong(32);
+        cdSize = end64.getLong(40);
+        cdOffset = end64.getLong(48);
+      }
+      if (count > Integer.MAX_VALUE || cdSize > Integer.MAX_VALUE || cdOffset < 0 || cdOffset + cdSize > fileSize) {
+        return null;
+      }
+
+      ByteBuffer cd = map(channel, cdOffset, (int)cdSize);
+      int size = (int)count;
+      int[] offsets = new int[size];
+      char[] lengths = new char[size];
+      int pos = 0;
+      for (int i = 0; i < size; i++) {
+        if (pos + CENTRAL_SIZE > cdSize || cd.getInt(pos) != CENTRAL_SIG) {
+          return null;
+        }
+        int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+        int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+        int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+        offsets[i] = pos + CENTRAL_SIZE;
+        lengths[i] = (char)nameLength;
+        if (offsets[i] + nameLength > cdSize || !isNormalized(cd, offsets[i], nameLength)) {
+          return null;
+        }
+        pos += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+      }
+      return new JarIndex(cd, offsets, lengths, size, Collections.<String, String>emptyMap());
+    } finally {
+      // The mappings stay valid after the channel is closed
+      raf.close();
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static boolean isNormalized(ByteBuffer buf, int offset, int length) {
+    if (length == 0) {
+      return false;
+    }
+    int segmentStart = offset;
+    for (int i = offset; i < offset + length; i++) {
+      byte b = buf.get(i);
+      if (b == '\\') {
+        return false;
+      }
+      if (b == '/') {
+        int segmentLength = i - segmentStart;
+        if (segmentLength == 0 || isDots(buf, segmentStart, segmentLength)) {
+          return false;
+        }
+        segmentStart = i + 1;
+      }
+    }
+    return !isDots(buf, segmentStart, offset + length - segmentStart);
+  }
+
+  private static boolean isDots(ByteBuffer buf, int offset, int length) {
+    return (length == 1 && buf.get(offset) == '.') ||
+           (length == 2 && buf.get(offset) == '.' && buf.get(offset + 1) == '.');
+  }
+
+  private static JarIndex readEntries(File file) throws IOException {
+    List<byte[]> names = new ArrayList<byte[]>();
+    Map<String, String> entryNames = new HashMap<String, String>();
+    int total = 0;
+    JarFile jarFile = new JarFile(file);
+    try {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry e = entries.nextElement();
+        List<String> pathComponents = IDirectoryUtil.splitPath(e.getName());
+        if (pathComponents.isEmpty()) {
+          continue;
+        }
+        StringBuilder name = new StringBuilder();
+        for (String component : pathComponents) {
+          if (name.length() > 0) {
+            name.append('/');
+          }
+          name.append(component);
+        }
+        if (e.isDirectory()) {
+          name.append('/');
+        }
+        if (!name.toString().equals(e.getName())) {
+          entryNames.put(name.toString(), e.getName());
+        }
+        byte[] bytes = name.toString().getBytes(UTF8);
+        names.add(bytes);
+        total += bytes.length;
+      }
+    } finally {
+      jarFile.close();
+    }
+
+    ByteBuffer buf = ByteBuffer.allocate(total);
+    int[] offsets = new int[names.size()];
+    char[] lengths = new char[names.size()];
+    for (int i = 0; i < names.size(); i++) {
+      offsets[i] = buf.position();
+      lengths[i] = (char)names.get(i).length;
+      buf.put(names.get(i));
+    }
+    return new JarIndex(buf, offsets, lengths, names.size(), entryNames);
+  }
+
+  private String decode(int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = _names.get(offset + i);
+    }
+    return new String(bytes, UTF8);
+  }
+
+  private int indexOfSlash(int offset, int length) {
+    for (int i = 0; i < length; i++) {
+      if (_names.get(offset + i) == '/') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean startsWith(int i, byte[] prefix) {
+    if (_lengths[i] < prefix.length) {
+      return false;
+    }
+    int offset = _offsets[i];
+    for (int j = 0; j < prefix.length; j++) {
+      if (_names.get(offset + j) != prefix[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The index of the first name not less than key
+   */
+  private int lowerBound(byte[] key) {
+    int low = 0;
+    int high = _size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(mid, key) < 0) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int compare(int i, byte[] key) {
+    int offset = _offsets[i];
+    int length = _lengths[i];
+    int n = Math.min(length, key.length);
+    for (int j = 0; j < n; j++) {
+      int diff = (_names.get(offset + j) & 0xFF) - (key[j] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length - key.length;
+  }
+
+  private int compare(int offset1, int length1, int offset2, int length2) {
+    int n = Math.min(length1, length2);
+    for (int j = 0; j < n; j++) {
+      int diff = (_names.get(offset1 + j) & 0xFF) - (_names.get(offset2 + j) & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length1 - length2;
+  }
+
+  /**
+   * Merge sorts [from, to) of the offsets and lengths by name. Unsigned byte order of
+   * UTF-8 names is the same as code point order.
+   */
+  private void sort(int from, int to, int[] tmpOffsets, char[] tmpLengths) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    sort(from, mid, tmpOffsets, tmpLengths);
+    sort(mid, to, tmpOffsets, tmpLengths);
+    if (compare(_offsets[mid - 1], _lengths[mid - 1], _offsets[mid], _lengths[mid]) <= 0) {
+      // Already in order, which is common since jar tools write entries sorted or grouped by directory
+      return;
+    }
+    System.arraycopy(_offsets, from, tmpOffsets, from, to - from);
+    System.arraycopy(_lengths, from, tmpLengths, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && compare(tmpOffsets[left], tmpLengths[left], tmpOffsets[right], tmpLengths[right]) <= 0)) {
+        _offsets[i] = tmpOffsets[left];
+        _lengths[i] = tmpLengths[left++];
+      }
+      else {
+        _offsets[i] = tmpOffsets[right];
+        _lengths[i] = tmpLengths[right++];
+      }
+    }
+  }
+}
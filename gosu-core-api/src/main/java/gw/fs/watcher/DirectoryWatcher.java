@@ -18,21 +18,29 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
- *
+ * Watches directory trees for changes to the files within them.  Directories created
+ * inside a watched tree are watched as well.
  */
 @UnstableAPI
 public class DirectoryWatcher {
 
   private WatchService _watchService;
   private Map<WatchKey, Path> _watchedDirectories;
+  private Set<Path> _directories;
+  private Set<Path> _deletedDirectories;
 
   public DirectoryWatcher() {
     try {
       _watchService = FileSystems.getDefault().newWatchService();
       _watchedDirectories = new HashMap<WatchKey, Path>();
+      _directories = new HashSet<Path>();
+      _deletedDirectories = new HashSet<Path>();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -58,67 +66,131 @@ public class DirectoryWatcher {
     try {
       WatchKey key = dir.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
       _watchedDirectories.put(key, dir);
+      _directories.add(dir);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  public static enum FileEvent { CREATE, MODIFY, DELETE }
+  /**
+   * @return true if the path is a watched directory, including one whose deletion is
+   * among the changes last returned
+   */
+  public boolean isDirectory(Path path) {
+    return _directories.contains(path);
+  }
+
+  /**
+   * CREATE, MODIFY and DELETE describe a single file or directory.  OVERFLOW means some
+   * changes to the directory's tree were lost and it needs to be rescanned.
+   */
+  public static enum FileEvent { CREATE, MODIFY, DELETE, OVERFLOW }
 
   public Map<Path, FileEvent> getChangesSinceLastTime() {
+    forgetDeletedDirectories();
     Map<Path, FileEvent> events = new HashMap<Path, FileEvent>();
     while (true) {
       WatchKey key = _watchService.poll();
       if (key == null) {
         break;
       }
+      processKey(key, events);
+    }
+    return events;
+  }
+
+  /**
+   * Same as {@link #waitForChanges(long, long)}, collecting changes for at most ten quiet periods.
+   */
+  public Map<Path, FileEvent> waitForChanges(long quietPeriodMillis) throws InterruptedException {
+    return waitForChanges(quietPeriodMillis, quietPeriodMillis * 10);
+  }
 
-      Path dir = _watchedDirectories.get(key);
-      if (dir == null) {
-        throw new IllegalStateException("Got a WatchKey for a Path that we didn't watch");
+  /**
+   * Blocks until there are changes, then keeps collecting changes until none have arrived
+   * for the quiet period, so a burst of events (an editor's save, a VCS update) is returned
+   * as one coalesced set.  Returns once the changes have been collected for the max wait,
+   * even if they are still arriving, so a steady stream of changes is returned in batches.
+   */
+  public Map<Path, FileEvent> waitForChanges(long quietPeriodMillis, long maxWaitMillis) throws InterruptedException {
+    forgetDeletedDirectories();
+    Map<Path, FileEvent> events = new HashMap<Path, FileEvent>();
+    WatchKey key = _watchService.take();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    while (key != null) {
+      processKey(key, events);
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        break;
       }
+      key = _watchService.poll(Math.min(TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis), remainingNanos), TimeUnit.NANOSECONDS);
+    }
+    return events;
+  }
 
-      for (WatchEvent event : key.pollEvents()) {
-        Object context = event.context();
-        if (context instanceof Path) {
-          Path changedFile = dir.resolve((Path) context);
-
-          WatchEvent.Kind eventKind = event.kind();
-          if (eventKind == StandardWatchEventKinds.ENTRY_CREATE) {
-            // If a create follows a delete, it means the editor deleted and re-created the file, and
-            // who knows what the contents are now, so it should be treated as a modification
-            if (events.get(changedFile) == FileEvent.DELETE) {
-              events.put(changedFile, FileEvent.MODIFY);
-            } else {
-              events.put(changedFile, FileEvent.CREATE);
-            }
-          } else if (eventKind == StandardWatchEventKinds.ENTRY_MODIFY) {
-            // If a file is already marked as CREATE, leave it as CREATE; if it's marked as DELETE, that's totally
-            // invalid, so just ignore that.  If it's marked as MODIFY, no need to change it.  So only put something
-            // in the map if it's not already in there
-            if (!events.containsKey(changedFile)) {
-              events.put(changedFile, FileEvent.MODIFY);
-            }
-          } else if (eventKind == StandardWatchEventKinds.ENTRY_DELETE) {
-            if (events.get(changedFile) == FileEvent.CREATE) {
-              // If the file was created, then deleted, then just ignore it entirely and remove the event
-              events.remove(changedFile);
-            } else {
-              events.put(changedFile, FileEvent.DELETE);
-            }
+  public void close() {
+    try {
+      _watchService.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void forgetDeletedDirectories() {
+    _directories.removeAll(_deletedDirectories);
+    _deletedDirectories.clear();
+  }
+
+  private void processKey(WatchKey key, Map<Path, FileEvent> events) {
+    Path dir = _watchedDirectories.get(key);
+    if (dir == null) {
+      throw new IllegalStateException("Got a WatchKey for a Path that we didn't watch");
+    }
+
+    for (WatchEvent event : key.pollEvents()) {
+      Object context = event.context();
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        events.put(dir, FileEvent.OVERFLOW);
+      } else if (context instanceof Path) {
+        Path changedFile = dir.resolve((Path) context);
+
+        WatchEvent.Kind eventKind = event.kind();
+        if (eventKind == StandardWatchEventKinds.ENTRY_CREATE) {
+          // If a create follows a delete, it means the editor deleted and re-created the file, and
+          // who knows what the contents are now, so it should be treated as a modification
+          if (events.get(changedFile) == FileEvent.DELETE) {
+            events.put(changedFile, FileEvent.MODIFY);
+          } else {
+            events.put(changedFile, FileEvent.CREATE);
+          }
+          if (Files.isDirectory(changedFile)) {
+            // Anything created in the directory before it's registered is covered by the directory's own
+            // CREATE event, the caller treats a created directory as created along with all its content
+            watchDirectoryTree(changedFile);
+          }
+        } else if (eventKind == StandardWatchEventKinds.ENTRY_MODIFY) {
+          // If a file is already marked as CREATE, leave it as CREATE; if it's marked as DELETE, that's totally
+          // invalid, so just ignore that.  If it's marked as MODIFY, no need to change it.  So only put something
+          // in the map if it's not already in there
+          if (!events.containsKey(changedFile)) {
+            events.put(changedFile, FileEvent.MODIFY);
+          }
+        } else if (eventKind == StandardWatchEventKinds.ENTRY_DELETE) {
+          if (events.get(changedFile) == FileEvent.CREATE) {
+            // If the file was created, then deleted, then just ignore it entirely and remove the event
+            events.remove(changedFile);
+          } else {
+            events.put(changedFile, FileEvent.DELETE);
+          }
+          if (_directories.contains(changedFile)) {
+            _deletedDirectories.add(changedFile);
           }
         }
       }
-
-      if (!key.reset()) {
-        _watchedDirectories.remove(key);
-      }
     }
 
-    // TODO - AHK - Watch any newly-created directories
-
-    // TODO - AHK - Probably Coerce this into some more meaningful format, such that it takes into account
-    // the root directory that the thing falls under, or something?
-    return events;
+    if (!key.reset()) {
+      _watchedDirectories.remove(key);
+    }
   }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.fs.watcher;
+
+import gw.config.CommonServices;
+import gw.fs.IDirectory;
+import gw.fs.IResource;
+import gw.fs.watcher.DirectoryWatcher.FileEvent;
+import gw.lang.UnstableAPI;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.module.IModule;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the type system current with the source directories of all modules by refreshing
+ * only the types in files that change, as the changes happen.
+ * <p/>
+ * A background thread waits for file system events and, once a burst of events has
+ * quieted down, refreshes each changed file via {@link TypeSystem#refreshed(IResource)},
+ * {@link TypeSystem#created(IResource)} or {@link TypeSystem#deleted(IResource)}.
+ * Those resolve the file's module and types and refresh the types along with the types
+ * that depend on them, so the work done is proportional to what changed, not to the size
+ * of the source tree. Each burst is applied under the type system lock, as one change.
+ * A steady stream of events is applied in batches, at least once per max wait. When events
+ * were lost, the module of the directory that lost them is refreshed as a whole.
+ * <p/>
+ * Running with <code>-Dgosu.watch=true</code> starts a watcher when the runtime is initialized.
+ */
+@UnstableAPI
+public class TypeSystemWatcher {
+  public static final String WATCH_SYSTEM_PROP = "gosu.watch";
+  public static final long DEFAULT_QUIET_PERIOD_MILLIS = 100;
+  public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+
+  private final long _quietPeriodMillis;
+  private final long _maxWaitMillis;
+  private DirectoryWatcher _directoryWatcher;
+  private Thread _thread;
+
+  public TypeSystemWatcher() {
+    this(DEFAULT_QUIET_PERIOD_MILLIS, DEFAULT_MAX_WAIT_MILLIS);
+  }
+
+  /**
+   * @param quietPeriodMillis How long to wait for further events before refreshing
+   * @param maxWaitMillis How long to keep collecting events that are still arriving before refreshing
+   */
+  public TypeSystemWatcher(long quietPeriodMillis, long maxWaitMillis) {
+    _quietPeriodMillis = quietPeriodMillis;
+    _maxWaitMillis = maxWaitMillis;
+  }
+
+  public synchronized void start() {
+    if (_thread != null) {
+      return;
+    }
+    final DirectoryWatcher directoryWatcher = new DirectoryWatcher();
+    for (IModule module : TypeSystem.getExecutionEnvironment().getModules()) {
+      for (IDirectory sourceEntry : module.getSourcePath()) {
+        // Ignore /classes directories and jar files
+        if (!sourceEntry.getName().equals("classes") && !sourceEntry.getName().endsWith(".jar") && sourceEntry.isJavaFile()) {
+          directoryWatcher.watchDirectoryTree(sourceEntry.toJavaFile().toPath());
+        }
+      }
+    }
+    _directoryWatcher = directoryWatcher;
+    _thread = new Thread("Gosu type system watcher") {
+      @Override
+      public void run() {
+        try {
+          while (!isInterrupted()) {
+            refresh(directoryWatcher, directoryWatcher.waitForChanges(_quietPeriodMillis, _maxWaitMillis));
+          }
+        } catch (InterruptedException e) {
+          // stopped
+        } finally {
+          directoryWatcher.close();
+        }
+      }
+    };
+    _thread.setDaemon(true);
+    _thread.start();
+  }
+
+  public synchronized void stop() {
+    if (_thread != null) {
+      _thread.interrupt();
+      _thread = null;
+      _directoryWatcher = null;
+    }
+  }
+
+  public synchronized boolean isRunning() {
+    return _thread != null;
+  }
+
+  void refresh(DirectoryWatcher directoryWatcher, Map<Path, FileEvent> changes) {
+    // A created directory is refreshed along with everything in it, so skip the changes within it
+    List<Path> createdDirs = new ArrayList<Path>();
+    for (Map.Entry<Path, FileEvent> change : changes.entrySet()) {
+      if (change.getValue() == FileEvent.CREATE && directoryWatcher.isDirectory(change.getKey())) {
+        createdDirs.add(change.getKey());
+      }
+    }
+
+    // Modules refreshed as a whole after an overflow, once per batch
+    Set<IModule> refreshedModules = new HashSet<IModule>();
+    TypeSystem.lock();
+    try {
+      for (Map.Entry<Path, FileEvent> change : changes.entrySet()) {
+        Path path = change.getKey();
+        if (!createdDirs.contains(path) && isWithin(path, createdDirs)) {
+          continue;
+        }
+        try {
+          refresh(directoryWatcher, path, change.getValue(), refreshedModules);
+        } catch (Exception e) {
+          // Keep going, one bad file shouldn't stop the rest from being refreshed
+          CommonServices.getEntityAccess().getLogger().warn("Exception during refresh of " + path, e);
+        }
+      }
+    } finally {
+      TypeSystem.unlock();
+    }
+  }
+
+  private void refresh(DirectoryWatcher directoryWatcher, Path path, FileEvent event, Set<IModule> refreshedModules) {
+    File file = path.toFile();
+    boolean bDirectory = directoryWatcher.isDirectory(path);
+    IResource resource = bDirectory
+                         ? CommonServices.getFileSystem().getIDirectory(file)
+                         : CommonServices.getFileSystem().getIFile(file);
+    switch (event) {
+      case CREATE:
+        clearListingCaches(resource);
+        TypeSystem.created(resource);
+        break;
+      case DELETE:
+        clearListingCaches(resource);
+        TypeSystem.deleted(resource);
+        break;
+      case MODIFY:
+        // A directory's own modification just means its content changed, which is reported file by file
+        if (!bDirectory) {
+          TypeSystem.refreshed(resource);
+        }
+        break;
+      case OVERFLOW:
+        // Events were lost, so files may have been created or deleted unseen. Watch any directories
+        // created meanwhile and refresh the whole module, as a modification of the files that are
+        // left would miss the deletions and leave stale misses for the creations.
+        clearListingCaches(resource);
+        directoryWatcher.watchDirectoryTree(path);
+        IModule module = TypeSystem.getExecutionEnvironment().getModule(resource);
+        if (module != null && refreshedModules.add(module)) {
+          TypeSystem.refresh(module);
+        }
+        break;
+    }
+  }
+
+  private void clearListingCaches(IResource resource) {
+    if (resource instanceof IDirectory) {
+      ((IDirectory)resource).clearCaches();
+    }
+    IDirectory parent = resource.getParent();
+    if (parent != null) {
+      parent.clearCaches();
+    }
+  }
+
+  private static boolean isWithin(Path path, List<Path> dirs) {
+    for (Path dir : dirs) {
+      if (path.startsWith(dir)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -39,6 +39,7 @@ public class Gosuc implements IGosuc {
   private GosucProject _project;
   private IModule _globalModule;
   private List<GosucModule> _allGosucModules;
+  private int _iThreads = GosucCompiler.getDefaultThreads();
 
   public Gosuc( String projectFile, ICustomParser custParser ) throws FileNotFoundException {
     File file = new File( projectFile );
@@ -333,13 +334,24 @@ public class Gosuc implements IGosuc {
   public List<IType> compile( IModule module, List<String> types ) {
     TypeSystem.pushModule( module );
     try {
-      return new GosucCompiler().compile( _project, types );
+      return new GosucCompiler( _iThreads ).compile( _project, types );
     }
     finally {
       TypeSystem.popModule( module );
     }
   }
 
+  public int getThreads() {
+    return _iThreads;
+  }
+
+  /**
+   * @param iThreads The number of threads generating bytecode in subsequent calls to compile(), 1 compiles serially
+   */
+  public void setThreads( int iThreads ) {
+    _iThreads = Math.max( 1, iThreads );
+  }
+
   // You can use this for testing by:
   // - From an IJ project use the 'Write Gosuc Project' command to write out the project file
   // - Then run this from IJ using 'classpath of module' setting to match the proper module for pl/pc/cc etc. (this is so the global loaders will be in the classpath)
@@ -351,10 +363,24 @@ public class Gosuc implements IGosuc {
     }
     String strFile = GosucArg.PROJECT.getValue();
     Gosuc gosuc = new Gosuc( strFile, maybeGetCustomParser() );
+    gosuc.setThreads( getThreadsArg() );
     gosuc.initializeGosu();
     gosuc.compile( (String)null, Collections.singletonList( "-all" ) );
   }
 
+  private static int getThreadsArg() {
+    String threads = GosucArg.THREADS.getValue();
+    if( threads == null ) {
+      return GosucCompiler.getDefaultThreads();
+    }
+    try {
+      return Integer.parseInt( threads );
+    }
+    catch( NumberFormatException e ) {
+      throw new IllegalArgumentException( "Expecting a number for " + GosucArg.THREADS.getName() + ", found: " + threads );
+    }
+  }
+
   private static ICustomParser maybeGetCustomParser() {
     String cls = GosucArg.PARSER.getValue();
     if( cls != null ) {
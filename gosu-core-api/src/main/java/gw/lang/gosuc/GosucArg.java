@@ -9,7 +9,8 @@ package gw.lang.gosuc;
 public class GosucArg {
   public static final GosucArg PROJECT = new GosucArg( true, false, "-project", "The GosuC project file to compile" );
   public static final GosucArg PARSER = new GosucArg( false, false, "-parser", "The fully qualified name of a custom parser class implementing " + ICustomParser.class.getName() );
-  public static final GosucArg[] ARGS = {PROJECT, PARSER,};
+  public static final GosucArg THREADS = new GosucArg( false, false, "-threads", "The number of threads generating bytecode and writing class files, defaults to 1. Bytecode generation is serialized, so more threads only write files in parallel" );
+  public static final GosucArg[] ARGS = {PROJECT, PARSER, THREADS,};
 
   private String _name;
   private String _value;
@@ -26,33 +26,169 @@ import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GosucCompiler {
+  private final int _iThreads;
+  private final File _outputDir;
+  private final AtomicLong _parseNanos = new AtomicLong();
+  private final AtomicLong _codegenNanos = new AtomicLong();
+  private final AtomicLong _lockWaitNanos = new AtomicLong();
+  private final AtomicLong _outputNanos = new AtomicLong();
+  private final List<String> _failures = Collections.synchronizedList( new ArrayList<String>() );
+
+  public GosucCompiler() {
+    this( 1 );
+  }
+
+  /**
+   * @param iThreads The number of threads generating and writing bytecode. Parsing
+   *   happens on the calling thread, which feeds parsed classes to the others. Bytecode
+   *   is generated under the type system lock, so more than one thread only overlaps
+   *   writing class files and copying sources with it.
+   */
+  public GosucCompiler( int iThreads ) {
+    this( iThreads, null );
+  }
+
+  /**
+   * @param outputDir The directory to write class files to instead of the module's output path
+   */
+  GosucCompiler( int iThreads, File outputDir ) {
+    _iThreads = Math.max( 1, iThreads );
+    _outputDir = outputDir;
+  }
+
+  /**
+   * @return The number of threads Gosuc and the compile mojo generate bytecode with unless told otherwise.
+   *   One, since bytecode generation is serialized by the type system lock and only file output runs in
+   *   parallel.
+   */
+  public static int getDefaultThreads() {
+    return 1;
+  }
+
   public List<IType> compile( GosucProject project, Collection<? extends CharSequence> typeNames ) {
     final List<IType> types = new ArrayList<IType>();
     if( !typeNames.isEmpty() ) {
       if( typeNames.contains( "-all" ) ) {
         typeNames = project.getAllDefinedTypes();
       }
+      long start = System.nanoTime();
+      if( _iThreads == 1 ) {
+        compileSerially( typeNames, types );
+      }
+      else {
+        compileInParallel( typeNames, types );
+      }
+      reportTimings( types.size(), System.nanoTime() - start );
+      if( !_failures.isEmpty() ) {
+        throw new RuntimeException( "Failed to generate bytecode for: " + _failures );
+      }
+    }
+    return types;
+  }
+
+  private void compileSerially( Collection<? extends CharSequence> typeNames, List<IType> types ) {
+    for( CharSequence typeName : typeNames ) {
+      IGosuClass gsClass = parseType( typeName, types );
+      if( gsClass != null ) {
+        generateClassFile( gsClass );
+      }
+    }
+  }
+
+  /**
+   * Parses types in order on this thread while a pool of workers transforms the
+   * valid ones to bytecode and writes their class files. Parsing resolves a type's
+   * dependencies on demand under the type system lock, so it is kept on one thread.
+   * The transform loads types lazily too, so workers generate bytecode one at a time
+   * under the same lock, as the class loader does; only writing class files and
+   * copying sources runs concurrently. A class and its inner classes go to the same
+   * worker. The number of parsed classes waiting for a worker is bounded so their IR
+   * and bytecode don't pile up in memory.
+   */
+  private void compileInParallel( Collection<? extends CharSequence> typeNames, List<IType> types ) {
+    ForkJoinPool pool = new ForkJoinPool( _iThreads );
+    final Semaphore inFlight = new Semaphore( _iThreads * 2 );
+    try {
       for( CharSequence typeName : typeNames ) {
-        System.out.println( "Compiling " + typeName + "..." );
-        final IType type = TypeSystem.getByFullNameIfValid( typeName.toString() );
-        if( type != null ) {
-          if( compileType( type ) ) {
-            types.add( type );
-          }
+        final IGosuClass gsClass = parseType( typeName, types );
+        if( gsClass == null ) {
+          continue;
         }
-        else {
-          System.out.println( " - can't be compiled, name is invalid" );
+        inFlight.acquireUninterruptibly();
+        pool.execute( new Runnable() {
+          public void run() {
+            try {
+              generateClassFile( gsClass );
+            }
+            catch( Throwable t ) {
+              failed( gsClass, t );
+            }
+            finally {
+              inFlight.release();
+            }
+          }
+        } );
+      }
+    }
+    finally {
+      pool.shutdown();
+      try {
+        pool.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+      }
+      catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return The parsed class if bytecode should be generated for it, otherwise null
+   */
+  private IGosuClass parseType( CharSequence typeName, List<IType> types ) {
+    long start = System.nanoTime();
+    try {
+      System.out.println( "Compiling " + typeName + "..." );
+      final IType type = TypeSystem.getByFullNameIfValid( typeName.toString() );
+      if( type == null ) {
+        System.out.println( " - can't be compiled, name is invalid" );
+        return null;
+      }
+      if( !isCompilable( type ) ) {
+        return null;
+      }
+      types.add( type );
+      IModule module = type.getTypeLoader().getModule();
+      TypeSystem.pushModule( module );
+      try {
+        IGosuClass gsClass = (IGosuClass)type;
+        boolean bValid = gsClass.isValid();
+        final ParseResultsException parseException = gsClass.getParseResultsException();
+        if( parseException != null ) {
+          for( IParseIssue issue: parseException.getParseIssues() ) {
+            System.out.println( (issue instanceof ParseWarning ? "Warning: " : "Error: ") + issue.getConsoleMessage() );
+          }
         }
+        return bValid ? gsClass : null;
+      }
+      finally {
+        TypeSystem.popModule( module );
       }
     }
-    return types;
+    finally {
+      _parseNanos.addAndGet( System.nanoTime() - start );
+    }
   }
 
-  private boolean compileType( IType type ) {
+  private boolean isCompilable( IType type ) {
     if( !(type instanceof ICompilable) || !((ICompilable)type).isCompilable() ) {
       return false;
     }
@@ -63,43 +199,58 @@ public class GosucCompiler {
       return false;
     }
     IModule module = type.getTypeLoader().getModule();
-    if( module == TypeSystem.getJreModule() ) {
-      // This is a Gosu library file e.g., an enhancement, we don't handle these now, ideally they'll come precompiled
-      return false;
-    }
+    // A Gosu library file e.g., an enhancement, we don't handle these now, ideally they'll come precompiled
+    return module != TypeSystem.getJreModule();
+  }
+
+  private void generateClassFile( IGosuClass gsClass ) {
+    IModule module = gsClass.getTypeLoader().getModule();
     TypeSystem.pushModule( module );
     try {
-      IGosuClass gsClass = (IGosuClass)type;
-      boolean bValid = gsClass.isValid();
-      final ParseResultsException parseException = gsClass.getParseResultsException();
-      if( parseException != null ) {
-        for( IParseIssue issue: parseException.getParseIssues() ) {
-          System.out.println( (issue instanceof ParseWarning ? "Warning: " : "Error: ") + issue.getConsoleMessage() );
-        }
-      }
-
-      if( bValid ) {
-        // Compile to bytecode (.class files) (and also copies source file)
-        makeClassFileForOut( (IGosuClass)type );
-      }
-      return true;
+      // Compile to bytecode (.class files) (and also copies source file)
+      makeClassFileForOut( gsClass );
     }
     finally {
       TypeSystem.popModule( module );
     }
   }
 
+  private void failed( IGosuClass gsClass, Throwable t ) {
+    System.out.println( "Error: failed to generate bytecode for " + gsClass.getName() + ": " + t );
+    _failures.add( gsClass.getName() );
+  }
+
+  private void reportTimings( int iTypes, long wallNanos ) {
+    System.out.println( "Compiled " + iTypes + " types in " + toMillis( wallNanos ) + "ms using " + _iThreads + " thread(s)" );
+    System.out.println( " - parse: " + toMillis( _parseNanos.get() ) + "ms" );
+    System.out.println( " - bytecode generation: " + toMillis( _codegenNanos.get() ) + "ms" );
+    if( _iThreads > 1 ) {
+      System.out.println( " - waiting for the type system lock: " + toMillis( _lockWaitNanos.get() ) + "ms (summed over threads)" );
+    }
+    System.out.println( " - output: " + toMillis( _outputNanos.get() ) + "ms" +
+                        (_iThreads > 1 ? " (summed over threads)" : "") );
+  }
+
+  private static long toMillis( long nanos ) {
+    return TimeUnit.NANOSECONDS.toMillis( nanos );
+  }
+
   private File makeClassFileForOut(IGosuClass gsClass) {
     IModule module = TypeSystem.getCurrentModule();
     final File[] classFile = new File[1];
-    IDirectory moduleOutputDirectory = module.getOutputPath();
-    if( moduleOutputDirectory == null ) {
-      throw new RuntimeException( "Can't make class file, no output path for module " + module.getName() );
+    File outputDir = _outputDir;
+    if( outputDir == null ) {
+      IDirectory moduleOutputDirectory = module.getOutputPath();
+      if( moduleOutputDirectory == null ) {
+        throw new RuntimeException( "Can't make class file, no output path for module " + module.getName() );
+      }
+      outputDir = new File( moduleOutputDirectory.getPath().getFileSystemPathString() );
     }
 
     final String outRelativePath = gsClass.getName().replace( '.', File.separatorChar ) + ".class";
     try {
-      File child = new File( moduleOutputDirectory.getPath().getFileSystemPathString() );
+      long start = System.nanoTime();
+      File child = outputDir;
       child.mkdirs();
       for( StringTokenizer tokenizer = new StringTokenizer( outRelativePath, File.separator + "/" ); tokenizer.hasMoreTokens(); ) {
         String token = tokenizer.nextToken();
@@ -113,12 +264,16 @@ public class GosucCompiler {
           }
         }
       }
+      _outputNanos.addAndGet( System.nanoTime() - start );
       createClassFile( child, gsClass );
+      start = System.nanoTime();
       maybeCopySourceFile( child.getParentFile(), gsClass );
+      _outputNanos.addAndGet( System.nanoTime() - start );
       classFile[0] = child;
     }
     catch( Exception e ) {
       System.out.println( e.getMessage() );
+      failed( gsClass, e );
     }
     return classFile[0];
   }
@@ -140,19 +295,34 @@ public class GosucCompiler {
   }
 
   private void createClassFile( File outputFile, IGosuClass gosuClass ) throws IOException {
-    if (hasDoNotVerifyAnnotation(gosuClass)) {
-      return;
+    final byte[] bytes;
+    List<? extends IGosuClass> innerClasses;
+    // the transform resolves and loads types as it goes
+    long lockStart = System.nanoTime();
+    TypeSystem.lock();
+    long codegenStart = System.nanoTime();
+    _lockWaitNanos.addAndGet( codegenStart - lockStart );
+    try {
+      if (hasDoNotVerifyAnnotation(gosuClass)) {
+        return;
+      }
+      bytes = TypeSystem.getGosuClassLoader().getBytes(gosuClass);
+      innerClasses = new ArrayList<IGosuClass>( gosuClass.getInnerClasses() );
     }
-
-    final byte[] bytes = TypeSystem.getGosuClassLoader().getBytes(gosuClass);
+    finally {
+      TypeSystem.unlock();
+      _codegenNanos.addAndGet( System.nanoTime() - codegenStart );
+    }
+    long start = System.nanoTime();
     OutputStream out = new FileOutputStream( outputFile );
     try {
       out.write( bytes );
     }
     finally {
       out.close();
+      _outputNanos.addAndGet( System.nanoTime() - start );
     }
-    for (IGosuClass innerClass : gosuClass.getInnerClasses()) {
+    for (IGosuClass innerClass : innerClasses) {
       final String innerClassName = String.format("%s$%s.class", outputFile.getName().substring( 0, outputFile.getName().lastIndexOf( '.' ) ), innerClass.getRelativeName());
       File innerClassFile = new File( outputFile.getParent(), innerClassName );
       if( innerClassFile.isFile() ) {
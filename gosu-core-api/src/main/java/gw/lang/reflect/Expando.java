@@ -4,31 +4,47 @@
 
 package gw.lang.reflect;
 
-import gw.internal.ext.org.apache.commons.collections.map.ListOrderedMap;
 import gw.lang.function.IBlock;
 import gw.util.GosuEscapeUtil;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
+ * Keeps its fields in the order they were added. The field names live in an {@link ExpandoShape}
+ * shared by all expandos with the same fields, or owned by this expando once it has many fields, and
+ * the values in a slot array indexed by it.
  */
 public class Expando implements IExpando {
-  private Map<String, Object> _map = new ListOrderedMap();
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private ExpandoShape _shape = ExpandoShape.EMPTY;
+  private Object[] _values = NO_VALUES;
+  private FieldMap _map;
 
   @Override
   public Object getFieldValue( String field ) {
-    return _map.get( field );
+    int slot = _shape.indexOf( field );
+    return slot < 0 ? null : _values[slot];
   }
 
   @Override
   public void setFieldValue( String field, Object value ) {
-    _map.put( field, value );
+    int slot = _shape.indexOf( field );
+    if( slot < 0 ) {
+      slot = addField( field );
+    }
+    _values[slot] = value;
   }
 
   @Override
   public Object invoke( String methodName, Object... args ) {
-    Object f = _map.get( methodName );
+    Object f = getFieldValue( methodName );
     if( f instanceof IBlock ) {
       return ((IBlock)f).invokeWithArgs( args );
     }
@@ -42,24 +58,65 @@ public class Expando implements IExpando {
 
   @Override
   public Map getMap() {
+    if( _map == null ) {
+      _map = new FieldMap();
+    }
     return _map;
   }
 
+  /**
+   * The shape of this expando's fields. A slot index found with the shape is valid for any expando
+   * with the identical shape, until a field is added to or removed from that expando. That does not
+   * hold for a dictionary-mode shape, which changes along with its expando.
+   */
+  public ExpandoShape getShape() {
+    return _shape;
+  }
+
+  public Object getSlot( int slot ) {
+    return _values[slot];
+  }
+
+  public void setSlot( int slot, Object value ) {
+    _values[slot] = value;
+  }
+
+  private int addField( String field ) {
+    int slot = _shape.size();
+    if( slot == _values.length ) {
+      Object[] values = new Object[Math.max( 4, slot * 2 )];
+      System.arraycopy( _values, 0, values, 0, slot );
+      _values = values;
+    }
+    _shape = _shape.with( field );
+    return slot;
+  }
+
+  private Object removeField( int slot ) {
+    Object value = _values[slot];
+    int size = _shape.size();
+    System.arraycopy( _values, slot + 1, _values, slot, size - slot - 1 );
+    _values[size - 1] = null;
+    _shape = _shape.without( slot );
+    return value;
+  }
+
   public String toGosu() {
     StringBuilder sb = new StringBuilder();
     toGosu( true, sb, 0 );
     return sb.toString();
   }
   public void toGosu( boolean bWithDynamic, StringBuilder sb, int indent ) {
-    int iKey = 0;
     indent( sb, indent );
     sb.append( "new" ).append( bWithDynamic ? " dynamic.Dynamic()" : "()" );
-    if( _map.size() > 0 ) {
+    int size = _shape.size();
+    if( size > 0 ) {
       sb.append( " {\n" );
-      for( String key : _map.keySet() ) {
+      for( int iKey = 0; iKey < size; iKey++ ) {
+        String key = _shape.getField( iKey );
         indent( sb, indent + 2 );
         sb.append( ":" ).append( key ).append( " = " );
-        Object value = _map.get( key );
+        Object value = _values[iKey];
         if( value instanceof Expando ) {
           ((Expando)value).toGosu( false, sb, indent+2 );
         }
@@ -88,7 +145,7 @@ public class Expando implements IExpando {
         else {
           appendGosuValue( sb, value );
         }
-        appendCommaNewLine( sb, iKey++ < _map.size() - 1 );
+        appendCommaNewLine( sb, iKey < size - 1 );
       }
     }
     indent( sb, indent );
@@ -135,10 +192,12 @@ public class Expando implements IExpando {
   public void toXml( String name, StringBuilder sb, int indent ) {
     indent( sb, indent );
     sb.append( '<' ).append( name );
-    if( _map.size() > 0 ) {
+    int size = _shape.size();
+    if( size > 0 ) {
       sb.append( ">\n" );
-      for( String key : _map.keySet() ) {
-        Object value = _map.get( key );
+      for( int i = 0; i < size; i++ ) {
+        String key = _shape.getField( i );
+        Object value = _values[i];
         if( value instanceof Expando ) {
           ((Expando)value).toXml( key, sb, indent+2 );
         }
@@ -197,7 +256,7 @@ public class Expando implements IExpando {
 
     Expando expando = (Expando)o;
 
-    if( !_map.equals( expando._map ) ) {
+    if( !getMap().equals( expando.getMap() ) ) {
       return false;
     }
 
@@ -206,13 +265,115 @@ public class Expando implements IExpando {
 
   @Override
   public int hashCode() {
-    return _map.hashCode();
+    return getMap().hashCode();
   }
 
   @Override
   public String toString() {
     return "Expando{" +
-           "_map=" + _map +
+           "_map=" + getMap() +
            '}';
   }
+
+  /**
+   * The fields as a map, in the order they were added. Changes to the map change the expando.
+   */
+  private class FieldMap extends AbstractMap<String, Object> {
+    @Override
+    public int size() {
+      return _shape.size();
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+      return key instanceof String && _shape.indexOf( (String)key ) >= 0;
+    }
+
+    @Override
+    public Object get( Object key ) {
+      return key instanceof String ? getFieldValue( (String)key ) : null;
+    }
+
+    @Override
+    public Object put( String key, Object value ) {
+      int slot = _shape.indexOf( key );
+      if( slot < 0 ) {
+        slot = addField( key );
+        _values[slot] = value;
+        return null;
+      }
+      Object old = _values[slot];
+      _values[slot] = value;
+      return old;
+    }
+
+    @Override
+    public Object remove( Object key ) {
+      int slot = key instanceof String ? _shape.indexOf( (String)key ) : -1;
+      return slot < 0 ? null : removeField( slot );
+    }
+
+    @Override
+    public void clear() {
+      _shape = ExpandoShape.EMPTY;
+      _values = NO_VALUES;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public int size() {
+          return _shape.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int _next;
+            private int _last = -1;
+
+            @Override
+            public boolean hasNext() {
+              return _next < _shape.size();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if( !hasNext() ) {
+                throw new NoSuchElementException();
+              }
+              _last = _next++;
+              return new SlotEntry( _last );
+            }
+
+            @Override
+            public void remove() {
+              if( _last < 0 ) {
+                throw new IllegalStateException();
+              }
+              removeField( _last );
+              _next = _last;
+              _last = -1;
+            }
+          };
+        }
+      };
+    }
+  }
+
+  private class SlotEntry extends AbstractMap.SimpleEntry<String, Object> {
+    private final int _slot;
+
+    SlotEntry( int slot ) {
+      super( _shape.getField( slot ), _values[slot] );
+      _slot = slot;
+    }
+
+    @Override
+    public Object setValue( Object value ) {
+      _values[_slot] = value;
+      return super.setValue( value );
+    }
+  }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.lang.reflect;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The ordered set of field names of an {@link Expando}. Expandos that had the same fields added in the
+ * same order share one immutable shape, and store just their values in a slot array indexed by the
+ * shape. Adding a field moves an expando to the shape reached through that field's transition, which
+ * is created once and then cached on the shape for as long as some expando or call site uses it.
+ * <p/>
+ * Since shapes are shared, code that has seen an expando of a given shape can remember the slot index
+ * of a field and reuse it for any expando with the identical shape.
+ * <p/>
+ * Only expandos with a few fields share shapes. An expando that grows past them moves to a
+ * dictionary-mode shape of its own, which maps names to slots with a hash map and is changed in place
+ * as fields are added and removed, so its slot indexes must not be remembered.
+ */
+public final class ExpandoShape {
+  public static final ExpandoShape EMPTY = new ExpandoShape( null, new String[0] );
+
+  // past this many fields an expando gets a dictionary-mode shape, so the shared ones stay small
+  private static final int MAX_SHARED_FIELDS = 8;
+  // limits the shapes kept for expandos whose field names vary from instance to instance
+  private static final int MAX_TRANSITIONS = 32;
+
+  // the shape without the last field, null for the empty and dictionary-mode shapes
+  private final ExpandoShape _parent;
+  private final boolean _bDictionary;
+  private String[] _fields;
+  private int _iSize;
+  // dictionary mode only
+  private final Map<String, Integer> _slots;
+  // the shapes are held weakly, so names no expando uses anymore aren't kept
+  private volatile ConcurrentMap<String, WeakReference<ExpandoShape>> _transitions;
+
+  private ExpandoShape( ExpandoShape parent, String[] fields ) {
+    _parent = parent;
+    _bDictionary = false;
+    _fields = fields;
+    _iSize = fields.length;
+    _slots = null;
+  }
+
+  private ExpandoShape( String[] fields, int iSize ) {
+    _parent = null;
+    _bDictionary = true;
+    _fields = fields;
+    _iSize = iSize;
+    _slots = new HashMap<String, Integer>( fields.length * 2 );
+    for( int i = 0; i < iSize; i++ ) {
+      _slots.put( fields[i], i );
+    }
+  }
+
+  public int size() {
+    return _iSize;
+  }
+
+  public String getField( int slot ) {
+    if( slot >= _iSize ) {
+      throw new ArrayIndexOutOfBoundsException( slot );
+    }
+    return _fields[slot];
+  }
+
+  /**
+   * @return True if this shape belongs to a single expando and changes along with it
+   */
+  public boolean isDictionaryMode() {
+    return _bDictionary;
+  }
+
+  /**
+   * @return The slot of the field, or -1 if this shape does not have it
+   */
+  public int indexOf( String field ) {
+    if( _bDictionary ) {
+      Integer slot = _slots.get( field );
+      return slot == null ? -1 : slot;
+    }
+    String[] fields = _fields;
+    for( int i = 0; i < fields.length; i++ ) {
+      String f = fields[i];
+      //noinspection StringEquality
+      if( f == field || f.equals( field ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The shape with the field added after this shape's fields, this shape itself if it is in
+   *   dictionary mode
+   * @throws IllegalArgumentException if the field name is null
+   */
+  public ExpandoShape with( String field ) {
+    if( field == null ) {
+      throw new IllegalArgumentException( "An expando field name cannot be null" );
+    }
+    if( _bDictionary ) {
+      if( _iSize == _fields.length ) {
+        _fields = Arrays.copyOf( _fields, _iSize * 2 );
+      }
+      _fields[_iSize] = field;
+      _slots.put( field, _iSize++ );
+      return this;
+    }
+    if( _iSize == MAX_SHARED_FIELDS ) {
+      String[] fields = Arrays.copyOf( _fields, _iSize * 2 );
+      fields[_iSize] = field;
+      return new ExpandoShape( fields, _iSize + 1 );
+    }
+    ConcurrentMap<String, WeakReference<ExpandoShape>> transitions = getTransitions();
+    while( true ) {
+      WeakReference<ExpandoShape> ref = transitions.get( field );
+      ExpandoShape shape = ref == null ? null : ref.get();
+      if( shape != null ) {
+        return shape;
+      }
+      String[] fields = Arrays.copyOf( _fields, _iSize + 1 );
+      fields[_iSize] = field;
+      shape = new ExpandoShape( this, fields );
+      if( ref == null && transitions.size() >= MAX_TRANSITIONS && !removeCollected( transitions ) ) {
+        // not shared
+        return shape;
+      }
+      WeakReference<ExpandoShape> newRef = new WeakReference<ExpandoShape>( shape );
+      if( ref == null ? transitions.putIfAbsent( field, newRef ) == null : transitions.replace( field, ref, newRef ) ) {
+        return shape;
+      }
+    }
+  }
+
+  /**
+   * @return The shape with the field at the slot taken out, this shape itself if it is in dictionary
+   *   mode. A shared shape is reached from the shape before the slot so that it is shared with expandos
+   *   built up with the remaining fields.
+   */
+  public ExpandoShape without( int slot ) {
+    if( slot >= _iSize ) {
+      throw new ArrayIndexOutOfBoundsException( slot );
+    }
+    if( _bDictionary ) {
+      _slots.remove( _fields[slot] );
+      System.arraycopy( _fields, slot + 1, _fields, slot, _iSize - slot - 1 );
+      _fields[--_iSize] = null;
+      for( int i = slot; i < _iSize; i++ ) {
+        _slots.put( _fields[i], i );
+      }
+      return this;
+    }
+    ExpandoShape shape = this;
+    for( int i = _iSize; i > slot; i-- ) {
+      shape = shape._parent;
+    }
+    for( int i = slot + 1; i < _iSize; i++ ) {
+      shape = shape.with( _fields[i] );
+    }
+    return shape;
+  }
+
+  private ConcurrentMap<String, WeakReference<ExpandoShape>> getTransitions() {
+    ConcurrentMap<String, WeakReference<ExpandoShape>> transitions = _transitions;
+    if( transitions == null ) {
+      synchronized( this ) {
+        transitions = _transitions;
+        if( transitions == null ) {
+          _transitions = transitions = new ConcurrentHashMap<String, WeakReference<ExpandoShape>>( 4 );
+        }
+      }
+    }
+    return transitions;
+  }
+
+  /**
+   * @return True if any transitions to collected shapes were removed
+   */
+  private static boolean removeCollected( ConcurrentMap<String, WeakReference<ExpandoShape>> transitions ) {
+    boolean bRemoved = false;
+    for( Map.Entry<String, WeakReference<ExpandoShape>> entry : transitions.entrySet() ) {
+      if( entry.getValue().get() == null && transitions.remove( entry.getKey(), entry.getValue() ) ) {
+        bRemoved = true;
+      }
+    }
+    return bRemoved;
+  }
+
+  @Override
+  public String toString() {
+    return "ExpandoShape" + Arrays.toString( Arrays.copyOf( _fields, _iSize ) );
+  }
+}
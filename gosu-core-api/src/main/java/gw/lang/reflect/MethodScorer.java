@@ -8,31 +8,38 @@ import gw.config.CommonServices;
 import gw.lang.parser.ICoercer;
 import gw.lang.parser.IExpression;
 import gw.lang.parser.StandardCoercionManager;
-import gw.lang.parser.TypeSystemAwareCache;
 import gw.lang.parser.coercers.BasePrimitiveCoercer;
 import gw.lang.reflect.java.JavaTypes;
 import gw.util.Pair;
 import gw.util.concurrent.Cache;
+import gw.util.concurrent.ShardedCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 
 public class MethodScorer {
+  /** System property for the maximum number of cached type scores */
+  public static final String TYPE_SCORE_CACHE_SIZE_SYSTEM_PROP = "gosu.methodscorer.typescores.size";
+  /** System property for the maximum number of cached overload resolutions */
+  public static final String METHOD_SCORE_CACHE_SIZE_SYSTEM_PROP = "gosu.methodscorer.methodscores.size";
+
   private static volatile MethodScorer INSTANCE = null;
 
-  private final TypeSystemAwareCache<Pair<IType, IType>, Integer> _typeScoreCache =
-    TypeSystemAwareCache.make( "Type Score Cache", 1000,
-                               new Cache.MissHandler<Pair<IType, IType>, Integer>() {
-                                 public final Integer load( Pair<IType, IType> key ) {
-                                   return _addToScoreForTypes( Collections.<IType>emptyList(), key.getFirst(), key.getSecond() );
-                                 }
-                               } );
+  private final ShardedCache<Pair<IType, IType>, Integer> _typeScoreCache =
+    ShardedCache.make( "Type Score Cache", Integer.getInteger( TYPE_SCORE_CACHE_SIZE_SYSTEM_PROP, 1000 ),
+                       new Cache.MissHandler<Pair<IType, IType>, Integer>() {
+                         public final Integer load( Pair<IType, IType> key ) {
+                           return _addToScoreForTypes( Collections.<IType>emptyList(), key.getFirst(), key.getSecond() );
+                         }
+                       } );
 
-  private final MethodScoreCache _methodScoreCache = new MethodScoreCache();
+  private final ShardedCache<MethodScoreKey, IInvocableType> _methodScoreCache =
+    ShardedCache.make( "Method Score Cache", Integer.getInteger( METHOD_SCORE_CACHE_SIZE_SYSTEM_PROP, 10000 ), null );
 
+  @SuppressWarnings({"FieldCanBeLocal"})
+  private final AbstractTypeSystemListener _cacheClearer = new CacheClearer();
 
   public static MethodScorer instance() {
     if( INSTANCE == null ) {
@@ -46,6 +53,7 @@ public class MethodScorer {
   }
 
   private MethodScorer() {
+    TypeSystem.addTypeLoaderListenerAsWeakRef( _cacheClearer );
   }
 
   public List<MethodScore> scoreMethods( List<IInvocableType> funcTypes, List<IType> argTypes, List<IType> inferringTypes ) {
@@ -226,27 +234,33 @@ public class MethodScorer {
     return type;
   }
 
-  private static class MethodScoreCache extends HashMap<MethodScoreKey, IInvocableType> {
-    MethodScoreCache() {
-      //super( 2000 );
-      TypeSystem.addTypeLoaderListenerAsWeakRef( new CacheClearer() );
+  private class CacheClearer extends AbstractTypeSystemListener {
+    @Override
+    public void refreshed() {
+      clearCaches();
     }
 
-    private class CacheClearer extends AbstractTypeSystemListener {
-      @Override
-      public void refreshed() {
-        clear();
-      }
-
-      @Override
-      public void refreshedTypes( RefreshRequest request ) {
-        clear();
-      }
+    @Override
+    public void refreshedTypes( RefreshRequest request ) {
+      clearCaches();
     }
   }
 
+  private void clearCaches() {
+    _typeScoreCache.clear();
+    _methodScoreCache.clear();
+  }
+
+  public ShardedCache<Pair<IType, IType>, Integer> getTypeScoreCache() {
+    return _typeScoreCache;
+  }
+
+  public ShardedCache<?, IInvocableType> getMethodScoreCache() {
+    return _methodScoreCache;
+  }
+
   public IInvocableType getCachedMethodScore( IInvocableType funcType, List<IType> argTypes ) {
-    return _methodScoreCache.get( new MethodScoreKey( argTypes, funcType ) );
+    return _methodScoreCache.getIfPresent( new MethodScoreKey( argTypes, funcType ) );
   }
   public void putCachedMethodScore( MethodScore score ) {
     score.setScore( 0 );
@@ -260,6 +260,11 @@ public class TypeSystem
 
   /**
    * Acquires the global type-system lock
+   * <p/>
+   * Resolved types and loaded type info are published through volatile fields
+   * and concurrent maps, so readers should check for a resolved value before
+   * taking this lock. Lazy state whose initialization does not call back into
+   * the type system should be guarded by a per-type monitor instead.
    */
   public static void lock()
   {
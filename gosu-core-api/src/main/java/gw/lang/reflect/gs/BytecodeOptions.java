@@ -18,6 +18,11 @@ public class BytecodeOptions
   private static boolean TREE_VERIFICATION_ENABLED = false;
 
   public static final String RELOAD_CLASSES_SYSTEM_PROP = "gosu.can.reload.classes";
+  public static final String INVOKE_DYNAMIC_SYSTEM_PROP = "gosu.invokedynamic";
+  public static final String CLASS_CACHE_DIR_SYSTEM_PROP = "gosu.class.cache.dir";
+
+  private static boolean INVOKE_DYNAMIC = Boolean.getBoolean( INVOKE_DYNAMIC_SYSTEM_PROP );
+  private static String CLASS_CACHE_DIR = System.getProperty( CLASS_CACHE_DIR_SYSTEM_PROP );
 
   public static LocklessLazyVar<Boolean> JDWP_ENABLED =
     new LocklessLazyVar<Boolean>() {
@@ -100,6 +105,39 @@ public class BytecodeOptions
     return System.getProperty( "java.vm.name" ).contains( "Dynamic Code Evolution" );
   }
 
+  /**
+   * When enabled, dynamic and structural member access compiles to invokedynamic
+   * call sites that link directly to the resolved feature per receiver class,
+   * instead of static calls into the runtime's lookup helpers. Classes are then
+   * emitted as Java 7 class files.
+   */
+  public static boolean isInvokeDynamic()
+  {
+    return INVOKE_DYNAMIC;
+  }
+
+  public static void setInvokeDynamic( boolean bInvokeDynamic )
+  {
+    INVOKE_DYNAMIC = bInvokeDynamic;
+  }
+
+  /**
+   * When set, bytecode the runtime compiles from source is also written to this
+   * directory and reused by later JVMs for as long as the class's source and the
+   * classes it depends on are unchanged.
+   *
+   * @return The class cache directory or null if the cache is disabled
+   */
+  public static String getClassCacheDir()
+  {
+    return CLASS_CACHE_DIR;
+  }
+
+  public static void setClassCacheDir( String dir )
+  {
+    CLASS_CACHE_DIR = dir;
+  }
+
   public static boolean isTreeVerifcationEnabled()
   {
     return TREE_VERIFICATION_ENABLED;
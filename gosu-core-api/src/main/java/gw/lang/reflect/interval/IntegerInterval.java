@@ -84,9 +84,16 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
   public class ForwardIterator extends AbstractIntIterator
   {
     private int _csr;
+    private final int _right;
+    private final int _step;
+    private final boolean _bRightClosed;
 
     public ForwardIterator()
     {
+      // Unbox the bounds once instead of on every step
+      _right = getRightEndpoint();
+      _step = getStep();
+      _bRightClosed = isRightClosed();
       _csr = getLeftEndpoint();
       if( !isLeftClosed() && hasNext() )
       {
@@ -97,7 +104,7 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
     @Override
     public boolean hasNext()
     {
-      return _csr < getRightEndpoint() || (isRightClosed() && _csr == getRightEndpoint());
+      return _csr < _right || (_bRightClosed && _csr == _right);
     }
 
     @Override
@@ -108,13 +115,13 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
 
     public int nextInt()
     {
-      if( _csr > getRightEndpoint() ||
-          (!isRightClosed() && _csr == getRightEndpoint()) )
+      if( _csr > _right ||
+          (!_bRightClosed && _csr == _right) )
       {
         throw new NoSuchElementException();
       }
       int ret = _csr;
-      _csr = _csr + getStep();
+      _csr = _csr + _step;
       return ret;
     }
 
@@ -128,9 +135,15 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
   private class ReverseIterator extends AbstractIntIterator
   {
     private int _csr;
+    private final int _left;
+    private final int _step;
+    private final boolean _bLeftClosed;
 
     public ReverseIterator()
     {
+      _left = getLeftEndpoint();
+      _step = getStep();
+      _bLeftClosed = isLeftClosed();
       _csr = getRightEndpoint();
       if( !isRightClosed() && hasNext() )
       {
@@ -141,7 +154,7 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
     @Override
     public boolean hasNext()
     {
-       return _csr > getLeftEndpoint() || (isLeftClosed() && _csr == getLeftEndpoint());
+       return _csr > _left || (_bLeftClosed && _csr == _left);
     }
 
     @Override
@@ -152,13 +165,13 @@ public final class IntegerInterval extends NumberInterval<Integer, IntegerInterv
 
     public int nextInt()
     {
-      if( _csr < getLeftEndpoint() ||
-          (!isLeftClosed() && _csr == getLeftEndpoint()) )
+      if( _csr < _left ||
+          (!_bLeftClosed && _csr == _left) )
       {
         throw new NoSuchElementException();
       }
       int ret = _csr;
-      _csr = _csr - getStep();
+      _csr = _csr - _step;
       return ret;
     }
 
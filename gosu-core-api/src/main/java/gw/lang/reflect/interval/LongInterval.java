@@ -82,9 +82,16 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
   public class ForwardIterator extends AbstractLongIterator
   {
     private long _csr;
+    private final long _right;
+    private final long _step;
+    private final boolean _bRightClosed;
 
     public ForwardIterator()
     {
+      // Unbox the bounds once instead of on every step
+      _right = getRightEndpoint();
+      _step = getStep();
+      _bRightClosed = isRightClosed();
       _csr = getLeftEndpoint();
       if( !isLeftClosed() && hasNext() )
       {
@@ -95,7 +102,7 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
     @Override
     public boolean hasNext()
     {
-      return _csr < getRightEndpoint() || (isRightClosed() && _csr == getRightEndpoint());
+      return _csr < _right || (_bRightClosed && _csr == _right);
     }
 
     @Override
@@ -105,13 +112,13 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
     }
     public long nextLong()
     {
-      if( _csr > getRightEndpoint() ||
-          (!isRightClosed() && _csr == getRightEndpoint()) )
+      if( _csr > _right ||
+          (!_bRightClosed && _csr == _right) )
       {
         throw new NoSuchElementException();
       }
       long ret = _csr;
-      _csr = _csr + getStep();
+      _csr = _csr + _step;
       return ret;
     }
 
@@ -125,9 +132,15 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
   private class ReverseIterator extends AbstractLongIterator
   {
     private long _csr;
+    private final long _left;
+    private final long _step;
+    private final boolean _bLeftClosed;
 
     public ReverseIterator()
     {
+      _left = getLeftEndpoint();
+      _step = getStep();
+      _bLeftClosed = isLeftClosed();
       _csr = getRightEndpoint();
       if( !isRightClosed() && hasNext() )
       {
@@ -138,7 +151,7 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
     @Override
     public boolean hasNext()
     {
-       return _csr > getLeftEndpoint() || (isLeftClosed() && _csr == getLeftEndpoint());
+       return _csr > _left || (_bLeftClosed && _csr == _left);
     }
 
     @Override
@@ -148,13 +161,13 @@ public final class LongInterval extends NumberInterval<Long, LongInterval>
     }
     public long nextLong()
     {
-      if( _csr < getLeftEndpoint() ||
-          (!isLeftClosed() && _csr == getLeftEndpoint()) )
+      if( _csr < _left ||
+          (!_bLeftClosed && _csr == _left) )
       {
         throw new NoSuchElementException();
       }
       long ret = _csr;
-      _csr = _csr - getStep();
+      _csr = _csr - _step;
       return ret;
     }
 
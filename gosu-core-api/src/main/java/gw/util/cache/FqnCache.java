@@ -15,9 +15,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A trie of fully qualified names. {@link #get} and {@link #contains} are lock-free and
+ * may run concurrently with {@link #add} and {@link #remove}, so callers need no external
+ * locking for lookups.
+ */
 public class FqnCache<T> implements IFqnCache<T> {
-  private static Map<String, String[]> PARTS_CACHE = new ConcurrentHashMap<String, String[]>();
-  private FqnCacheNode<T> _root = new FqnCacheNode<T>("root", null);
+  private static final Map<String, String[]> PARTS_CACHE = new ConcurrentHashMap<String, String[]>();
+  private final FqnCacheNode<T> _root = new FqnCacheNode<T>("root", null);
 
   public FqnCacheNode<T> getRoot() {
     return _root;
@@ -13,12 +13,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+/**
+ * A node in an {@link FqnCache}. Reads never lock: the child map is created lazily and
+ * published with a CAS, so concurrent {@link #getOrCreateChild} calls always agree on
+ * one map and one node per segment.
+ */
 public class FqnCacheNode<K> {
+  @SuppressWarnings("unchecked")
+  private static final AtomicReferenceFieldUpdater<FqnCacheNode, ConcurrentMap> CHILDREN =
+    AtomicReferenceFieldUpdater.newUpdater( FqnCacheNode.class, ConcurrentMap.class, "children" );
+
   private final String name;
   private final FqnCacheNode<K> parent;
-  private K userData;
-  private Map<String, FqnCacheNode<K>> children;
+  private volatile K userData;
+  private volatile ConcurrentMap<String, FqnCacheNode<K>> children;
 
   public FqnCacheNode( String text, FqnCacheNode<K> parent ) {
     this.name = text;
@@ -26,6 +37,7 @@ public class FqnCacheNode<K> {
   }
 
   public final FqnCacheNode<K> getChild( String segment ) {
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       return children.get(segment);
     } else {
@@ -38,13 +50,19 @@ public class FqnCacheNode<K> {
   }
 
   public FqnCacheNode<K> getOrCreateChild( String segment ) {
-    if (children == null) {
-      children = new ConcurrentHashMap<String, FqnCacheNode<K>>(2);
+    ConcurrentMap<String, FqnCacheNode<K>> children = this.children;
+    while (children == null) {
+      // A concurrent clear() may null the map again before it is read back
+      CHILDREN.compareAndSet(this, null, new ConcurrentHashMap<String, FqnCacheNode<K>>(2));
+      children = this.children;
     }
     FqnCacheNode<K> node = children.get(segment);
     if (node == null) {
       node = new FqnCacheNode<K>(segment, this);
-      children.put(segment, node);
+      FqnCacheNode<K> existing = children.putIfAbsent(segment, node);
+      if (existing != null) {
+        node = existing;
+      }
     }
     return node;
   }
@@ -54,11 +72,10 @@ public class FqnCacheNode<K> {
   }
 
   private void deleteChild(FqnCacheNode<K> child) {
+    // The emptied map is kept so a concurrent add of a sibling is never lost
+    ConcurrentMap<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
-      children.remove(child.name);
-      if (children.isEmpty()) {
-        children = null;
-      }
+      children.remove(child.name, child);
     }
   }
 
@@ -71,10 +88,12 @@ public class FqnCacheNode<K> {
   }
 
   public final boolean isLeaf() {
+    Map<String, FqnCacheNode<K>> children = this.children;
     return children == null || children.isEmpty();
   }
 
   public void collectNames( Set<String> names, String s ) {
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       for (FqnCacheNode<K> child : children.values()) {
         String path = s.length() == 0
@@ -90,6 +109,7 @@ public class FqnCacheNode<K> {
   }
 
   public final Collection<FqnCacheNode<K>> getChildren() {
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       return children.values();
     } else {
@@ -98,6 +118,7 @@ public class FqnCacheNode<K> {
   }
 
   public final boolean visitDepthFirst( Predicate<K> visitor ) {
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       List<FqnCacheNode<K>> copy = new ArrayList<FqnCacheNode<K>>( children.values() );
       for( FqnCacheNode<K> child: copy ) {
@@ -110,6 +131,7 @@ public class FqnCacheNode<K> {
   }
 
   public final boolean visitNodeDepthFirst( Predicate<FqnCacheNode> visitor ) {
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       List<FqnCacheNode<K>> copy = new ArrayList<FqnCacheNode<K>>( children.values() );
       for( FqnCacheNode<K> child: copy ) {
@@ -125,6 +147,7 @@ public class FqnCacheNode<K> {
     if( !visitor.evaluate( getUserData() ) ) {
       return false;
     }
+    Map<String, FqnCacheNode<K>> children = this.children;
     if (children != null) {
       List<FqnCacheNode<K>> copy = new ArrayList<FqnCacheNode<K>>( children.values() );
       for( FqnCacheNode<K> child: copy ) {
@@ -138,6 +161,7 @@ public class FqnCacheNode<K> {
     if( !visitor.evaluate( this ) ) {
       return false;
     }
+    Map<String, FqnCacheNode<K>> children = this.children;
     if( children != null ) {
       List<FqnCacheNode<K>> copy = new ArrayList<FqnCacheNode<K>>( children.values() );
       for( FqnCacheNode<K> child: copy ) {
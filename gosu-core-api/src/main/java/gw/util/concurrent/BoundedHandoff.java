@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands items from a producer running on a background thread to a consumer object, such as a stream or
+ * an iterator, through a bounded queue. When the queue is full the producer blocks until the consumer
+ * catches up, so a slow consumer holds a bounded number of items in memory.
+ * <p/>
+ * The producer {@link #put}s its items and then calls {@link #end} or {@link #fail}. The consumer
+ * {@link #take}s them until it gets null. The handoff only holds the consumer weakly: once the consumer
+ * is closed, or dropped and garbage collected, put() throws a CancellationException to stop the producer.
+ */
+public final class BoundedHandoff<T> {
+  private static final Object END = new Object();
+  private static final Object CLOSED = new Object();
+
+  private final WeakReference<Object> _consumer;
+  private final BlockingQueue<Object> _queue;
+  private volatile boolean _bClosed;
+  // consumer side only
+  private boolean _bDone;
+
+  /**
+   * @param consumer The object taking the items, which the producer must not reference
+   * @param iCapacity The number of items that may wait for the consumer
+   */
+  public BoundedHandoff( Object consumer, int iCapacity ) {
+    _consumer = new WeakReference<Object>( consumer );
+    _queue = new ArrayBlockingQueue<Object>( iCapacity );
+  }
+
+  /**
+   * Waits for room and queues the item.
+   *
+   * @throws CancellationException if the consumer is closed or was garbage collected, or the producer
+   *   is interrupted
+   */
+  public void put( T item ) {
+    hand( item );
+  }
+
+  /**
+   * Queues the end of the items.
+   *
+   * @throws CancellationException see {@link #put}
+   */
+  public void end() {
+    hand( END );
+  }
+
+  /**
+   * Queues the producer's failure, which ends the items. Does nothing if the consumer is gone.
+   */
+  public void fail( Throwable t ) {
+    if( !_bClosed ) {
+      try {
+        hand( new Failure( t ) );
+      }
+      catch( CancellationException e ) {
+        // closed or dropped by the consumer
+      }
+    }
+  }
+
+  private void hand( Object item ) {
+    try {
+      while( _bClosed || !_queue.offer( item, 100, TimeUnit.MILLISECONDS ) ) {
+        if( _bClosed || _consumer.get() == null ) {
+          throw new CancellationException();
+        }
+      }
+    }
+    catch( InterruptedException e ) {
+      throw new CancellationException();
+    }
+  }
+
+  public boolean isClosed() {
+    return _bClosed;
+  }
+
+  /**
+   * Waits for the next item.
+   *
+   * @return The next item, or null after the last one
+   * @throws ExecutionException with the producer's failure as its cause, once the items before it have
+   *   been taken
+   * @throws CancellationException if the handoff is closed, also while waiting
+   */
+  @SuppressWarnings("unchecked")
+  public T take() throws InterruptedException, ExecutionException {
+    if( _bClosed ) {
+      throw new CancellationException();
+    }
+    if( _bDone ) {
+      return null;
+    }
+    Object item = _queue.take();
+    if( item == CLOSED ) {
+      throw new CancellationException();
+    }
+    if( item == END ) {
+      _bDone = true;
+      return null;
+    }
+    if( item instanceof Failure ) {
+      _bDone = true;
+      throw new ExecutionException( ((Failure)item)._t );
+    }
+    return (T)item;
+  }
+
+  /**
+   * Stops the producer and discards the items not taken yet. A take() blocked on another thread throws
+   * a CancellationException.
+   */
+  public void close() {
+    _bClosed = true;
+    // the producer queues nothing more once closed, so this makes room for waking a blocked take
+    do {
+      _queue.clear();
+    }
+    while( !_queue.offer( CLOSED ) );
+  }
+
+  private static class Failure {
+    private final Throwable _t;
+
+    Failure( Throwable t ) {
+      _t = t;
+    }
+  }
+}
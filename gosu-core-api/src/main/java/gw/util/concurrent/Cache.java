@@ -5,6 +5,7 @@
 package gw.util.concurrent;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Arrays;
@@ -14,31 +15,74 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
-import java.math.BigDecimal;
+import java.util.concurrent.locks.ReentrantLock;
 
 import gw.util.concurrent.Cache.ConcurrentLinkedHashMap.Node.State;
 import gw.util.ILogger;
 
 /**
  * static var MY_CACHE = new Cache<Foo, Bar>( 1000, \ foo -> getBar( foo ) )
+ * <p/>
+ * Entries are kept with a W-TinyLFU policy: new entries go into a small LRU admission window,
+ * and an entry leaving the window only displaces the coldest entry of the main space if a
+ * frequency sketch says it has been used more often. The main space is a segmented LRU, so
+ * entries used more than once are protected from a burst of one-off keys.
+ * <p/>
+ * Reads never lock. They are recorded in striped, lossy buffers that are replayed against the
+ * policy under the eviction lock, either by a writer or by the reader that fills a buffer.
+ * Concurrent misses on the same key call the {@link MissHandler} once; the other threads wait
+ * for its result.
  */
 public class Cache<K, V> {
 
-  private ConcurrentLinkedHashMap<K, V> _cacheImlp;
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  // A candidate at least this frequent that loses against the victim is still admitted
+  // now and then, so flooding the victim's sketch counters cannot pin it in the cache.
+  // The threshold and the admission policy follow Caffeine's, see FrequencySketch
+  private static final int ADMIT_HASHDOS_THRESHOLD = 6;
+
+  // What each thread is waiting on while another thread loads a key, to find wait cycles
+  private static final ConcurrentMap<Thread, Loading<?>> WAITING = new ConcurrentHashMap<Thread, Loading<?>>();
+
+  private final ConcurrentHashMap<K, Node<K, V>> _data = new ConcurrentHashMap<K, Node<K, V>>();
+  private final ConcurrentHashMap<K, Loading<V>> _loads = new ConcurrentHashMap<K, Loading<V>>();
   private final MissHandler<K,V> _missHandler;
+  private final Weigher<K,V> _weigher;
   private final String _name;
   private final int _size;
+  private final long _expireAfterAccessNanos;
+
+  // eviction policy, guarded by _evictionLock
+  private final ReentrantLock _evictionLock = new ReentrantLock();
+  private final AccessOrderDeque<K, V> _window = new AccessOrderDeque<K, V>();
+  private final AccessOrderDeque<K, V> _probation = new AccessOrderDeque<K, V>();
+  private final AccessOrderDeque<K, V> _protected = new AccessOrderDeque<K, V>();
+  private final FrequencySketch _sketch = new FrequencySketch();
+  private final ReadBuffer<K, V> _readBuffer = new ReadBuffer<K, V>();
+  private final long _windowMax;
+  private final long _protectedMax;
+  private long _windowWeight;
+  private long _protectedWeight;
+  private long _weightedSize;
+  private volatile int _generation;
 
   //statistics
-  private final AtomicInteger _requests = new AtomicInteger();
-  private final AtomicInteger _misses = new AtomicInteger();
-  private final AtomicInteger _hits = new AtomicInteger();
+  private final StripedCounter _requests = new StripedCounter();
+  private final StripedCounter _misses = new StripedCounter();
+  private final StripedCounter _hits = new StripedCounter();
 
   private ScheduledFuture<?> _loggingTask;
 
@@ -49,14 +93,32 @@ public class Cache<K, V> {
    * @param missHandler how to handle misses, this is required not to be null
    */
   public Cache( String name, int size, MissHandler<K, V> missHandler) {
+    this(name, size, null, 0, TimeUnit.NANOSECONDS, missHandler);
+  }
+
+  /** This will create a new cache bounded by weight and/or expiring unused entries
+   *
+   * @param name the name of the cache for logging
+   * @param size the maximum total weight of the entries, or their number if weigher is null
+   * @param weigher computes the weight of an entry when it is stored, may be null
+   * @param expireAfterAccess how long an entry stays after it was last read or written, 0 to never expire
+   * @param unit the unit of expireAfterAccess
+   * @param missHandler how to handle misses, this is required not to be null
+   */
+  public Cache( String name, int size, Weigher<K, V> weigher, long expireAfterAccess, TimeUnit unit, MissHandler<K, V> missHandler) {
+    if (size < 0 || expireAfterAccess < 0) {
+      throw new IllegalArgumentException();
+    }
     _name = name;
     _size = size;
-    clearCacheImpl();
+    _weigher = weigher;
+    _expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
     _missHandler = missHandler;
-  }
-
-  private void clearCacheImpl() {
-    _cacheImlp = new ConcurrentLinkedHashMap<K,V>(ConcurrentLinkedHashMap.EvictionPolicy.SECOND_CHANCE, _size);
+    _windowMax = size == 0 ? 0 : Math.max(1, size / 100);
+    _protectedMax = (size - _windowMax) * 8 / 10;
+    if (weigher == null) {
+      _sketch.ensureCapacity(size);
+    }
   }
 
   /** This will evict a specific key from the cache.
@@ -65,7 +127,17 @@ public class Cache<K, V> {
    * @return the current value for that key
    */
   public V evict(K key) {
-    return _cacheImlp.remove(key);
+    _evictionLock.lock();
+    try {
+      Node<K, V> node = _data.get(key);
+      if (node == null) {
+        return null;
+      }
+      removeNode(node);
+      return node._value;
+    } finally {
+      _evictionLock.unlock();
+    }
   }
 
   /** This will put a specific entry in the cache
@@ -75,7 +147,15 @@ public class Cache<K, V> {
    * @return the old value for this key
    */
   public V put(K key, V value) {
-    return _cacheImlp.put(key, value);
+    if (value == null) {
+      throw new IllegalArgumentException();
+    }
+    _evictionLock.lock();
+    try {
+      return putUnderLock(key, value);
+    } finally {
+      _evictionLock.unlock();
+    }
   }
 
   /** This will get a specific entry, it will call the missHandler if it is not found.
@@ -84,41 +164,92 @@ public class Cache<K, V> {
    * @return the found object (may be null)
    */
   public V get(K key) {
-    V value = _cacheImlp.get(key);
-    _requests.incrementAndGet();
+    V value = getIfPresent(key);
     if (value == null) {
-      value = _missHandler.load(key);
-      _cacheImlp.put(key, value);
-      _misses.incrementAndGet();
-    } else {
-      _hits.incrementAndGet();
+      value = load(key);
     }
     return value;
   }
 
+  /** This will get a specific entry without calling the missHandler if it is not found.
+   *
+   * @param key the object to find
+   * @return the found object or null
+   */
+  public V getIfPresent(K key) {
+    _requests.increment();
+    Node<K, V> node = _data.get(key);
+    if (node != null && !isExpired(node, true)) {
+      _hits.increment();
+      if (_readBuffer.offer(node)) {
+        tryMaintenance();
+      }
+      return node._value;
+    }
+    _misses.increment();
+    return null;
+  }
+
   public int getConfiguredSize() {
     return _size;
   }
 
   public int getUtilizedSize() {
-    return _cacheImlp.size();
+    return _data.size();
+  }
+
+  /**
+   * @return the total weight of the entries; the same as the utilized size when there is no weigher
+   */
+  public long getWeightedSize() {
+    _evictionLock.lock();
+    try {
+      return _weightedSize;
+    } finally {
+      _evictionLock.unlock();
+    }
   }
 
+  /**
+   * @return the number of requests, or Integer.MAX_VALUE if there were more; see {@link #getRequestCount}
+   */
   public int getRequests() {
-    return _requests.get();
+    return saturatedCast(getRequestCount());
   }
 
+  /**
+   * @return the number of misses, or Integer.MAX_VALUE if there were more; see {@link #getMissCount}
+   */
   public int getMisses() {
-    return _misses.get();
+    return saturatedCast(getMissCount());
   }
 
+  /**
+   * @return the number of hits, or Integer.MAX_VALUE if there were more; see {@link #getHitCount}
+   */
   public int getHits() {
-    return _hits.get();
+    return saturatedCast(getHitCount());
+  }
+
+  public long getRequestCount() {
+    return _requests.sum();
+  }
+
+  public long getMissCount() {
+    return _misses.sum();
+  }
+
+  public long getHitCount() {
+    return _hits.sum();
+  }
+
+  static int saturatedCast(long count) {
+    return (int) Math.min(count, Integer.MAX_VALUE);
   }
 
   public double getHitRate() {
-    int requests = getRequests();
-    int hits = getHits();
+    long requests = getRequestCount();
+    long hits = getHitCount();
     if (requests == 0) {
       return 0.0;
     } else {
@@ -158,22 +289,474 @@ public class Cache<K, V> {
     public W load(L key);
   }
 
+  /**
+   * Computes the weight of an entry when a cache is bounded by weight rather than by entry count.
+   */
+  public interface Weigher<L, W> {
+    /**
+     * @return the weight of this entry, not negative
+     */
+    public int weigh(L key, W value);
+  }
+
   public void clear() {
-    clearCacheImpl();
-    _hits.set(0);
-    _misses.set(0);
-    _requests.set(0);
+    _evictionLock.lock();
+    try {
+      // values being loaded from before the clear are not stored
+      _generation++;
+      _readBuffer.drain(null);
+      _window.clear();
+      _probation.clear();
+      _protected.clear();
+      _data.clear();
+      _sketch.clear();
+      _windowWeight = 0;
+      _protectedWeight = 0;
+      _weightedSize = 0;
+    } finally {
+      _evictionLock.unlock();
+    }
+    _hits.reset();
+    _misses.reset();
+    _requests.reset();
   }
 
   @Override
   public String toString() {
-    return "Cache \"" + _name + "\"( Hits:" + getHits() + ", Misses:" + getMisses() + ", Requests:" + getRequests() + ", Hit rate:" + BigDecimal.valueOf(getHitRate() * 100.0).setScale(2, BigDecimal.ROUND_DOWN) + "% )";
+    return "Cache \"" + _name + "\"( Hits:" + getHitCount() + ", Misses:" + getMissCount() + ", Requests:" + getRequestCount() + ", Hit rate:" + BigDecimal.valueOf(getHitRate() * 100.0).setScale(2, BigDecimal.ROUND_DOWN) + "% )";
   }
 
   public static <K, V> Cache<K, V> make(String name, int size, MissHandler<K, V> handler) {
     return new Cache<K, V>(name, size, handler);
   }
 
+  public static <K, V> Cache<K, V> makeWeighted(String name, int maximumWeight, Weigher<K, V> weigher, MissHandler<K, V> handler) {
+    return new Cache<K, V>(name, maximumWeight, weigher, 0, TimeUnit.NANOSECONDS, handler);
+  }
+
+  public static <K, V> Cache<K, V> makeExpiring(String name, int size, long expireAfterAccess, TimeUnit unit, MissHandler<K, V> handler) {
+    return new Cache<K, V>(name, size, null, expireAfterAccess, unit, handler);
+  }
+
+  private V load(K key) {
+    Loading<V> loading = new Loading<V>();
+    Loading<V> inFlight = _loads.putIfAbsent(key, loading);
+    if (inFlight != null) {
+      if (!inFlight.await()) {
+        // the load failed or waiting would deadlock, so this thread loads on its own
+        return _missHandler.load(key);
+      }
+      return inFlight._value;
+    }
+
+    V value = null;
+    try {
+      // another thread may have stored the value between our miss and registering the load
+      Node<K, V> node = _data.get(key);
+      if (node != null && !isExpired(node, true)) {
+        value = node._value;
+      } else {
+        int generation = _generation;
+        value = _missHandler.load(key);
+        if (value != null) {
+          _evictionLock.lock();
+          try {
+            if (generation == _generation) {
+              putUnderLock(key, value);
+            }
+          } finally {
+            _evictionLock.unlock();
+          }
+        }
+      }
+      loading._bLoaded = true;
+    } finally {
+      loading._value = value;
+      _loads.remove(key, loading);
+      loading._latch.countDown();
+    }
+    return value;
+  }
+
+  private V putUnderLock(K key, V value) {
+    int weight = weigh(key, value);
+    long now = _expireAfterAccessNanos > 0 ? System.nanoTime() : 0;
+    Node<K, V> node = _data.get(key);
+    V old = null;
+    if (node != null) {
+      old = isExpired(node, false) ? null : node._value;
+      node._value = value;
+      node._accessTime = now;
+      int delta = weight - node._weight;
+      node._weight = weight;
+      _weightedSize += delta;
+      if (node._queue == WINDOW) {
+        _windowWeight += delta;
+      } else if (node._queue == PROTECTED) {
+        _protectedWeight += delta;
+      }
+      onAccess(node);
+    } else {
+      node = new Node<K, V>(key, value, weight);
+      node._accessTime = now;
+      _data.put(key, node);
+      _window.add(node);
+      _windowWeight += weight;
+      _weightedSize += weight;
+      if (_weigher != null) {
+        _sketch.ensureCapacity(_data.size());
+      }
+      _sketch.increment(key);
+    }
+    maintenance();
+    return old;
+  }
+
+  private int weigh(K key, V value) {
+    if (_weigher == null) {
+      return 1;
+    }
+    int weight = _weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Negative weight " + weight + " for " + key);
+    }
+    return weight;
+  }
+
+  private boolean isExpired(Node<K, V> node, boolean bTouch) {
+    if (_expireAfterAccessNanos == 0) {
+      return false;
+    }
+    long now = System.nanoTime();
+    if (now - node._accessTime >= _expireAfterAccessNanos) {
+      return true;
+    }
+    if (bTouch) {
+      node._accessTime = now;
+    }
+    return false;
+  }
+
+  private void tryMaintenance() {
+    if (_evictionLock.tryLock()) {
+      try {
+        maintenance();
+      } finally {
+        _evictionLock.unlock();
+      }
+    }
+  }
+
+  private void maintenance() {
+    _readBuffer.drain(this);
+    expireEntries();
+    evictEntries();
+  }
+
+  /**
+   * Replays a read against the policy. An entry read in probation has been used more than once
+   * and moves to the protected segment, demoting the protected segment's oldest entries as needed.
+   */
+  private void onAccess(Node<K, V> node) {
+    if (!node._bAlive) {
+      return;
+    }
+    _sketch.increment(node._key);
+    if (node._queue == WINDOW) {
+      _window.moveToBack(node);
+    } else if (node._queue == PROTECTED) {
+      _protected.moveToBack(node);
+    } else {
+      _probation.remove(node);
+      node._queue = PROTECTED;
+      _protected.add(node);
+      _protectedWeight += node._weight;
+      while (_protectedWeight > _protectedMax) {
+        Node<K, V> demoted = _protected.peekFirst();
+        _protected.remove(demoted);
+        _protectedWeight -= demoted._weight;
+        demoted._queue = PROBATION;
+        _probation.add(demoted);
+      }
+    }
+  }
+
+  private void expireEntries() {
+    if (_expireAfterAccessNanos == 0) {
+      return;
+    }
+    expireEntries(_window);
+    expireEntries(_probation);
+    expireEntries(_protected);
+  }
+
+  private void expireEntries(AccessOrderDeque<K, V> deque) {
+    Node<K, V> node;
+    while ((node = deque.peekFirst()) != null && isExpired(node, false)) {
+      removeNode(node);
+      onEviction(node._key, node._value);
+    }
+  }
+
+  /**
+   * Moves the window's overflow to the back of probation as candidates, then evicts until the
+   * cache fits: each candidate is compared with the oldest entry in probation and the less
+   * frequently used of the two is evicted.
+   */
+  private void evictEntries() {
+    Node<K, V> candidate = null;
+    while (_windowWeight > _windowMax) {
+      Node<K, V> node = _window.peekFirst();
+      _window.remove(node);
+      _windowWeight -= node._weight;
+      node._queue = PROBATION;
+      _probation.add(node);
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+
+    while (_weightedSize > _size) {
+      Node<K, V> victim = _probation.peekFirst();
+      if (candidate == null) {
+        if (victim == null) {
+          victim = _protected.peekFirst() != null ? _protected.peekFirst() : _window.peekFirst();
+        }
+        removeNode(victim);
+        onEviction(victim._key, victim._value);
+        continue;
+      }
+      Node<K, V> next = candidate._next;
+      if (victim == candidate || admit(candidate._key, victim._key)) {
+        removeNode(victim);
+        onEviction(victim._key, victim._value);
+        if (victim != candidate) {
+          continue;
+        }
+      } else {
+        removeNode(candidate);
+        onEviction(candidate._key, candidate._value);
+      }
+      candidate = next;
+    }
+  }
+
+  private boolean admit(K candidateKey, K victimKey) {
+    int candidateFreq = _sketch.frequency(candidateKey);
+    int victimFreq = _sketch.frequency(victimKey);
+    if (candidateFreq > victimFreq) {
+      return true;
+    }
+    if (candidateFreq < ADMIT_HASHDOS_THRESHOLD) {
+      return false;
+    }
+    return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+  }
+
+  /**
+   * Called when an entry is evicted to keep the cache within its size, or when it expires. Not called
+   * for entries removed by {@link #evict}, replaced by {@link #put} or dropped by {@link #clear}. This
+   * runs under the eviction lock, so it must be quick and must not block or use this cache.
+   *
+   * @param key the key of the evicted entry
+   * @param value the value of the evicted entry
+   */
+  protected void onEviction(K key, V value) {
+  }
+
+  private void removeNode(Node<K, V> node) {
+    _data.remove(node._key, node);
+    if (node._queue == WINDOW) {
+      _window.remove(node);
+      _windowWeight -= node._weight;
+    } else if (node._queue == PROTECTED) {
+      _protected.remove(node);
+      _protectedWeight -= node._weight;
+    } else {
+      _probation.remove(node);
+    }
+    _weightedSize -= node._weight;
+    node._bAlive = false;
+  }
+
+  private static final class Node<K, V> {
+    final K _key;
+    volatile V _value;
+    volatile long _accessTime;
+
+    // guarded by the eviction lock
+    int _weight;
+    int _queue = WINDOW;
+    boolean _bAlive = true;
+    Node<K, V> _prev;
+    Node<K, V> _next;
+
+    Node(K key, V value, int weight) {
+      _key = key;
+      _value = value;
+      _weight = weight;
+    }
+  }
+
+  /**
+   * An intrusive doubly-linked list of nodes, oldest first. Guarded by the eviction lock.
+   */
+  private static final class AccessOrderDeque<K, V> {
+    private Node<K, V> _first;
+    private Node<K, V> _last;
+
+    Node<K, V> peekFirst() {
+      return _first;
+    }
+
+    void add(Node<K, V> node) {
+      node._prev = _last;
+      node._next = null;
+      if (_last == null) {
+        _first = node;
+      } else {
+        _last._next = node;
+      }
+      _last = node;
+    }
+
+    void remove(Node<K, V> node) {
+      if (node._prev == null) {
+        _first = node._next;
+      } else {
+        node._prev._next = node._next;
+      }
+      if (node._next == null) {
+        _last = node._prev;
+      } else {
+        node._next._prev = node._prev;
+      }
+      node._prev = null;
+      node._next = null;
+    }
+
+    void moveToBack(Node<K, V> node) {
+      if (node != _last) {
+        remove(node);
+        add(node);
+      }
+    }
+
+    void clear() {
+      for (Node<K, V> node = _first; node != null; node = node._next) {
+        node._bAlive = false;
+      }
+      _first = null;
+      _last = null;
+    }
+  }
+
+  /**
+   * Striped ring buffers of reads waiting to be replayed against the policy. A read that finds
+   * its stripe full is dropped; losing some reads only makes the recency order less exact.
+   */
+  private static final class ReadBuffer<K, V> {
+    private static final int SIZE = 16;
+    private static final int MASK = SIZE - 1;
+    private static final int PAD = 8;
+
+    private final int _stripeMask;
+    private final AtomicLongArray _writes;
+    private final AtomicLongArray _reads;
+    private final AtomicReferenceArray<Node<K, V>> _buffer;
+
+    ReadBuffer() {
+      int iStripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+      _stripeMask = iStripes - 1;
+      _writes = new AtomicLongArray(iStripes * PAD);
+      _reads = new AtomicLongArray(iStripes * PAD);
+      _buffer = new AtomicReferenceArray<Node<K, V>>(iStripes * SIZE);
+    }
+
+    /**
+     * @return true if the stripe is full and should be drained
+     */
+    boolean offer(Node<K, V> node) {
+      int stripe = StripedCounter.stripeIndex(_stripeMask);
+      long tail = _writes.get(stripe * PAD);
+      long size = tail - _reads.get(stripe * PAD);
+      if (size >= SIZE) {
+        return true;
+      }
+      if (_writes.compareAndSet(stripe * PAD, tail, tail + 1)) {
+        _buffer.lazySet(stripe * SIZE + (int)(tail & MASK), node);
+        return size + 1 >= SIZE;
+      }
+      return false;
+    }
+
+    /**
+     * Must be called under the eviction lock. Discards the reads if cache is null.
+     */
+    void drain(Cache<K, V> cache) {
+      for (int stripe = 0; stripe <= _stripeMask; stripe++) {
+        long head = _reads.get(stripe * PAD);
+        long tail = _writes.get(stripe * PAD);
+        for (; head < tail; head++) {
+          int index = stripe * SIZE + (int)(head & MASK);
+          Node<K, V> node = _buffer.get(index);
+          if (node == null) {
+            // claimed but not yet published, pick it up next time
+            break;
+          }
+          _buffer.lazySet(index, null);
+          if (cache != null) {
+            cache.onAccess(node);
+          }
+        }
+        _reads.lazySet(stripe * PAD, head);
+      }
+    }
+  }
+
+  /**
+   * A load in progress. Threads missing the same key wait for the loading thread's result.
+   */
+  private static final class Loading<V> {
+    final Thread _thread = Thread.currentThread();
+    final CountDownLatch _latch = new CountDownLatch(1);
+    volatile V _value;
+    volatile boolean _bLoaded;
+
+    /**
+     * @return true if the load completed normally, false if it failed or waiting for it would deadlock
+     */
+    boolean await() {
+      Thread current = Thread.currentThread();
+      WAITING.put(current, this);
+      try {
+        // Registered before checking, so of two threads closing a cycle at least one sees it
+        Loading<?> loading = this;
+        for (int i = 0; loading != null && i < 1000; i++) {
+          if (loading._thread == current) {
+            return false;
+          }
+          loading = WAITING.get(loading._thread);
+        }
+        boolean bInterrupted = false;
+        while (true) {
+          try {
+            _latch.await();
+            break;
+          } catch (InterruptedException e) {
+            bInterrupted = true;
+          }
+        }
+        if (bInterrupted) {
+          current.interrupt();
+        }
+        return _bLoaded;
+      } finally {
+        WAITING.remove(current);
+      }
+    }
+  }
+
   /**
    * A {@link ConcurrentMap} with a doubly-linked list running through its entries.
    * <p/>
@@ -211,7 +794,10 @@ public class Cache<K, V> {
    * be compared directly to a {@link java.util.LinkedHashMap} evicting in access order.
    *
    * <a href="mailto:ben.manes@reardencommerce.com">Ben Manes</a>
+   *
+   * @deprecated no longer used by {@link Cache}, which evicts with W-TinyLFU; kept for compatibility
    */
+  @Deprecated
   static class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     private static final long serialVersionUID = 8350170357874293408L;
     final List<EvictionListener<K, V>> listeners;
@@ -912,5 +1498,4 @@ public class Cache<K, V> {
       }
     }
   }
-
 }
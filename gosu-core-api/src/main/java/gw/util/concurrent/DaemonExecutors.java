@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pools of daemon threads for background work, such as producers feeding a {@link BoundedHandoff}.
+ * A pool runs at most a fixed number of tasks at once and queues the rest, so many tasks in flight
+ * don't need as many OS threads. Idle threads exit after a minute.
+ */
+public final class DaemonExecutors {
+  private DaemonExecutors() {
+  }
+
+  /**
+   * @param strName The prefix of the pool's thread names
+   * @param strThreadsSystemProp The system property for the number of threads, which defaults to
+   *   four per processor and at least 16, since the tasks mostly wait on their consumers
+   */
+  public static ExecutorService newBoundedPool( final String strName, String strThreadsSystemProp ) {
+    int iThreads = Integer.getInteger( strThreadsSystemProp, Math.max( 16, 4 * Runtime.getRuntime().availableProcessors() ) );
+    ThreadPoolExecutor executor = new ThreadPoolExecutor( iThreads, iThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, strName + "-" + _count.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    executor.allowCoreThreadTimeOut( true );
+    return executor;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ *
+ * Derived from Caffeine's FrequencySketch, Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gw.util.concurrent;
+
+import java.util.Arrays;
+
+/**
+ * A count-min sketch estimating how often keys have been used recently, for the admission
+ * decisions of {@link Cache}. Each key has four 4-bit counters spread over a table of longs.
+ * When enough increments have been recorded all counters are halved, so that the estimate
+ * follows the recent workload rather than the whole history.
+ * <p/>
+ * Not thread-safe; the cache only touches it while holding its eviction lock.
+ */
+final class FrequencySketch {
+  private static final long[] SEED = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAXIMUM_CAPACITY = 1 << 24;
+
+  private long[] _table = new long[0];
+  private int _tableMask;
+  private int _sampleSize;
+  private int _size;
+
+  /**
+   * Grows the table so that it can estimate about <code>maximumSize</code> keys well.
+   * Growing discards the counts recorded so far.
+   */
+  void ensureCapacity( long maximumSize ) {
+    int capacity = (int)Math.min( Math.max( maximumSize, 16 ), MAXIMUM_CAPACITY );
+    if( _table.length >= capacity ) {
+      return;
+    }
+    _table = new long[Integer.highestOneBit( capacity - 1 ) << 1];
+    _tableMask = _table.length - 1;
+    _sampleSize = 10 * capacity;
+    _size = 0;
+  }
+
+  int frequency( Object key ) {
+    int hash = spread( key.hashCode() );
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for( int i = 0; i < 4; i++ ) {
+      int index = indexOf( hash, i );
+      int count = (int)((_table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min( frequency, count );
+    }
+    return frequency;
+  }
+
+  void increment( Object key ) {
+    int hash = spread( key.hashCode() );
+    int start = (hash & 3) << 2;
+    boolean bAdded = false;
+    for( int i = 0; i < 4; i++ ) {
+      bAdded |= incrementAt( indexOf( hash, i ), start + i );
+    }
+    if( bAdded && ++_size == _sampleSize ) {
+      reset();
+    }
+  }
+
+  void clear() {
+    Arrays.fill( _table, 0L );
+    _size = 0;
+  }
+
+  private boolean incrementAt( int i, int j ) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if( (_table[i] & mask) != mask ) {
+      _table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  private void reset() {
+    int count = 0;
+    for( int i = 0; i < _table.length; i++ ) {
+      count += Long.bitCount( _table[i] & ONE_MASK );
+      _table[i] = (_table[i] >>> 1) & RESET_MASK;
+    }
+    _size = (_size >>> 1) - (count >>> 2);
+  }
+
+  private int indexOf( int item, int i ) {
+    long hash = (item + SEED[i]) * SEED[i];
+    hash += hash >>> 32;
+    return ((int)hash) & _tableMask;
+  }
+
+  private static int spread( int x ) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import java.math.BigDecimal;
+
+/**
+ * A {@link Cache} split into independent shards selected by key hash. Each shard has its
+ * own eviction list and statistics, so threads working on different keys rarely touch the
+ * same memory. The configured size is divided evenly between the shards.
+ */
+public class ShardedCache<K, V> {
+  private final String _name;
+  private final Cache<K, V>[] _shards;
+  private final int _mask;
+
+  /** This will create a new sharded cache
+   *
+   * @param name the name of the cache for logging
+   * @param size the maximum size of the cache across all shards
+   * @param missHandler how to handle misses, may be null if only {@link #getIfPresent} is used
+   */
+  @SuppressWarnings("unchecked")
+  public ShardedCache( String name, int size, Cache.MissHandler<K, V> missHandler ) {
+    _name = name;
+    int iShards = shardCount( size );
+    _shards = new Cache[iShards];
+    _mask = iShards - 1;
+    for( int i = 0; i < iShards; i++ ) {
+      _shards[i] = new Cache<K, V>( name + "[" + i + "]", Math.max( 1, size / iShards ), missHandler );
+    }
+  }
+
+  public static <K, V> ShardedCache<K, V> make( String name, int size, Cache.MissHandler<K, V> handler ) {
+    return new ShardedCache<K, V>( name, size, handler );
+  }
+
+  private static int shardCount( int size ) {
+    // A power of two at least the number of processors, but keep shards from getting tiny
+    int iShards = Integer.highestOneBit( Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ) ) << 1;
+    while( iShards > 1 && size / iShards < 64 ) {
+      iShards >>= 1;
+    }
+    return iShards;
+  }
+
+  private Cache<K, V> shard( Object key ) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return _shards[h & _mask];
+  }
+
+  /** This will get a specific entry, it will call the missHandler if it is not found.
+   *
+   * @param key the object to find
+   * @return the found object (may be null)
+   */
+  public V get( K key ) {
+    return shard( key ).get( key );
+  }
+
+  /** This will get a specific entry without calling the missHandler if it is not found.
+   *
+   * @param key the object to find
+   * @return the found object or null
+   */
+  public V getIfPresent( K key ) {
+    return shard( key ).getIfPresent( key );
+  }
+
+  public V put( K key, V value ) {
+    return shard( key ).put( key, value );
+  }
+
+  public V evict( K key ) {
+    return shard( key ).evict( key );
+  }
+
+  public void clear() {
+    for( Cache<K, V> shard : _shards ) {
+      shard.clear();
+    }
+  }
+
+  public int getShardCount() {
+    return _shards.length;
+  }
+
+  public int getConfiguredSize() {
+    int size = 0;
+    for( Cache<K, V> shard : _shards ) {
+      size += shard.getConfiguredSize();
+    }
+    return size;
+  }
+
+  public int getUtilizedSize() {
+    int size = 0;
+    for( Cache<K, V> shard : _shards ) {
+      size += shard.getUtilizedSize();
+    }
+    return size;
+  }
+
+  public int getRequests() {
+    return Cache.saturatedCast( getRequestCount() );
+  }
+
+  public int getMisses() {
+    return Cache.saturatedCast( getMissCount() );
+  }
+
+  public int getHits() {
+    return Cache.saturatedCast( getHitCount() );
+  }
+
+  public long getRequestCount() {
+    long requests = 0;
+    for( Cache<K, V> shard : _shards ) {
+      requests += shard.getRequestCount();
+    }
+    return requests;
+  }
+
+  public long getMissCount() {
+    long misses = 0;
+    for( Cache<K, V> shard : _shards ) {
+      misses += shard.getMissCount();
+    }
+    return misses;
+  }
+
+  public long getHitCount() {
+    long hits = 0;
+    for( Cache<K, V> shard : _shards ) {
+      hits += shard.getHitCount();
+    }
+    return hits;
+  }
+
+  public double getHitRate() {
+    long requests = getRequestCount();
+    return requests == 0 ? 0.0 : ((double)getHitCount()) / requests;
+  }
+
+  @Override
+  public String toString() {
+    return "Cache \"" + _name + "\"( Shards:" + _shards.length + ", Hits:" + getHitCount() + ", Misses:" + getMissCount() + ", Requests:" + getRequestCount() + ", Hit rate:" + BigDecimal.valueOf( getHitRate() * 100.0 ).setScale( 2, BigDecimal.ROUND_DOWN ) + "% )";
+  }
+}
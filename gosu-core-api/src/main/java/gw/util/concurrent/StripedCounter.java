@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long counter spread over several cells so that threads incrementing it at the same time
+ * usually update different cache lines. Reading the value sums the cells, so it is meant for
+ * statistics that are written often and read rarely.
+ */
+public final class StripedCounter {
+  // Cells are eight longs apart so that neighbouring cells do not share a cache line
+  private static final int PAD = 8;
+
+  private final AtomicLongArray _cells;
+  private final int _mask;
+
+  public StripedCounter() {
+    int iStripes = Integer.highestOneBit( Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 ) ) << 1;
+    _cells = new AtomicLongArray( iStripes * PAD );
+    _mask = iStripes - 1;
+  }
+
+  public void increment() {
+    _cells.incrementAndGet( stripe() * PAD );
+  }
+
+  public void add( long delta ) {
+    _cells.addAndGet( stripe() * PAD, delta );
+  }
+
+  public long sum() {
+    long sum = 0;
+    for( int i = 0; i < _cells.length(); i += PAD ) {
+      sum += _cells.get( i );
+    }
+    return sum;
+  }
+
+  public void reset() {
+    for( int i = 0; i < _cells.length(); i += PAD ) {
+      _cells.set( i, 0 );
+    }
+  }
+
+  private int stripe() {
+    return stripeIndex( _mask );
+  }
+
+  static int stripeIndex( int mask ) {
+    long id = Thread.currentThread().getId();
+    int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.compiler;
+
+import gw.internal.ext.org.objectweb.asm.ClassReader;
+import gw.internal.gosu.ir.transform.AbstractElementTransformer;
+import gw.internal.gosu.util.AtomicFileWriter;
+import gw.lang.GosuVersion;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.gs.BytecodeOptions;
+import gw.lang.reflect.gs.ICompilableType;
+import gw.lang.reflect.gs.IGosuClass;
+import gw.lang.reflect.gs.IGosuProgram;
+import gw.util.StreamUtil;
+import gw.util.fingerprint.FP64;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of the bytecode the runtime compiles for Gosu classes on demand,
+ * see {@link BytecodeOptions#getClassCacheDir()}. Each class is stored in its own file
+ * along with:
+ * <ul>
+ * <li>a fingerprint of its source and of the compiler environment, and
+ * <li>the fingerprints of the classes its bytecode references, taken from its constant
+ * pool. That includes its supertypes and every type whose members it calls. A Gosu
+ * dependency is fingerprinted by its source, a Java dependency by its class file, and
+ * either also by the fingerprints of its own supertypes, so a change anywhere in a
+ * dependency's hierarchy changes its fingerprint even if the class doesn't name the
+ * changed type.
+ * </ul>
+ * A cached class is only used if all of these still match, so a class whose own source
+ * is unchanged is still recompiled after a class it depends on changes.
+ * <p/>
+ * Classes are not cached if their bytecode refers to state that only lives in the
+ * compiling JVM (custom expression runtimes) or if a dependency can't be fingerprinted.
+ */
+public class CompiledClassCache
+{
+  private static final int MAGIC = 0x47434331; // GCC1
+  private static final int FORMAT_VERSION = 2;
+  private static final String EXTENSION = ".gcc";
+  private static final long NO_FINGERPRINT = Long.MIN_VALUE;
+  private static final String[] JAVA_NAMESPACES_TO_IGNORE = {
+    "java/", "javax/", "sun/"
+  };
+
+  private static volatile CompiledClassCache INSTANCE;
+
+  private final File _dir;
+  private final long _environmentFingerprint;
+  private final ConcurrentHashMap<String, Long> _dependencyFingerprints;
+  private volatile int _iRefreshChecksum;
+
+  /**
+   * @return The cache for the configured directory, or null if caching is off
+   */
+  public static CompiledClassCache instance()
+  {
+    String dir = BytecodeOptions.getClassCacheDir();
+    if( dir == null )
+    {
+      return null;
+    }
+    CompiledClassCache cache = INSTANCE;
+    if( cache == null || !cache._dir.getPath().equals( dir ) )
+    {
+      synchronized( CompiledClassCache.class )
+      {
+        cache = INSTANCE;
+        if( cache == null || !cache._dir.getPath().equals( dir ) )
+        {
+          INSTANCE = cache = new CompiledClassCache( new File( dir ) );
+        }
+      }
+    }
+    return cache;
+  }
+
+  CompiledClassCache( File dir )
+  {
+    _dir = dir;
+    _environmentFingerprint = makeEnvironmentFingerprint();
+    _dependencyFingerprints = new ConcurrentHashMap<String, Long>();
+    _iRefreshChecksum = TypeSystem.getRefreshChecksum();
+  }
+
+  /**
+   * Returns the class's bytecode from the cache if it is still current, otherwise
+   * compiles it and stores the result in the cache.
+   */
+  public byte[] getBytes( ICompilableType type )
+  {
+    if( !isCacheable( type ) )
+    {
+      return GosuClassLoader.instance().getBytes( type );
+    }
+
+    String javaName = GosuClassLoader.getJavaName( type );
+    File file = getFile( javaName );
+    long sourceFingerprint = makeSourceFingerprint( (IGosuClass)type );
+    byte[] bytes = read( file, sourceFingerprint );
+    if( bytes != null )
+    {
+      return bytes;
+    }
+
+    int iCustomRuntimes = AbstractElementTransformer.CUSTOM_RUNTIMES.size();
+    bytes = GosuClassLoader.instance().getBytes( type );
+    if( iCustomRuntimes == AbstractElementTransformer.CUSTOM_RUNTIMES.size() )
+    {
+      write( file, javaName, sourceFingerprint, bytes );
+    }
+    return bytes;
+  }
+
+  private boolean isCacheable( ICompilableType type )
+  {
+    return type instanceof IGosuClass &&
+           !(type instanceof IGosuProgram) &&
+           !IGosuClass.ProxyUtil.isProxy( type );
+  }
+
+  private File getFile( String javaName )
+  {
+    return new File( _dir, javaName.replace( '.', File.separatorChar ) + EXTENSION );
+  }
+
+  private long makeSourceFingerprint( IGosuClass type )
+  {
+    return new FP64( type.getSource() )
+      .extend( type.getName() )
+      .extend( _environmentFingerprint )
+      // Options that can change at runtime
+      .extend( String.valueOf( BytecodeOptions.isInvokeDynamic() ) )
+      .extend( String.valueOf( BytecodeOptions.isGenerateAnnotationsToClassFiles() ) )
+      .getRawFingerprint();
+  }
+
+  private byte[] read( File file, long sourceFingerprint )
+  {
+    if( !file.isFile() )
+    {
+      return null;
+    }
+    try
+    {
+      DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+      try
+      {
+        if( in.readInt() != MAGIC || in.readLong() != sourceFingerprint )
+        {
+          return null;
+        }
+        int iDependencies = in.readInt();
+        for( int i = 0; i < iDependencies; i++ )
+        {
+          String dependency = in.readUTF();
+          long fingerprint = in.readLong();
+          if( getDependencyFingerprint( dependency ) != fingerprint )
+          {
+            return null;
+          }
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return bytes;
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch( IOException e )
+    {
+      // A truncated or otherwise unreadable entry is just a miss, it's overwritten after compiling
+      return null;
+    }
+  }
+
+  private void write( File file, String javaName, final long sourceFingerprint, final byte[] bytes )
+  {
+    final Set<String> dependencies = getDependencies( javaName, bytes );
+    final List<Long> fingerprints = new ArrayList<Long>( dependencies.size() );
+    for( String dependency : dependencies )
+    {
+      long fingerprint = getDependencyFingerprint( dependency );
+      if( fingerprint == NO_FINGERPRINT )
+      {
+        return;
+      }
+      fingerprints.add( fingerprint );
+    }
+
+    File parent = file.getParentFile();
+    if( !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory() )
+    {
+      return;
+    }
+    try
+    {
+      // Other JVMs sharing the directory see either the old entry or this one, never a partial file
+      AtomicFileWriter.write( file,
+        new AtomicFileWriter.Content()
+        {
+          public void writeTo( DataOutputStream out ) throws IOException
+          {
+            out.writeInt( MAGIC );
+            out.writeLong( sourceFingerprint );
+            out.writeInt( dependencies.size() );
+            int i = 0;
+            for( String dependency : dependencies )
+            {
+              out.writeUTF( dependency );
+              out.writeLong( fingerprints.get( i++ ) );
+            }
+            out.writeInt( bytes.length );
+            out.write( bytes );
+          }
+        } );
+    }
+    catch( IOException e )
+    {
+      // The cache is an optimization, failing to write it is not an error
+    }
+  }
+
+  /**
+   * @return The internal names of the classes referenced from the constant pool, not
+   *   including JDK classes and the class's own top-level class and its inner classes
+   */
+  private static Set<String> getDependencies( String javaName, byte[] bytes )
+  {
+    String topLevel = getTopLevelName( javaName.replace( '.', '/' ) );
+    ClassReader reader = new ClassReader( bytes );
+    char[] buf = new char[reader.getMaxStringLength()];
+    Set<String> dependencies = new LinkedHashSet<String>();
+    for( int i = 1; i < reader.getItemCount(); i++ )
+    {
+      int iIndex = reader.getItem( i );
+      // Entries following long and double constants are unused
+      if( iIndex == 0 || reader.b[iIndex - 1] != 7 /*CONSTANT_Class*/ )
+      {
+        continue;
+      }
+      String name = reader.readUTF8( iIndex, buf );
+      if( name.startsWith( "[" ) )
+      {
+        int iStart = name.lastIndexOf( '[' ) + 1;
+        if( name.charAt( iStart ) != 'L' )
+        {
+          continue;
+        }
+        name = name.substring( iStart + 1, name.length() - 1 );
+      }
+      if( !isIgnored( name ) && !getTopLevelName( name ).equals( topLevel ) )
+      {
+        dependencies.add( name );
+      }
+    }
+    return dependencies;
+  }
+
+  private static boolean isIgnored( String internalName )
+  {
+    for( String namespace : JAVA_NAMESPACES_TO_IGNORE )
+    {
+      if( internalName.startsWith( namespace ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getTopLevelName( String internalName )
+  {
+    int iDollar = internalName.indexOf( '$' );
+    return iDollar < 0 ? internalName : internalName.substring( 0, iDollar );
+  }
+
+  private long getDependencyFingerprint( String internalName )
+  {
+    return getDependencyFingerprint( internalName, new HashSet<String>() );
+  }
+
+  /**
+   * @param visiting The dependencies whose fingerprints are being made, to stop at a cyclic hierarchy
+   */
+  private long getDependencyFingerprint( String internalName, Set<String> visiting )
+  {
+    int iChecksum = TypeSystem.getRefreshChecksum();
+    if( iChecksum != _iRefreshChecksum )
+    {
+      // Sources may have changed since they were fingerprinted
+      _dependencyFingerprints.clear();
+      _iRefreshChecksum = iChecksum;
+    }
+    Long fingerprint = _dependencyFingerprints.get( internalName );
+    if( fingerprint == null )
+    {
+      if( !visiting.add( internalName ) )
+      {
+        return NO_FINGERPRINT;
+      }
+      fingerprint = makeDependencyFingerprint( internalName, visiting );
+      visiting.remove( internalName );
+      _dependencyFingerprints.put( internalName, fingerprint );
+    }
+    return fingerprint;
+  }
+
+  private long makeDependencyFingerprint( String internalName, Set<String> visiting )
+  {
+    ClassLoader loader = TypeSystem.getGosuClassLoader().getActualLoader();
+    URL url = loader.getResource( internalName + ".class" );
+    if( url == null )
+    {
+      return NO_FINGERPRINT;
+    }
+    if( "gosuclass".equals( url.getProtocol() ) )
+    {
+      // Don't read it, that would compile it; fingerprint its source instead
+      IType type = TypeSystem.getByFullNameIfValidNoJava( getTopLevelName( internalName ).replace( '/', '.' ) );
+      if( !(type instanceof IGosuClass) || type instanceof IGosuProgram )
+      {
+        return NO_FINGERPRINT;
+      }
+      // The source covers the top-level class and its inner classes, but not the types they extend
+      FP64 fp = new FP64( ((IGosuClass)type).getSource() );
+      Set<String> supertypes = new LinkedHashSet<String>();
+      addSupertypes( (IGosuClass)type, supertypes );
+      return extendWithSupertypes( fp, internalName, supertypes, visiting );
+    }
+    byte[] bytes;
+    try
+    {
+      InputStream in = url.openStream();
+      try
+      {
+        bytes = StreamUtil.getContent( in );
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch( IOException e )
+    {
+      return NO_FINGERPRINT;
+    }
+    ClassReader reader = new ClassReader( bytes );
+    Set<String> supertypes = new LinkedHashSet<String>();
+    if( reader.getSuperName() != null )
+    {
+      supertypes.add( reader.getSuperName() );
+    }
+    supertypes.addAll( Arrays.asList( reader.getInterfaces() ) );
+    return extendWithSupertypes( new FP64( bytes ), internalName, supertypes, visiting );
+  }
+
+  /**
+   * Adds the internal names of the supertypes of the Gosu class and its inner classes.
+   */
+  private static void addSupertypes( IGosuClass gsClass, Set<String> supertypes )
+  {
+    IType supertype = gsClass.getSupertype();
+    if( supertype != null )
+    {
+      supertypes.add( GosuClassLoader.getJavaName( supertype ).replace( '.', '/' ) );
+    }
+    for( IType iface : gsClass.getInterfaces() )
+    {
+      supertypes.add( GosuClassLoader.getJavaName( iface ).replace( '.', '/' ) );
+    }
+    for( IGosuClass innerClass : gsClass.getInnerClasses() )
+    {
+      addSupertypes( innerClass, supertypes );
+    }
+  }
+
+  private long extendWithSupertypes( FP64 fp, String internalName, Set<String> supertypes, Set<String> visiting )
+  {
+    String topLevel = getTopLevelName( internalName );
+    for( String supertype : supertypes )
+    {
+      // Supertypes declared in the same source are already covered by it
+      if( isIgnored( supertype ) || getTopLevelName( supertype ).equals( topLevel ) )
+      {
+        continue;
+      }
+      long fingerprint = getDependencyFingerprint( supertype, visiting );
+      if( fingerprint == NO_FINGERPRINT )
+      {
+        return NO_FINGERPRINT;
+      }
+      fp.extend( supertype ).extend( fingerprint );
+    }
+    return fp.getRawFingerprint();
+  }
+
+  /**
+   * Anything fixed for the life of the JVM that changes the compiler's output for the
+   * same input: the compiler itself and the Java platform.
+   */
+  private static long makeEnvironmentFingerprint()
+  {
+    FP64 fp = new FP64( "gosu-class-cache" )
+      .extend( FORMAT_VERSION )
+      .extend( System.getProperty( "java.specification.version" ) );
+    InputStream version = GosuClassLoader.class.getClassLoader().getResourceAsStream( GosuVersion.RESOURCE_PATH );
+    if( version != null )
+    {
+      try
+      {
+        fp.extend( StreamUtil.getContent( version ) );
+      }
+      catch( IOException e )
+      {
+        // Fall back to the code source below
+      }
+      finally
+      {
+        try
+        {
+          version.close();
+        }
+        catch( IOException e )
+        {
+          // ignore
+        }
+      }
+    }
+    // Snapshot builds share a version, so also key on the compiler's jar
+    CodeSource codeSource = GosuClassLoader.class.getProtectionDomain().getCodeSource();
+    if( codeSource != null && "file".equals( codeSource.getLocation().getProtocol() ) )
+    {
+      File jar = new File( codeSource.getLocation().getPath() );
+      fp.extend( jar.lastModified() ).extend( jar.length() );
+    }
+    return fp.getRawFingerprint();
+  }
+}
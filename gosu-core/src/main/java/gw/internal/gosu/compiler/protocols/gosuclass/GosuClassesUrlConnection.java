@@ -4,6 +4,7 @@
 
 package gw.internal.gosu.compiler.protocols.gosuclass;
 
+import gw.internal.gosu.compiler.CompiledClassCache;
 import gw.internal.gosu.compiler.GosuClassLoader;
 import gw.internal.gosu.compiler.SingleServingGosuClassLoader;
 import gw.lang.reflect.IHasJavaClass;
@@ -148,7 +149,8 @@ public class GosuClassesUrlConnection extends URLConnection {
         TypeSystemLockHelper.getTypeSystemLockWithMonitor( loader );
         try {
           //System.out.println( "Compiling: " + _type.getName() );
-          _buf = GosuClassLoader.instance().getBytes( _type);
+          CompiledClassCache cache = CompiledClassCache.instance();
+          _buf = cache != null ? cache.getBytes( _type ) : GosuClassLoader.instance().getBytes( _type);
           _pos = 0;
           _count = _buf.length;
         }
@@ -3,6 +3,7 @@
  */
 package gw.internal.gosu.init;
 
+import gw.fs.watcher.TypeSystemWatcher;
 import gw.internal.gosu.parser.ExecutionEnvironment;
 import gw.internal.gosu.parser.TypeLoaderAccess;
 import gw.lang.init.GosuPathEntry;
@@ -13,21 +14,44 @@ import java.util.List;
 
 public class InternalGosuInit {
 
+  private static TypeSystemWatcher g_watcher;
+
   // single module (i.e. runtime)
 
   public static void initializeRuntime( IExecutionEnvironment execEnv, List<? extends GosuPathEntry> pathEntries ) {
     ((ExecutionEnvironment)execEnv).initializeDefaultSingleModule(pathEntries);
+    StartupProfile.start();
+    startWatcher();
   }
 
   public static void reinitializeRuntime( IExecutionEnvironment execEnv, List<? extends GosuPathEntry> pathEntries ) {
+    stopWatcher();
     ((ExecutionEnvironment)execEnv).initializeDefaultSingleModule( pathEntries );
     TypeLoaderAccess.instance().incrementChecksums();
+    StartupProfile.start();
+    startWatcher();
   }
 
   public static void uninitializeRuntime( IExecutionEnvironment execEnv ) {
+    stopWatcher();
     ((ExecutionEnvironment)execEnv).uninitializeDefaultSingleModule();
   }
 
+  // The source path is read when the watcher starts, so it is restarted along with the runtime
+  private static synchronized void startWatcher() {
+    if( g_watcher == null && Boolean.getBoolean( TypeSystemWatcher.WATCH_SYSTEM_PROP ) ) {
+      g_watcher = new TypeSystemWatcher();
+      g_watcher.start();
+    }
+  }
+
+  private static synchronized void stopWatcher() {
+    if( g_watcher != null ) {
+      g_watcher.stop();
+      g_watcher = null;
+    }
+  }
+
   // multiple modules
 
   public static void initializeMultipleModules( IExecutionEnvironment execEnv, List<? extends IModule> modules ) {
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+package gw.internal.gosu.init;
+
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.java.IJavaType;
+import gw.lang.reflect.module.IModule;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the types and type infos resolved while Gosu starts up and preloads them
+ * on later boots.
+ * <p/>
+ * A training run with <code>-Dgosu.startup.profile=&lt;file&gt; -Dgosu.startup.profile.record=true</code>
+ * records every type loaded by name and every Java type info built, in order, until
+ * {@link #stopRecording()} is called or the JVM exits. It writes the profile to the
+ * file, plus the Java classes backing the recorded types to <code>&lt;file&gt;.classlist</code>
+ * in the format the JVM expects for <code>-XX:SharedClassListFile</code> when dumping
+ * a class data sharing archive.
+ * <p/>
+ * Later runs with just <code>-Dgosu.startup.profile=&lt;file&gt;</code> preload the
+ * profile in the background as soon as the runtime is initialized. The recorded Java
+ * classes are loaded in parallel first. Class loading doesn't need the type system
+ * lock, so this is the part that scales with threads. Then the types and type infos are
+ * resolved in recorded order, which overlaps with the application's own startup.
+ * Entries that no longer resolve are skipped.
+ */
+public class StartupProfile
+{
+  public static final String PROFILE_SYSTEM_PROP = "gosu.startup.profile";
+  public static final String RECORD_SYSTEM_PROP = "gosu.startup.profile.record";
+  public static final String THREADS_SYSTEM_PROP = "gosu.startup.profile.threads";
+
+  private static final String TYPE = "T ";
+  private static final String TYPE_INFO = "I ";
+  private static final String JAVA_CLASS = "C ";
+
+  private static volatile StartupProfile g_recorder;
+  private static boolean g_bPreloaded;
+
+  private final File _file;
+  private final Set<String> _entries;
+
+  private StartupProfile( File file )
+  {
+    _file = file;
+    _entries = new LinkedHashSet<String>();
+  }
+
+  /**
+   * Called once the runtime is initialized, starts recording or preloading according
+   * to the system properties.
+   */
+  static synchronized void start()
+  {
+    String path = System.getProperty( PROFILE_SYSTEM_PROP );
+    if( path == null || path.isEmpty() )
+    {
+      return;
+    }
+    File file = new File( path );
+    if( Boolean.getBoolean( RECORD_SYSTEM_PROP ) )
+    {
+      if( g_recorder == null )
+      {
+        final StartupProfile recorder = startRecording( file );
+        Runtime.getRuntime().addShutdownHook( new Thread( "Gosu startup profile writer" ) {
+          public void run()
+          {
+            recorder.write();
+          }
+        } );
+      }
+    }
+    else if( !g_bPreloaded && file.isFile() )
+    {
+      g_bPreloaded = true;
+      preload( file );
+    }
+  }
+
+  static StartupProfile startRecording( File file )
+  {
+    StartupProfile recorder = new StartupProfile( file );
+    g_recorder = recorder;
+    return recorder;
+  }
+
+  /**
+   * Ends a training run early, e.g. when a server has finished starting, and writes the profile.
+   */
+  public static void stopRecording()
+  {
+    StartupProfile recorder = g_recorder;
+    if( recorder != null )
+    {
+      g_recorder = null;
+      recorder.write();
+    }
+  }
+
+  public static void recordType( IType type )
+  {
+    StartupProfile recorder = g_recorder;
+    if( recorder != null && type != null )
+    {
+      recorder.add( TYPE + type.getName() );
+      if( type instanceof IJavaType )
+      {
+        recorder.add( JAVA_CLASS + ((IJavaType)type).getBackingClassInfo().getName() );
+      }
+    }
+  }
+
+  public static void recordTypeInfo( IType type )
+  {
+    StartupProfile recorder = g_recorder;
+    if( recorder != null && !type.isParameterizedType() )
+    {
+      recorder.add( TYPE_INFO + type.getName() );
+    }
+  }
+
+  private synchronized void add( String entry )
+  {
+    _entries.add( entry );
+  }
+
+  private synchronized void write()
+  {
+    try
+    {
+      PrintWriter profile = new PrintWriter( new FileWriter( _file ) );
+      PrintWriter classList = new PrintWriter( new FileWriter( _file.getPath() + ".classlist" ) );
+      try
+      {
+        for( String entry : _entries )
+        {
+          profile.println( entry );
+          if( entry.startsWith( JAVA_CLASS ) )
+          {
+            classList.println( entry.substring( JAVA_CLASS.length() ).replace( '.', '/' ) );
+          }
+        }
+      }
+      finally
+      {
+        profile.close();
+        classList.close();
+      }
+    }
+    catch( IOException e )
+    {
+      System.err.println( "Failed to write Gosu startup profile " + _file + ": " + e );
+    }
+  }
+
+  /**
+   * @return The executor running the preload, or null if the profile can't be read
+   */
+  static ExecutorService preload( File file )
+  {
+    final List<String> classes = new ArrayList<String>();
+    final List<String> types = new ArrayList<String>();
+    if( !read( file, classes, types ) )
+    {
+      return null;
+    }
+
+    final ClassLoader loader = TypeSystem.getGosuClassLoader().getActualLoader();
+    final IModule module = TypeSystem.getGlobalModule();
+    int iThreads = Integer.getInteger( THREADS_SYSTEM_PROP, Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
+    final ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, iThreads ), new PreloadThreadFactory() );
+    for( int i = 0; i < iThreads; i++ )
+    {
+      final int iStart = i;
+      final int iStride = iThreads;
+      executor.execute( new Runnable()
+      {
+        public void run()
+        {
+          for( int j = iStart; j < classes.size(); j += iStride )
+          {
+            try
+            {
+              Class.forName( classes.get( j ), false, loader );
+            }
+            catch( Throwable t )
+            {
+              // The profile is only a hint
+            }
+          }
+        }
+      } );
+    }
+    // Submitted last, so on a single preload thread the classes are already loaded
+    executor.execute( new Runnable()
+    {
+      public void run()
+      {
+        TypeSystem.pushModule( module );
+        try
+        {
+          for( String entry : types )
+          {
+            try
+            {
+              IType type = TypeSystem.getByFullNameIfValid( entry.substring( TYPE.length() ) );
+              if( type != null && entry.startsWith( TYPE_INFO ) )
+              {
+                type.getTypeInfo();
+              }
+            }
+            catch( Throwable t )
+            {
+              // The profile is only a hint
+            }
+          }
+        }
+        finally
+        {
+          TypeSystem.popModule( module );
+        }
+      }
+    } );
+    executor.shutdown();
+    return executor;
+  }
+
+  /**
+   * Reads the Java classes and the type entries of a profile. Lines that aren't
+   * entries, e.g. from a truncated or corrupt file, are skipped.
+   *
+   * @return False if the profile can't be read
+   */
+  static boolean read( File file, List<String> classes, List<String> types )
+  {
+    try
+    {
+      BufferedReader reader = new BufferedReader( new FileReader( file ) );
+      try
+      {
+        for( String line = reader.readLine(); line != null; line = reader.readLine() )
+        {
+          if( line.startsWith( JAVA_CLASS ) )
+          {
+            classes.add( line.substring( JAVA_CLASS.length() ) );
+          }
+          else if( line.startsWith( TYPE ) || line.startsWith( TYPE_INFO ) )
+          {
+            types.add( line );
+          }
+        }
+      }
+      finally
+      {
+        reader.close();
+      }
+    }
+    catch( IOException e )
+    {
+      System.err.println( "Failed to read Gosu startup profile " + file + ": " + e );
+      return false;
+    }
+    return true;
+  }
+
+  private static class PreloadThreadFactory implements ThreadFactory
+  {
+    private final AtomicInteger _iCount = new AtomicInteger();
+
+    public Thread newThread( Runnable r )
+    {
+      Thread thread = new Thread( r, "Gosu startup preload " + _iCount.incrementAndGet() );
+      thread.setDaemon( true );
+      thread.setPriority( Thread.NORM_PRIORITY - 1 );
+      return thread;
+    }
+  }
+}
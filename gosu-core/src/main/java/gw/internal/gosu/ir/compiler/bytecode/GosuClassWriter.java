@@ -12,15 +12,29 @@ import gw.internal.ext.org.objectweb.asm.FieldVisitor;
 import gw.internal.ext.org.objectweb.asm.MethodVisitor;
 import gw.internal.ext.org.objectweb.asm.Opcodes;
 import gw.internal.ext.org.objectweb.asm.TypePath;
+import gw.internal.gosu.ir.transform.util.IRTypeResolver;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
 
 public class GosuClassWriter extends ClassVisitor
 {
   private final ClassWriter _cw;
 
   public GosuClassWriter()
+  {
+    this( false );
+  }
+
+  /**
+   * @param bComputeFrames Whether or not to compute stack map frames. Frames are required
+   *   for class files version 1.7 and later e.g., when emitting invokedynamic.
+   */
+  public GosuClassWriter( boolean bComputeFrames )
   {
     super( Opcodes.ASM5 );
-    _cw = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+    _cw = bComputeFrames
+          ? new FrameComputingClassWriter()
+          : new ClassWriter( ClassWriter.COMPUTE_MAXS );
   }
 
   @Override
@@ -78,4 +92,97 @@ public class GosuClassWriter extends ClassVisitor
   public AnnotationVisitor visitTypeAnnotation( int i, TypePath typePath, String s, boolean b ) {
     return _cw.visitTypeAnnotation( i, typePath, s, b );
   }
+
+  /**
+   * Computing frames requires finding the common supertype of two classes, some of which
+   * are Gosu classes in the middle of being compiled. The default implementation loads
+   * classes via Class.forName, so resolve through the type system instead, falling back
+   * to loading them with the Gosu class loader.
+   */
+  private static class FrameComputingClassWriter extends ClassWriter
+  {
+    FrameComputingClassWriter()
+    {
+      super( ClassWriter.COMPUTE_FRAMES );
+    }
+
+    @Override
+    protected String getCommonSuperClass( String type1, String type2 )
+    {
+      IType t1 = findType( type1 );
+      IType t2 = findType( type2 );
+      if( t1 == null || t2 == null )
+      {
+        return getCommonSuperClassFromLoader( type1, type2 );
+      }
+      if( t1.isAssignableFrom( t2 ) )
+      {
+        return type1;
+      }
+      if( t2.isAssignableFrom( t1 ) )
+      {
+        return type2;
+      }
+      if( t1.isInterface() || t2.isInterface() )
+      {
+        return "java/lang/Object";
+      }
+      do
+      {
+        t1 = t1.getSupertype();
+      } while( t1 != null && !t1.isAssignableFrom( t2 ) );
+      return t1 == null
+             ? "java/lang/Object"
+             : IRTypeResolver.getDescriptor( t1 ).getSlashName();
+    }
+
+    /**
+     * For types the type system doesn't resolve, load the classes the way ASM would, but through the
+     * Gosu class loader, which sees the types the class refers to.
+     */
+    private static String getCommonSuperClassFromLoader( String type1, String type2 )
+    {
+      ClassLoader loader = TypeSystem.getGosuClassLoader().getActualLoader();
+      Class c1;
+      Class c2;
+      try
+      {
+        c1 = Class.forName( type1.replace( '/', '.' ), false, loader );
+        c2 = Class.forName( type2.replace( '/', '.' ), false, loader );
+      }
+      catch( ClassNotFoundException e )
+      {
+        // a guess here would only fail verification when the class is loaded
+        throw new IllegalStateException( "Cannot find the common supertype of " + type1 + " and " + type2, e );
+      }
+      if( c1.isAssignableFrom( c2 ) )
+      {
+        return type1;
+      }
+      if( c2.isAssignableFrom( c1 ) )
+      {
+        return type2;
+      }
+      if( c1.isInterface() || c2.isInterface() )
+      {
+        return "java/lang/Object";
+      }
+      do
+      {
+        c1 = c1.getSuperclass();
+      } while( !c1.isAssignableFrom( c2 ) );
+      return c1.getName().replace( '.', '/' );
+    }
+
+    private static IType findType( String slashName )
+    {
+      String name = slashName.replace( '/', '.' );
+      IType type = TypeSystem.getByFullNameIfValid( name );
+      if( type == null && name.indexOf( '$' ) >= 0 )
+      {
+        type = TypeSystem.getByFullNameIfValid( name.replace( '$', '.' ) );
+      }
+      return type == null ? null : TypeSystem.getPureGenericType( type );
+    }
+  }
 }
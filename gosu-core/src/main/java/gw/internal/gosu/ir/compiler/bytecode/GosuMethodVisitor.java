@@ -117,6 +117,13 @@ public class GosuMethodVisitor extends MethodVisitor
     _mv.visitMethodInsn( i, s, s2, s3 );
   }
 
+  @Override
+  public void visitInvokeDynamicInsn( String name, String desc, Handle bsm, Object... bsmArgs )
+  {
+    _bJumpOrReturnOrThrow = false;
+    _mv.visitInvokeDynamicInsn( name, desc, bsm, bsmArgs );
+  }
+
   @Override
   public void visitJumpInsn( int i, Label label )
   {
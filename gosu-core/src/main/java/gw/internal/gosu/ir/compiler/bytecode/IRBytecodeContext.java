@@ -28,9 +28,15 @@ public class IRBytecodeContext {
   private Stack<Label> _continueLabels;
   private Label _lastVisitedLabel;
   private int _lastLineNumber;
+  private boolean _bInvokeDynamic;
 
   public IRBytecodeContext(MethodVisitor mv) {
+    this( mv, false );
+  }
+
+  public IRBytecodeContext(MethodVisitor mv, boolean bInvokeDynamic) {
     _mv = mv;
+    _bInvokeDynamic = bInvokeDynamic;
     _scopes = new Stack<IRCompilerScope>();
     pushScope();
     _allLocalVars = new ArrayList<IRCompilerLocalVar>();
@@ -44,6 +50,13 @@ public class IRBytecodeContext {
     return _mv;
   }
 
+  /**
+   * @return True if the class being compiled may contain invokedynamic instructions
+   */
+  public boolean isInvokeDynamic() {
+    return _bInvokeDynamic;
+  }
+
   public void visitLabel(Label label) {
     _lastVisitedLabel = label;
     _mv.visitLabel( label );
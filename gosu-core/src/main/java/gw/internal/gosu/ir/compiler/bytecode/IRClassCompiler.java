@@ -42,9 +42,12 @@ public class IRClassCompiler extends AbstractBytecodeCompiler
 
   //## todo: this s/b configurable
   public static final int JAVA_VER = Opcodes.V1_6;
+  // invokedynamic requires 1.7 class files, which in turn require stack map frames
+  public static final int JAVA_VER_INDY = Opcodes.V1_7;
 
   private ClassVisitor _cv;
   private IRClass _irClass;
+  private boolean _bInvokeDynamic;
 
 
   public static byte[] compileClass( IRClass irClass, boolean debug )
@@ -69,11 +72,12 @@ public class IRClassCompiler extends AbstractBytecodeCompiler
 
   public IRClassCompiler(IRClass irClass) {
     _irClass = irClass;
+    _bInvokeDynamic = BytecodeOptions.isInvokeDynamic();
   }
 
   private byte[] compile( )
   {
-    GosuClassWriter writer = new GosuClassWriter();
+    GosuClassWriter writer = new GosuClassWriter( _bInvokeDynamic );
     StringWriter trace = configClassVisitor( writer );
 
     try
@@ -153,7 +157,7 @@ public class IRClassCompiler extends AbstractBytecodeCompiler
   private void compileClassHeader()
   {
     int modifiers = _irClass.getModifiers();
-    _cv.visit( JAVA_VER,
+    _cv.visit( _bInvokeDynamic ? JAVA_VER_INDY : JAVA_VER,
             modifiers,
                _irClass.getThisType().getSlashName(),
                getClassSignature(),
@@ -267,7 +271,7 @@ public class IRClassCompiler extends AbstractBytecodeCompiler
     {
       mv.visitCode();
 
-      IRBytecodeContext context = new IRBytecodeContext( mv );
+      IRBytecodeContext context = new IRBytecodeContext( mv, _bInvokeDynamic );
       if( !Modifier.isStatic( method.getModifiers() ) )
       {
         context.indexThis( _irClass.getThisType() );
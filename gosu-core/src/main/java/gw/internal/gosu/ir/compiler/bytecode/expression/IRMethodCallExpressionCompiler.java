@@ -11,6 +11,7 @@ import gw.internal.gosu.ir.compiler.bytecode.AbstractBytecodeCompiler;
 import gw.internal.gosu.ir.compiler.bytecode.IRBytecodeCompiler;
 import gw.internal.gosu.ir.compiler.bytecode.IRBytecodeContext;
 import gw.internal.gosu.ir.nodes.JavaClassIRType;
+import gw.internal.gosu.runtime.GosuCallSiteLinker;
 import gw.lang.ir.IRExpression;
 import gw.lang.ir.IRType;
 import gw.lang.ir.IRTypeConstants;
@@ -45,6 +46,11 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
     else if (expression.getRoot() == null) {
       // If the root is null, use INVOKESTATIC, regardless of the types or the "special" flag
       type = expression.getOwnersType();
+      if( context.isInvokeDynamic() && GosuCallSiteLinker.isLinkable( type.getName(), expression.getName() ) ) {
+        // Dynamic member access: let the call site link to the resolved feature per receiver class
+        context.getMv().visitInvokeDynamicInsn( expression.getName(), makeDescriptor( expression ), GosuCallSiteLinker.BOOTSTRAP );
+        return;
+      }
       opCode = Opcodes.INVOKESTATIC;
     } else if (expression.isSpecial()) {
       type = expression.getOwnersType();
@@ -67,6 +73,13 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
       }
     }
 
+    context.getMv().visitMethodInsn( opCode,
+                                     type.isArray() ? JavaClassIRType.get( Object.class ).getSlashName() : type.getSlashName(),
+                                     expression.getName(),
+                                     makeDescriptor( expression ) );
+  }
+
+  private static String makeDescriptor( IRMethodCallExpression expression ) {
     StringBuilder descriptor = new StringBuilder();
     descriptor.append("(");
     for (IRType param : expression.getParameterTypes()) {
@@ -74,11 +87,7 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
     }
     descriptor.append(")");
     descriptor.append(expression.getReturnType().getDescriptor());
-
-    context.getMv().visitMethodInsn( opCode,
-                                     type.isArray() ? JavaClassIRType.get( Object.class ).getSlashName() : type.getSlashName(),
-                                     expression.getName(),
-                                     descriptor.toString() );
+    return descriptor.toString();
   }
 
   private static IRType maybeProxyStructuralCallRoot( IRMethodCallExpression expression, IRBytecodeContext context ) {
@@ -104,10 +113,18 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
       mv.visitJumpInsn( GOTO, labelEnd );
       mv.visitLabel( labelProxy );
       mv.visitLdcInsn( structureName );
-      mv.visitMethodInsn( Opcodes.INVOKESTATIC,
-                          IRMethodCallExpressionCompiler.class.getName().replace( '.', '/' ),
-                          "constructProxy",
-                          "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;" );
+      if( context.isInvokeDynamic() ) {
+        // Link the proxy constructor per root class at the call site
+        mv.visitInvokeDynamicInsn( "constructProxy",
+                                   "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;",
+                                   GosuCallSiteLinker.BOOTSTRAP );
+      }
+      else {
+        mv.visitMethodInsn( Opcodes.INVOKESTATIC,
+                            IRMethodCallExpressionCompiler.class.getName().replace( '.', '/' ),
+                            "constructProxy",
+                            "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;" );
+      }
       mv.visitLabel( labelEnd );
       return ownersType;
     }
@@ -135,10 +152,6 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
 
   private static Map<String, Map<Class, Constructor>> PROXY_CACHE = new ConcurrentHashMap<String, Map<Class, Constructor>>();
   private static Object createNewProxy( Object root, String iface ) {
-    Map<Class, Constructor> proxyByClass = PROXY_CACHE.get( iface );
-    if( proxyByClass == null ) {
-      PROXY_CACHE.put( iface, proxyByClass = new ConcurrentHashMap<Class, Constructor>() );
-    }
     boolean bStaticImpl;
     Class rootClass;
     if( root instanceof IGosuClass ) {
@@ -154,11 +167,7 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
       bStaticImpl = false;
       rootClass = root.getClass();
     }
-    Constructor proxyClassCtor = proxyByClass.get( rootClass );
-    if( proxyClassCtor == null ) {
-      Class proxyClass = createProxy( iface, rootClass, bStaticImpl );
-      proxyByClass.put( rootClass, proxyClassCtor = proxyClass.getConstructors()[0] );
-    }
+    Constructor proxyClassCtor = getProxyConstructor( iface, rootClass, bStaticImpl );
     try {
       return proxyClassCtor.newInstance( root );
     }
@@ -167,6 +176,23 @@ public class IRMethodCallExpressionCompiler extends AbstractBytecodeCompiler {
     }
   }
 
+  /**
+   * @return The constructor of the proxy implementing structure <code>iface</code> for instances of
+   *   <code>rootClass</code>. The constructor takes the proxied instance as its only argument.
+   */
+  public static Constructor getProxyConstructor( String iface, Class rootClass, boolean bStaticImpl ) {
+    Map<Class, Constructor> proxyByClass = PROXY_CACHE.get( iface );
+    if( proxyByClass == null ) {
+      PROXY_CACHE.put( iface, proxyByClass = new ConcurrentHashMap<Class, Constructor>() );
+    }
+    Constructor proxyClassCtor = proxyByClass.get( rootClass );
+    if( proxyClassCtor == null ) {
+      Class proxyClass = createProxy( iface, rootClass, bStaticImpl );
+      proxyByClass.put( rootClass, proxyClassCtor = proxyClass.getConstructors()[0] );
+    }
+    return proxyClassCtor;
+  }
+
   private static Class createProxy( String iface, Class rootClass, boolean bStaticImpl ) {
     String relativeProxyName = rootClass.getSimpleName() + "_structuralproxy_" + iface.replace( '.', '_' );
     return StructuralTypeProxyGenerator.makeProxy( iface, rootClass, relativeProxyName, bStaticImpl );
@@ -8,9 +8,9 @@ import gw.config.CommonServices;
 import gw.internal.gosu.compiler.SingleServingGosuClassLoader;
 import gw.internal.gosu.ir.transform.ExpressionTransformer;
 import gw.internal.gosu.ir.transform.TopLevelTransformationContext;
+import gw.internal.gosu.parser.EvalProgramCache;
 import gw.internal.gosu.parser.IGosuProgramInternal;
 import gw.internal.gosu.parser.expressions.EvalExpression;
-import gw.internal.gosu.util.LRUMap;
 import gw.lang.ir.IRExpression;
 import gw.lang.parser.GosuParserFactory;
 import gw.lang.parser.ICapturedSymbol;
@@ -25,9 +25,12 @@ import gw.lang.reflect.gs.IGosuProgram;
 import gw.lang.reflect.gs.IProgramInstance;
 import gw.util.GosuExceptionUtil;
 import gw.util.GosuStringUtil;
+import gw.util.concurrent.Cache;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -36,8 +39,17 @@ import java.util.Map;
  */
 public class EvalExpressionTransformer extends EvalBasedTransformer<EvalExpression>
 {
-  @SuppressWarnings("unchecked")
-  public static final Map<String, EvalExpression> EVAL_EXPRESSIONS = Collections.synchronizedMap( new LRUMap( 2000 ) );
+  // The eval expressions of compiled classes by class name, found at runtime by line, column and text
+  private static final Cache<String, EvalSite[]> EVAL_SITES =
+    new Cache<String, EvalSite[]>( "Eval sites", 2000,
+                                   new Cache.MissHandler<String, EvalSite[]>()
+                                   {
+                                     public EvalSite[] load( String strClassName )
+                                     {
+                                       // sites are only added as their classes compile
+                                       return null;
+                                     }
+                                   } );
 
   public static IRExpression compile( TopLevelTransformationContext cc, EvalExpression expr )
   {
@@ -68,12 +80,59 @@ public class EvalExpressionTransformer extends EvalBasedTransformer<EvalExpressi
 
   private void putEvalExpression( EvalExpression evalExpr )
   {
-    synchronized( EVAL_EXPRESSIONS )
+    String strClassName = getGosuClass().getName();
+    EvalSite site = new EvalSite( _expr().getLineNum(), _expr().getColumn(), _expr().toString(), evalExpr );
+    synchronized( EVAL_SITES )
     {
-      int iLine = _expr().getLineNum();
-      int iColumnNum = _expr().getColumn();
-      EVAL_EXPRESSIONS.put( makeEvalKey( getGosuClass(), iLine, iColumnNum, _expr().toString() ), evalExpr );
+      EvalSite[] sites = EVAL_SITES.getIfPresent( strClassName );
+      if( sites == null )
+      {
+        sites = new EvalSite[]{site};
+      }
+      else
+      {
+        int i = indexOf( sites, site._iLineNum, site._iColumn, site._strText );
+        if( i < 0 )
+        {
+          sites = Arrays.copyOf( sites, sites.length + 1 );
+          i = sites.length - 1;
+        }
+        else
+        {
+          // the class is compiled again, replace its old expression
+          sites = sites.clone();
+        }
+        sites[i] = site;
+      }
+      EVAL_SITES.put( strClassName, sites );
+    }
+  }
+
+  private static int indexOf( EvalSite[] sites, int iLineNum, int iColumn, String evalExprText )
+  {
+    for( int i = 0; i < sites.length; i++ )
+    {
+      EvalSite site = sites[i];
+      if( site._iLineNum == iLineNum && site._iColumn == iColumn && site._strText.equals( evalExprText ) )
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static EvalExpression findEvalExpression( IType enclosingClass, int iLineNum, int iColumn, String evalExprText )
+  {
+    EvalSite[] sites = EVAL_SITES.getIfPresent( enclosingClass.getName() );
+    if( sites != null )
+    {
+      int i = indexOf( sites, iLineNum, iColumn, evalExprText );
+      if( i >= 0 )
+      {
+        return sites[i]._evalExpr;
+      }
     }
+    return null;
   }
 
   public static String makeEvalKey( IType enclosingClass, int iLineNum, int iColumnNum, String evalExprText ) {
@@ -84,13 +143,65 @@ public class EvalExpressionTransformer extends EvalBasedTransformer<EvalExpressi
                                                 IType[] immediateFuncTypeParams, IType enclosingClass,
                                                 int iLineNum, int iColumn, String evalExprText )
   {
-    String evalExprKey = makeEvalKey( enclosingClass, iLineNum, iColumn, evalExprText );
-    EvalExpression evalExpr = EVAL_EXPRESSIONS.get( evalExprKey );
+    return compileAndRunEvalSource( source, outer, capturedValues, immediateFuncTypeParams, enclosingClass,
+                                    getEvalExpression( enclosingClass, iLineNum, iColumn, evalExprText ) );
+  }
+
+  private static EvalExpression getEvalExpression( IType enclosingClass, int iLineNum, int iColumn, String evalExprText )
+  {
+    EvalExpression evalExpr = findEvalExpression( enclosingClass, iLineNum, iColumn, evalExprText );
     if( evalExpr == null && enclosingClass instanceof ICompilableType ) {
       ((ICompilableType)enclosingClass).compile(); // force compilation of enclosing class indirectly compiles eval-expr which caches the expr
-      evalExpr = EVAL_EXPRESSIONS.get( evalExprKey );
+      evalExpr = findEvalExpression( enclosingClass, iLineNum, iColumn, evalExprText );
     }
-    return compileAndRunEvalSource( source, outer, capturedValues, immediateFuncTypeParams, enclosingClass, evalExpr );
+    return evalExpr;
+  }
+
+  /**
+   * Compiles eval programs ahead of their first evaluation, so that evaluating them later finds them in
+   * the eval program cache. The sources are compiled for every eval() expression on the given line of
+   * the enclosing class; each must be valid there.
+   *
+   * @param enclosingClass The class containing the eval() expression
+   * @param iLineNum The line of the eval() expression, 1 based
+   * @param sources The sources the eval() expression will evaluate
+   *
+   * @return The number of eval() expressions the sources were compiled for
+   *
+   * @see EvalProgramCache
+   */
+  public static int precompile( IType enclosingClass, int iLineNum, Collection<String> sources )
+  {
+    if( enclosingClass instanceof ICompilableType ) {
+      ((ICompilableType)enclosingClass).compile();
+    }
+    EvalSite[] sites = EVAL_SITES.getIfPresent( enclosingClass.getName() );
+    int iCompiled = 0;
+    if( sites != null )
+    {
+      for( EvalSite site : sites )
+      {
+        if( site._iLineNum != iLineNum )
+        {
+          continue;
+        }
+        for( String strSource : sources )
+        {
+          IGosuProgramParser parser = GosuParserFactory.createProgramParser();
+          IGosuProgram gp = parser.parseEval( strSource, site._evalExpr.getCapturedForBytecode(), enclosingClass, site._evalExpr, null ).getProgram();
+          if( !gp.isValid() )
+          {
+            throw GosuExceptionUtil.forceThrow( gp.getParseResultsException() );
+          }
+        }
+        iCompiled++;
+      }
+    }
+    if( iCompiled == 0 )
+    {
+      throw new IllegalArgumentException( "No eval() expression on line " + iLineNum + " of " + enclosingClass.getName() );
+    }
+    return iCompiled;
   }
 
   public static Object compileAndRunEvalSource( Object source, Object outer, Object[] capturedValues,
@@ -202,7 +313,24 @@ public class EvalExpressionTransformer extends EvalBasedTransformer<EvalExpressi
   }
 
   public static void clearEvalExpressions() {
-    EVAL_EXPRESSIONS.clear();
+    EVAL_SITES.clear();
+    EvalProgramCache.clear();
+  }
+
+  private static final class EvalSite
+  {
+    final int _iLineNum;
+    final int _iColumn;
+    final String _strText;
+    final EvalExpression _evalExpr;
+
+    EvalSite( int iLineNum, int iColumn, String strText, EvalExpression evalExpr )
+    {
+      _iLineNum = iLineNum;
+      _iColumn = iColumn;
+      _strText = strText;
+      _evalExpr = evalExpr;
+    }
   }
 
 }
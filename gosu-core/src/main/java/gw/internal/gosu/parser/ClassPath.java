@@ -60,6 +60,10 @@ public class ClassPath implements IClassPath
       return null;
     }
     Object value = node.getUserData();
+    if( value instanceof IndexedFile ) {
+      value = ((IndexedFile)value).getFile();
+      node.setUserData( value );
+    }
     if( value instanceof IFile ) {
       if( _bStableFiles ) {
         // Files are assumed stable outside an IDE
@@ -94,27 +98,27 @@ public class ClassPath implements IClassPath
     List<IDirectory> javaClassPath = _module.getJavaClassPath();
     IDirectory[] paths = javaClassPath.toArray(new IDirectory[javaClassPath.size()]);
     for (IDirectory path : paths) {
-      addClassNames(path, path, _filter);
+      addClassNames(ClassPathEntryIndex.get(path, new String[] {CLASS_FILE_EXT}, false, null), _filter);
     }
   }
 
-  private void addClassNames(final IDirectory root, IDirectory dir, final ClassPathFilter filter) {
-    for (IFile file : dir.listFiles()) {
-      if( isClassFileName( file.getName() ) )
-      {
-        String strClassName = getClassNameFromFile( root, file );
-        if( isValidClassName( strClassName ) )
+  private void addClassNames(final ClassPathEntryIndex index, final ClassPathFilter filter) {
+    index.visitFiles(new ClassPathEntryIndex.FileVisitor() {
+      public void visit(String path, String fileName) {
+        if( isClassFileName( fileName ) )
         {
-          putClassName( file, strClassName, filter );
+          String strRelativePath = ClassPathEntryIndex.join( path, fileName );
+          String strClassName = getClassNameFromPath( strRelativePath );
+          if( isValidClassName( strClassName ) )
+          {
+            putClassName( new IndexedFile( index.getRoot(), strRelativePath ), strClassName, filter );
+          }
         }
       }
-    }
-    for (IDirectory subDir : dir.listDirs()) {
-      addClassNames(root, subDir, filter);
-    }
+    });
   }
 
-  private void putClassName( final IFile file, String strClassName, ClassPathFilter filter )
+  private void putClassName( final Object file, String strClassName, ClassPathFilter filter )
   {
     boolean bFiltered = filter != null && !filter.acceptClass( strClassName );
     if( bFiltered )
@@ -137,13 +141,13 @@ public class ClassPath implements IClassPath
     return null;
   }
 
-  private String getClassNameFromFile( IDirectory root, IFile file )
+  private String getClassNameFromPath( String strRelativePath )
   {
-    String strQualifiedClassName = root.relativePath(file);
+    String strQualifiedClassName = strRelativePath;
     if( !isClassFileName( strQualifiedClassName ) )
     {
       throw new IllegalArgumentException(
-        file.getPath() + " is not a legal Java class name. " +
+        strRelativePath + " is not a legal Java class name. " +
         "It does not end with " + CLASS_FILE_EXT );
     }
     strQualifiedClassName =
@@ -199,4 +203,25 @@ public class ClassPath implements IClassPath
   public String toString() {
     return _module.getName();
   }
+
+  /**
+   * A class file found via the classpath index, its IFile is only made when the class is
+   * looked up.
+   */
+  private static class IndexedFile
+  {
+    private final IDirectory _root;
+    private final String _strRelativePath;
+
+    IndexedFile( IDirectory root, String strRelativePath )
+    {
+      _root = root;
+      _strRelativePath = strRelativePath;
+    }
+
+    IFile getFile()
+    {
+      return _root.file( _strRelativePath );
+    }
+  }
 }
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.parser;
+
+import gw.config.CommonServices;
+import gw.fs.IDirectory;
+import gw.fs.IFile;
+import gw.internal.gosu.util.AtomicFileWriter;
+import gw.util.fingerprint.FP64;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The directories of a classpath or source path entry and the files in them with given
+ * extensions, so the entry's package tree and type names can be had without walking the
+ * file system.
+ * <p/>
+ * If {@link #INDEX_DIR_SYSTEM_PROP} names a directory, indexes are saved there and
+ * validated on the next boot instead of being rebuilt:
+ * <ul>
+ * <li>an index of a jar is valid while the jar's size and modification time are, and
+ * <li>an index of a directory tree keeps the modification time of each directory, which
+ * changes when files are added to, removed from or renamed within it. Only the
+ * directories whose time changed are listed again, and new subdirectories scanned.
+ * </ul>
+ * A directory modified within the file system's time resolution of the index being
+ * written is always listed again, since a later change in the same tick would go unseen.
+ */
+class ClassPathEntryIndex
+{
+  public static final String INDEX_DIR_SYSTEM_PROP = "gosu.classpath.index.dir";
+
+  private static final int MAGIC = 0x47434931; // GCI1
+  private static final String EXTENSION = ".gci";
+  private static final long TIME_RESOLUTION = 2000;
+
+  private final IDirectory _root;
+  private final String[] _extensions;
+  private final boolean _bSkipIgnored;
+  private final Map<String, Dir> _dirs;
+  private final long _created;
+  private final long _stamp;
+
+  /**
+   * @param extensions The extensions of the files to index, compared ignoring case
+   * @param bSkipIgnored Whether to skip directories ignored by the platform helper, see
+   *   {@link gw.config.IPlatformHelper#isPathIgnored(String)}
+   * @param previous An earlier index of the same entry to revalidate, or null to use the
+   *   saved index, if any
+   */
+  static ClassPathEntryIndex get( IDirectory root, String[] extensions, boolean bSkipIgnored, ClassPathEntryIndex previous )
+  {
+    ClassPathEntryIndex index = new ClassPathEntryIndex( root, extensions, bSkipIgnored );
+    File indexFile = index.getIndexFile();
+    Map<String, Dir> saved;
+    if( previous != null && previous.isCompatible( index ) )
+    {
+      saved = previous.getDirsToRevalidate();
+    }
+    else
+    {
+      saved = indexFile == null ? null : index.read( indexFile );
+    }
+    boolean bChanged = index.update( saved );
+    if( bChanged && indexFile != null )
+    {
+      index.write( indexFile );
+    }
+    return index;
+  }
+
+  private ClassPathEntryIndex( IDirectory root, String[] extensions, boolean bSkipIgnored )
+  {
+    _root = root;
+    _extensions = extensions.clone();
+    Arrays.sort( _extensions );
+    _bSkipIgnored = bSkipIgnored;
+    _dirs = new HashMap<String, Dir>();
+    _created = System.currentTimeMillis();
+    _stamp = getStamp();
+  }
+
+  private boolean isCompatible( ClassPathEntryIndex index )
+  {
+    return _root.equals( index._root ) &&
+           _bSkipIgnored == index._bSkipIgnored &&
+           Arrays.equals( _extensions, index._extensions );
+  }
+
+  private Map<String, Dir> getDirsToRevalidate()
+  {
+    if( isJar() )
+    {
+      return getStamp() == _stamp ? _dirs : null;
+    }
+    Map<String, Dir> dirs = new HashMap<String, Dir>( _dirs.size() * 2 );
+    for( Map.Entry<String, Dir> entry : _dirs.entrySet() )
+    {
+      dirs.put( entry.getKey(), entry.getValue().asOf( _created ) );
+    }
+    return dirs;
+  }
+
+  IDirectory getRoot()
+  {
+    return _root;
+  }
+
+  /**
+   * @return True if the index has all the files with these extensions
+   */
+  boolean covers( String[] extensions )
+  {
+    for( String ext : extensions )
+    {
+      if( !hasExtension( ext ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param path A directory's path relative to the root, '/' separated, "" for the root
+   * @return The names of the directory's subdirectories, or null if the directory isn't
+   *   in the index or is ignored
+   */
+  String[] getDirectories( String path )
+  {
+    Dir dir = _dirs.get( path );
+    return dir == null || dir._bIgnored ? null : dir._dirs;
+  }
+
+  interface FileVisitor
+  {
+    /**
+     * @param path The path of the file's directory relative to the root, '/' separated,
+     *   "" for the root
+     */
+    void visit( String path, String fileName );
+  }
+
+  void visitFiles( FileVisitor visitor )
+  {
+    for( Map.Entry<String, Dir> entry : _dirs.entrySet() )
+    {
+      for( String fileName : entry.getValue()._files )
+      {
+        visitor.visit( entry.getKey(), fileName );
+      }
+    }
+  }
+
+  static String join( String path, String name )
+  {
+    return path.isEmpty() ? name : path + '/' + name;
+  }
+
+  // ====================== Building ====================================
+
+  /**
+   * Fills the index from the saved directories that are still current, listing the rest.
+   *
+   * @return True if anything had to be listed
+   */
+  private boolean update( Map<String, Dir> saved )
+  {
+    if( saved != null && isJar() )
+    {
+      // Validated as a whole, by the jar's stamp
+      _dirs.putAll( saved );
+      return false;
+    }
+    return update( _root, "", saved );
+  }
+
+  private boolean update( IDirectory dir, String path, Map<String, Dir> saved )
+  {
+    Dir savedDir = saved == null ? null : saved.get( path );
+    long lastModified = getLastModified( dir );
+    boolean bIgnored = isIgnored( path );
+    Dir current;
+    boolean bChanged;
+    if( savedDir != null && lastModified != 0 && savedDir._lastModified == lastModified && savedDir._bIgnored == bIgnored )
+    {
+      current = savedDir;
+      bChanged = false;
+    }
+    else
+    {
+      // A directory removed from here is also gone from its parent's listing, so it's dropped from the index
+      current = list( dir, lastModified, bIgnored );
+      bChanged = true;
+    }
+    _dirs.put( path, current );
+    for( String name : current._dirs )
+    {
+      bChanged |= update( dir.dir( name ), join( path, name ), saved );
+    }
+    return bChanged;
+  }
+
+  private Dir list( IDirectory dir, long lastModified, boolean bIgnored )
+  {
+    if( bIgnored )
+    {
+      return new Dir( lastModified, true, new String[0], new String[0] );
+    }
+    List<? extends IDirectory> dirs = dir.listDirs();
+    String[] dirNames = new String[dirs.size()];
+    for( int i = 0; i < dirNames.length; i++ )
+    {
+      dirNames[i] = dirs.get( i ).getName();
+    }
+    List<String> fileNames = new ArrayList<String>();
+    for( IFile file : dir.listFiles() )
+    {
+      if( hasIndexedExtension( file.getName() ) )
+      {
+        fileNames.add( file.getName() );
+      }
+    }
+    return new Dir( lastModified, false, dirNames, fileNames.toArray( new String[fileNames.size()] ) );
+  }
+
+  private boolean isIgnored( String path )
+  {
+    return _bSkipIgnored && !path.isEmpty() && CommonServices.getPlatformHelper().isPathIgnored( path );
+  }
+
+  private boolean hasIndexedExtension( String fileName )
+  {
+    for( String ext : _extensions )
+    {
+      if( fileName.regionMatches( true, fileName.length() - ext.length(), ext, 0, ext.length() ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasExtension( String ext )
+  {
+    for( String indexed : _extensions )
+    {
+      if( indexed.equalsIgnoreCase( ext ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isJar()
+  {
+    return _root.isInJar();
+  }
+
+  /**
+   * @return The directory's modification time, or 0 if it can't be had, in which case
+   *   the directory is always listed
+   */
+  private long getLastModified( IDirectory dir )
+  {
+    if( isJar() || !dir.isJavaFile() )
+    {
+      return 0;
+    }
+    return dir.toJavaFile().lastModified();
+  }
+
+  // ====================== Persistence ====================================
+
+  private File getIndexFile()
+  {
+    String indexDir = System.getProperty( INDEX_DIR_SYSTEM_PROP );
+    if( indexDir == null || indexDir.isEmpty() || !_root.isJavaFile() )
+    {
+      return null;
+    }
+    FP64 fp = new FP64( _root.toJavaFile().getAbsolutePath() ).extend( String.valueOf( _bSkipIgnored ) );
+    for( String ext : _extensions )
+    {
+      fp.extend( ext );
+    }
+    return new File( indexDir, Long.toHexString( fp.getRawFingerprint() ) + EXTENSION );
+  }
+
+  /**
+   * @return A jar's size and modification time, for a directory 0
+   */
+  private long getStamp()
+  {
+    if( !isJar() )
+    {
+      return 0;
+    }
+    File jar = _root.toJavaFile();
+    return new FP64( String.valueOf( jar.length() ) ).extend( jar.lastModified() ).getRawFingerprint();
+  }
+
+  private Map<String, Dir> read( File indexFile )
+  {
+    if( !indexFile.isFile() )
+    {
+      return null;
+    }
+    try
+    {
+      DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( indexFile ) ) );
+      try
+      {
+        if( in.readInt() != MAGIC ||
+            !in.readUTF().equals( _root.toJavaFile().getAbsolutePath() ) ||
+            in.readLong() != _stamp )
+        {
+          return null;
+        }
+        long written = in.readLong();
+        int iDirs = in.readInt();
+        Map<String, Dir> dirs = new HashMap<String, Dir>( iDirs * 2 );
+        for( int i = 0; i < iDirs; i++ )
+        {
+          String path = in.readUTF();
+          long lastModified = in.readLong();
+          boolean bIgnored = in.readBoolean();
+          String[] dirNames = readNames( in );
+          String[] fileNames = readNames( in );
+          dirs.put( path, new Dir( lastModified, bIgnored, dirNames, fileNames ).asOf( written ) );
+        }
+        return dirs;
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch( IOException e )
+    {
+      // An unreadable index is rebuilt
+      return null;
+    }
+  }
+
+  private static String[] readNames( DataInputStream in ) throws IOException
+  {
+    String[] names = new String[in.readInt()];
+    for( int i = 0; i < names.length; i++ )
+    {
+      names[i] = in.readUTF();
+    }
+    return names;
+  }
+
+  private void write( File indexFile )
+  {
+    File parent = indexFile.getParentFile();
+    if( !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory() )
+    {
+      return;
+    }
+    try
+    {
+      // Other JVMs see either the old index or this one, never a partial file
+      AtomicFileWriter.write( indexFile,
+        new AtomicFileWriter.Content()
+        {
+          public void writeTo( DataOutputStream out ) throws IOException
+          {
+            out.writeInt( MAGIC );
+            out.writeUTF( _root.toJavaFile().getAbsolutePath() );
+            out.writeLong( _stamp );
+            out.writeLong( _created );
+            out.writeInt( _dirs.size() );
+            for( Map.Entry<String, Dir> entry : _dirs.entrySet() )
+            {
+              Dir dir = entry.getValue();
+              out.writeUTF( entry.getKey() );
+              out.writeLong( dir._lastModified );
+              out.writeBoolean( dir._bIgnored );
+              writeNames( out, dir._dirs );
+              writeNames( out, dir._files );
+            }
+          }
+        } );
+    }
+    catch( IOException e )
+    {
+      // The index is an optimization, failing to write it is not an error
+    }
+  }
+
+  private static void writeNames( DataOutputStream out, String[] names ) throws IOException
+  {
+    out.writeInt( names.length );
+    for( String name : names )
+    {
+      out.writeUTF( name );
+    }
+  }
+
+  private static class Dir
+  {
+    private final long _lastModified;
+    private final boolean _bIgnored;
+    private final String[] _dirs;
+    private final String[] _files;
+
+    Dir( long lastModified, boolean bIgnored, String[] dirs, String[] files )
+    {
+      _lastModified = lastModified;
+      _bIgnored = bIgnored;
+      _dirs = dirs;
+      _files = files;
+    }
+
+    /**
+     * @param listed When the directory was listed
+     * @return This directory, or one that is always listed again if it may have changed
+     *   again in the same tick after it was listed
+     */
+    Dir asOf( long listed )
+    {
+      return _lastModified >= listed - TIME_RESOLUTION ? new Dir( 0, _bIgnored, _dirs, _files ) : this;
+    }
+  }
+}
@@ -26,7 +26,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -36,14 +35,14 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CompoundType extends AbstractType implements INonLoadableType, ICompoundType
 {
-  private static final Map<String,CompoundType> CACHE = new ConcurrentHashMap<String,CompoundType>();
-  private static ITypeLoaderListener g_refreshListener;
+  private static final ConcurrentHashMap<String,CompoundType> CACHE = new ConcurrentHashMap<String,CompoundType>();
+  private static volatile ITypeLoaderListener g_refreshListener;
   
   transient private SortedSet<IType> _types;
   private String _strRelativeName;
   private String _strName;
   private boolean _bInterface;
-  transient private ITypeInfo _typeInfo;
+  transient volatile private ITypeInfo _typeInfo;
 
   public static CompoundType get( IType... types )
   {
@@ -58,20 +57,14 @@ public class CompoundType extends AbstractType implements INonLoadableType, ICom
     CompoundType compoundType = CACHE.get( strName );
     if( compoundType == null )
     {
-      TypeSystem.lock();
-      try
+      listenToTypeSystemRefresh();
+      // A compound type is just a value over its component types, so racing threads may
+      // both build one; only the first is published and the global lock is not needed
+      compoundType = new CompoundType( types, strName );
+      CompoundType existing = CACHE.putIfAbsent( strName, compoundType );
+      if( existing != null )
       {
-        compoundType = CACHE.get( strName );
-        if( compoundType == null )
-        {
-          listenToTypeSystemRefresh();
-          compoundType = new CompoundType( types, strName );
-          CACHE.put( strName, compoundType );
-        }
-      }
-      finally
-      {
-        TypeSystem.unlock();
+        compoundType = existing;
       }
     }
     return compoundType;
@@ -83,15 +76,27 @@ public class CompoundType extends AbstractType implements INonLoadableType, ICom
     {
       return;
     }
-    TypeLoaderAccess.instance().addTypeLoaderListenerAsWeakRef(
-      g_refreshListener = new AbstractTypeSystemListener()
+    TypeSystem.lock();
+    try
+    {
+      if( g_refreshListener != null )
       {
-        @Override
-        public void refreshed()
+        return;
+      }
+      TypeLoaderAccess.instance().addTypeLoaderListenerAsWeakRef(
+        g_refreshListener = new AbstractTypeSystemListener()
         {
-          CACHE.clear();
-        }
-      } );
+          @Override
+          public void refreshed()
+          {
+            CACHE.clear();
+          }
+        } );
+    }
+    finally
+    {
+      TypeSystem.unlock();
+    }
   }
 
   private CompoundType( Set<IType> types, String strName )
@@ -350,11 +355,12 @@ public class CompoundType extends AbstractType implements INonLoadableType, ICom
   @Override
   public ITypeInfo getTypeInfo()
   {
-    if( _typeInfo == null )
+    ITypeInfo typeInfo = _typeInfo;
+    if( typeInfo == null )
     {
-      _typeInfo = new CompoundTypeInfo( this );
+      _typeInfo = typeInfo = new CompoundTypeInfo( this );
     }
-    return _typeInfo;
+    return typeInfo;
   }
 
   @Override
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.parser;
+
+import gw.config.CommonServices;
+import gw.internal.gosu.parser.expressions.EvalExpression;
+import gw.lang.parser.ICapturedSymbol;
+import gw.lang.parser.IParsedElement;
+import gw.lang.parser.ISymbol;
+import gw.lang.parser.ISymbolTable;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.ITypeRef;
+import gw.lang.reflect.RefreshKind;
+import gw.lang.reflect.TypeSystem;
+import gw.util.concurrent.Cache;
+import gw.util.concurrent.StripedCounter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the programs compiled for eval() expressions, see {@link GosuProgramParser#parseEval}. A program
+ * is keyed by its eval expression and its source, so evaluating the same source at the same site again
+ * reuses the program rather than compiling another class. Programs evaluated in the context of other
+ * elements are not cached. Finding a cached program takes no lock; only compiling one takes the type system lock.
+ * <p/>
+ * The cache holds at most {@link #SIZE_SYSTEM_PROP} units, where a program costs one unit for every
+ * {@value #CHARS_PER_UNIT} characters of its source, at least one, so it holds many short expressions or
+ * fewer long programs. Evicted programs are marked stale like the type system's own. An eval expression
+ * that compiles {@link #THRASH_COMPILES_SYSTEM_PROP} programs within a minute is logged once as thrashing
+ * the cache: its source most likely differs from call to call.
+ */
+public class EvalProgramCache
+{
+  /** System property for the number of units the cache holds */
+  public static final String SIZE_SYSTEM_PROP = "gosu.eval.cache.size";
+  /** System property for the number of compiles within a minute that makes an eval expression thrashing */
+  public static final String THRASH_COMPILES_SYSTEM_PROP = "gosu.eval.cache.thrashCompiles";
+
+  public static final int CHARS_PER_UNIT = 512;
+
+  private static final int SIZE = Integer.getInteger( SIZE_SYSTEM_PROP, 2000 );
+  private static final int THRASH_COMPILES = Integer.getInteger( THRASH_COMPILES_SYSTEM_PROP, 100 );
+  private static final long THRASH_WINDOW = TimeUnit.MINUTES.toNanos( 1 );
+  private static final int MAX_REPORTED_SITES = 100;
+
+  private static final StripedCounter HITS = new StripedCounter();
+  private static final StripedCounter MISSES = new StripedCounter();
+  private static final StripedCounter COMPILES = new StripedCounter();
+  private static final StripedCounter COMPILE_NANOS = new StripedCounter();
+  private static final StripedCounter EVICTIONS = new StripedCounter();
+  private static final Queue<IGosuProgramInternal> EVICTED = new ConcurrentLinkedQueue<IGosuProgramInternal>();
+  private static final List<String> THRASHING_SITES = new CopyOnWriteArrayList<String>();
+
+  private static final Cache<Key, CachedProgram> PROGRAMS =
+    new Cache<Key, CachedProgram>( "Eval programs", SIZE,
+                                   new Cache.Weigher<Key, CachedProgram>()
+                                   {
+                                     public int weigh( Key key, CachedProgram value )
+                                     {
+                                       return 1 + key._strSource.length() / CHARS_PER_UNIT;
+                                     }
+                                   },
+                                   0, TimeUnit.NANOSECONDS,
+                                   new Cache.MissHandler<Key, CachedProgram>()
+                                   {
+                                     public CachedProgram load( Key key )
+                                     {
+                                       // programs are compiled under the type system lock and put, never loaded
+                                       return null;
+                                     }
+                                   } )
+    {
+      @Override
+      protected void onEviction( Key key, CachedProgram value )
+      {
+        // marked stale later, under the type system lock
+        EVICTED.add( value._program );
+        EVICTIONS.increment();
+      }
+    };
+
+  private EvalProgramCache()
+  {
+  }
+
+  /**
+   * @param strSource The source of the eval program
+   * @param enclosingClass The class the eval expression is in
+   * @param evalExpr The eval expression
+   * @param captured The symbols the eval expression captures, if any
+   * @param extSyms The compile-time symbols the program is compiled with, if any
+   */
+  public static Key makeKey( String strSource, IType enclosingClass, EvalExpression evalExpr,
+                             List<ICapturedSymbol> captured, ISymbolTable extSyms )
+  {
+    return new Key( strSource, enclosingClass, evalExpr, captured, extSyms );
+  }
+
+  /**
+   * @return The program cached for the key, or null if it has to be compiled
+   */
+  public static IGosuProgramInternal get( Key key )
+  {
+    IGosuProgramInternal program = peek( key );
+    if( program != null )
+    {
+      HITS.increment();
+    }
+    else
+    {
+      MISSES.increment();
+    }
+    return program;
+  }
+
+  /**
+   * Like {@link #get} without counting a hit or miss, for checking again under the type system lock.
+   */
+  static IGosuProgramInternal peek( Key key )
+  {
+    CachedProgram cached = PROGRAMS.getIfPresent( key );
+    // programs compiled before a refresh may refer to the types as they were
+    return cached != null && cached._iRefreshChecksum == TypeSystem.getRefreshChecksum() ? cached._program : null;
+  }
+
+  /**
+   * Caches a program just compiled for the key. Called with the type system lock held.
+   */
+  static void put( Key key, IGosuProgramInternal program, IType enclosingClass, long lCompileNanos )
+  {
+    markEvictedStale();
+    COMPILES.increment();
+    COMPILE_NANOS.add( lCompileNanos );
+    PROGRAMS.put( key, new CachedProgram( program, TypeSystem.getRefreshChecksum() ) );
+    // the put may have evicted programs, don't leave them for the next compile
+    markEvictedStale();
+    if( key._evalExpr.countCompile( System.nanoTime(), THRASH_WINDOW, THRASH_COMPILES ) )
+    {
+      reportThrashing( key._evalExpr, enclosingClass );
+    }
+  }
+
+  private static void markEvictedStale()
+  {
+    IGosuProgramInternal program;
+    while( (program = EVICTED.poll()) != null )
+    {
+      if( program.getInnerClasses().isEmpty() )
+      {
+        // Can't remove from type system if its inner classes may be returned as part of eval's results.
+        // Otherwise directly invalidate so as not to wreak havoc on type system at runtime,
+        // and NEVER refresh types at runtime.
+        ((ITypeRef)program)._setStale( RefreshKind.MODIFICATION );
+      }
+    }
+  }
+
+  private static void reportThrashing( IParsedElement evalExpr, IType enclosingClass )
+  {
+    String strSite = enclosingClass.getName() + " line " + evalExpr.getLineNum() + " column " + evalExpr.getColumn();
+    if( THRASHING_SITES.size() < MAX_REPORTED_SITES )
+    {
+      THRASHING_SITES.add( strSite );
+    }
+    CommonServices.getEntityAccess().getLogger().warn(
+      "The eval() expression in " + strSite + " compiled " + THRASH_COMPILES + " programs within a minute. " +
+      "Its source probably differs from call to call; referring to changing values as variables instead of " +
+      "building them into the source lets it reuse its programs. " + getStatistics() );
+  }
+
+  /**
+   * @return The eval expressions reported as thrashing the cache, as "class line n column m"
+   */
+  public static List<String> getThrashingSites()
+  {
+    return Collections.unmodifiableList( THRASHING_SITES );
+  }
+
+  public static long getHits()
+  {
+    return HITS.sum();
+  }
+
+  public static long getMisses()
+  {
+    return MISSES.sum();
+  }
+
+  /**
+   * @return The number of programs compiled, which is less than the misses when precompiled or when
+   *   several threads missed the same program at once
+   */
+  public static long getCompiles()
+  {
+    return COMPILES.sum();
+  }
+
+  public static long getCompileTime( TimeUnit unit )
+  {
+    return unit.convert( COMPILE_NANOS.sum(), TimeUnit.NANOSECONDS );
+  }
+
+  public static long getEvictions()
+  {
+    return EVICTIONS.sum();
+  }
+
+  public static int getSize()
+  {
+    return PROGRAMS.getUtilizedSize();
+  }
+
+  public static long getWeightedSize()
+  {
+    return PROGRAMS.getWeightedSize();
+  }
+
+  public static String getStatistics()
+  {
+    long lHits = getHits();
+    long lRequests = lHits + getMisses();
+    long lCompiles = getCompiles();
+    return "Eval programs( Size:" + getSize() + ", Units:" + getWeightedSize() + "/" + SIZE +
+           ", Hits:" + lHits + ", Misses:" + getMisses() +
+           ", Hit rate:" + (lRequests == 0 ? 0 : lHits * 100 / lRequests) + "%" +
+           ", Compiles:" + lCompiles +
+           ", Avg compile:" + (lCompiles == 0 ? 0 : getCompileTime( TimeUnit.MICROSECONDS ) / lCompiles) + "us" +
+           ", Evictions:" + getEvictions() + " )";
+  }
+
+  public static void clear()
+  {
+    PROGRAMS.clear();
+    HITS.reset();
+    MISSES.reset();
+    COMPILES.reset();
+    COMPILE_NANOS.reset();
+    EVICTIONS.reset();
+    THRASHING_SITES.clear();
+  }
+
+  /**
+   * An eval site and source. Sites are parsed elements of loaded classes, so they are compared by
+   * identity. The enclosing class and the names and types of the captured and compile-time symbols, as
+   * the debugger passes, are compared too: the program's parent type and constructor depend on them.
+   */
+  public static final class Key
+  {
+    private final String _strSource;
+    private final IType _enclosingClass;
+    private final EvalExpression _evalExpr;
+    private final Map<String, IType> _symbols;
+    private final int _iHash;
+
+    private Key( String strSource, IType enclosingClass, EvalExpression evalExpr, List<ICapturedSymbol> captured, ISymbolTable extSyms )
+    {
+      _strSource = strSource;
+      _enclosingClass = enclosingClass;
+      _evalExpr = evalExpr;
+      _symbols = getSymbols( captured, extSyms );
+      int iHash = 31 * System.identityHashCode( evalExpr ) + strSource.hashCode();
+      iHash = 31 * iHash + enclosingClass.hashCode();
+      _iHash = 31 * iHash + _symbols.hashCode();
+    }
+
+    private static Map<String, IType> getSymbols( List<ICapturedSymbol> captured, ISymbolTable extSyms )
+    {
+      Map<String, IType> symbols = new HashMap<String, IType>();
+      if( captured != null )
+      {
+        for( ICapturedSymbol sym : captured )
+        {
+          symbols.put( "captured " + sym.getName(), sym.getType() );
+        }
+      }
+      if( extSyms != null )
+      {
+        for( Object sym : extSyms.getSymbols().values() )
+        {
+          symbols.put( ((ISymbol)sym).getName(), ((ISymbol)sym).getType() );
+        }
+      }
+      return symbols;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if( this == o )
+      {
+        return true;
+      }
+      if( !(o instanceof Key) )
+      {
+        return false;
+      }
+      Key key = (Key)o;
+      return _iHash == key._iHash &&
+             _evalExpr == key._evalExpr &&
+             _strSource.equals( key._strSource ) &&
+             _enclosingClass.equals( key._enclosingClass ) &&
+             _symbols.equals( key._symbols );
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return _iHash;
+    }
+  }
+
+  private static final class CachedProgram
+  {
+    final IGosuProgramInternal _program;
+    final int _iRefreshChecksum;
+
+    CachedProgram( IGosuProgramInternal program, int iRefreshChecksum )
+    {
+      _program = program;
+      _iRefreshChecksum = iRefreshChecksum;
+    }
+  }
+}
@@ -38,13 +38,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  */
 public class FileSystemGosuClassRepository implements IFileSystemGosuClassRepository
 {
-  private final Map<String, FqnCache> _missCaches = new HashMap<String, FqnCache>();
+  private final ConcurrentMap<String, FqnCache> _missCaches = new ConcurrentHashMap<String, FqnCache>();
   public static final String RESOURCE_LOCATED_W_CLASSES = "gw/config/default.xml";
 
   private final IModule _module;
@@ -56,8 +58,10 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
   private String[] _extensions = new String[0];
 
   // Types and packages in the source paths
-  private PackageToClassPathEntryTreeMap _rootNode;
+  private volatile PackageToClassPathEntryTreeMap _rootNode;
   private Set<String> _allTypeNames;
+  private final Map<ClassPathEntry, ClassPathEntryIndex> _indexes = new HashMap<ClassPathEntry, ClassPathEntryIndex>();
+  private final Map<ClassPathEntry, ClassPathEntryIndex> _staleIndexes = new HashMap<ClassPathEntry, ClassPathEntryIndex>();
 
   public FileSystemGosuClassRepository(IModule module)
   {
@@ -164,7 +168,7 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
       Set<String> classNames = new HashSet<String>();
       for( ClassPathEntry path : _sourcePath)
       {
-        addTypeNames(path.getPath(), path.getPath(), classNames, _extensions);
+        addTypeNames(getIndex(path), classNames, _extensions);
       }
       _allTypeNames = classNames;
     }
@@ -177,7 +181,12 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
     Set<String> enhancementNames = new HashSet<String>();
     for( ClassPathEntry path : _sourcePath)
     {
-      addTypeNames(path.getPath(), path.getPath(), enhancementNames, extensions);
+      ClassPathEntryIndex index = getIndex(path);
+      if (index.covers(extensions)) {
+        addTypeNames(index, enhancementNames, extensions);
+      } else {
+        addTypeNames(path.getPath(), path.getPath(), enhancementNames, extensions);
+      }
     }
     return enhancementNames;
   }
@@ -217,6 +226,9 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
           cache.remove(request.types);
         }
 
+        if (request.kind == RefreshKind.CREATION || request.kind == RefreshKind.DELETION) {
+          invalidateIndexes();
+        }
         if (request.kind == RefreshKind.CREATION) {
           for (String type : request.types) {
             // cannot make this call because we have no way of finding out the right package for inner types
@@ -242,12 +254,36 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
       _rootNode = null;
       _allTypeNames = null;
     }
+    invalidateIndexes();
+  }
+
+  /**
+   * The indexes are revalidated against the file system when next needed, which only
+   * lists the directories that changed.
+   */
+  private void invalidateIndexes() {
+    synchronized (_indexes) {
+      _staleIndexes.putAll(_indexes);
+      _indexes.clear();
+    }
+  }
+
+  private ClassPathEntryIndex getIndex(ClassPathEntry entry) {
+    synchronized (_indexes) {
+      ClassPathEntryIndex index = _indexes.get(entry);
+      if (index == null) {
+        index = ClassPathEntryIndex.get(entry.getPath(), _extensions, true, _staleIndexes.remove(entry));
+        _indexes.put(entry, index);
+      }
+      return index;
+    }
   }
 
   private void addToPackageCache(String fqn, IResource file) {
     final ClassPathEntry classPathEntry = findClassPathEntry(file);
-    if (_rootNode != null && classPathEntry != null) {
-      PackageToClassPathEntryTreeMap node = _rootNode;
+    PackageToClassPathEntryTreeMap rootNode = _rootNode;
+    if (rootNode != null && classPathEntry != null) {
+      PackageToClassPathEntryTreeMap node = rootNode;
       while (fqn != null) {
         int i = fqn.indexOf('.');
         String segment = fqn.substring(0, i < 0 ? fqn.length() : i);
@@ -287,47 +323,53 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
     }
   }
 
-  private synchronized PackageToClassPathEntryTreeMap getCachedPackageCorrectly(String fullyQualifiedName) {
-    if (_rootNode == null) {
-      _rootNode = loadPackageRoots();
+  private PackageToClassPathEntryTreeMap getRootNode() {
+    PackageToClassPathEntryTreeMap rootNode = _rootNode;
+    if (rootNode == null) {
+      synchronized (this) {
+        rootNode = _rootNode;
+        if (rootNode == null) {
+          _rootNode = rootNode = loadPackageRoots();
+        }
+      }
     }
+    return rootNode;
+  }
 
-    PackageToClassPathEntryTreeMap currNode = _rootNode;
+  private PackageToClassPathEntryTreeMap getCachedPackageCorrectly(String fullyQualifiedName) {
+    PackageToClassPathEntryTreeMap rootNode = getRootNode();
+    PackageToClassPathEntryTreeMap currNode = rootNode;
     int iRelativeNameIndex = 0;
     while (iRelativeNameIndex != -1) {
       int iNextDot = fullyQualifiedName.indexOf('.', iRelativeNameIndex);
       String strRelativeName = fullyQualifiedName.substring(iRelativeNameIndex, iNextDot == -1 ? fullyQualifiedName.length() : iNextDot);
       iRelativeNameIndex = iNextDot == -1 ? -1 : iNextDot + 1;
-      PackageToClassPathEntryTreeMap newNode = getChildPackage(currNode, strRelativeName);
+      PackageToClassPathEntryTreeMap newNode = getChildPackage(rootNode, currNode, strRelativeName);
       if (newNode == null) {
         return null;
       }
       currNode = newNode;
     }
 
-    return currNode == _rootNode ? null : currNode;
+    return currNode == rootNode ? null : currNode;
   }
 
-  private synchronized PackageToClassPathEntryTreeMap getCachedPackage( String fullyQualifiedName )
+  private PackageToClassPathEntryTreeMap getCachedPackage( String fullyQualifiedName )
   {
-    if( _rootNode == null )
-    {
-      _rootNode = loadPackageRoots();
-    }
-
+    PackageToClassPathEntryTreeMap rootNode = getRootNode();
     if( fullyQualifiedName.equals( "" ) )
     {
-      return _rootNode;
+      return rootNode;
     }
 
-    PackageToClassPathEntryTreeMap currNode = _rootNode;
+    PackageToClassPathEntryTreeMap currNode = rootNode;
     int iRelativeNameIndex = 0;
     while( iRelativeNameIndex != -1 )
     {
       int iNextDot = fullyQualifiedName.indexOf( '.', iRelativeNameIndex );
       String strRelativeName = fullyQualifiedName.substring( iRelativeNameIndex, iNextDot == -1 ? fullyQualifiedName.length() : iNextDot );
       iRelativeNameIndex = iNextDot == -1 ? -1 : iNextDot + 1;
-      PackageToClassPathEntryTreeMap newNode = getChildPackage( currNode, strRelativeName );
+      PackageToClassPathEntryTreeMap newNode = getChildPackage( rootNode, currNode, strRelativeName );
       if( newNode == null )
       {
         break;
@@ -335,13 +377,13 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
       currNode = newNode;
     }
 
-    return currNode == _rootNode ? null : currNode;
+    return currNode == rootNode ? null : currNode;
   }
 
-  private PackageToClassPathEntryTreeMap getChildPackage( PackageToClassPathEntryTreeMap parent, String strRelativeName )
+  private PackageToClassPathEntryTreeMap getChildPackage( PackageToClassPathEntryTreeMap rootNode, PackageToClassPathEntryTreeMap parent, String strRelativeName )
   {
     PackageToClassPathEntryTreeMap child;
-    if( parent == _rootNode && strRelativeName.equals( "Libraries" ) )
+    if( parent == rootNode && strRelativeName.equals( "Libraries" ) )
     {
       // Hack to support mixed case access to the "libraries" package.
       // Libaries used to be a global symbol with name "Libraries", so
@@ -369,29 +411,46 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
     for( ClassPathEntry dir : _sourcePath)
     {
       root.addClassPathEntry( dir );
-      processDirectory( root, dir, dir.getPath() );
+      processDirectory( root, dir, getIndex( dir ), "", getExcludedPaths( dir ) );
     }
     return root;
   }
 
-  private void processDirectory(PackageToClassPathEntryTreeMap node, IFileSystemGosuClassRepository.ClassPathEntry entry, IDirectory path) {
-    if (_excludedPath.contains(path)) {
+  /**
+   * @param path The directory's path relative to the entry, "" for the entry itself
+   */
+  private void processDirectory(PackageToClassPathEntryTreeMap node, IFileSystemGosuClassRepository.ClassPathEntry entry,
+                                ClassPathEntryIndex index, String path, Set<String> excludedPaths) {
+    if (excludedPaths.contains(path)) {
       return;
     }
-    IDirectory entryPath = entry.getPath();
-    if (entryPath.equals(path) || !CommonServices.getPlatformHelper().isPathIgnored(entryPath.relativePath(path))) {
-      List<? extends IDirectory> dirs = path.listDirs();
-      for (IDirectory dir : dirs) {
+    // Null for ignored directories
+    String[] dirs = index.getDirectories(path);
+    if (dirs != null) {
+      for (String dir : dirs) {
         if (isValidDirectory(dir)) {
-          PackageToClassPathEntryTreeMap child = node.createChildForDir(entry, dir.getName());
-          processDirectory(child, entry, dir);
+          PackageToClassPathEntryTreeMap child = node.createChildForDir(entry, dir);
+          processDirectory(child, entry, index, ClassPathEntryIndex.join(path, dir), excludedPaths);
         }
       }
     }
   }
 
-  private boolean isValidDirectory(IDirectory dir) {
-    return !dir.getName().equals("META-INF");
+  private Set<String> getExcludedPaths(ClassPathEntry entry) {
+    Set<String> paths = new HashSet<String>();
+    IDirectory entryPath = entry.getPath();
+    for (IDirectory excluded : _excludedPath) {
+      if (excluded.equals(entryPath)) {
+        paths.add("");
+      } else if (excluded.isDescendantOf(entryPath)) {
+        paths.add(entryPath.relativePath(excluded));
+      }
+    }
+    return paths;
+  }
+
+  private boolean isValidDirectory(String dirName) {
+    return !dirName.equals("META-INF");
   }
 
   private ClassFileInfo findFileInfoOnDisk( String strQualifiedClassName, String[] extensions )
@@ -436,25 +495,26 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
 
   private boolean inMissCache(String strQualifiedClassName, String[] extensions)
   {
-    synchronized( _missCaches )
-    {
-      // Note we check for TRUE because it can happen that a subordinate type like Foo<BadType> is a miss, while Foo is not a miss
-      for (String extension : extensions) {
-        Object value = getMissCacheForExtension(extension).get(strQualifiedClassName);
-        if (value != Boolean.TRUE) {
-          return false;
-        }
+    // Lock-free: the miss caches are concurrent tries
+    // Note we check for TRUE because it can happen that a subordinate type like Foo<BadType> is a miss, while Foo is not a miss
+    for (String extension : extensions) {
+      FqnCache cache = _missCaches.get(extension);
+      if (cache == null || cache.get(strQualifiedClassName) != Boolean.TRUE) {
+        return false;
       }
-
-      return true;
     }
+
+    return true;
   }
 
   private FqnCache getMissCacheForExtension(String extension) {
     FqnCache cache = _missCaches.get(extension);
     if (cache == null) {
       cache = new FqnCache();
-      _missCaches.put(extension, cache);
+      FqnCache existing = _missCaches.putIfAbsent(extension, cache);
+      if (existing != null) {
+        cache = existing;
+      }
     }
     return cache;
   }
@@ -469,6 +529,21 @@ public class FileSystemGosuClassRepository implements IFileSystemGosuClassReposi
     }
   }
 
+  private void addTypeNames( ClassPathEntryIndex index, final Set<String> classNames, final String[] fileExts )
+  {
+    index.visitFiles( new ClassPathEntryIndex.FileVisitor()
+    {
+      public void visit( String path, String fileName )
+      {
+        if( Util.isClassFileName( fileName, fileExts ) )
+        {
+          String className = ClassPathEntryIndex.join( path, fileName.substring( 0, fileName.lastIndexOf( '.' ) ) );
+          classNames.add( className.replace( '/', '.' ) );
+        }
+      }
+    } );
+  }
+
   private void addTypeNames( final IDirectory root, IDirectory path, final Set<String> classNames, final String[] fileExts )
   {
     DynamicArray<? extends IFile> iFiles = IDirectoryUtil.allContainedFilesExcludingIgnored(path);
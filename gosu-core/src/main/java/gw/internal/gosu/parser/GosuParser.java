@@ -10556,6 +10556,9 @@ public final class GosuParser extends ParserBase implements IGosuParser
       }
       verify( e, match( null, ')' ), Res.MSG_EXPECTING_RIGHTPAREN_FUNCTION_DEF );
     }
+    else if( match( null, TemplateGenerator.FLUSH_DIRECTIVE ) ) {
+      // a flush point, see TemplateGenerator.flushContent()
+    }
     else {
       advanceToNextTokenSilently();
       e.addParseException( new ParseException( makeFullParserState(), Res.MSG_BAD_TEMPLATE_DIRECTIVE ) );
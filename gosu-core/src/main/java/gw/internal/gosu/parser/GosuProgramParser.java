@@ -40,21 +40,30 @@ public class GosuProgramParser implements IGosuProgramParser
 
   public IParseResult parseEval( String strSource, List<ICapturedSymbol> captured, IType enclosingClass, IParsedElement ctxElem, ISymbolTable extSyms )
   {
+    // only programs of eval expressions are cached, as before the cache
+    EvalProgramCache.Key key = ctxElem instanceof EvalExpression
+                               ? EvalProgramCache.makeKey( strSource, enclosingClass, (EvalExpression)ctxElem, captured, extSyms )
+                               : null;
+    IGosuProgramInternal program = key == null ? null : EvalProgramCache.get( key );
+    if( program != null )
+    {
+      program.isValid();
+      return new ParseResult( program );
+    }
+
     TypeSystem.lock();
     try
     {
-      IGosuProgramInternal program;
-      String typeName = makeEvalKey( strSource, enclosingClass, ctxElem );
-      if( ctxElem instanceof EvalExpression )
+      // another thread may have compiled the program while this one waited for the lock
+      program = key == null ? null : EvalProgramCache.peek( key );
+      if( program != null )
       {
-        program = ((EvalExpression)ctxElem).getCachedProgram( typeName );
-        if( program != null )
-        {
-          program.isValid();
-          return new ParseResult( program );
-        }
+        program.isValid();
+        return new ParseResult( program );
       }
 
+      long lStart = System.nanoTime();
+      String typeName = makeEvalKey( strSource, enclosingClass, ctxElem );
       StringSourceFileHandle sfh = new StringSourceFileHandle( typeName, strSource, false, ClassType.Eval );
       sfh.setParentType( enclosingClass.getName() );
       ITypeUsesMap typeUsedMap = getTypeUsedMapFrom( ctxElem );
@@ -77,9 +86,9 @@ public class GosuProgramParser implements IGosuProgramParser
       }
       sfh.setExternalSymbols( extSyms );
       program.isValid();
-      if( ctxElem instanceof EvalExpression )
+      if( key != null )
       {
-        ((EvalExpression)ctxElem).cacheProgram( typeName, program );
+        EvalProgramCache.put( key, program, enclosingClass, System.nanoTime() - lStart );
       }
       return new ParseResult( program );
     }
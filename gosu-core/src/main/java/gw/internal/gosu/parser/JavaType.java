@@ -7,6 +7,7 @@ package gw.internal.gosu.parser;
 import gw.config.CommonServices;
 import gw.fs.IFile;
 import gw.internal.gosu.annotations.AnnotationMap;
+import gw.internal.gosu.init.StartupProfile;
 import gw.lang.parser.TypeVarToTypeMap;
 import gw.lang.reflect.AbstractType;
 import gw.lang.reflect.IErrorType;
@@ -63,7 +64,7 @@ class JavaType extends AbstractType implements IJavaTypeInternal
   // Non-persistent fields
   //
   transient protected IJavaClassInfo _classInfo;
-  transient private ITypeInfo _typeInfo;
+  transient volatile private ITypeInfo _typeInfo;
   transient private String _strRelativeName;
   transient volatile private Set<IType> _allTypesInHierarchy; //!! Do NOT make this a lazy var, it's init needs to be re-entrant
   transient private boolean _bArray;
@@ -91,7 +92,7 @@ class JavaType extends AbstractType implements IJavaTypeInternal
     }
   };
   transient private boolean _bDefiningGenericTypes;
-  transient private ConcurrentMap<String, IJavaTypeInternal> _parameterizationByParamsName;
+  transient volatile private ConcurrentMap<String, IJavaTypeInternal> _parameterizationByParamsName;
   transient volatile private IJavaTypeInternal _arrayType;
   private IJavaTypeInternal _componentType;
   transient private DefaultTypeLoader _typeLoader;
@@ -465,6 +466,7 @@ class JavaType extends AbstractType implements IJavaTypeInternal
             _adapterClass = createAdapterClass();
           }
           _tiChecksum = TypeSystem.getSingleRefreshChecksum();
+          StartupProfile.recordTypeInfo( this );
         }
       }
       finally
@@ -860,18 +862,15 @@ class JavaType extends AbstractType implements IJavaTypeInternal
 
     if( _parameterizationByParamsName == null )
     {
-      TypeSystem.lock();
-      try
+      // Creating the map doesn't call back into the type system, so a per-type monitor
+      // is sufficient here; no need to contend for the global lock
+      synchronized( this )
       {
         if( _parameterizationByParamsName == null )
         {
           _parameterizationByParamsName = new ConcurrentHashMap<String, IJavaTypeInternal>( 2 );
         }
       }
-      finally
-      {
-        TypeSystem.unlock();
-      }
     }
     paramTypes = TypeSystem.boxPrimitiveTypeParams( paramTypes );
     String strNameOfParams = TypeLord.getNameOfParams( paramTypes, false, true, true );
@@ -8,6 +8,7 @@ import gw.config.CommonServices;
 import gw.fs.IDirectory;
 import gw.fs.IFile;
 import gw.fs.IResource;
+import gw.internal.gosu.init.StartupProfile;
 import gw.lang.reflect.IDefaultTypeLoader;
 import gw.lang.reflect.IExtendedTypeLoader;
 import gw.lang.reflect.IMetaType;
@@ -506,6 +507,7 @@ public class ModuleTypeLoader implements ITypeLoaderStackInternal {
     if( pair != null )
     {
       type = cacheType(fullyQualifiedName, pair);
+      StartupProfile.recordType( type );
     }
     else if( !skipJava )
     {
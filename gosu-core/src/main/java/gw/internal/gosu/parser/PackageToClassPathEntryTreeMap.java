@@ -18,22 +18,24 @@ import gw.lang.reflect.module.IModule;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
+ * Lookups are lock-free; children and class path entries are held in concurrent
+ * collections so the tree can be extended while other threads resolve names.
  */
 class PackageToClassPathEntryTreeMap
 {
   private String _strFullPackageName;
   private String _strRelativePackageName;
-  private Map<String, PackageToClassPathEntryTreeMap> _children = new HashMap<String, PackageToClassPathEntryTreeMap>();
-  private List<IFileSystemGosuClassRepository.ClassPathEntry> _classPathEntries = new ArrayList<IFileSystemGosuClassRepository.ClassPathEntry>();
+  private ConcurrentMap<String, PackageToClassPathEntryTreeMap> _children = new ConcurrentHashMap<String, PackageToClassPathEntryTreeMap>();
+  private CopyOnWriteArrayList<IFileSystemGosuClassRepository.ClassPathEntry> _classPathEntries = new CopyOnWriteArrayList<IFileSystemGosuClassRepository.ClassPathEntry>();
   private PackageToClassPathEntryTreeMap _parent;
   private IModule _module;
 
@@ -54,10 +56,7 @@ class PackageToClassPathEntryTreeMap
 
   public void addClassPathEntry( IFileSystemGosuClassRepository.ClassPathEntry entry )
   {
-    if( !_classPathEntries.contains( entry ) )
-    {
-      _classPathEntries.add( entry );
-    }
+    _classPathEntries.addIfAbsent( entry );
   }
 
   public PackageToClassPathEntryTreeMap createChildForDir( IFileSystemGosuClassRepository.ClassPathEntry entry, String packageName )
@@ -66,7 +65,11 @@ class PackageToClassPathEntryTreeMap
     if( packageTree == null )
     {
       packageTree = new PackageToClassPathEntryTreeMap( this, packageName, _module );
-      _children.put( packageName, packageTree );
+      PackageToClassPathEntryTreeMap existing = _children.putIfAbsent( packageName, packageTree );
+      if( existing != null )
+      {
+        packageTree = existing;
+      }
     }
     if(entry != null) {
       packageTree.addClassPathEntry( entry );
@@ -228,7 +231,7 @@ class PackageToClassPathEntryTreeMap
   }
 
   private void removeChild(PackageToClassPathEntryTreeMap pkg) {
-    _children.remove(pkg._strRelativePackageName);
+    _children.remove(pkg._strRelativePackageName, pkg);
   }
 
   public PackageToClassPathEntryTreeMap getParent() {
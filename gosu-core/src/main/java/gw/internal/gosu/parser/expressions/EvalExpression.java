@@ -5,22 +5,17 @@
 package gw.internal.gosu.parser.expressions;
 
 import gw.internal.gosu.parser.Expression;
-import gw.internal.gosu.parser.IGosuProgramInternal;
 import gw.internal.gosu.parser.CannotExecuteGosuException;
 import gw.lang.parser.GosuParserTypes;
 import gw.lang.parser.ITypeUsesMap;
 import gw.lang.parser.ICapturedSymbol;
 import gw.lang.parser.expressions.IEvalExpression;
 import gw.lang.parser.expressions.ITypeVariableDefinition;
-import gw.lang.reflect.RefreshKind;
-import gw.lang.reflect.TypeSystem;
 import gw.lang.reflect.IFunctionType;
-import gw.lang.reflect.ITypeRef;
 
 import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
-import java.util.LinkedHashMap;
 
 
 /**
@@ -38,8 +33,10 @@ public final class EvalExpression extends Expression implements IEvalExpression
   private Expression _expression;
   private List<ICapturedSymbol> _capturedForBytecode;
   private Map<String, ITypeVariableDefinition> _capturedTypeVars;
-  private Map<String, IGosuProgramInternal> _cacheProgramByFingerprint;
-  private int _refreshChecksum = 0;
+  // eval programs compiled for this site in the current window, guarded by the type system lock
+  private long _compileWindowStart;
+  private int _compilesInWindow;
+  private boolean _bThrashing;
 
 
   /**
@@ -49,8 +46,6 @@ public final class EvalExpression extends Expression implements IEvalExpression
   {
     _typeUsesMap = typeUsesMap;
     _type = GosuParserTypes.GENERIC_BEAN_TYPE();
-    // Note, not a concurrent map because the type sys lock is acquired during access/modification (see GosuProgramParse.parseEval)
-    _cacheProgramByFingerprint = new ProgramCache();
   }
 
   public void setCapturedSymbolsForBytecode( List<ICapturedSymbol> captured )
@@ -62,22 +57,26 @@ public final class EvalExpression extends Expression implements IEvalExpression
     return _capturedForBytecode;
   }
 
-  public void cacheProgram( String strTypeName, IGosuProgramInternal gsClass )
-  {
-    clearCacheOnChecksumChange();
-    _cacheProgramByFingerprint.put( strTypeName, gsClass );
-  }
-  public IGosuProgramInternal getCachedProgram( String strTypeName )
+  /**
+   * Counts a program compiled for this eval site, see GosuProgramParser.parseEval. Called with the
+   * type system lock held.
+   *
+   * @return True the first time this site compiles iMaxCompiles programs within one window, which
+   *   means its programs are evicted or its source differs from call to call
+   */
+  public boolean countCompile( long lNow, long lWindowNanos, int iMaxCompiles )
   {
-    clearCacheOnChecksumChange();
-    return _cacheProgramByFingerprint.get( strTypeName );
-  }
-
-  private void clearCacheOnChecksumChange() {
-    if (_refreshChecksum != TypeSystem.getRefreshChecksum()) {
-      _cacheProgramByFingerprint.clear();
-      _refreshChecksum = TypeSystem.getRefreshChecksum();
+    if( _compilesInWindow == 0 || lNow - _compileWindowStart > lWindowNanos )
+    {
+      _compileWindowStart = lNow;
+      _compilesInWindow = 0;
+    }
+    if( ++_compilesInWindow < iMaxCompiles || _bThrashing )
+    {
+      return false;
     }
+    _bThrashing = true;
+    return true;
   }
 
   public ITypeUsesMap getTypeUsesMap()
@@ -134,51 +133,4 @@ public final class EvalExpression extends Expression implements IEvalExpression
   {
     return _capturedTypeVars;
   }
-
-  static class ProgramCache extends LinkedHashMap<String, IGosuProgramInternal>
-  {
-    private static final int CACHE_SIZE = 100;
-
-    public ProgramCache()
-    {
-      super( CACHE_SIZE );
-    }
-
-    @Override
-    protected boolean removeEldestEntry( Map.Entry<String, IGosuProgramInternal> eldest )
-    {
-      TypeSystem.lock();
-      try
-      {
-        if( size() > CACHE_SIZE )
-        {
-          IGosuProgramInternal program = eldest.getValue();
-          if( !program.getInnerClasses().isEmpty() )
-          {
-            // Can't remove from type system since its inner classes may be returned as part of eval's results
-            return true;
-          }
-
-          ITypeRef type = (ITypeRef)program;
-          // Directly invalidate so as not to wreak havoc on type system at runtime.
-          // Also avoids huge perf penalty.
-          type._setStale(RefreshKind.MODIFICATION);
-
-          //!!! NEVER! refresh types at runtime EVER!
-          //IModule module = type.getTypeLoader().getModule();
-          //String strName = type.getName();
-          //System.out.println( "Removing Type: " + strName );
-          //TypeSystem.refresh( type, true );
-          //TypeSystem.notifyOfTypeDeletion( new String[] {strName}, module );
-
-          return true;
-        }
-      }
-      finally
-      {
-        TypeSystem.unlock();
-      }
-      return false;
-    }
-  }
 }
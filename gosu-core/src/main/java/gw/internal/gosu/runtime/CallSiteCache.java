@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.runtime;
+
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inline cache for a dynamic member access site. Resolved targets are keyed
+ * by receiver type and, for method calls, by the argument types used for
+ * overload resolution. The cache starts out monomorphic, grows to hold up to
+ * {@link #MAX_POLYMORPHISM} receivers with a linear identity scan, and beyond
+ * that goes megamorphic and falls back to a bounded hash lookup.
+ * <p/>
+ * All entries are dropped whenever the type system is refreshed, since the
+ * cached feature infos may no longer belong to the current types.
+ */
+class CallSiteCache<T>
+{
+  static final int MAX_POLYMORPHISM = 4;
+  static final int MAX_MEGAMORPHIC = 256;
+
+  private static final Entry[] EMPTY = new Entry[0];
+
+  private volatile Entry[] _entries;
+  private volatile ConcurrentHashMap<Entry, Entry> _megamorphic;
+  private volatile int _iChecksum;
+
+  CallSiteCache()
+  {
+    _entries = EMPTY;
+    _iChecksum = TypeSystem.getSingleRefreshChecksum();
+  }
+
+  T get( IType receiver, IType[] argTypes )
+  {
+    if( _iChecksum != TypeSystem.getSingleRefreshChecksum() )
+    {
+      invalidate();
+      return null;
+    }
+
+    Entry[] entries = _entries;
+    for( int i = 0; i < entries.length; i++ )
+    {
+      Entry entry = entries[i];
+      if( entry.matches( receiver, argTypes ) )
+      {
+        //noinspection unchecked
+        return (T)entry._target;
+      }
+    }
+
+    ConcurrentHashMap<Entry, Entry> megamorphic = _megamorphic;
+    if( megamorphic != null )
+    {
+      Entry entry = megamorphic.get( new Entry( receiver, argTypes, null ) );
+      //noinspection unchecked
+      return entry == null ? null : (T)entry._target;
+    }
+    return null;
+  }
+
+  synchronized void put( IType receiver, IType[] argTypes, T target )
+  {
+    int iChecksum = TypeSystem.getSingleRefreshChecksum();
+    if( _iChecksum != iChecksum )
+    {
+      invalidate();
+    }
+
+    Entry entry = new Entry( receiver, argTypes, target );
+    Entry[] entries = _entries;
+    if( entries.length < MAX_POLYMORPHISM )
+    {
+      Entry[] newEntries = Arrays.copyOf( entries, entries.length + 1 );
+      newEntries[entries.length] = entry;
+      _entries = newEntries;
+      return;
+    }
+
+    ConcurrentHashMap<Entry, Entry> megamorphic = _megamorphic;
+    if( megamorphic == null )
+    {
+      _megamorphic = megamorphic = new ConcurrentHashMap<Entry, Entry>();
+    }
+    else if( megamorphic.size() >= MAX_MEGAMORPHIC )
+    {
+      // Don't let a site that sees an unbounded set of receivers hold onto all of them
+      megamorphic.clear();
+    }
+    megamorphic.put( entry, entry );
+  }
+
+  boolean isMegamorphic()
+  {
+    return _megamorphic != null;
+  }
+
+  private synchronized void invalidate()
+  {
+    _entries = EMPTY;
+    _megamorphic = null;
+    _iChecksum = TypeSystem.getSingleRefreshChecksum();
+  }
+
+  private static final class Entry
+  {
+    private final IType _receiver;
+    private final IType[] _argTypes;
+    private final Object _target;
+
+    Entry( IType receiver, IType[] argTypes, Object target )
+    {
+      _receiver = receiver;
+      _argTypes = argTypes;
+      _target = target;
+    }
+
+    boolean matches( IType receiver, IType[] argTypes )
+    {
+      if( receiver != _receiver )
+      {
+        return false;
+      }
+      if( argTypes == _argTypes )
+      {
+        return true;
+      }
+      if( argTypes == null || _argTypes == null || argTypes.length != _argTypes.length )
+      {
+        return false;
+      }
+      for( int i = 0; i < argTypes.length; i++ )
+      {
+        if( argTypes[i] != _argTypes[i] )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      return o instanceof Entry && matches( ((Entry)o)._receiver, ((Entry)o)._argTypes );
+    }
+
+    @Override
+    public int hashCode()
+    {
+      int iHash = System.identityHashCode( _receiver );
+      if( _argTypes != null )
+      {
+        for( IType argType : _argTypes )
+        {
+          iHash = 31 * iHash + System.identityHashCode( argType );
+        }
+      }
+      return iHash;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.runtime;
+
+import gw.internal.gosu.ir.transform.AbstractElementTransformer;
+import gw.util.GosuExceptionUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches method handles for the declared methods compiled code calls reflectively
+ * via {@link GosuRuntimeMethods#invokeMethod}, e.g., private members of other classes.
+ * Handles are keyed by declaring class, then name, then parameter classes, and are
+ * adapted to a uniform (Object root, Object... args) shape so small arities can be
+ * invoked directly without going through a spreader.
+ * <p/>
+ * Arguments are adapted as Method.invoke() adapts them: primitive parameters unbox
+ * with widening, e.g., an Integer passes for a long, and an argument that doesn't fit
+ * its parameter, including null for a primitive, or a root that is not an instance of
+ * the declaring class throws IllegalArgumentException rather than ClassCastException
+ * or NullPointerException.
+ */
+class DeclaredMethodCache
+{
+  static final int MAX_DIRECT_ARITY = 4;
+
+  private static final MethodHandle CHECK_ARG;
+  private static final Map<Class, MethodHandle> UNBOX_ARG = new HashMap<Class, MethodHandle>();
+  static
+  {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try
+    {
+      CHECK_ARG = lookup.findStatic( DeclaredMethodCache.class, "checkArg", MethodType.methodType( Object.class, Class.class, Object.class ) );
+      for( Class primitive : new Class[] {boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class} )
+      {
+        String strName = primitive.getName();
+        UNBOX_ARG.put( primitive, lookup.findStatic( DeclaredMethodCache.class, "to" + Character.toUpperCase( strName.charAt( 0 ) ) + strName.substring( 1 ),
+                                                     MethodType.methodType( primitive, Object.class ) ) );
+      }
+    }
+    catch( ReflectiveOperationException e )
+    {
+      throw GosuExceptionUtil.forceThrow( e );
+    }
+  }
+
+  private static final ClassValue<ConcurrentHashMap<String, Entry[]>> CACHE =
+    new ClassValue<ConcurrentHashMap<String, Entry[]>>()
+    {
+      @Override
+      protected ConcurrentHashMap<String, Entry[]> computeValue( Class<?> type )
+      {
+        return new ConcurrentHashMap<String, Entry[]>();
+      }
+    };
+
+  static Object invoke( Class c, String methodName, Class[] argTypes, Object root, Object[] args )
+  {
+    Entry entry = getEntry( c, methodName, argTypes );
+    if( (args == null ? 0 : args.length) != entry._iArity )
+    {
+      throw new IllegalArgumentException( "wrong number of arguments" );
+    }
+    try
+    {
+      MethodHandle handle = entry._handle;
+      switch( entry._iArity )
+      {
+        case 0:
+          return (Object)handle.invokeExact( root );
+        case 1:
+          return (Object)handle.invokeExact( root, args[0] );
+        case 2:
+          return (Object)handle.invokeExact( root, args[0], args[1] );
+        case 3:
+          return (Object)handle.invokeExact( root, args[0], args[1], args[2] );
+        case 4:
+          return (Object)handle.invokeExact( root, args[0], args[1], args[2], args[3] );
+        default:
+          return (Object)handle.invokeExact( root, args );
+      }
+    }
+    catch( Throwable t )
+    {
+      throw GosuExceptionUtil.forceThrow( t );
+    }
+  }
+
+  private static Entry getEntry( Class c, String methodName, Class[] argTypes )
+  {
+    ConcurrentHashMap<String, Entry[]> byName = CACHE.get( c );
+    Entry[] entries = byName.get( methodName );
+    if( entries != null )
+    {
+      for( Entry entry : entries )
+      {
+        if( Arrays.equals( entry._argTypes, argTypes ) )
+        {
+          return entry;
+        }
+      }
+    }
+
+    Entry entry = new Entry( argTypes, AbstractElementTransformer.getDeclaredMethod( c, methodName, argTypes ) );
+    synchronized( byName )
+    {
+      entries = byName.get( methodName );
+      Entry[] newEntries = entries == null ? new Entry[1] : Arrays.copyOf( entries, entries.length + 1 );
+      newEntries[newEntries.length - 1] = entry;
+      byName.put( methodName, newEntries );
+    }
+    return entry;
+  }
+
+  private static final class Entry
+  {
+    private final Class[] _argTypes;
+    private final int _iArity;
+    private final MethodHandle _handle;
+
+    Entry( Class[] argTypes, Method method )
+    {
+      _argTypes = argTypes.clone();
+      _iArity = argTypes.length;
+      _handle = makeHandle( method, _iArity );
+    }
+
+    private static MethodHandle makeHandle( Method method, int iArity )
+    {
+      MethodHandle handle;
+      try
+      {
+        // getDeclaredMethod() has already made the method accessible
+        handle = MethodHandles.lookup().unreflect( method );
+      }
+      catch( IllegalAccessException e )
+      {
+        throw GosuExceptionUtil.forceThrow( e );
+      }
+      boolean bStatic = Modifier.isStatic( method.getModifiers() );
+      Class[] paramTypes = handle.type().parameterArray();
+      MethodHandle[] argFilters = new MethodHandle[paramTypes.length];
+      for( int i = 0; i < paramTypes.length; i++ )
+      {
+        argFilters[i] = makeArgFilter( paramTypes[i] );
+      }
+      handle = MethodHandles.filterArguments( handle, 0, argFilters );
+      if( bStatic )
+      {
+        handle = MethodHandles.dropArguments( handle, 0, Object.class );
+      }
+      if( method.getReturnType() == void.class )
+      {
+        handle = MethodHandles.filterReturnValue( handle, MethodHandles.constant( Object.class, null ) );
+      }
+      handle = handle.asType( MethodType.genericMethodType( iArity + 1 ) );
+      if( iArity > MAX_DIRECT_ARITY )
+      {
+        handle = handle.asSpreader( Object[].class, iArity );
+      }
+      return handle;
+    }
+
+    /**
+     * @return A handle taking an Object to the parameter type as Method.invoke() would pass it
+     */
+    private static MethodHandle makeArgFilter( Class paramType )
+    {
+      if( paramType.isPrimitive() )
+      {
+        return UNBOX_ARG.get( paramType );
+      }
+      return CHECK_ARG.bindTo( paramType ).asType( MethodType.methodType( paramType, Object.class ) );
+    }
+  }
+
+  //
+  // Argument adapters, unboxing with the widening conversions Method.invoke() allows
+  //
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static Object checkArg( Class paramType, Object arg )
+  {
+    if( arg != null && !paramType.isInstance( arg ) )
+    {
+      throw mismatch( paramType, arg );
+    }
+    return arg;
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static boolean toBoolean( Object arg )
+  {
+    if( arg instanceof Boolean )
+    {
+      return (Boolean)arg;
+    }
+    throw mismatch( boolean.class, arg );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static char toChar( Object arg )
+  {
+    if( arg instanceof Character )
+    {
+      return (Character)arg;
+    }
+    throw mismatch( char.class, arg );
+  }
+
+  private static byte toByte( Object arg )
+  {
+    if( arg instanceof Byte )
+    {
+      return (Byte)arg;
+    }
+    throw mismatch( byte.class, arg );
+  }
+
+  private static short toShort( Object arg )
+  {
+    if( arg instanceof Short )
+    {
+      return (Short)arg;
+    }
+    if( arg instanceof Byte )
+    {
+      return (Byte)arg;
+    }
+    throw mismatch( short.class, arg );
+  }
+
+  private static int toInt( Object arg )
+  {
+    if( arg instanceof Integer )
+    {
+      return (Integer)arg;
+    }
+    if( arg instanceof Character )
+    {
+      return (Character)arg;
+    }
+    if( arg instanceof Short || arg instanceof Byte )
+    {
+      return ((Number)arg).intValue();
+    }
+    throw mismatch( int.class, arg );
+  }
+
+  private static long toLong( Object arg )
+  {
+    if( arg instanceof Long )
+    {
+      return (Long)arg;
+    }
+    if( arg instanceof Integer || arg instanceof Character || arg instanceof Short || arg instanceof Byte )
+    {
+      return toInt( arg );
+    }
+    throw mismatch( long.class, arg );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static float toFloat( Object arg )
+  {
+    if( arg instanceof Float )
+    {
+      return (Float)arg;
+    }
+    if( arg instanceof Long || arg instanceof Integer || arg instanceof Character || arg instanceof Short || arg instanceof Byte )
+    {
+      return toLong( arg );
+    }
+    throw mismatch( float.class, arg );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static double toDouble( Object arg )
+  {
+    if( arg instanceof Double )
+    {
+      return (Double)arg;
+    }
+    if( arg instanceof Float )
+    {
+      return (Float)arg;
+    }
+    if( arg instanceof Long || arg instanceof Integer || arg instanceof Character || arg instanceof Short || arg instanceof Byte )
+    {
+      return toLong( arg );
+    }
+    throw mismatch( double.class, arg );
+  }
+
+  private static IllegalArgumentException mismatch( Class paramType, Object arg )
+  {
+    return new IllegalArgumentException( "argument type mismatch: " + (arg == null ? "null" : arg.getClass().getName()) +
+                                         " for " + paramType.getName() );
+  }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.runtime;
+
+import gw.internal.ext.org.objectweb.asm.Handle;
+import gw.internal.ext.org.objectweb.asm.Opcodes;
+import gw.internal.gosu.ir.compiler.bytecode.expression.IRMethodCallExpressionCompiler;
+import gw.lang.reflect.Expando;
+import gw.lang.reflect.ExpandoShape;
+import gw.lang.reflect.IExpando;
+import gw.lang.reflect.IMethodCallHandler;
+import gw.lang.reflect.IParameterInfo;
+import gw.lang.reflect.IPlaceholder;
+import gw.lang.reflect.IPropertyAccessor;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.ReflectUtil;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.gs.IGosuClass;
+import gw.util.GosuExceptionUtil;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bootstrap and linkage for invokedynamic call sites emitted for dynamic member
+ * access when {@link gw.lang.reflect.gs.BytecodeOptions#isInvokeDynamic()} is on.
+ * <p/>
+ * Each site starts out linked to its own fallback, which performs the access
+ * through {@link GosuRuntimeMethods} and then, where the resolved feature depends
+ * only on the receiver's class (and the arguments' classes for dynamic calls),
+ * relinks the site with a class guard in front of a direct handle to the feature.
+ * Up to {@link CallSiteCache#MAX_POLYMORPHISM} guards are chained per site, after
+ * which the site stays megamorphic and misses go through the shared caches.
+ * Field access on an {@link Expando} is guarded on its shape rather than its class,
+ * and links to a load or store of the field's slot.
+ */
+public class GosuCallSiteLinker
+{
+  public static final Handle BOOTSTRAP =
+    new Handle( Opcodes.H_INVOKESTATIC,
+                GosuCallSiteLinker.class.getName().replace( '.', '/' ),
+                "bootstrap",
+                MethodType.methodType( CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class ).toMethodDescriptorString() );
+
+  private static final String RUNTIME_METHODS = GosuRuntimeMethods.class.getName();
+  private static final Set<String> LINKABLE_METHODS =
+    new HashSet<String>( Arrays.asList( "getProperty", "getPropertyDynamically", "setProperty", "setPropertyDynamically", "invokeMethodInfo" ) );
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodHandle IS_RECEIVER;
+  private static final MethodHandle IS_RECEIVER_AND_ARGS;
+  private static final MethodHandle GET_VALUE;
+  private static final MethodHandle SET_VALUE;
+  private static final MethodHandle HANDLE_CALL;
+  private static final MethodHandle NEW_PROXY;
+  private static final MethodHandle HAS_SHAPE;
+  private static final MethodHandle GET_SLOT;
+  private static final MethodHandle SET_SLOT;
+  static
+  {
+    try
+    {
+      IS_RECEIVER = LOOKUP.findStatic( GosuCallSiteLinker.class, "isReceiver", MethodType.methodType( boolean.class, Class.class, int.class, Object.class ) );
+      IS_RECEIVER_AND_ARGS = LOOKUP.findStatic( GosuCallSiteLinker.class, "isReceiverAndArgs", MethodType.methodType( boolean.class, Class.class, Class[].class, int.class, Object.class, Object[].class ) );
+      GET_VALUE = LOOKUP.findVirtual( IPropertyAccessor.class, "getValue", MethodType.methodType( Object.class, Object.class ) );
+      SET_VALUE = LOOKUP.findVirtual( IPropertyAccessor.class, "setValue", MethodType.methodType( void.class, Object.class, Object.class ) );
+      HANDLE_CALL = LOOKUP.findStatic( GosuCallSiteLinker.class, "handleCall", MethodType.methodType( Object.class, IParameterInfo[].class, IMethodCallHandler.class, Object.class, Object[].class ) );
+      NEW_PROXY = LOOKUP.findStatic( GosuCallSiteLinker.class, "newProxy", MethodType.methodType( Object.class, Constructor.class, Object.class ) );
+      HAS_SHAPE = LOOKUP.findStatic( GosuCallSiteLinker.class, "hasShape", MethodType.methodType( boolean.class, ExpandoShape.class, Object.class ) );
+      GET_SLOT = LOOKUP.findStatic( GosuCallSiteLinker.class, "getSlot", MethodType.methodType( Object.class, Object.class, int.class ) );
+      SET_SLOT = LOOKUP.findStatic( GosuCallSiteLinker.class, "setSlot", MethodType.methodType( void.class, Object.class, int.class, Object.class ) );
+    }
+    catch( Exception e )
+    {
+      throw GosuExceptionUtil.forceThrow( e );
+    }
+  }
+
+  /**
+   * @return True if a static call to <code>ownerName.methodName</code> is a dynamic
+   *   member access that can be emitted as an invokedynamic instruction instead.
+   */
+  public static boolean isLinkable( String ownerName, String methodName )
+  {
+    return RUNTIME_METHODS.equals( ownerName ) && LINKABLE_METHODS.contains( methodName );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  public static CallSite bootstrap( MethodHandles.Lookup caller, String name, MethodType type ) throws NoSuchMethodException, IllegalAccessException
+  {
+    DynamicCallSite site = new DynamicCallSite( type );
+    MethodHandle fallback = LOOKUP.findVirtual( DynamicCallSite.class, name, type ).bindTo( site );
+    site.setFallback( fallback );
+    return site;
+  }
+
+  static final class DynamicCallSite extends MutableCallSite
+  {
+    private MethodHandle _fallback;
+    private volatile int _iLinks;
+    private volatile int _iChecksum;
+
+    DynamicCallSite( MethodType type )
+    {
+      super( type );
+    }
+
+    private void setFallback( MethodHandle fallback )
+    {
+      _fallback = fallback;
+      _iChecksum = TypeSystem.getSingleRefreshChecksum();
+      setTarget( fallback );
+    }
+
+    private synchronized void link( MethodHandle guard, MethodHandle target, int iChecksum )
+    {
+      if( _iChecksum != iChecksum )
+      {
+        // The types linked so far are stale, start over
+        _iLinks = 0;
+        _iChecksum = iChecksum;
+        setTarget( _fallback );
+      }
+      if( _iLinks >= CallSiteCache.MAX_POLYMORPHISM )
+      {
+        return;
+      }
+      _iLinks++;
+      setTarget( MethodHandles.guardWithTest( guard, target, getTarget() ) );
+    }
+
+    /**
+     * @return False if the site already has as many guards as it may for the current types, so a
+     *   miss doesn't build handles only for link() to drop them
+     */
+    private boolean hasRoom()
+    {
+      return _iLinks < CallSiteCache.MAX_POLYMORPHISM || _iChecksum != TypeSystem.getSingleRefreshChecksum();
+    }
+
+    //
+    // Fallbacks, one per linkable method with the same name and signature
+    //
+
+    @SuppressWarnings("UnusedDeclaration")
+    public Object getProperty( Object root, IType type, String propertyName )
+    {
+      linkPropertyAccess( root, type, propertyName, false );
+      return GosuRuntimeMethods.getProperty( root, type, propertyName );
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public Object getPropertyDynamically( Object root, String propertyName )
+    {
+      linkPropertyAccess( root, null, propertyName, false );
+      return GosuRuntimeMethods.getPropertyDynamically( root, propertyName );
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setProperty( Object root, IType type, String propertyName, Object value )
+    {
+      linkPropertyAccess( root, type, propertyName, true );
+      GosuRuntimeMethods.setProperty( root, type, propertyName, value );
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setPropertyDynamically( Object root, String propertyName, Object value )
+    {
+      linkPropertyAccess( root, null, propertyName, true );
+      GosuRuntimeMethods.setPropertyDynamically( root, propertyName, value );
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public Object invokeMethodInfo( IType type, String methodName, IType[] parameterTypes, Object root, Object[] args )
+    {
+      linkMethodCall( type, methodName, parameterTypes, root, args );
+      return GosuRuntimeMethods.invokeMethodInfo( type, methodName, parameterTypes, root, args );
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public Object constructProxy( Object root, String iface )
+    {
+      linkProxy( root, iface );
+      return IRMethodCallExpressionCompiler.constructProxy( root, iface );
+    }
+
+    //
+    // Linkage
+    //
+
+    /**
+     * @param type The declared type of the root, or null if it is always resolved from the root
+     */
+    private void linkPropertyAccess( Object root, IType type, String propertyName, boolean bSetter )
+    {
+      if( !hasRoom() )
+      {
+        return;
+      }
+      if( root != null && root.getClass() == Expando.class )
+      {
+        linkExpandoAccess( (Expando)root, propertyName, bSetter );
+        return;
+      }
+      if( !isLinkableReceiver( root ) )
+      {
+        return;
+      }
+      int iChecksum = TypeSystem.getSingleRefreshChecksum();
+      IType receiverType = type;
+      if( receiverType == null || GosuRuntimeMethods.isDynamic( receiverType ) )
+      {
+        receiverType = TypeSystem.getFromObject( root );
+        if( receiverType.isParameterizedType() )
+        {
+          // Instances of the same class may have different parameterizations
+          return;
+        }
+      }
+
+      GosuRuntimeMethods.PropertyTarget target = GosuRuntimeMethods.getPropertyTarget( receiverType, propertyName, bSetter );
+      if( target._dispatcher != null || target._property == null )
+      {
+        return;
+      }
+
+      MethodType siteType = type();
+      MethodHandle access = (bSetter ? SET_VALUE : GET_VALUE).bindTo( target._property.getAccessor() );
+      access = dropMiddle( access, siteType );
+      MethodHandle guard = MethodHandles.insertArguments( IS_RECEIVER, 0, root.getClass(), iChecksum );
+      guard = MethodHandles.dropArguments( guard, 1, siteType.parameterList().subList( 1, siteType.parameterCount() ) );
+      link( guard, access, iChecksum );
+    }
+
+    /**
+     * Expandos of the same shape keep a field in the same slot, so guard on the shape
+     * and go straight to the slot. Only fields the expando already has are linked, and
+     * not on a dictionary-mode shape, whose slots move as the expando changes.
+     */
+    private void linkExpandoAccess( Expando root, String propertyName, boolean bSetter )
+    {
+      ExpandoShape shape = root.getShape();
+      if( shape.isDictionaryMode() )
+      {
+        return;
+      }
+      int iSlot = shape.indexOf( propertyName );
+      if( iSlot < 0 )
+      {
+        return;
+      }
+      MethodType siteType = type();
+      MethodHandle access = MethodHandles.insertArguments( bSetter ? SET_SLOT : GET_SLOT, 1, iSlot );
+      access = dropMiddle( access, siteType );
+      MethodHandle guard = HAS_SHAPE.bindTo( shape );
+      guard = MethodHandles.dropArguments( guard, 1, siteType.parameterList().subList( 1, siteType.parameterCount() ) );
+      link( guard, access, TypeSystem.getSingleRefreshChecksum() );
+    }
+
+    private void linkMethodCall( IType type, String methodName, IType[] parameterTypes, Object root, Object[] args )
+    {
+      if( !hasRoom() || !isLinkableReceiver( root ) || args == null )
+      {
+        return;
+      }
+      int iChecksum = TypeSystem.getSingleRefreshChecksum();
+      boolean bDynamicType = GosuRuntimeMethods.isDynamic( type );
+      IType receiverType = type;
+      IType[] argTypes;
+      Class[] argClasses = null;
+      if( bDynamicType )
+      {
+        receiverType = TypeSystem.getFromObject( root );
+        if( receiverType.isParameterizedType() )
+        {
+          return;
+        }
+        // Overload resolution depends on the runtime types of the args, so guard on them too
+        argClasses = new Class[args.length];
+        for( int i = 0; i < args.length; i++ )
+        {
+          Object arg = args[i];
+          if( !isLinkableReceiver( arg ) || TypeSystem.getFromObject( arg ).isParameterizedType() )
+          {
+            return;
+          }
+          argClasses[i] = arg.getClass();
+        }
+        argTypes = ReflectUtil.extractRuntimeTypes( args );
+      }
+      else
+      {
+        argTypes = GosuRuntimeMethods.replaceDynamicTypesWithRuntimeTypes( parameterTypes, args );
+        if( argTypes != parameterTypes )
+        {
+          // Some params are dynamic, so the method depends on the args
+          return;
+        }
+      }
+
+      GosuRuntimeMethods.MethodTarget target = GosuRuntimeMethods.getMethodTarget( receiverType, methodName, argTypes, bDynamicType );
+      if( target._invoker != null || target._method == null )
+      {
+        return;
+      }
+
+      MethodHandle call = MethodHandles.insertArguments( HANDLE_CALL, 0,
+                                                         bDynamicType ? target._method.getParameters() : null,
+                                                         target._method.getCallHandler() );
+      call = MethodHandles.dropArguments( call, 0, IType.class, String.class, IType[].class );
+      MethodHandle guard = MethodHandles.insertArguments( IS_RECEIVER_AND_ARGS, 0, root.getClass(), argClasses, iChecksum );
+      guard = MethodHandles.dropArguments( guard, 0, IType.class, String.class, IType[].class );
+      link( guard, call, iChecksum );
+    }
+
+    private void linkProxy( Object root, String iface )
+    {
+      if( !hasRoom() || !isLinkableReceiver( root ) || root instanceof IGosuClass )
+      {
+        return;
+      }
+      int iChecksum = TypeSystem.getSingleRefreshChecksum();
+      Constructor ctor = IRMethodCallExpressionCompiler.getProxyConstructor( iface, root.getClass(), false );
+      MethodHandle construct = MethodHandles.dropArguments( NEW_PROXY.bindTo( ctor ), 1, String.class );
+      MethodHandle guard = MethodHandles.insertArguments( IS_RECEIVER, 0, root.getClass(), iChecksum );
+      guard = MethodHandles.dropArguments( guard, 1, String.class );
+      link( guard, construct, iChecksum );
+    }
+
+    /**
+     * Adapts a handle taking (root[, value]) to the site's (root, [type,] name[, value]) signature
+     */
+    private static MethodHandle dropMiddle( MethodHandle access, MethodType siteType )
+    {
+      int iDropped = siteType.parameterCount() - access.type().parameterCount();
+      return MethodHandles.dropArguments( access, 1, siteType.parameterList().subList( 1, 1 + iDropped ) );
+    }
+  }
+
+  /**
+   * Only link receivers whose type is determined by their class alone. Types and
+   * classes as values resolve to meta types, and expandos handle their own access.
+   */
+  private static boolean isLinkableReceiver( Object root )
+  {
+    return root != null &&
+           !(root instanceof IExpando) &&
+           !(root instanceof IType) &&
+           !(root instanceof Class) &&
+           !(root instanceof IPlaceholder);
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static boolean hasShape( ExpandoShape shape, Object root )
+  {
+    return root != null && root.getClass() == Expando.class && ((Expando)root).getShape() == shape;
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static Object getSlot( Object root, int iSlot )
+  {
+    return ((Expando)root).getSlot( iSlot );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static void setSlot( Object root, int iSlot, Object value )
+  {
+    ((Expando)root).setSlot( iSlot, value );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static boolean isReceiver( Class cls, int iChecksum, Object root )
+  {
+    return root != null && root.getClass() == cls && iChecksum == TypeSystem.getSingleRefreshChecksum();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static boolean isReceiverAndArgs( Class cls, Class[] argClasses, int iChecksum, Object root, Object[] args )
+  {
+    if( !isReceiver( cls, iChecksum, root ) )
+    {
+      return false;
+    }
+    if( argClasses == null )
+    {
+      return true;
+    }
+    if( args == null || args.length != argClasses.length )
+    {
+      return false;
+    }
+    for( int i = 0; i < args.length; i++ )
+    {
+      if( args[i] == null || args[i].getClass() != argClasses[i] )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static Object handleCall( IParameterInfo[] params, IMethodCallHandler handler, Object root, Object[] args )
+  {
+    if( params != null )
+    {
+      args = ReflectUtil.coerceArgsIfNecessary( params, args );
+    }
+    return handler.handleCall( root, args );
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static Object newProxy( Constructor ctor, Object root )
+  {
+    try
+    {
+      return ctor.newInstance( root );
+    }
+    catch( Exception e )
+    {
+      throw new RuntimeException( e );
+    }
+  }
+}
@@ -5,9 +5,9 @@
 package gw.internal.gosu.runtime;
 
 import gw.config.CommonServices;
-import gw.internal.gosu.ir.transform.AbstractElementTransformer;
 import gw.internal.gosu.parser.TypeLord;
 import gw.lang.parser.StandardCoercionManager;
+import gw.lang.reflect.AbstractTypeSystemListener;
 import gw.lang.reflect.IExpando;
 import gw.lang.reflect.IMethodInfo;
 import gw.lang.reflect.IPlaceholder;
@@ -15,6 +15,8 @@ import gw.lang.reflect.IPropertyInfo;
 import gw.lang.reflect.IRelativeTypeInfo;
 import gw.lang.reflect.IType;
 import gw.lang.reflect.ITypeInfo;
+import gw.lang.reflect.ITypeLoaderListener;
+import gw.lang.reflect.RefreshRequest;
 import gw.lang.reflect.ReflectUtil;
 import gw.lang.reflect.TypeSystem;
 import gw.lang.reflect.gs.IGosuClass;
@@ -22,11 +24,18 @@ import gw.lang.reflect.java.IJavaType;
 import gw.lang.reflect.java.JavaTypes;
 import gw.util.GosuExceptionUtil;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GosuRuntimeMethods {
 
+  // past this many member names, the sites are dropped rather than letting names used once pile up
+  static final int MAX_SITES = 4096;
+
+  private static final ConcurrentHashMap<String, CallSiteCache<PropertyTarget>> GET_PROPERTY_SITES = new ConcurrentHashMap<String, CallSiteCache<PropertyTarget>>();
+  private static final ConcurrentHashMap<String, CallSiteCache<PropertyTarget>> SET_PROPERTY_SITES = new ConcurrentHashMap<String, CallSiteCache<PropertyTarget>>();
+  private static final ConcurrentHashMap<String, CallSiteCache<MethodTarget>> INVOKE_METHOD_SITES = new ConcurrentHashMap<String, CallSiteCache<MethodTarget>>();
+  private static volatile ITypeLoaderListener g_refreshListener;
+
   public static Object getProperty( Object root, IType type, String propertyName )
   {
     if( root != null && IExpando.class.isAssignableFrom( root.getClass() ) )
@@ -39,16 +48,26 @@ public class GosuRuntimeMethods {
       type = TypeSystem.getFromObject( root );
     }
 
-    Object ret = invokePropertyGetter( "$getProperty", root, type, propertyName );
+    PropertyTarget target = getPropertyTarget( type, propertyName, false );
+
+    Object ret = target._dispatcher == null
+                 ? IPlaceholder.UNHANDLED
+                 : target._dispatcher.getCallHandler().handleCall( root, propertyName );
     if( ret != IPlaceholder.UNHANDLED )
     {
       return ret;
     }
 
-    IPropertyInfo propertyInfo = getPropertyInfo( root, type, propertyName );
+    IPropertyInfo propertyInfo = target._property;
     if( propertyInfo == null )
     {
-      ret = invokePropertyGetter( "$getMissingProperty", root, type, propertyName );
+      propertyInfo = getPropertyInfo( root, type, propertyName );
+    }
+    if( propertyInfo == null )
+    {
+      ret = target._missing == null
+            ? IPlaceholder.UNHANDLED
+            : target._missing.getCallHandler().handleCall( root, propertyName );
       if( ret == IPlaceholder.UNHANDLED )
       {
         throw new IllegalArgumentException( "No property named " + propertyName + " found on type " + type.getName() );
@@ -58,27 +77,105 @@ public class GosuRuntimeMethods {
     return propertyInfo.getAccessor().getValue( root );
   }
 
-  private static boolean isDynamic( IType type )
+  static boolean isDynamic( IType type )
   {
     return (type instanceof IPlaceholder && ((IPlaceholder)type).isPlaceholder()) ||
            (type instanceof IGosuClass && ((IGosuClass)type).isStructure());
   }
 
-  private static Object invokePropertyGetter( String dispatchName, Object root, IType type, String propertyName )
+  static PropertyTarget getPropertyTarget( IType type, String propertyName, boolean bSetter )
+  {
+    CallSiteCache<PropertyTarget> site = getSite( bSetter ? SET_PROPERTY_SITES : GET_PROPERTY_SITES, propertyName );
+    PropertyTarget target = site.get( type, null );
+    if( target == null )
+    {
+      target = bSetter
+               ? new PropertyTarget( findDispatcher( type, "$setProperty", JavaTypes.STRING(), JavaTypes.OBJECT() ),
+                                     ReflectUtil.findProperty( type, propertyName ),
+                                     findDispatcher( type, "$setMissingProperty", JavaTypes.STRING(), JavaTypes.OBJECT() ) )
+               : new PropertyTarget( findDispatcher( type, "$getProperty", JavaTypes.STRING() ),
+                                     ReflectUtil.findProperty( type, propertyName ),
+                                     findDispatcher( type, "$getMissingProperty", JavaTypes.STRING() ) );
+      site.put( type, null, target );
+    }
+    return target;
+  }
+
+  private static IMethodInfo findDispatcher( IType type, String dispatchName, IType... paramTypes )
   {
     ITypeInfo typeInfo = type.getTypeInfo();
-    IMethodInfo method;
     if( typeInfo instanceof IRelativeTypeInfo )
     {
-      method = ((IRelativeTypeInfo) typeInfo).getMethod( type, dispatchName, JavaTypes.STRING() );
+      return ((IRelativeTypeInfo)typeInfo).getMethod( type, dispatchName, paramTypes );
+    }
+    return typeInfo.getMethod( dispatchName, paramTypes );
+  }
+
+  private static <T> CallSiteCache<T> getSite( ConcurrentHashMap<String, CallSiteCache<T>> sites, String memberName )
+  {
+    CallSiteCache<T> site = sites.get( memberName );
+    if( site == null )
+    {
+      listenToTypeSystemRefresh();
+      if( sites.size() >= MAX_SITES )
+      {
+        sites.clear();
+      }
+      site = new CallSiteCache<T>();
+      CallSiteCache<T> existing = sites.putIfAbsent( memberName, site );
+      if( existing != null )
+      {
+        site = existing;
+      }
+    }
+    return site;
+  }
+
+  private static void listenToTypeSystemRefresh()
+  {
+    if( g_refreshListener != null )
+    {
+      return;
+    }
+    TypeSystem.lock();
+    try
+    {
+      if( g_refreshListener != null )
+      {
+        return;
+      }
+      TypeSystem.addTypeLoaderListenerAsWeakRef(
+        g_refreshListener = new AbstractTypeSystemListener()
+        {
+          @Override
+          public void refreshedTypes( RefreshRequest request )
+          {
+            clearSites();
+          }
+
+          @Override
+          public void refreshed()
+          {
+            clearSites();
+          }
+        } );
     }
-    else
+    finally
     {
-      method = typeInfo.getMethod( dispatchName, JavaTypes.STRING() );
+      TypeSystem.unlock();
     }
-    return method == null
-           ? IPlaceholder.UNHANDLED
-           : method.getCallHandler().handleCall( root, propertyName );
+  }
+
+  static void clearSites()
+  {
+    GET_PROPERTY_SITES.clear();
+    SET_PROPERTY_SITES.clear();
+    INVOKE_METHOD_SITES.clear();
+  }
+
+  static int getSiteCount()
+  {
+    return GET_PROPERTY_SITES.size() + SET_PROPERTY_SITES.size() + INVOKE_METHOD_SITES.size();
   }
 
   public static Object getPropertyDynamically(Object rootObject, String propertyName) {
@@ -101,16 +198,26 @@ public class GosuRuntimeMethods {
       type = TypeSystem.getFromObject( root );
     }
 
-    Object ret = invokePropertySetter( "$setProperty", root, type, propertyName );
+    PropertyTarget target = getPropertyTarget( type, propertyName, true );
+
+    Object ret = target._dispatcher == null
+                 ? IPlaceholder.UNHANDLED
+                 : target._dispatcher.getCallHandler().handleCall( root, propertyName, new Object[0] );
     if( ret != IPlaceholder.UNHANDLED )
     {
       return;
     }
 
-    IPropertyInfo propertyInfo = getPropertyInfo( root, type, propertyName );
+    IPropertyInfo propertyInfo = target._property;
     if( propertyInfo == null )
     {
-      ret = invokePropertySetter( "$setMissingProperty", root, type, propertyName );
+      propertyInfo = getPropertyInfo( root, type, propertyName );
+    }
+    if( propertyInfo == null )
+    {
+      ret = target._missing == null
+            ? IPlaceholder.UNHANDLED
+            : target._missing.getCallHandler().handleCall( root, propertyName, new Object[0] );
       if( ret == IPlaceholder.UNHANDLED )
       {
         throw new IllegalArgumentException( "No property named " + propertyName + " found on type " + type.getName() );
@@ -120,23 +227,6 @@ public class GosuRuntimeMethods {
     propertyInfo.getAccessor().setValue( root, value );
   }
 
-  private static Object invokePropertySetter( String dispatchName, Object root, IType type, String propertyName, Object... args )
-  {
-    ITypeInfo typeInfo = type.getTypeInfo();
-    IMethodInfo method;
-    if( typeInfo instanceof IRelativeTypeInfo )
-    {
-      method = ((IRelativeTypeInfo) typeInfo).getMethod( type, dispatchName, JavaTypes.STRING(), JavaTypes.OBJECT() );
-    }
-    else
-    {
-      method = typeInfo.getMethod( dispatchName, JavaTypes.STRING(), JavaTypes.OBJECT() );
-    }
-    return method == null
-           ? IPlaceholder.UNHANDLED
-           : method.getCallHandler().handleCall( root, propertyName, args );
-  }
-
   public static void setPropertyDynamically(Object rootObject, String propertyName, Object value) {
     if (rootObject == null) {
       throw new NullPointerException();
@@ -183,19 +273,7 @@ public class GosuRuntimeMethods {
 
   public static Object invokeMethod( Class c, String methodName, Class[] argTypes, Object root, Object[] args )
   {
-    Method declaredMethod = AbstractElementTransformer.getDeclaredMethod( c, methodName, argTypes );
-    try
-    {
-      return declaredMethod.invoke( root, args );
-    }
-    catch( IllegalAccessException e )
-    {
-      throw GosuExceptionUtil.forceThrow( e );
-    }
-    catch( InvocationTargetException e )
-    {
-      throw GosuExceptionUtil.forceThrow( e.getTargetException() );
-    }
+    return DeclaredMethodCache.invoke( c, methodName, argTypes, root, args );
   }
 
   public static Object invokeMethodInfo( IType type, String methodName, IType[] parameterTypes, Object root, Object[] args )
@@ -211,35 +289,25 @@ public class GosuRuntimeMethods {
       type = TypeSystem.getFromObject( root );
     }
 
-    Object ret = invokeMethodInvoker( "$invokeMethod", root, type, methodName, args );
+    IType[] argTypes = bDynamicType
+                       ? ReflectUtil.extractRuntimeTypes( args )
+                       : replaceDynamicTypesWithRuntimeTypes( parameterTypes, args );
+    MethodTarget target = getMethodTarget( type, methodName, argTypes, bDynamicType );
+
+    Object ret = target._invoker == null
+                 ? IPlaceholder.UNHANDLED
+                 : target._invoker.getCallHandler().handleCall( root, methodName, args );
     if( ret != IPlaceholder.UNHANDLED )
     {
       return ret;
     }
 
-    ITypeInfo typeInfo = type.getTypeInfo();
-    IMethodInfo method;
-    if( bDynamicType )
-    {
-      IType[] runtimeTypes = ReflectUtil.extractRuntimeTypes( args );
-      method = ReflectUtil.findCallableMethod( methodName, runtimeTypes, type );
-    }
-    else
-    {
-      parameterTypes = replaceDynamicTypesWithRuntimeTypes( parameterTypes, args );
-      if( typeInfo instanceof IRelativeTypeInfo )
-      {
-        method = ((IRelativeTypeInfo)typeInfo).getMethod( type, methodName, parameterTypes );
-      }
-      else
-      {
-        method = typeInfo.getMethod( methodName, parameterTypes );
-      }
-    }
-
+    IMethodInfo method = target._method;
     if( method == null )
     {
-      ret = invokeMethodInvoker( "$invokeMissingMethod", root, type, methodName, args );
+      ret = target._missing == null
+            ? IPlaceholder.UNHANDLED
+            : target._missing.getCallHandler().handleCall( root, methodName, args );
       if( ret == IPlaceholder.UNHANDLED )
       {
         throw new IllegalStateException( "Could not find method for " + methodName + " on " + type.getName() + " with specified param types" );
@@ -253,7 +321,35 @@ public class GosuRuntimeMethods {
     return method.getCallHandler().handleCall( root, args );
   }
 
-  private static IType[] replaceDynamicTypesWithRuntimeTypes( IType[] parameterTypes, Object[] args ) {
+  static MethodTarget getMethodTarget( IType type, String methodName, IType[] argTypes, boolean bDynamicType )
+  {
+    CallSiteCache<MethodTarget> site = getSite( INVOKE_METHOD_SITES, methodName );
+    MethodTarget target = site.get( type, argTypes );
+    if( target == null )
+    {
+      target = new MethodTarget( findDispatcher( type, "$invokeMethod", JavaTypes.STRING(), JavaTypes.OBJECT().getArrayType() ),
+                                 findMethod( type, methodName, argTypes, bDynamicType ),
+                                 findDispatcher( type, "$invokeMissingMethod", JavaTypes.STRING(), JavaTypes.OBJECT().getArrayType() ) );
+      site.put( type, argTypes, target );
+    }
+    return target;
+  }
+
+  private static IMethodInfo findMethod( IType type, String methodName, IType[] argTypes, boolean bDynamicType )
+  {
+    if( bDynamicType )
+    {
+      return ReflectUtil.findCallableMethod( methodName, argTypes, type );
+    }
+    ITypeInfo typeInfo = type.getTypeInfo();
+    if( typeInfo instanceof IRelativeTypeInfo )
+    {
+      return ((IRelativeTypeInfo)typeInfo).getMethod( type, methodName, argTypes );
+    }
+    return typeInfo.getMethod( methodName, argTypes );
+  }
+
+  static IType[] replaceDynamicTypesWithRuntimeTypes( IType[] parameterTypes, Object[] args ) {
     if( parameterTypes ==  null ) {
       return null;
     }
@@ -271,23 +367,6 @@ public class GosuRuntimeMethods {
     return ret == null ? parameterTypes : ret;
   }
 
-  private static Object invokeMethodInvoker( String dispatchName, Object root, IType type, String methodName, Object... args )
-  {
-    ITypeInfo typeInfo = type.getTypeInfo();
-    IMethodInfo method;
-    if( typeInfo instanceof IRelativeTypeInfo )
-    {
-      method = ((IRelativeTypeInfo)typeInfo).getMethod( type, dispatchName, JavaTypes.STRING(), JavaTypes.OBJECT().getArrayType() );
-    }
-    else
-    {
-      method = typeInfo.getMethod( dispatchName, JavaTypes.STRING(), JavaTypes.OBJECT().getArrayType() );
-    }
-    return method == null
-           ? IPlaceholder.UNHANDLED
-           : method.getCallHandler().handleCall( root, methodName, args );
-  }
-
   public static Class lookUpClass( String className ) {
     if (className.startsWith("L") && className.endsWith(";")) {
       className = className.substring(1, className.length() -1 );
@@ -430,4 +509,42 @@ public class GosuRuntimeMethods {
     System.out.println( strError );
     throw new Error( String.valueOf( strError ) );
   }
+
+  /**
+   * The resolved dispatch for a dynamic property access on a given receiver type:
+   * the type's <code>$get/$setProperty</code> dispatcher, the property itself and
+   * the <code>$get/$setMissingProperty</code> fallback, any of which may be null.
+   */
+  static final class PropertyTarget
+  {
+    final IMethodInfo _dispatcher;
+    final IPropertyInfo _property;
+    final IMethodInfo _missing;
+
+    PropertyTarget( IMethodInfo dispatcher, IPropertyInfo property, IMethodInfo missing )
+    {
+      _dispatcher = dispatcher;
+      _property = property;
+      _missing = missing;
+    }
+  }
+
+  /**
+   * The resolved dispatch for a dynamic method call on a given receiver type and
+   * argument types: the <code>$invokeMethod</code> dispatcher, the method itself
+   * and the <code>$invokeMissingMethod</code> fallback, any of which may be null.
+   */
+  static final class MethodTarget
+  {
+    final IMethodInfo _invoker;
+    final IMethodInfo _method;
+    final IMethodInfo _missing;
+
+    MethodTarget( IMethodInfo invoker, IMethodInfo method, IMethodInfo missing )
+    {
+      _invoker = invoker;
+      _method = method;
+      _missing = missing;
+    }
+  }
 }
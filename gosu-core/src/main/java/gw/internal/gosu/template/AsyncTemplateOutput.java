@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.template;
+
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.module.IModule;
+import gw.util.concurrent.BoundedHandoff;
+import gw.util.concurrent.DaemonExecutors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The output of a template rendering on another thread, see TemplateRenderer.renderAsync(). The template
+ * renders as UTF-8 into a bounded queue of chunks that this stream reads as they arrive. A chunk is queued
+ * whenever the template's output buffer fills and at each <%@ flush %> directive, so a reader sees the
+ * first output long before the template is done. When {@link #CHUNKS_SYSTEM_PROP} chunks are waiting to be
+ * read, the template blocks until the reader catches up, so a slow reader holds a bounded amount of output
+ * in memory.
+ * <p/>
+ * Templates render on a pool of {@link #THREADS_SYSTEM_PROP} daemon threads; renders beyond that wait for
+ * a thread, and reading their output blocks until they start.
+ * <p/>
+ * An error rendering the template is thrown from read() once the output before it has been read. Closing
+ * the stream before the end of the output stops the template, as does dropping the stream without closing
+ * it once it has been garbage collected.
+ */
+public class AsyncTemplateOutput extends InputStream implements ReadableByteChannel
+{
+  /** System property for the number of output chunks that may wait for the reader */
+  public static final String CHUNKS_SYSTEM_PROP = "gosu.template.async.chunks";
+  /** System property for the number of threads rendering templates */
+  public static final String THREADS_SYSTEM_PROP = "gosu.template.async.threads";
+
+  private static final int CHUNKS = Integer.getInteger( CHUNKS_SYSTEM_PROP, 16 );
+  private static final ExecutorService EXECUTOR = DaemonExecutors.newBoundedPool( "AsyncTemplateOutput", THREADS_SYSTEM_PROP );
+
+  private final Producer _producer;
+  private byte[] _chunk;
+  private int _iPos;
+
+  private AsyncTemplateOutput( Renderer renderer )
+  {
+    _producer = new Producer( this, renderer );
+  }
+
+  /**
+   * Renders a template to the stream it is given.
+   */
+  interface Renderer
+  {
+    void render( OutputStream out );
+  }
+
+  /**
+   * Runs the render on a pooled thread, in the caller's module.
+   *
+   * @return The stream to read the render's output from
+   */
+  static AsyncTemplateOutput start( Renderer renderer )
+  {
+    AsyncTemplateOutput output = new AsyncTemplateOutput( renderer );
+    EXECUTOR.execute( output._producer );
+    return output;
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    if( !nextChunk() )
+    {
+      return -1;
+    }
+    return _chunk[_iPos++] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] bytes, int iOff, int iLen ) throws IOException
+  {
+    if( iLen == 0 )
+    {
+      return 0;
+    }
+    if( !nextChunk() )
+    {
+      return -1;
+    }
+    int iRead = Math.min( iLen, _chunk.length - _iPos );
+    System.arraycopy( _chunk, _iPos, bytes, iOff, iRead );
+    _iPos += iRead;
+    return iRead;
+  }
+
+  @Override
+  public int read( ByteBuffer dst ) throws IOException
+  {
+    if( !dst.hasRemaining() )
+    {
+      return 0;
+    }
+    if( !nextChunk() )
+    {
+      return -1;
+    }
+    int iRead = Math.min( dst.remaining(), _chunk.length - _iPos );
+    dst.put( _chunk, _iPos, iRead );
+    _iPos += iRead;
+    return iRead;
+  }
+
+  @Override
+  public int available()
+  {
+    return _producer._handoff.isClosed() || _chunk == null ? 0 : _chunk.length - _iPos;
+  }
+
+  private boolean nextChunk() throws IOException
+  {
+    if( _producer._handoff.isClosed() )
+    {
+      throw new IOException( "Stream closed" );
+    }
+    while( _chunk == null || _iPos == _chunk.length )
+    {
+      try
+      {
+        _chunk = _producer._handoff.take();
+      }
+      catch( InterruptedException e )
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException( "Interrupted while rendering template" );
+      }
+      catch( CancellationException e )
+      {
+        throw new IOException( "Stream closed" );
+      }
+      catch( ExecutionException e )
+      {
+        Throwable t = e.getCause();
+        throw new IOException( t.getMessage(), t );
+      }
+      _iPos = 0;
+      if( _chunk == null )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isOpen()
+  {
+    return !_producer._handoff.isClosed();
+  }
+
+  /**
+   * Stops the template if it is still rendering and discards its unread output. A read blocked on
+   * another thread throws an IOException.
+   */
+  @Override
+  public void close()
+  {
+    _producer._handoff.close();
+  }
+
+  /**
+   * Runs the render and queues its output for the stream. Only the handoff refers to the stream, weakly,
+   * so a stream its reader has dropped can be collected, which stops the render.
+   */
+  private static class Producer implements Runnable
+  {
+    private final BoundedHandoff<byte[]> _handoff;
+    private final Renderer _renderer;
+    private final IModule _module;
+
+    Producer( AsyncTemplateOutput reader, Renderer renderer )
+    {
+      _handoff = new BoundedHandoff<byte[]>( reader, CHUNKS );
+      _renderer = renderer;
+      _module = TypeSystem.getCurrentModule();
+    }
+
+    public void run()
+    {
+      if( _handoff.isClosed() )
+      {
+        // closed while waiting for a thread
+        return;
+      }
+      TypeSystem.pushModule( _module );
+      try
+      {
+        _renderer.render( new Sink() );
+        _handoff.end();
+      }
+      catch( Throwable t )
+      {
+        _handoff.fail( t );
+      }
+      finally
+      {
+        TypeSystem.popModule( _module );
+      }
+    }
+
+    /**
+     * The stream the render writes to, which queues each write as a chunk.
+     */
+    private class Sink extends OutputStream
+    {
+      @Override
+      public void write( int b )
+      {
+        _handoff.put( new byte[]{(byte)b} );
+      }
+
+      @Override
+      public void write( byte[] bytes, int iOff, int iLen )
+      {
+        if( iLen > 0 )
+        {
+          // the writer reuses its buffer
+          _handoff.put( Arrays.copyOfRange( bytes, iOff, iOff + iLen ) );
+        }
+      }
+    }
+  }
+}
@@ -24,7 +24,6 @@ import gw.lang.reflect.java.IJavaType;
 import gw.lang.reflect.java.JavaTypes;
 
 import java.io.StringReader;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -120,7 +119,10 @@ public class GosuTemplateType extends GosuProgram implements IGosuTemplateIntern
           TemplateRenderFunctionSymbol forwardFs;
           try
           {
-            forwardFs = new TemplateRenderFunctionSymbol( pThis, symTable, dfs, mi, this, getParameterTypes( "render".equals( strMethodName ) ) );
+            // the template's render methods take the renderer's output argument, if any, and then the template's params
+            IParameterInfo[] rendererParams = mi.getParameters();
+            IType outputType = rendererParams.length == 3 ? rendererParams[1].getFeatureType() : null;
+            forwardFs = new TemplateRenderFunctionSymbol( pThis, symTable, dfs, mi, this, getParameterTypes( outputType ) );
           }
           finally
           {
@@ -133,14 +135,18 @@ public class GosuTemplateType extends GosuProgram implements IGosuTemplateIntern
     }
   }
 
-  public IType[] getParameterTypes( boolean bWithWriter )
+  /**
+   * @param outputType The type of the Writer or OutputStream the template renders to, or null if it
+   *   renders to a String
+   */
+  public IType[] getParameterTypes( IType outputType )
   {
     ITemplateGenerator templateGenerator = getTemplateGenerator();
     List<ISymbol> params = templateGenerator.getParameters();
     List<IType> paramTypes = new ArrayList<IType>();
-    if( bWithWriter )
+    if( outputType != null )
     {
-      paramTypes.add( JavaTypes.getJreType( Writer.class ) );
+      paramTypes.add( outputType );
     }
     for( int i = 0; i < params.size(); i++ )
     {
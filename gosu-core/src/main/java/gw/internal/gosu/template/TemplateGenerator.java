@@ -57,6 +57,7 @@ import gw.util.concurrent.LockingLazyVar;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -74,6 +75,9 @@ import java.util.Set;
  * Works much like JSP -- uses <% script %> for scriptlets and <%= expr %> for expressions.
  * Also supports JSP comments like this: <%-- comment here --%>
  * <p/>
+ * A <%@ flush %> directive flushes the output rendered so far, so that a large template can be sent in
+ * chunks as it renders.
+ * <p/>
  * Templates can be any type e.g., XML, HTML, text, whatever.
  */
 public class TemplateGenerator implements ITemplateGenerator
@@ -89,6 +93,7 @@ public class TemplateGenerator implements ITemplateGenerator
   public static final String COMMENT_END = "--%>";
   public static final String ALTERNATE_EXPRESSION_BEGIN = "${";
   public static final String ALTERNATE_EXPRESSION_END = "}";
+  public static final String FLUSH_DIRECTIVE = "flush";
 
   public static final char ESCAPED_SCRIPTLET_MARKER = '\uffe0';
   public static final char ESCAPED_SCRIPTLET_BEGIN_CHAR = '\uffe1';
@@ -133,6 +138,8 @@ public class TemplateGenerator implements ITemplateGenerator
     });
   }
     
+  private static final String FLUSH_METHOD = "flushContent";
+
   private static ThreadLocal<Stack<RuntimeData>> g_runtimeData = new ThreadLocal<Stack<RuntimeData>>();
   public static final int SUBSTR_CHUNKSIZE = 2048;
 
@@ -148,6 +155,10 @@ public class TemplateGenerator implements ITemplateGenerator
   private boolean _hasOwnSymbolScope;
   private ContextInferenceManager _ctxInferenceMgr;
   private boolean _bStringLiteralTemplate;
+  // start and end pairs of the source ranges printRange() writes, found by transformTemplate()
+  private int[] _staticRanges = new int[32];
+  private int _iStaticRanges;
+  private EncodedText _encodedText;
 
   /**
    * Generates a template of any format having embedded Gosu.
@@ -272,6 +283,7 @@ public class TemplateGenerator implements ITemplateGenerator
             if (!exceptions.isEmpty()) {
               throw exceptions.get(0);
             }
+            _encodedText = new EncodedText( _scriptStr, _staticRanges, _iStaticRanges );
             _program = compile( new java.util.Stack<IScriptPartId>(), strCompiledSource, symTable, new HashMap<String, Set<IFunctionSymbol>>(), null, null, null );
             _compileTimeSymbolTable = symTable.copy();
           }
@@ -326,6 +338,7 @@ public class TemplateGenerator implements ITemplateGenerator
           if (!exceptions.isEmpty()) {
             throw exceptions.get(0);
           }
+          _encodedText = new EncodedText( _scriptStr, _staticRanges, _iStaticRanges );
           for (ISymbol param : _params) {
             Symbol s = new Symbol( param.getName(), param.getType(), null );
             symTable.putSymbol(s);
@@ -502,6 +515,7 @@ public class TemplateGenerator implements ITemplateGenerator
   private String transformTemplate(String strSource, List<TemplateParseException> exceptions)
   {
     _params.clear();
+    _iStaticRanges = 0;
     StringBuilder sbTarget = new StringBuilder( strSource.length() );
     int iIndex = 0;
     while( true )
@@ -549,6 +563,9 @@ public class TemplateGenerator implements ITemplateGenerator
               if( bExpression ) {
                 addExpression( sbTarget, strScript );
               }
+              else if( bDirective && FLUSH_DIRECTIVE.equals( strScript.trim() ) ) {
+                addFlush( sbTarget );
+              }
               else if( bDirective ) {
                 try {
                   int iLineNumber = GosuStringUtil.getLineNumberForIndex( strSource, iIndex );
@@ -701,6 +718,12 @@ public class TemplateGenerator implements ITemplateGenerator
     }
     else if( iEnd - iStart > 0 )
     {
+      if( _iStaticRanges == _staticRanges.length )
+      {
+        _staticRanges = Arrays.copyOf( _staticRanges, _staticRanges.length * 2 );
+      }
+      _staticRanges[_iStaticRanges++] = iStart;
+      _staticRanges[_iStaticRanges++] = iEnd;
       sbTarget.append( PRINT_RANGE_METHOD )
         .append( "(" )
         .append( iStart ).append( "," )
@@ -717,6 +740,11 @@ public class TemplateGenerator implements ITemplateGenerator
     }
   }
 
+  private void addFlush( StringBuilder strTarget )
+  {
+    strTarget.append( TemplateGenerator.class.getName() ).append( '.' ).append( FLUSH_METHOD ).append( "()\r\n" );
+  }
+
   private void addScriptlet( StringBuilder strTarget, String strScript )
   {
     strTarget.append( strScript ).append( "\r\n" );
@@ -778,9 +806,33 @@ public class TemplateGenerator implements ITemplateGenerator
     try
     {
       RuntimeData runtimeData = getRuntimeData();
-      String strContent = runtimeData._templateSource.substring( iStart, iEnd );
       Writer writer = runtimeData._writer;
-      writer.write( strContent );
+      if( writer instanceof Utf8TemplateWriter )
+      {
+        byte[] encoded = runtimeData.getEncodedText( iStart, iEnd );
+        if( encoded != null )
+        {
+          ((Utf8TemplateWriter)writer).writeEncoded( encoded );
+          return;
+        }
+      }
+      writer.write( runtimeData._templateSource, iStart, iEnd - iStart );
+    }
+    catch( IOException e )
+    {
+      throw new RuntimeException( e );
+    }
+  }
+
+  /**
+   * For internal use only!! Called at a <%@ flush %> directive to send what the template rendered so
+   * far on to its destination, rather than leaving it in buffers until the template is done.
+   */
+  public static void flushContent()
+  {
+    try
+    {
+      getRuntimeData()._writer.flush();
     }
     catch( IOException e )
     {
@@ -814,6 +866,46 @@ public class TemplateGenerator implements ITemplateGenerator
       _esc = esc;
       _templateSource = getSource();
     }
+
+    byte[] getEncodedText( int iStart, int iEnd ) {
+      EncodedText encodedText = _encodedText;
+      return encodedText == null ? null : encodedText.get( iStart, iEnd );
+    }
+  }
+
+  /**
+   * The static text of a template encoded as UTF-8 once, for rendering to an OutputStream without
+   * encoding the same text on every render. Ranges with the same text share one array.
+   */
+  private static final class EncodedText {
+    // in source order, so a range is found by binary search on its start
+    private final int[] _starts;
+    private final int[] _ends;
+    private final byte[][] _bytes;
+
+    EncodedText( String strSource, int[] ranges, int iRanges ) {
+      int iSize = iRanges / 2;
+      _starts = new int[iSize];
+      _ends = new int[iSize];
+      _bytes = new byte[iSize][];
+      Map<String, byte[]> pool = new HashMap<String, byte[]>();
+      for( int i = 0; i < iSize; i++ ) {
+        _starts[i] = ranges[i * 2];
+        _ends[i] = ranges[i * 2 + 1];
+        String strText = strSource.substring( _starts[i], _ends[i] );
+        byte[] bytes = pool.get( strText );
+        if( bytes == null ) {
+          bytes = strText.getBytes( StandardCharsets.UTF_8 );
+          pool.put( strText, bytes );
+        }
+        _bytes[i] = bytes;
+      }
+    }
+
+    byte[] get( int iStart, int iEnd ) {
+      int i = Arrays.binarySearch( _starts, iStart );
+      return i >= 0 && _ends[i] == iEnd ? _bytes[i] : null;
+    }
   }
 
   public boolean isValid() {
@@ -18,6 +18,8 @@ import gw.lang.reflect.gs.ITemplateType;
 import gw.lang.reflect.java.JavaTypes;
 import gw.util.Stack;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.List;
@@ -81,6 +83,48 @@ public abstract class TemplateRenderer
     }
   }
 
+  /**
+   * Renders the template as UTF-8 to the stream, copying its static text from bytes encoded once
+   * rather than encoding it on every render. The stream is flushed, not closed.
+   */
+  public static void renderToStream( ITemplateType type, OutputStream out, Object[] args )
+  {
+    Utf8TemplateWriter writer = new Utf8TemplateWriter( out );
+    render( type, writer, args );
+    try
+    {
+      writer.finish();
+    }
+    catch( IOException e )
+    {
+      throw new RuntimeException( e );
+    }
+  }
+
+  /**
+   * Renders the template on a pooled thread into a bounded queue of output chunks, see
+   * AsyncTemplateOutput, so the returned stream can be read while the template renders.
+   */
+  public static AsyncTemplateOutput renderAsync( final ITemplateType type, final Object[] args )
+  {
+    final ITemplateObserver observer = getCurrentObserver();
+    return AsyncTemplateOutput.start( new AsyncTemplateOutput.Renderer()
+    {
+      public void render( OutputStream out )
+      {
+        pushTemplateObserver( observer );
+        try
+        {
+          renderToStream( type, out, args );
+        }
+        finally
+        {
+          popTemplateObserver();
+        }
+      }
+    } );
+  }
+
   protected static String renderToString( ITemplateType type, Object... args )
   {
     ISymbolTable symbolTable;
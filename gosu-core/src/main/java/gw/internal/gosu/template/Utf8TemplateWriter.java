@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * The writer templates render through when they render to an OutputStream. Text is encoded as UTF-8
+ * into a buffer, while the template's static text is copied in as bytes the template encoded once, see
+ * TemplateGenerator.printRange(). Malformed surrogates are written as '?', as OutputStreamWriter does.
+ */
+final class Utf8TemplateWriter extends Writer
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream _out;
+  private final byte[] _buf = new byte[BUFFER_SIZE];
+  private int _iCount;
+  private char _pendingHighSurrogate;
+
+  Utf8TemplateWriter( OutputStream out )
+  {
+    _out = out;
+  }
+
+  /**
+   * Writes text that is already encoded as UTF-8.
+   */
+  void writeEncoded( byte[] bytes ) throws IOException
+  {
+    if( bytes.length == 0 )
+    {
+      return;
+    }
+    writePendingSurrogate();
+    if( bytes.length > _buf.length - _iCount )
+    {
+      flushBuffer();
+      if( bytes.length > _buf.length / 2 )
+      {
+        _out.write( bytes );
+        return;
+      }
+    }
+    System.arraycopy( bytes, 0, _buf, _iCount, bytes.length );
+    _iCount += bytes.length;
+  }
+
+  @Override
+  public void write( int c ) throws IOException
+  {
+    if( _iCount > _buf.length - 4 )
+    {
+      flushBuffer();
+    }
+    encode( (char)c );
+  }
+
+  @Override
+  public void write( char[] cbuf, int iOff, int iLen ) throws IOException
+  {
+    for( int i = iOff, iEnd = iOff + iLen; i < iEnd; i++ )
+    {
+      if( _iCount > _buf.length - 4 )
+      {
+        flushBuffer();
+      }
+      encode( cbuf[i] );
+    }
+  }
+
+  @Override
+  public void write( String str, int iOff, int iLen ) throws IOException
+  {
+    for( int i = iOff, iEnd = iOff + iLen; i < iEnd; i++ )
+    {
+      if( _iCount > _buf.length - 4 )
+      {
+        flushBuffer();
+      }
+      encode( str.charAt( i ) );
+    }
+  }
+
+  @Override
+  public void write( String str ) throws IOException
+  {
+    write( str, 0, str.length() );
+  }
+
+  private void encode( char c )
+  {
+    if( c < 0x80 && _pendingHighSurrogate == 0 )
+    {
+      _buf[_iCount++] = (byte)c;
+      return;
+    }
+    if( _pendingHighSurrogate != 0 )
+    {
+      char high = _pendingHighSurrogate;
+      _pendingHighSurrogate = 0;
+      if( Character.isLowSurrogate( c ) )
+      {
+        int iCodePoint = Character.toCodePoint( high, c );
+        _buf[_iCount++] = (byte)(0xF0 | (iCodePoint >> 18));
+        _buf[_iCount++] = (byte)(0x80 | ((iCodePoint >> 12) & 0x3F));
+        _buf[_iCount++] = (byte)(0x80 | ((iCodePoint >> 6) & 0x3F));
+        _buf[_iCount++] = (byte)(0x80 | (iCodePoint & 0x3F));
+        return;
+      }
+      // callers leave room for four bytes, enough for this and up to three more
+      _buf[_iCount++] = '?';
+    }
+    if( c < 0x80 )
+    {
+      _buf[_iCount++] = (byte)c;
+    }
+    else if( c < 0x800 )
+    {
+      _buf[_iCount++] = (byte)(0xC0 | (c >> 6));
+      _buf[_iCount++] = (byte)(0x80 | (c & 0x3F));
+    }
+    else if( Character.isHighSurrogate( c ) )
+    {
+      _pendingHighSurrogate = c;
+    }
+    else if( Character.isLowSurrogate( c ) )
+    {
+      _buf[_iCount++] = '?';
+    }
+    else
+    {
+      _buf[_iCount++] = (byte)(0xE0 | (c >> 12));
+      _buf[_iCount++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+      _buf[_iCount++] = (byte)(0x80 | (c & 0x3F));
+    }
+  }
+
+  private void writePendingSurrogate() throws IOException
+  {
+    if( _pendingHighSurrogate != 0 )
+    {
+      _pendingHighSurrogate = 0;
+      if( _iCount == _buf.length )
+      {
+        flushBuffer();
+      }
+      _buf[_iCount++] = '?';
+    }
+  }
+
+  private void flushBuffer() throws IOException
+  {
+    if( _iCount > 0 )
+    {
+      _out.write( _buf, 0, _iCount );
+      _iCount = 0;
+    }
+  }
+
+  /**
+   * Writes out the buffered bytes, leaving an unpaired high surrogate pending in case its low
+   * surrogate is written next.
+   */
+  @Override
+  public void flush() throws IOException
+  {
+    flushBuffer();
+    _out.flush();
+  }
+
+  /**
+   * Writes out the buffered bytes at the end of the output, including an unpaired high surrogate.
+   */
+  void finish() throws IOException
+  {
+    writePendingSurrogate();
+    flush();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    finish();
+    _out.close();
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files that other threads and JVMs may read and write at the same time, such as the
+ * entries of an on-disk cache. The content goes to a temp file of its own in the same directory,
+ * which then replaces the file in one step, so readers see either the old file or the new one
+ * and never a mix of two writers' output.
+ */
+public class AtomicFileWriter
+{
+  public interface Content
+  {
+    void writeTo( DataOutputStream out ) throws IOException;
+  }
+
+  private AtomicFileWriter()
+  {
+  }
+
+  /**
+   * @param file The file to write, its directory must exist
+   * @param content Writes the content of the file
+   */
+  public static void write( File file, Content content ) throws IOException
+  {
+    // unique across threads and JVMs, unlike a name made from a thread or process id
+    File temp = File.createTempFile( file.getName() + ".", ".tmp", file.getParentFile() );
+    try
+    {
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+      try
+      {
+        content.writeTo( out );
+      }
+      finally
+      {
+        out.close();
+      }
+      try
+      {
+        Files.move( temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+      }
+      catch( AtomicMoveNotSupportedException e )
+      {
+        Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+      }
+    }
+    finally
+    {
+      temp.delete();
+    }
+  }
+}
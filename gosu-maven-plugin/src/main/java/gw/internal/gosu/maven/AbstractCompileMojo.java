@@ -4,6 +4,7 @@
 
 package gw.internal.gosu.maven;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import gw.config.AbstractPlatformHelper;
@@ -12,6 +13,7 @@ import gw.config.IPlatformHelper;
 import gw.config.Registry;
 import gw.fs.IDirectory;
 import gw.lang.GosuShop;
+import gw.lang.gosuc.GosucCompiler;
 import gw.lang.init.GosuInitialization;
 import gw.lang.reflect.IType;
 import gw.lang.reflect.ITypeLoader;
@@ -41,6 +43,11 @@ import java.net.URLClassLoader;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  */
@@ -80,9 +87,20 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   @Parameter(defaultValue = "false")
   protected boolean ignoreErrors;
 
+  /**
+   * Number of threads generating bytecode and writing class files, 1 compiles serially. Types are
+   * parsed one at a time and bytecode is generated under the type system lock, so more threads only
+   * write class files in parallel. Defaults to 1, as for Gosuc.
+   */
+  @Parameter(property = "gosu.compile.threads")
+  protected Integer threads;
+
   // We need really global lock due to the URL#handlers being JVM-wide global.
   private static Object LOCK = "reallygloballock";
 
+  private final AtomicLong _codegenNanos = new AtomicLong();
+  private final AtomicLong _lockWaitNanos = new AtomicLong();
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     if (skip) {
@@ -192,34 +210,132 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
     // FIXME-isd: Iterate through gosu classes in the source directories only...
     ITypeLoader typeLoader = TypeSystem.getTypeLoader(GosuClassTypeLoader.class, TypeSystem.getCurrentModule());
     Set<? extends CharSequence> allTypeNames = typeLoader.getAllTypeNames();
+    long start = System.nanoTime();
+    int threads = this.threads == null ? GosucCompiler.getDefaultThreads() : this.threads;
+    ClassWriterPool pool = threads > 1 ? new ClassWriterPool(threads) : null;
     int count = 0;
-    for (CharSequence cs : allTypeNames) {
-      String typeName = cs.toString();
-      if (includeType(typeName)) {
-        IType type = TypeSystem.getByFullName(typeName);
-        if (type instanceof IGosuClass) {
-          IGosuClass gosuClass = (IGosuClass) type;
-
-          // Write class + inner classes
-          String fileName = type.getName().replace('.', '/');
-          count += compileClass(gosuClass, fileName);
+    try {
+      for (CharSequence cs : allTypeNames) {
+        String typeName = cs.toString();
+        if (includeType(typeName)) {
+          IType type = TypeSystem.getByFullName(typeName);
+          if (type instanceof IGosuClass) {
+            IGosuClass gosuClass = (IGosuClass) type;
+
+            // Write class + inner classes
+            String fileName = type.getName().replace('.', '/');
+            if (pool == null) {
+              count += compileClass(gosuClass, fileName);
+            } else {
+              count += pool.submit(gosuClass, fileName);
+            }
+          }
         }
       }
+    } finally {
+      if (pool != null) {
+        pool.finish();
+      }
+    }
+    getLog().info("Compiled " + count + " Gosu types to the " + getOutputFolder() + " in " +
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    if (pool != null) {
+      getLog().info(" - parse: " + TimeUnit.NANOSECONDS.toMillis(pool._parseNanos) + "ms, bytecode generation: " +
+              TimeUnit.NANOSECONDS.toMillis(_codegenNanos.get()) + "ms, waiting for the type system lock: " +
+              TimeUnit.NANOSECONDS.toMillis(_lockWaitNanos.get()) + "ms (summed over " + threads + " threads)");
     }
-    getLog().info("Compiled " + count + " Gosu types to the " + getOutputFolder());
   }
 
+  /**
+   * Writes the class and its inner classes.
+   *
+   * @return The number of classes written
+   */
   private int compileClass(IGosuClass gosuClass, String fileName) throws IOException {
     writeClassToDisk(gosuClass, fileName);
 
     int count = 1;
     for (IGosuClass innerClass : gosuClass.getInnerClasses()) {
-      compileClass(innerClass, fileName + '$' + innerClass.getRelativeName());
-      count++;
+      count += compileClass(innerClass, fileName + '$' + innerClass.getRelativeName());
     }
     return count;
   }
 
+  /**
+   * Parses classes on the calling thread, since parsing resolves dependencies under the
+   * type system lock, and generates and writes their bytecode on a pool of workers. The
+   * transform resolves and loads types lazily too, so workers generate bytecode one at a
+   * time under the same lock, as the class loader does; only writing class files runs
+   * concurrently. A class and its inner classes go to the same worker. The number of
+   * parsed classes waiting for a worker is bounded to keep memory use flat.
+   */
+  private class ClassWriterPool {
+    private final ForkJoinPool _pool;
+    private final Semaphore _inFlight;
+    private final AtomicReference<Throwable> _failure = new AtomicReference<Throwable>();
+    private long _parseNanos;
+
+    ClassWriterPool(int threads) {
+      _pool = new ForkJoinPool(threads);
+      _inFlight = new Semaphore(threads * 2);
+    }
+
+    /**
+     * @return The number of classes the worker will write, the class and its inner classes
+     */
+    int submit(final IGosuClass gosuClass, final String fileName) throws IOException {
+      checkFailure();
+      long start = System.nanoTime();
+      gosuClass.isValid();
+      _parseNanos += System.nanoTime() - start;
+
+      int count = countClasses(gosuClass);
+      final IModule module = TypeSystem.getCurrentModule();
+      _inFlight.acquireUninterruptibly();
+      _pool.execute(new Runnable() {
+        @Override
+        public void run() {
+          TypeSystem.pushModule(module);
+          try {
+            compileClass(gosuClass, fileName);
+          } catch (Throwable t) {
+            _failure.compareAndSet(null, t);
+          } finally {
+            TypeSystem.popModule(module);
+            _inFlight.release();
+          }
+        }
+      });
+      return count;
+    }
+
+    private int countClasses(IGosuClass gosuClass) {
+      int count = 1;
+      for (IGosuClass innerClass : gosuClass.getInnerClasses()) {
+        count += countClasses(innerClass);
+      }
+      return count;
+    }
+
+    void finish() throws IOException {
+      _pool.shutdown();
+      try {
+        _pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+      Throwable t = _failure.get();
+      if (t != null) {
+        Throwables.propagateIfPossible(t, IOException.class);
+        throw new RuntimeException(t);
+      }
+    }
+  }
+
   private IModule createJreModule(IExecutionEnvironment env) throws URISyntaxException, IOException {
     IModule jreModule = env.createJreModule();
 
@@ -300,15 +416,25 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   private void writeClassToDisk(IGosuClass type, String fileName) throws IOException {
     File outputFile = new File(getOutputFolder(), fileName + ".class");
     byte[] bytes = null;
-    if (ignoreErrors) {
-      try {
+    // the transform resolves and loads types as it goes, which the class loader does under this lock too
+    long lockStart = System.nanoTime();
+    TypeSystem.lock();
+    long codegenStart = System.nanoTime();
+    _lockWaitNanos.addAndGet(codegenStart - lockStart);
+    try {
+      if (ignoreErrors) {
+        try {
+          bytes = type.compile();
+        } catch (Exception e) {
+          getLog().warn("Failed to compile type '" + type.getName() + "', ignoring.");
+          getLog().debug("Compilation errors are ", e);
+        }
+      } else {
         bytes = type.compile();
-      } catch (Exception e) {
-        getLog().warn("Failed to compile type '" + type.getName() + "', ignoring.");
-        getLog().debug("Compilation errors are ", e);
       }
-    } else {
-      bytes = type.compile();
+    } finally {
+      TypeSystem.unlock();
+      _codegenNanos.addAndGet(System.nanoTime() - codegenStart);
     }
     if (bytes != null) {
       outputFile.getParentFile().mkdirs();
@@ -4,12 +4,12 @@
 
 package gw.util.servlet;
 
-import gw.lang.reflect.IMethodInfo;
+import gw.lang.reflect.AbstractTypeSystemListener;
+import gw.lang.reflect.RefreshRequest;
 import gw.lang.reflect.TypeSystem;
-import gw.lang.reflect.gs.ITemplateType;
-import gw.lang.reflect.java.JavaTypes;
 import gw.lang.Gosu;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -17,54 +17,179 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Renders the Gosu template named by the request URI. Templates are kept ready to run, bound to their
+ * render methods, and are dropped and compiled again in the background whenever the type system is
+ * refreshed. The templates in the web app are compiled in the background when the servlet starts, so
+ * requests rarely wait for a compile. Render latencies are kept per template, see {@link #getRenderLatencies()}.
+ */
 @SuppressWarnings("serial")
 public class GosuServlet extends HttpServlet
 {
   private static final String ENCODING = "UTF-8";
-  private HashMap<ITemplateType, IMethodInfo> _renderMethodsMap = new HashMap<ITemplateType, IMethodInfo>();
-  private boolean _bInit;
+  private static final String TEMPLATE_EXTENSION = ".gst";
+
+  private final ConcurrentHashMap<String, LatencyHistogram> _latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+  // held here, the type system only keeps a weak reference to it
+  private final AbstractTypeSystemListener _templateInvalidator = new AbstractTypeSystemListener() {
+    @Override
+    public void refreshedTypes( RefreshRequest request ) {
+      // a template may depend on any of the types, so all of them are compiled again
+      _templates.invalidate();
+    }
+
+    @Override
+    public void refreshed() {
+      _templates.invalidate();
+    }
+  };
+  private ExecutorService _compiler;
+  private TemplateCache _templates;
+  private volatile boolean _bInit;
+
+  @Override
+  public void init() throws ServletException {
+    _compiler = Executors.newSingleThreadExecutor(
+      new ThreadFactory() {
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "GosuServlet-compiler" );
+          thread.setDaemon( true );
+          thread.setPriority( Thread.MIN_PRIORITY );
+          return thread;
+        }
+      } );
+    _templates = new TemplateCache( _compiler );
+    // so the first request finds Gosu initialized and its template compiled
+    _compiler.execute( new Runnable() {
+      public void run() {
+        try {
+          initGosu( getServletContext() );
+        }
+        catch( RuntimeException e ) {
+          // the first request tries again
+          log( "Failed to initialize Gosu", e );
+        }
+      }
+    } );
+  }
+
+  @Override
+  public void destroy() {
+    if( _bInit ) {
+      TypeSystem.removeTypeLoaderListener( _templateInvalidator );
+    }
+    _compiler.shutdownNow();
+    for( Map.Entry<String, LatencyHistogram> entry : _latencies.entrySet() ) {
+      log( "Rendered " + entry.getKey() + "( " + entry.getValue() + " )" );
+    }
+  }
 
   @Override
   protected void service( HttpServletRequest req, HttpServletResponse resp ) throws ServletException, IOException {
-    initGosu( req );
+    initGosu( req.getSession().getServletContext() );
     resp.setContentType( "text/html; charset=" + ENCODING );
     String uri = req.getRequestURI();
     String strType = getTypeNameFromUri( uri, req.getContextPath() );
-    ITemplateType templateType = (ITemplateType)TypeSystem.getByFullNameIfValid( strType );
-    if( templateType == null ) {
+    TemplateCache.Template template = getTemplate( strType );
+    if( template == null ) {
       resp.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, strType + " not found" );
       return;
     }
-    if( !templateType.isValid() ) {
-      resp.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, getInvalidTemplateMessage( templateType ) );
+    if( template._strError != null ) {
+      resp.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, template._strError );
       return;
     }
     ServletParams params = new ServletParams( req, resp, req.getSession(), req.getSession().getServletContext() );
-    renderTemplate( templateType, resp.getWriter(), params );
+    // set before rendering, a <%@ flush %> in the template commits the response
     resp.setStatus( HttpServletResponse.SC_OK );
+    long lStart = System.nanoTime();
+    try {
+      renderTemplate( template._renderMethod, resp.getOutputStream(), params );
+    }
+    finally {
+      getLatency( strType ).record( System.nanoTime() - lStart );
+    }
+  }
+
+  /**
+   * @return The render latencies of the templates rendered since the servlet started, by template name
+   */
+  public Map<String, LatencyHistogram> getRenderLatencies() {
+    return Collections.unmodifiableMap( _latencies );
   }
 
-  private void renderTemplate( ITemplateType templateType, PrintWriter writer, ServletParams params ) {
-    IMethodInfo renderMethod = _renderMethodsMap.get(templateType);
-    if( renderMethod == null ) {
-      renderMethod = templateType.getTypeInfo().getMethod( "render", JavaTypes.getJreType(Writer.class), JavaTypes.getJreType( ServletParams.class ) );
-      _renderMethodsMap.put(templateType, renderMethod);
+  private LatencyHistogram getLatency( String strType ) {
+    LatencyHistogram latency = _latencies.get( strType );
+    if( latency == null ) {
+      LatencyHistogram existing = _latencies.putIfAbsent( strType, latency = new LatencyHistogram() );
+      if( existing != null ) {
+        latency = existing;
+      }
     }
-    renderMethod.getCallHandler().handleCall( null, writer, params );
+    return latency;
   }
 
-  private String getInvalidTemplateMessage( ITemplateType templateType ) {
-    StringBuilder sb = new StringBuilder( "Template: " + templateType.getName() + " has errors:\n" );
-    //noinspection ThrowableResultOfMethodCallIgnored
-    sb.append( templateType.getTemplateGenerator().getProgram().getGosuProgram().getParseResultsException().getFeedback() );
-    return sb.toString();
+  /**
+   * @return The template ready to run, waiting for it if it is being compiled in the background, or
+   *   null if there is no such template
+   */
+  private TemplateCache.Template getTemplate( String strType ) throws ServletException {
+    try {
+      return _templates.get( strType );
+    }
+    catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new ServletException( e );
+    }
+    catch( ExecutionException e ) {
+      throw new ServletException( "Template: " + strType + " failed to compile", e.getCause() );
+    }
+  }
+
+  /**
+   * Compiles the templates in the web app, outside WEB-INF, in the background.
+   */
+  private void warmUpTemplates( File dir, String strPackage ) {
+    File[] files = dir.listFiles();
+    if( files == null ) {
+      return;
+    }
+    for( File file : files ) {
+      String name = file.getName();
+      if( file.isDirectory() ) {
+        if( !name.equals( "WEB-INF" ) && !name.equals( "META-INF" ) ) {
+          warmUpTemplates( file, strPackage + name + '.' );
+        }
+      }
+      else if( name.endsWith( TEMPLATE_EXTENSION ) ) {
+        _templates.compileInBackground( strPackage + name.substring( 0, name.length() - TEMPLATE_EXTENSION.length() ) );
+      }
+    }
+  }
+
+  private void renderTemplate( MethodHandle renderMethod, OutputStream out, ServletParams params ) throws ServletException, IOException {
+    try {
+      renderMethod.invokeExact( out, params );
+    }
+    catch( IOException | RuntimeException | Error e ) {
+      throw e;
+    }
+    catch( Throwable t ) {
+      throw new ServletException( t );
+    }
   }
 
   private String getTypeNameFromUri( String uri, String context ) {
@@ -77,24 +202,29 @@ public class GosuServlet extends HttpServlet
   }
 
 
-  private void initGosu( HttpServletRequest req ) {
+  private void initGosu( ServletContext servletContext ) {
     if( !_bInit ) {
       synchronized( GosuServlet.class ) {
         if( !_bInit ) {
           Properties props = System.getProperties();
+          String strServletDir = servletContext.getRealPath( "/" );
+          File servletDir = new File( strServletDir );
+          boolean bEnvInit = false;
           for ( String prop : props.stringPropertyNames() ) {
             if ( prop.startsWith("gw.") && prop.endsWith(".env") ) {
-              _bInit = true;
-              return;
+              bEnvInit = true;
+              break;
             }
           }
 
-          String strServletDir = req.getSession().getServletContext().getRealPath( "/" );
-          File servletDir = new File( strServletDir );
-          List<File> classpath = new ArrayList<File>();
-          classpath.add( servletDir );
-          addWebInfPaths( new File( servletDir, "WEB-INF" ), classpath );
-          Gosu.init( classpath );
+          if( !bEnvInit ) {
+            List<File> classpath = new ArrayList<File>();
+            classpath.add( servletDir );
+            addWebInfPaths( new File( servletDir, "WEB-INF" ), classpath );
+            Gosu.init( classpath );
+          }
+          TypeSystem.addTypeLoaderListenerAsWeakRef( _templateInvalidator );
+          warmUpTemplates( servletDir, "" );
           _bInit = true;
         }
       }
@@ -126,5 +256,4 @@ public class GosuServlet extends HttpServlet
           }
       } );
   }
-
 }
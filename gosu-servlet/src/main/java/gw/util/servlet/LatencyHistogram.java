@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.servlet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets of powers of two microseconds, so recording one is a couple of atomic
+ * increments and percentiles are accurate to within a factor of two.
+ */
+public class LatencyHistogram
+{
+  private static final int BUCKETS = 32;
+
+  private final AtomicLongArray _counts = new AtomicLongArray( BUCKETS );
+  private final AtomicLong _totalMicros = new AtomicLong();
+  private final AtomicLong _maxMicros = new AtomicLong();
+
+  public void record( long lNanos ) {
+    long lMicros = Math.max( 0, lNanos / 1000 );
+    int iBucket = Math.min( BUCKETS - 1, 64 - Long.numberOfLeadingZeros( lMicros ) );
+    _counts.incrementAndGet( iBucket );
+    _totalMicros.addAndGet( lMicros );
+    long lMax;
+    while( lMicros > (lMax = _maxMicros.get()) && !_maxMicros.compareAndSet( lMax, lMicros ) ) {
+      // another thread raised the max, try again
+    }
+  }
+
+  public long getCount() {
+    long lCount = 0;
+    for( int i = 0; i < BUCKETS; i++ ) {
+      lCount += _counts.get( i );
+    }
+    return lCount;
+  }
+
+  public long getMeanMicros() {
+    long lCount = getCount();
+    return lCount == 0 ? 0 : _totalMicros.get() / lCount;
+  }
+
+  public long getMaxMicros() {
+    return _maxMicros.get();
+  }
+
+  /**
+   * @param dPercent The percentile, e.g. 99.0
+   * @return The upper bound of the bucket holding the percentile, in microseconds
+   */
+  public long getPercentileMicros( double dPercent ) {
+    long lCount = getCount();
+    if( lCount == 0 ) {
+      return 0;
+    }
+    long lRank = (long)Math.ceil( lCount * dPercent / 100.0 );
+    long lSeen = 0;
+    for( int i = 0; i < BUCKETS; i++ ) {
+      lSeen += _counts.get( i );
+      if( lSeen >= lRank ) {
+        return Math.min( (1L << i) - 1, getMaxMicros() );
+      }
+    }
+    return getMaxMicros();
+  }
+
+  @Override
+  public String toString() {
+    return "Count:" + getCount() + ", Mean:" + getMeanMicros() + "us" +
+           ", p50:" + getPercentileMicros( 50 ) + "us, p90:" + getPercentileMicros( 90 ) + "us" +
+           ", p99:" + getPercentileMicros( 99 ) + "us, Max:" + getMaxMicros() + "us";
+  }
+}
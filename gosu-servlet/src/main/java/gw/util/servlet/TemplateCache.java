@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.servlet;
+
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.gs.ITemplateType;
+
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The templates of a GosuServlet, bound to their render methods, by name. A template is compiled by the
+ * first request for it unless it is already compiling in the background, and is kept until the type
+ * system is refreshed. A refresh drops all the templates and compiles them again in the background;
+ * a template still waiting to be compiled again is not queued a second time, so a refresh that reports
+ * many types compiles each template once.
+ */
+class TemplateCache
+{
+  private final ConcurrentHashMap<String, FutureTask<Template>> _templates = new ConcurrentHashMap<String, FutureTask<Template>>();
+  // templates queued on the compiler, see invalidate()
+  private final Set<String> _pendingCompiles = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+  private final ExecutorService _compiler;
+
+  TemplateCache( ExecutorService compiler ) {
+    _compiler = compiler;
+  }
+
+  /**
+   * @return The template ready to run, waiting for it if it is being compiled in the background, or
+   *   null if there is no such template
+   * @throws ExecutionException if the template failed to compile, it is compiled again on the next call
+   */
+  Template get( String strType ) throws ExecutionException, InterruptedException {
+    FutureTask<Template> future = _templates.get( strType );
+    if( future == null ) {
+      FutureTask<Template> task = newCompileTask( strType );
+      future = _templates.putIfAbsent( strType, task );
+      if( future == null ) {
+        future = task;
+      }
+    }
+    // compiles it here unless it is already compiling in the background, the request would wait for it anyway
+    future.run();
+    try {
+      Template template = future.get();
+      if( template == null ) {
+        // it may be added later
+        _templates.remove( strType, future );
+      }
+      return template;
+    }
+    catch( ExecutionException e ) {
+      _templates.remove( strType, future );
+      throw e;
+    }
+  }
+
+  /**
+   * Compiles the template on the compiler thread, unless it is already cached or compiling.
+   */
+  void compileInBackground( String strType ) {
+    FutureTask<Template> task = newCompileTask( strType );
+    if( _templates.putIfAbsent( strType, task ) == null ) {
+      try {
+        _compiler.execute( task );
+      }
+      catch( RejectedExecutionException e ) {
+        // shutting down, a request compiles it
+        _templates.remove( strType, task );
+      }
+    }
+  }
+
+  /**
+   * Drops the compiled templates after a refresh and queues them to be compiled again.
+   */
+  void invalidate() {
+    Set<String> names = new HashSet<String>( _templates.keySet() );
+    _templates.clear();
+    for( String strType : names ) {
+      recompileInBackground( strType );
+    }
+  }
+
+  private void recompileInBackground( final String strType ) {
+    if( !_pendingCompiles.add( strType ) ) {
+      return;
+    }
+    try {
+      _compiler.execute( new Runnable() {
+        public void run() {
+          // a refresh from here on queues it again
+          _pendingCompiles.remove( strType );
+          FutureTask<Template> task = newCompileTask( strType );
+          if( _templates.putIfAbsent( strType, task ) == null ) {
+            task.run();
+          }
+        }
+      } );
+    }
+    catch( RejectedExecutionException e ) {
+      // shutting down, a request compiles it
+      _pendingCompiles.remove( strType );
+    }
+  }
+
+  private FutureTask<Template> newCompileTask( final String strType ) {
+    return new FutureTask<Template>(
+      new Callable<Template>() {
+        public Template call() {
+          return compile( strType );
+        }
+      } );
+  }
+
+  /**
+   * @return The template bound to its render method, or null if there is no such template
+   */
+  Template compile( String strType ) {
+    IType type = TypeSystem.getByFullNameIfValid( strType );
+    if( !(type instanceof ITemplateType) ) {
+      return null;
+    }
+    ITemplateType templateType = (ITemplateType)type;
+    if( !templateType.isValid() ) {
+      return new Template( null, getInvalidTemplateMessage( templateType ) );
+    }
+    try {
+      return new Template( findRenderMethod( templateType ), null );
+    }
+    catch( ReflectiveOperationException e ) {
+      return new Template( null, "Template: " + templateType.getName() + " must have params(params : " + ServletParams.class.getName() + ")" );
+    }
+  }
+
+  /**
+   * Binds the template's static renderToStream(OutputStream, ServletParams) method, which renders
+   * its static text from bytes encoded once, so that each request calls it directly.
+   */
+  private MethodHandle findRenderMethod( ITemplateType templateType ) throws ReflectiveOperationException {
+    return MethodHandles.publicLookup().findStatic( templateType.getBackingClass(), "renderToStream",
+                                                    MethodType.methodType( void.class, OutputStream.class, ServletParams.class ) );
+  }
+
+  private String getInvalidTemplateMessage( ITemplateType templateType ) {
+    StringBuilder sb = new StringBuilder( "Template: " + templateType.getName() + " has errors:\n" );
+    //noinspection ThrowableResultOfMethodCallIgnored
+    sb.append( templateType.getTemplateGenerator().getProgram().getGosuProgram().getParseResultsException().getFeedback() );
+    return sb.toString();
+  }
+
+  /**
+   * A template ready to run, or the reason it can't run.
+   */
+  static final class Template {
+    final MethodHandle _renderMethod;
+    final String _strError;
+
+    Template( MethodHandle renderMethod, String strError ) {
+      _renderMethod = renderMethod;
+      _strError = strError;
+    }
+  }
+}
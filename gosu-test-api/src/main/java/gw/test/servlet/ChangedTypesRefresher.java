@@ -79,7 +79,7 @@ public class ChangedTypesRefresher {
               }
             }
           }
-        } else if (fileName.endsWith(".pcf") || fileName.endsWith(".xsd") || fileName.endsWith(".wsdl")){
+        } else if (changeType == FileEvent.OVERFLOW || fileName.endsWith(".pcf") || fileName.endsWith(".xsd") || fileName.endsWith(".wsdl")){
           // Force a full refresh
           canRefreshSelectively = false;
         } else {
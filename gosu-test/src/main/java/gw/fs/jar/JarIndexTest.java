@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.fs.jar;
+
+import gw.test.TestClass;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class JarIndexTest extends TestClass {
+
+  public void testRootChildren() throws IOException {
+    JarIndex index = JarIndex.read(makeJar("b/x.txt", "a/", "a/y.txt", "a/sub/z.txt", "a-b.txt", "root.txt"));
+    assertEquals(6, index.size());
+    assertEquals("a-b.txt=a-b.txt, a/=a/, b/=null, root.txt=root.txt", visit(index, ""));
+  }
+
+  public void testNestedChildren() throws IOException {
+    JarIndex index = JarIndex.read(makeJar("b/x.txt", "a/", "a/y.txt", "a/sub/z.txt", "a/sub/w.txt", "a-b.txt"));
+    assertEquals("sub/=null, y.txt=a/y.txt", visit(index, "a/"));
+    assertEquals("w.txt=a/sub/w.txt, z.txt=a/sub/z.txt", visit(index, "a/sub/"));
+    assertEquals("", visit(index, "nosuchdir/"));
+  }
+
+  public void testNamesAreSorted() throws IOException {
+    JarIndex index = JarIndex.read(makeJar("c", "a", "b/", "b/c"));
+    List<String> names = new ArrayList<String>();
+    for (int i = 0; i < index.size(); i++) {
+      names.add(index.getName(i));
+    }
+    assertEquals("[a, b/, b/c, c]", names.toString());
+  }
+
+  public void testUnnormalizedNamesAreNormalized() throws IOException {
+    JarIndex index = JarIndex.read(makeJar("c//d.txt", "/e.txt", "f/../g.txt"));
+    assertEquals("c/=null, e.txt=/e.txt, g.txt=f/../g.txt", visit(index, ""));
+    assertEquals("d.txt=c//d.txt", visit(index, "c/"));
+  }
+
+  public void testJarFileDirectoryCreatesResourcesFromIndex() throws IOException {
+    JarFileDirectoryImpl jar = new JarFileDirectoryImpl(makeJar("a/", "a/y.txt", "a/sub/z.txt", "root.txt"));
+    assertEquals(1, jar.listFiles().size());
+    assertEquals(1, jar.listDirs().size());
+    assertTrue(jar.file("a/sub/z.txt").exists());
+    assertTrue(jar.dir("a/sub").exists());
+    assertFalse(jar.file("a/nosuchfile.txt").exists());
+    assertFalse(jar.dir("a/nosuchdir").exists());
+    assertEquals('z', jar.file("a/sub/z.txt").openInputStream().read());
+  }
+
+  private static String visit(JarIndex index, String prefix) {
+    final StringBuilder sb = new StringBuilder();
+    index.visitChildren(prefix, new JarIndex.ChildVisitor() {
+      @Override
+      public void file(String name, String entryName) {
+        append(name, entryName);
+      }
+
+      @Override
+      public void directory(String name, String entryName) {
+        append(name + "/", entryName);
+      }
+
+      private void append(String name, String entryName) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(name).append('=').append(entryName);
+      }
+    });
+    return sb.toString();
+  }
+
+  private static File makeJar(String... names) throws IOException {
+    File file = File.createTempFile("jarindex", ".jar");
+    file.deleteOnExit();
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+    try {
+      for (String name : names) {
+        out.putNextEntry(new JarEntry(name));
+        if (!name.endsWith("/")) {
+          out.write(name.charAt(name.lastIndexOf('/') + 1));
+        }
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.fs.watcher;
+
+import gw.fs.watcher.DirectoryWatcher.FileEvent;
+import gw.test.TestClass;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+public class DirectoryWatcherTest extends TestClass {
+  private static final long QUIET_PERIOD = 200;
+
+  private Path _root;
+  private DirectoryWatcher _watcher;
+
+  @Override
+  public void beforeTestMethod() {
+    try {
+      _root = Files.createTempDirectory("watcher");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    _watcher = new DirectoryWatcher();
+    _watcher.watchDirectoryTree(_root);
+  }
+
+  @Override
+  public void afterTestMethod(Throwable possibleException) {
+    _watcher.close();
+    try {
+      Files.walkFileTree(_root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          Files.delete(file);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+          Files.delete(dir);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void testNewDirectoryIsWatched() throws Exception {
+    Path dir = Files.createDirectory(_root.resolve("pkg"));
+    Map<Path, FileEvent> changes = _watcher.waitForChanges(QUIET_PERIOD);
+    assertEquals(FileEvent.CREATE, changes.get(dir));
+    assertTrue(_watcher.isDirectory(dir));
+
+    Path file = Files.createFile(dir.resolve("Foo.gs"));
+    changes = _watcher.waitForChanges(QUIET_PERIOD);
+    assertEquals(FileEvent.CREATE, changes.get(file));
+    assertFalse(_watcher.isDirectory(file));
+  }
+
+  public void testBurstOfChangesIsCoalesced() throws Exception {
+    Path file = Files.createFile(_root.resolve("Foo.gs"));
+    _watcher.waitForChanges(QUIET_PERIOD);
+
+    Files.write(file, "class Foo {}".getBytes());
+    Files.write(file, "class Foo { var x : int }".getBytes());
+    Path temp = Files.createFile(_root.resolve("Foo.gs~"));
+    Files.delete(temp);
+    Map<Path, FileEvent> changes = _watcher.waitForChanges(QUIET_PERIOD);
+    assertEquals(1, changes.size());
+    assertEquals(FileEvent.MODIFY, changes.get(file));
+  }
+
+  public void testSteadyStreamOfChangesIsReturnedAfterMaxWait() throws Exception {
+    final Path file = Files.createFile(_root.resolve("Foo.gs"));
+    _watcher.waitForChanges(QUIET_PERIOD);
+
+    // Keeps writing more often than the quiet period, for longer than the max wait
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < 100 && !isInterrupted(); i++) {
+            Files.write(file, ("class Foo { var x" + i + " : int }").getBytes());
+            Thread.sleep(QUIET_PERIOD / 4);
+          }
+        } catch (Exception e) {
+          // stopped
+        }
+      }
+    };
+    writer.start();
+    try {
+      long start = System.nanoTime();
+      Map<Path, FileEvent> changes = _watcher.waitForChanges(QUIET_PERIOD, QUIET_PERIOD * 4);
+      long elapsedMillis = (System.nanoTime() - start) / 1000000;
+      assertEquals(FileEvent.MODIFY, changes.get(file));
+      assertTrue("Waited " + elapsedMillis + "ms", elapsedMillis < QUIET_PERIOD * 10);
+    } finally {
+      writer.interrupt();
+      writer.join();
+    }
+  }
+
+  public void testDeletedDirectoryIsStillKnownAsDirectory() throws Exception {
+    Path dir = Files.createDirectory(_root.resolve("pkg"));
+    _watcher.waitForChanges(QUIET_PERIOD);
+
+    Files.delete(dir);
+    Map<Path, FileEvent> changes = _watcher.waitForChanges(QUIET_PERIOD);
+    assertEquals(FileEvent.DELETE, changes.get(dir));
+    assertTrue(_watcher.isDirectory(dir));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.compiler;
+
+import gw.config.CommonServices;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.gs.BytecodeOptions;
+import gw.lang.reflect.gs.ICompilableType;
+import gw.test.TestClass;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ */
+public class CompiledClassCacheTest extends TestClass
+{
+  private static final String CLASS_NAME = "gw.internal.gosu.compiler.sample.statement.DisposableImpl";
+
+  private String _oldCacheDir;
+  private File _dir;
+
+  @Override
+  public void beforeTestMethod()
+  {
+    super.beforeTestMethod();
+    _oldCacheDir = BytecodeOptions.getClassCacheDir();
+    _dir = new File( System.getProperty( "java.io.tmpdir" ), "gosu-class-cache-test-" + System.nanoTime() );
+    BytecodeOptions.setClassCacheDir( _dir.getPath() );
+  }
+
+  @Override
+  public void afterTestMethod( Throwable possibleException )
+  {
+    BytecodeOptions.setClassCacheDir( _oldCacheDir );
+    delete( _dir );
+    super.afterTestMethod( possibleException );
+  }
+
+  public void testCompiledClassIsStoredAndReused()
+  {
+    ICompilableType type = (ICompilableType)TypeSystem.getByFullName( CLASS_NAME );
+    byte[] compiled = CompiledClassCache.instance().getBytes( type );
+    File entry = getEntry();
+    assertTrue( entry.isFile() );
+
+    // A hit must not rewrite the entry
+    assertTrue( entry.setLastModified( 0 ) );
+    byte[] cached = CompiledClassCache.instance().getBytes( type );
+    assertTrue( Arrays.equals( compiled, cached ) );
+    assertEquals( 0, entry.lastModified() );
+  }
+
+  public void testBytecodeOptionsAreFingerprinted()
+  {
+    ICompilableType type = (ICompilableType)TypeSystem.getByFullName( CLASS_NAME );
+    CompiledClassCache.instance().getBytes( type );
+    File entry = getEntry();
+    assertTrue( entry.setLastModified( 0 ) );
+
+    boolean bOldInvokeDynamic = BytecodeOptions.isInvokeDynamic();
+    BytecodeOptions.setInvokeDynamic( !bOldInvokeDynamic );
+    try
+    {
+      CompiledClassCache.instance().getBytes( type );
+    }
+    finally
+    {
+      BytecodeOptions.setInvokeDynamic( bOldInvokeDynamic );
+    }
+    assertTrue( entry.lastModified() != 0 );
+  }
+
+  public void testCorruptEntryIsRecompiled()
+  {
+    ICompilableType type = (ICompilableType)TypeSystem.getByFullName( CLASS_NAME );
+    byte[] compiled = CompiledClassCache.instance().getBytes( type );
+    File entry = getEntry();
+    assertTrue( entry.delete() );
+    assertTrue( entry.mkdirs() ); // unreadable as a file
+    assertTrue( Arrays.equals( compiled, CompiledClassCache.instance().getBytes( type ) ) );
+  }
+
+  public void testChangedSuperclassOfDependencyInvalidatesEntry() throws IOException
+  {
+    // CacheLeaf names CacheMid in its bytecode, but not CacheMid's superclass CacheBase
+    ICompilableType sample = (ICompilableType)TypeSystem.getByFullName( CLASS_NAME );
+    File pkgDir = sample.getSourceFileHandle().getFile().getParent().toJavaFile();
+    String pkg = CLASS_NAME.substring( 0, CLASS_NAME.lastIndexOf( '.' ) );
+    File base = new File( pkgDir, "CacheBase.gs" );
+    File mid = new File( pkgDir, "CacheMid.gs" );
+    File leaf = new File( pkgDir, "CacheLeaf.gs" );
+    try
+    {
+      create( base, "package " + pkg + "\n\nclass CacheBase {}\n" );
+      create( mid, "package " + pkg + "\n\nclass CacheMid extends CacheBase {}\n" );
+      create( leaf, "package " + pkg + "\n\nclass CacheLeaf extends CacheMid {}\n" );
+
+      String leafName = pkg + ".CacheLeaf";
+      CompiledClassCache.instance().getBytes( (ICompilableType)TypeSystem.getByFullName( leafName ) );
+      File entry = getEntry( leafName );
+      assertTrue( entry.setLastModified( 0 ) );
+      CompiledClassCache.instance().getBytes( (ICompilableType)TypeSystem.getByFullName( leafName ) );
+      assertEquals( 0, entry.lastModified() );
+
+      write( base, "package " + pkg + "\n\nclass CacheBase extends java.util.ArrayList<String> {}\n" );
+      TypeSystem.refreshed( CommonServices.getFileSystem().getIFile( base ) );
+      CompiledClassCache.instance().getBytes( (ICompilableType)TypeSystem.getByFullName( leafName ) );
+      assertTrue( entry.lastModified() != 0 );
+    }
+    finally
+    {
+      for( File file : new File[] {leaf, mid, base} )
+      {
+        if( file.delete() )
+        {
+          TypeSystem.deleted( CommonServices.getFileSystem().getIFile( file ) );
+        }
+      }
+    }
+  }
+
+  private File getEntry()
+  {
+    return getEntry( CLASS_NAME );
+  }
+
+  private File getEntry( String className )
+  {
+    return new File( _dir, className.replace( '.', File.separatorChar ) + ".gcc" );
+  }
+
+  private static void create( File file, String source ) throws IOException
+  {
+    write( file, source );
+    TypeSystem.created( CommonServices.getFileSystem().getIFile( file ) );
+  }
+
+  private static void write( File file, String source ) throws IOException
+  {
+    Writer writer = new FileWriter( file );
+    try
+    {
+      writer.write( source );
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+
+  private static void delete( File file )
+  {
+    File[] children = file.listFiles();
+    if( children != null )
+    {
+      for( File child : children )
+      {
+        delete( child );
+      }
+    }
+    file.delete();
+  }
+}
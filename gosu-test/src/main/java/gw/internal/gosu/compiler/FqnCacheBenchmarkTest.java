@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.compiler;
+
+import gw.test.TestClass;
+import gw.util.cache.FqnCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves type names against an FqnCache from an increasing number of threads while
+ * a writer keeps adding names, once with lock-free lookups and once behind a single
+ * lock the way callers had to guard the cache before. The lock-free numbers should
+ * grow with the thread count while the locked ones flatten out.
+ */
+public class FqnCacheBenchmarkTest extends TestClass
+{
+  private static final int ITERATIONS = 500000;
+  private static final int NAMES = 20000;
+
+  public void testConcurrentLookupsScaleWithThreads() throws Exception
+  {
+    List<String> names = makeNames( NAMES );
+    int cpus = Runtime.getRuntime().availableProcessors();
+    for( int iThreads = 1; iThreads <= cpus; iThreads *= 2 )
+    {
+      long lockFree = run( names, iThreads, false );
+      long locked = run( names, iThreads, true );
+      System.out.println( "Threads: " + iThreads + "  lock-free ops/ms: " + lockFree + "  locked ops/ms: " + locked );
+    }
+  }
+
+  public void testConcurrentAddsAreNotLost() throws Exception
+  {
+    final FqnCache<String> cache = new FqnCache<String>();
+    final List<String> names = makeNames( NAMES );
+    int iThreads = 4;
+    final CountDownLatch start = new CountDownLatch( 1 );
+    final CountDownLatch done = new CountDownLatch( iThreads );
+    for( int i = 0; i < iThreads; i++ )
+    {
+      final int offset = i;
+      new Thread( "FqnCacheAdd-" + i )
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+            for( int j = 0; j < names.size(); j++ )
+            {
+              String name = names.get( (j + offset * 997) % names.size() );
+              cache.add( name, name );
+            }
+          }
+          catch( InterruptedException e )
+          {
+            throw new RuntimeException( e );
+          }
+          finally
+          {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    start.countDown();
+    done.await();
+    for( String name : names )
+    {
+      assertEquals( name, cache.get( name ) );
+    }
+  }
+
+  private long run( final List<String> names, int iThreads, final boolean bLocked ) throws InterruptedException
+  {
+    final FqnCache<String> cache = new FqnCache<String>();
+    final Object lock = new Object();
+    final int iPreloaded = names.size() / 2;
+    for( int i = 0; i < iPreloaded; i++ )
+    {
+      cache.add( names.get( i ), names.get( i ) );
+    }
+
+    final CountDownLatch start = new CountDownLatch( 1 );
+    final CountDownLatch done = new CountDownLatch( iThreads );
+    final AtomicLong ops = new AtomicLong();
+    Thread writer = new Thread( "FqnCacheWriter" )
+    {
+      @Override
+      public void run()
+      {
+        for( int i = iPreloaded; i < names.size() && done.getCount() > 0; i++ )
+        {
+          if( bLocked )
+          {
+            synchronized( lock )
+            {
+              cache.add( names.get( i ), names.get( i ) );
+            }
+          }
+          else
+          {
+            cache.add( names.get( i ), names.get( i ) );
+          }
+        }
+      }
+    };
+    for( int i = 0; i < iThreads; i++ )
+    {
+      final int offset = i;
+      new Thread( "FqnCacheReader-" + i )
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+            long count = 0;
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+              String name = names.get( (j * 31 + offset) % iPreloaded );
+              String value;
+              if( bLocked )
+              {
+                synchronized( lock )
+                {
+                  value = cache.get( name );
+                }
+              }
+              else
+              {
+                value = cache.get( name );
+              }
+              assertSame( name, value );
+              count++;
+            }
+            ops.addAndGet( count );
+          }
+          catch( InterruptedException e )
+          {
+            throw new RuntimeException( e );
+          }
+          finally
+          {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    long t = System.currentTimeMillis();
+    writer.start();
+    start.countDown();
+    done.await();
+    writer.join();
+    long delta = Math.max( 1, System.currentTimeMillis() - t );
+    assertEquals( (long)iThreads * ITERATIONS, ops.get() );
+    return ops.get() / delta;
+  }
+
+  private static List<String> makeNames( int count )
+  {
+    List<String> names = new ArrayList<String>( count );
+    for( int i = 0; i < count; i++ )
+    {
+      names.add( "com.example.pkg" + (i % 50) + ".sub" + (i % 7) + ".Type" + i );
+    }
+    return names;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.compiler;
+
+import gw.lang.reflect.gs.BytecodeOptions;
+import gw.lang.reflect.gs.IGosuProgram;
+
+/**
+ * Runs dynamic and structural member access with invokedynamic call sites enabled.
+ * Each access runs in a loop over several receiver classes so that sites are
+ * linked, hit, relinked and eventually go megamorphic.
+ */
+public class InvokeDynamicTest extends ByteCodeTestBase
+{
+  private boolean _bOldInvokeDynamic;
+
+  @Override
+  public void beforeTestMethod()
+  {
+    super.beforeTestMethod();
+    _bOldInvokeDynamic = BytecodeOptions.isInvokeDynamic();
+    BytecodeOptions.setInvokeDynamic( true );
+  }
+
+  @Override
+  public void afterTestMethod( Throwable possibleException )
+  {
+    BytecodeOptions.setInvokeDynamic( _bOldInvokeDynamic );
+    super.afterTestMethod( possibleException );
+  }
+
+  public void testDynamicPropertyGet() throws Exception
+  {
+    Object ret = IGosuProgram.Runner.runProgram(
+      "var values : List<dynamic.Dynamic> = {\"a\", new StringBuilder( \"ab\" ), new int[3], \"abcd\", new StringBuffer( \"abcde\" ), new String[6], new long[7]}\n" +
+      "var total = 0\n" +
+      "for( i in 0..|10 ) {\n" +
+      "  for( v in values ) {\n" +
+      "    total += v.length\n" +
+      "  }\n" +
+      "}\n" +
+      "return total" );
+    assertEquals( 280, ret );
+  }
+
+  public void testDynamicPropertySet() throws Exception
+  {
+    Object ret = IGosuProgram.Runner.runProgram(
+      "var values : List<dynamic.Dynamic> = {new java.awt.Point(), new java.awt.Rectangle(), new java.awt.Point()}\n" +
+      "for( i in 0..|10 ) {\n" +
+      "  for( v in values ) {\n" +
+      "    v.Location = new java.awt.Point( i, i )\n" +
+      "  }\n" +
+      "}\n" +
+      "return (values[0] as java.awt.Point).x + (values[1] as java.awt.Rectangle).y + (values[2] as java.awt.Point).x" );
+    assertEquals( 27, ret );
+  }
+
+  public void testDynamicMethodCallWithOverloads() throws Exception
+  {
+    Object ret = IGosuProgram.Runner.runProgram(
+      "var sb : dynamic.Dynamic = new StringBuilder()\n" +
+      "var args : List<dynamic.Dynamic> = {\"a\", 1, 'c', true, 2.5}\n" +
+      "for( i in 0..|2 ) {\n" +
+      "  for( arg in args ) {\n" +
+      "    sb.append( arg )\n" +
+      "  }\n" +
+      "}\n" +
+      "return sb.toString()" );
+    assertEquals( "a1ctrue2.5a1ctrue2.5", ret );
+  }
+
+  public void testStructuralCall() throws Exception
+  {
+    Object ret = IGosuProgram.Runner.runProgram(
+      "uses gw.internal.gosu.parser.structural.HasLength\n" +
+      "var values : List<Object> = {\"a\", new StringBuilder( \"ab\" ), new StringBuffer( \"abc\" )}\n" +
+      "var total = 0\n" +
+      "for( i in 0..|10 ) {\n" +
+      "  for( v in values ) {\n" +
+      "    total += (v as HasLength).length()\n" +
+      "  }\n" +
+      "}\n" +
+      "return total" );
+    assertEquals( 60, ret );
+  }
+}
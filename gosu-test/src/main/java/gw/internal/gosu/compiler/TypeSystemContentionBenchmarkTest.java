@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.compiler;
+
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.java.JavaTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves already-loaded types and their type info from an increasing number of
+ * threads and prints the throughput for each thread count. Resolved types are read
+ * without the global lock, so the numbers should grow with the thread count rather
+ * than flatten out. Only the reads themselves are checked, not their timing.
+ */
+public class TypeSystemContentionBenchmarkTest extends ByteCodeTestBase
+{
+  private static final int ITERATIONS = 200000;
+
+  public void testResolvedTypeReadsScaleWithThreads() throws Exception
+  {
+    final List<IType> types = new ArrayList<IType>();
+    types.add( JavaTypes.STRING() );
+    types.add( JavaTypes.LIST() );
+    types.add( JavaTypes.MAP() );
+    types.add( JavaTypes.HASH_MAP() );
+    types.add( JavaTypes.LIST().getParameterizedType( JavaTypes.STRING() ) );
+    for( IType type : types )
+    {
+      // Warm up so the benchmark measures reads of resolved types only
+      type.getTypeInfo().getMethods();
+    }
+
+    int cpus = Runtime.getRuntime().availableProcessors();
+    for( int iThreads = 1; iThreads <= cpus; iThreads *= 2 )
+    {
+      System.out.println( "Threads: " + iThreads + "  ops/ms: " + run( types, iThreads ) );
+    }
+  }
+
+  private long run( final List<IType> types, int iThreads ) throws InterruptedException
+  {
+    final CountDownLatch start = new CountDownLatch( 1 );
+    final CountDownLatch done = new CountDownLatch( iThreads );
+    final AtomicLong ops = new AtomicLong();
+    for( int i = 0; i < iThreads; i++ )
+    {
+      Thread thread = new Thread( "TypeSystemContention-" + i )
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+            long count = 0;
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+              IType type = types.get( j % types.size() );
+              assertNotNull( TypeSystem.getByFullNameIfValid( TypeSystem.getPureGenericType( type ).getName() ) );
+              assertNotNull( type.getTypeInfo() );
+              count++;
+            }
+            ops.addAndGet( count );
+          }
+          catch( InterruptedException e )
+          {
+            throw new RuntimeException( e );
+          }
+          finally
+          {
+            done.countDown();
+          }
+        }
+      };
+      thread.start();
+    }
+    long t = System.currentTimeMillis();
+    start.countDown();
+    done.await();
+    long delta = Math.max( 1, System.currentTimeMillis() - t );
+    assertEquals( (long)iThreads * ITERATIONS, ops.get() );
+    return ops.get() / delta;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.init;
+
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.test.TestClass;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+public class StartupProfileTest extends TestClass
+{
+  private File _file;
+
+  @Override
+  public void beforeTestMethod()
+  {
+    super.beforeTestMethod();
+    _file = new File( System.getProperty( "java.io.tmpdir" ), "gosu-startup-profile-test-" + System.nanoTime() );
+  }
+
+  @Override
+  public void afterTestMethod( Throwable possibleException )
+  {
+    StartupProfile.stopRecording();
+    new File( _file.getPath() + ".classlist" ).delete();
+    _file.delete();
+    super.afterTestMethod( possibleException );
+  }
+
+  public void testRecordedProfileIsReadBack() throws IOException
+  {
+    IType string = TypeSystem.get( String.class );
+    IType list = TypeSystem.get( List.class );
+    StartupProfile.startRecording( _file );
+    StartupProfile.recordType( string );
+    StartupProfile.recordTypeInfo( string );
+    StartupProfile.recordType( list );
+    StartupProfile.recordType( string );
+    StartupProfile.stopRecording();
+    StartupProfile.recordType( TypeSystem.get( Integer.class ) ); // no longer recording
+
+    List<String> classes = new ArrayList<String>();
+    List<String> types = new ArrayList<String>();
+    assertTrue( StartupProfile.read( _file, classes, types ) );
+    assertEquals( Arrays.asList( "java.lang.String", "java.util.List" ), classes );
+    assertEquals( Arrays.asList( "T java.lang.String", "I java.lang.String", "T java.util.List" ), types );
+    assertEquals( Arrays.asList( "java/lang/String", "java/util/List" ), readLines( new File( _file.getPath() + ".classlist" ) ) );
+  }
+
+  public void testStaleAndCorruptEntriesAreIgnored() throws Exception
+  {
+    write( _file, "T java.lang.String\n" +
+                  "C no.such.Class\n" +
+                  "T no.such.Type\n" +
+                  "I no.such.Type\n" +
+                  "\u0000\u0001garbage\n" +
+                  "I java.lang." ); // truncated
+    List<String> classes = new ArrayList<String>();
+    List<String> types = new ArrayList<String>();
+    assertTrue( StartupProfile.read( _file, classes, types ) );
+    assertEquals( Arrays.asList( "no.such.Class" ), classes );
+    assertEquals( Arrays.asList( "T java.lang.String", "T no.such.Type", "I no.such.Type", "I java.lang." ), types );
+
+    ExecutorService preload = StartupProfile.preload( _file );
+    assertNotNull( preload );
+    assertTrue( preload.awaitTermination( 30, TimeUnit.SECONDS ) );
+  }
+
+  public void testUnreadableProfileIsIgnored()
+  {
+    assertNull( StartupProfile.preload( _file ) ); // missing
+    assertTrue( _file.mkdir() );
+    assertNull( StartupProfile.preload( _file ) );
+  }
+
+  private static void write( File file, String content ) throws IOException
+  {
+    Writer writer = new FileWriter( file );
+    try
+    {
+      writer.write( content );
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+
+  private static List<String> readLines( File file ) throws IOException
+  {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader( new FileReader( file ) );
+    try
+    {
+      for( String line = reader.readLine(); line != null; line = reader.readLine() )
+      {
+        lines.add( line );
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.parser;
+
+import gw.config.CommonServices;
+import gw.fs.IDirectory;
+import gw.test.TestClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ClassPathEntryIndexTest extends TestClass {
+  private static final String[] EXTS = {".gs", ".gsx"};
+
+  private File _root;
+  private File _indexDir;
+
+  @Override
+  public void beforeTestMethod() {
+    _root = makeTempDir("root");
+    _indexDir = makeTempDir("index");
+  }
+
+  @Override
+  public void afterTestMethod(Throwable possibleException) {
+    System.clearProperty(ClassPathEntryIndex.INDEX_DIR_SYSTEM_PROP);
+    delete(_root);
+    delete(_indexDir);
+  }
+
+  public void testIndexesDirectoriesAndFilesWithExtensions() throws IOException {
+    touch("a/b/Foo.gs");
+    touch("a/b/Foo.java");
+    touch("a/Bar.gsx");
+    touch("Root.gs");
+    ClassPathEntryIndex index = ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+
+    assertEquals("[Root.gs, a/Bar.gsx, a/b/Foo.gs]", getFiles(index).toString());
+    assertEquals(1, index.getDirectories("").length);
+    assertEquals("b", index.getDirectories("a")[0]);
+    assertNull(index.getDirectories("nosuchdir"));
+    assertTrue(index.covers(new String[] {".gsx"}));
+    assertFalse(index.covers(new String[] {".java"}));
+  }
+
+  public void testSavedIndexSeesChangedDirectories() throws IOException {
+    System.setProperty(ClassPathEntryIndex.INDEX_DIR_SYSTEM_PROP, _indexDir.getPath());
+    touch("a/b/Foo.gs");
+    ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    assertEquals(1, _indexDir.listFiles().length);
+
+    touch("a/b/Bar.gs");
+    touch("a/c/Baz.gs");
+    new File(_root, "a/b/Foo.gs").delete();
+    clearCaches();
+    ClassPathEntryIndex index = ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    assertEquals("[a/b/Bar.gs, a/c/Baz.gs]", getFiles(index).toString());
+  }
+
+  public void testPreviousIndexIsRevalidated() throws IOException {
+    touch("a/Foo.gs");
+    ClassPathEntryIndex previous = ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    touch("a/Bar.gs");
+    clearCaches();
+    ClassPathEntryIndex index = ClassPathEntryIndex.get(getRoot(), EXTS, false, previous);
+    assertEquals("[a/Bar.gs, a/Foo.gs]", getFiles(index).toString());
+  }
+
+  public void testSavedListingOfUnchangedDirectoryIsReused() throws IOException {
+    System.setProperty(ClassPathEntryIndex.INDEX_DIR_SYSTEM_PROP, _indexDir.getPath());
+    touch("a/Foo.gs");
+    touch("b/Bar.gs");
+    long lastModified = backdate(_root);
+    ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    File indexFile = _indexDir.listFiles()[0];
+
+    // Nothing changed, so nothing is listed and the index isn't rewritten
+    assertTrue(indexFile.setLastModified(0));
+    clearCaches();
+    ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    assertEquals(0, indexFile.lastModified());
+
+    // A file added to a directory whose time is unchanged isn't seen, since its saved listing is used
+    touch("a/Hidden.gs");
+    assertTrue(new File(_root, "a").setLastModified(lastModified));
+    touch("b/Baz.gs");
+    clearCaches();
+    ClassPathEntryIndex index = ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+    assertEquals("[a/Foo.gs, b/Bar.gs, b/Baz.gs]", getFiles(index).toString());
+    assertTrue(indexFile.lastModified() != 0);
+  }
+
+  public void testPreviousListingOfUnchangedDirectoryIsReused() throws IOException {
+    touch("a/Foo.gs");
+    touch("b/Bar.gs");
+    long lastModified = backdate(_root);
+    ClassPathEntryIndex previous = ClassPathEntryIndex.get(getRoot(), EXTS, false, null);
+
+    touch("a/Hidden.gs");
+    assertTrue(new File(_root, "a").setLastModified(lastModified));
+    touch("b/Baz.gs");
+    clearCaches();
+    ClassPathEntryIndex index = ClassPathEntryIndex.get(getRoot(), EXTS, false, previous);
+    assertEquals("[a/Foo.gs, b/Bar.gs, b/Baz.gs]", getFiles(index).toString());
+  }
+
+  /**
+   * Sets the time of the directory and those under it to well before the index is built,
+   * outside the time resolution within which a directory is always listed again.
+   *
+   * @return The time set
+   */
+  private static long backdate(File dir) {
+    long lastModified = (System.currentTimeMillis() - 60 * 60 * 1000) / 1000 * 1000;
+    backdate(dir, lastModified);
+    return lastModified;
+  }
+
+  private static void backdate(File dir, long lastModified) {
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (child.isDirectory()) {
+          backdate(child, lastModified);
+        }
+      }
+    }
+    assertTrue(dir.setLastModified(lastModified));
+  }
+
+  private IDirectory getRoot() {
+    return CommonServices.getFileSystem().getIDirectory(_root);
+  }
+
+  private void clearCaches() {
+    CommonServices.getFileSystem().clearAllCaches();
+  }
+
+  private static Set<String> getFiles(ClassPathEntryIndex index) {
+    final Set<String> files = new TreeSet<String>();
+    index.visitFiles(new ClassPathEntryIndex.FileVisitor() {
+      public void visit(String path, String fileName) {
+        files.add(ClassPathEntryIndex.join(path, fileName));
+      }
+    });
+    return files;
+  }
+
+  private void touch(String path) throws IOException {
+    File file = new File(_root, path);
+    file.getParentFile().mkdirs();
+    file.createNewFile();
+  }
+
+  private static File makeTempDir(String prefix) {
+    try {
+      File dir = File.createTempFile(prefix, "");
+      dir.delete();
+      dir.mkdirs();
+      return dir;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
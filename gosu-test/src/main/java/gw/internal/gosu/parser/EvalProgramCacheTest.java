@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.parser;
+
+import gw.internal.gosu.ir.transform.expression.EvalExpressionTransformer;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.ReflectUtil;
+import gw.lang.reflect.TypeSystem;
+import gw.test.TestClass;
+
+import java.util.Arrays;
+
+/**
+ */
+public class EvalProgramCacheTest extends TestClass
+{
+  private static final String SITE = "gw.internal.gosu.parser.EvalCacheSite";
+  // the lines of the eval() expressions in EvalCacheSite
+  private static final int SITE_LINE = 5;
+  private static final int THRASHING_SITE_LINE = 9;
+
+  @Override
+  public void beforeTestMethod()
+  {
+    super.beforeTestMethod();
+    EvalProgramCache.clear();
+  }
+
+  public void testRepeatedEvalAtSameSiteIsHit()
+  {
+    assertEquals( 42, evaluate( "40 + 2" ) );
+    long lCompiles = EvalProgramCache.getCompiles();
+    long lHits = EvalProgramCache.getHits();
+    assertEquals( 42, evaluate( "40 + 2" ) );
+    assertEquals( lCompiles, EvalProgramCache.getCompiles() );
+    assertEquals( lHits + 1, EvalProgramCache.getHits() );
+  }
+
+  public void testDifferentSourceMisses()
+  {
+    assertEquals( 3, evaluate( "1 + 2" ) );
+    long lCompiles = EvalProgramCache.getCompiles();
+    long lMisses = EvalProgramCache.getMisses();
+    assertEquals( 4, evaluate( "2 + 2" ) );
+    assertEquals( lCompiles + 1, EvalProgramCache.getCompiles() );
+    assertEquals( lMisses + 1, EvalProgramCache.getMisses() );
+  }
+
+  public void testRefreshDropsCachedPrograms()
+  {
+    assertEquals( 5, evaluate( "2 + 3" ) );
+    long lCompiles = EvalProgramCache.getCompiles();
+    TypeSystem.refresh( false );
+    assertEquals( 5, evaluate( "2 + 3" ) );
+    assertEquals( lCompiles + 1, EvalProgramCache.getCompiles() );
+  }
+
+  public void testPrecompiledProgramIsNotCompiledAgain()
+  {
+    assertEquals( 1, EvalExpressionTransformer.precompile( TypeSystem.getByFullName( SITE ), SITE_LINE, Arrays.asList( "6 * 7", "6 * 8" ) ) );
+    long lCompiles = EvalProgramCache.getCompiles();
+    assertEquals( 42, evaluate( "6 * 7" ) );
+    assertEquals( 48, evaluate( "6 * 8" ) );
+    assertEquals( lCompiles, EvalProgramCache.getCompiles() );
+  }
+
+  public void testPrecompileWithoutEvalOnLineFails()
+  {
+    try
+    {
+      EvalExpressionTransformer.precompile( TypeSystem.getByFullName( SITE ), 1, Arrays.asList( "1" ) );
+      fail();
+    }
+    catch( IllegalArgumentException e )
+    {
+      // expected
+    }
+  }
+
+  public void testSiteEvaluatingManyDistinctSourcesIsReportedThrashing()
+  {
+    int iThrashCompiles = Integer.getInteger( EvalProgramCache.THRASH_COMPILES_SYSTEM_PROP, 100 );
+    for( int i = 0; i < iThrashCompiles; i++ )
+    {
+      assertEquals( i + 1, ReflectUtil.invokeStaticMethod( SITE, "evaluateThrashing", i + " + 1" ) );
+    }
+    assertEquals( 1, EvalProgramCache.getThrashingSites().size() );
+    assertTrue( EvalProgramCache.getThrashingSites().get( 0 ), EvalProgramCache.getThrashingSites().get( 0 ).startsWith( SITE + " line " + THRASHING_SITE_LINE + " " ) );
+  }
+
+  public void testEvalOutsideEvalExpressionIsNotCached()
+  {
+    IGosuClassInternal site = (IGosuClassInternal)TypeSystem.getByFullName( SITE );
+    long lCompiles = EvalProgramCache.getCompiles();
+    long lMisses = EvalProgramCache.getMisses();
+    for( int i = 0; i < 2; i++ )
+    {
+      assertEquals( 3, EvalExpressionTransformer.compileAndRunEvalSource( "1 + 2", null, new Object[0], new IType[0], site, site.getClassStatement() ) );
+    }
+    assertEquals( lCompiles, EvalProgramCache.getCompiles() );
+    assertEquals( lMisses, EvalProgramCache.getMisses() );
+  }
+
+  private static Object evaluate( String strSource )
+  {
+    return ReflectUtil.invokeStaticMethod( SITE, "evaluate", strSource );
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.runtime;
+
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.java.JavaTypes;
+import gw.test.TestClass;
+
+public class CallSiteCacheTest extends TestClass
+{
+  public void testSitesPerMemberNameAreBounded()
+  {
+    for( int i = 0; i < GosuRuntimeMethods.MAX_SITES * 2; i++ )
+    {
+      GosuRuntimeMethods.getPropertyTarget( JavaTypes.STRING(), "NoSuchProperty" + i, false );
+    }
+    assertTrue( GosuRuntimeMethods.getSiteCount() <= GosuRuntimeMethods.MAX_SITES );
+  }
+
+  public void testSitesAreClearedOnRefresh()
+  {
+    GosuRuntimeMethods.getPropertyTarget( JavaTypes.STRING(), "Bytes", false );
+    assertTrue( GosuRuntimeMethods.getSiteCount() > 0 );
+    TypeSystem.refresh( false );
+    assertEquals( 0, GosuRuntimeMethods.getSiteCount() );
+  }
+
+  public void testSiteIsMegamorphicPastMaxPolymorphism()
+  {
+    CallSiteCache<String> site = new CallSiteCache<String>();
+    site.put( JavaTypes.STRING(), null, "String" );
+    site.put( JavaTypes.INTEGER(), null, "Integer" );
+    site.put( JavaTypes.LONG(), null, "Long" );
+    site.put( JavaTypes.DOUBLE(), null, "Double" );
+    assertFalse( site.isMegamorphic() );
+    site.put( JavaTypes.FLOAT(), null, "Float" );
+    assertTrue( site.isMegamorphic() );
+    assertEquals( "String", site.get( JavaTypes.STRING(), null ) );
+    assertEquals( "Float", site.get( JavaTypes.FLOAT(), null ) );
+    assertNull( site.get( JavaTypes.SHORT(), null ) );
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.runtime;
+
+import gw.test.TestClass;
+
+public class DeclaredMethodCacheTest extends TestClass
+{
+  public void testPrimitiveArgsWiden()
+  {
+    assertEquals( 3L, invoke( "add", new Class[]{long.class, long.class}, new Target(), 1, 2 ) );
+    assertEquals( 98L, invoke( "add", new Class[]{long.class, long.class}, new Target(), (byte)1, 'a' ) );
+    assertEquals( 1.5, invoke( "toDouble", new Class[]{double.class}, null, 1.5f ) );
+    assertEquals( (double)Long.MAX_VALUE, invoke( "toDouble", new Class[]{double.class}, null, Long.MAX_VALUE ) );
+  }
+
+  public void testPrimitiveArgsDoNotNarrow()
+  {
+    assertIllegalArgument( "add", new Class[]{long.class, long.class}, new Target(), 1.0, 2 );
+    assertIllegalArgument( "toDouble", new Class[]{double.class}, null, "1.5" );
+  }
+
+  public void testNullForPrimitiveIsIllegalArgument()
+  {
+    assertIllegalArgument( "add", new Class[]{long.class, long.class}, new Target(), 1L, null );
+    assertIllegalArgument( "toDouble", new Class[]{double.class}, null, new Object[]{null} );
+  }
+
+  public void testMismatchedReferenceArgIsIllegalArgument()
+  {
+    assertNull( invoke( "echo", new Class[]{String.class}, null, new Object[]{null} ) );
+    assertIllegalArgument( "echo", new Class[]{String.class}, null, 5 );
+  }
+
+  public void testWrongRootOrArgCountIsIllegalArgument()
+  {
+    assertIllegalArgument( "add", new Class[]{long.class, long.class}, "not a target", 1, 2 );
+    assertIllegalArgument( "add", new Class[]{long.class, long.class}, new Target(), 1 );
+  }
+
+  public void testArityAboveDirectInvocation()
+  {
+    Class[] five = {int.class, int.class, int.class, int.class, int.class};
+    assertEquals( 15, invoke( "sum", five, null, 1, 2, 3, (short)4, (byte)5 ) );
+    assertIllegalArgument( "sum", five, null, 1, 2, 3, 4, 5L );
+
+    Class[] six = {int.class, long.class, String.class, double.class, char.class, boolean.class};
+    assertEquals( "1,2,c,4.0,e,true", invoke( "join", six, null, 1, 2, "c", 4, 'e', true ) );
+    assertIllegalArgument( "join", six, null, 1, 2, "c", 4, 'e', null );
+  }
+
+  public void testVoidReturnsNull()
+  {
+    assertNull( invoke( "nothing", new Class[0], null ) );
+  }
+
+  public void testTargetExceptionIsNotWrapped()
+  {
+    try
+    {
+      invoke( "fail", new Class[0], new Target() );
+      fail();
+    }
+    catch( IllegalStateException e )
+    {
+      assertEquals( "fail", e.getMessage() );
+    }
+  }
+
+  private static Object invoke( String methodName, Class[] argTypes, Object root, Object... args )
+  {
+    return GosuRuntimeMethods.invokeMethod( Target.class, methodName, argTypes, root, args );
+  }
+
+  private static void assertIllegalArgument( String methodName, Class[] argTypes, Object root, Object... args )
+  {
+    try
+    {
+      invoke( methodName, argTypes, root, args );
+      fail( "Expected IllegalArgumentException" );
+    }
+    catch( IllegalArgumentException e )
+    {
+      // expected, as from Method.invoke()
+    }
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  private static class Target
+  {
+    private long add( long a, long b )
+    {
+      return a + b;
+    }
+
+    private static double toDouble( double d )
+    {
+      return d;
+    }
+
+    private static String echo( String str )
+    {
+      return str;
+    }
+
+    private static int sum( int a, int b, int c, int d, int e )
+    {
+      return a + b + c + d + e;
+    }
+
+    private static String join( int a, long b, String c, double d, char e, boolean f )
+    {
+      return a + "," + b + "," + c + "," + d + "," + e + "," + f;
+    }
+
+    private static void nothing()
+    {
+    }
+
+    private void fail()
+    {
+      throw new IllegalStateException( "fail" );
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.template;
+
+import gw.test.TestClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ */
+public class AsyncTemplateOutputTest extends TestClass
+{
+  private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+  private static final int CHUNKS = Integer.getInteger( AsyncTemplateOutput.CHUNKS_SYSTEM_PROP, 16 );
+
+  public void testSlowReaderHoldsBackRender() throws Exception
+  {
+    ChunkRenderer renderer = new ChunkRenderer( 1000 );
+    AsyncTemplateOutput output = AsyncTemplateOutput.start( renderer );
+    try
+    {
+      Thread.sleep( 300 );
+      // the queue is full and the render waits for the reader, with one more chunk in hand
+      assertTrue( String.valueOf( renderer._written.get() ), renderer._written.get() <= CHUNKS + 1 );
+      StringBuilder expected = new StringBuilder();
+      for( int i = 0; i < 1000; i++ )
+      {
+        expected.append( "chunk " ).append( i ).append( '\n' );
+      }
+      assertEquals( expected.toString(), readAll( output ) );
+      assertTrue( renderer._done.await( 10, TimeUnit.SECONDS ) );
+      assertNull( renderer._error.get() );
+    }
+    finally
+    {
+      output.close();
+    }
+  }
+
+  public void testCloseMidRenderStopsRender() throws Exception
+  {
+    ChunkRenderer renderer = new ChunkRenderer( Integer.MAX_VALUE );
+    AsyncTemplateOutput output = AsyncTemplateOutput.start( renderer );
+    assertEquals( 'c', output.read() );
+    output.close();
+    assertTrue( renderer._done.await( 10, TimeUnit.SECONDS ) );
+    assertTrue( renderer._error.get() instanceof CancellationException );
+    try
+    {
+      output.read();
+      fail();
+    }
+    catch( IOException e )
+    {
+      // expected
+    }
+  }
+
+  public void testCloseWakesReaderOnAnotherThread() throws Exception
+  {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AsyncTemplateOutput output = AsyncTemplateOutput.start( new AsyncTemplateOutput.Renderer()
+    {
+      public void render( OutputStream out )
+      {
+        try
+        {
+          release.await();
+        }
+        catch( InterruptedException e )
+        {
+          throw new RuntimeException( e );
+        }
+      }
+    } );
+    final AtomicReference<Throwable> readError = new AtomicReference<Throwable>();
+    Thread reader = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          output.read();
+        }
+        catch( Throwable t )
+        {
+          readError.set( t );
+        }
+      }
+    };
+    try
+    {
+      reader.start();
+      Thread.sleep( 100 );
+      output.close();
+      reader.join( 10000 );
+      assertFalse( reader.isAlive() );
+      assertTrue( String.valueOf( readError.get() ), readError.get() instanceof IOException );
+    }
+    finally
+    {
+      release.countDown();
+    }
+  }
+
+  public void testRenderErrorIsThrownAfterEarlierOutput() throws Exception
+  {
+    final IllegalStateException error = new IllegalStateException( "Render failed" );
+    AsyncTemplateOutput output = AsyncTemplateOutput.start( new AsyncTemplateOutput.Renderer()
+    {
+      public void render( OutputStream out )
+      {
+        try
+        {
+          out.write( "before".getBytes( UTF_8 ) );
+        }
+        catch( IOException e )
+        {
+          throw new RuntimeException( e );
+        }
+        throw error;
+      }
+    } );
+    byte[] bytes = new byte[6];
+    int iRead = 0;
+    while( iRead < bytes.length )
+    {
+      iRead += output.read( bytes, iRead, bytes.length - iRead );
+    }
+    assertEquals( "before", new String( bytes, UTF_8 ) );
+    try
+    {
+      output.read();
+      fail();
+    }
+    catch( IOException e )
+    {
+      assertSame( error, e.getCause() );
+    }
+    assertEquals( -1, output.read() );
+  }
+
+  public void testDroppedOutputStopsRender() throws Exception
+  {
+    ChunkRenderer renderer = new ChunkRenderer( Integer.MAX_VALUE );
+    AsyncTemplateOutput.start( renderer ).read();
+    long lDeadline = System.currentTimeMillis() + 10000;
+    while( renderer._done.getCount() > 0 && System.currentTimeMillis() < lDeadline )
+    {
+      System.gc();
+      renderer._done.await( 50, TimeUnit.MILLISECONDS );
+    }
+    assertEquals( 0, renderer._done.getCount() );
+    assertTrue( renderer._error.get() instanceof CancellationException );
+  }
+
+  private static String readAll( InputStream in ) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] bytes = new byte[100];
+    int iRead;
+    while( (iRead = in.read( bytes )) >= 0 )
+    {
+      out.write( bytes, 0, iRead );
+    }
+    return new String( out.toByteArray(), UTF_8 );
+  }
+
+  /**
+   * Writes each line as a chunk of its own, as a <%@ flush %> after each line would.
+   */
+  private static class ChunkRenderer implements AsyncTemplateOutput.Renderer
+  {
+    private final int _iChunks;
+    private final AtomicInteger _written = new AtomicInteger();
+    private final AtomicReference<Throwable> _error = new AtomicReference<Throwable>();
+    private final CountDownLatch _done = new CountDownLatch( 1 );
+
+    ChunkRenderer( int iChunks )
+    {
+      _iChunks = iChunks;
+    }
+
+    public void render( OutputStream out )
+    {
+      try
+      {
+        for( int i = 0; i < _iChunks; i++ )
+        {
+          out.write( ("chunk " + i + "\n").getBytes( UTF_8 ) );
+          _written.incrementAndGet();
+        }
+      }
+      catch( Throwable t )
+      {
+        _error.set( t );
+        throw t instanceof RuntimeException ? (RuntimeException)t : new RuntimeException( t );
+      }
+      finally
+      {
+        _done.countDown();
+      }
+    }
+  }
+}
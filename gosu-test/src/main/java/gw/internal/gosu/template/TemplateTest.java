@@ -25,7 +25,21 @@ public class TemplateTest extends TestClass
   public void testRenderNoArgTemplateToWriter() throws ParseResultsException {
     Assert.assertEquals("No Arg Template", GosuTestUtil.eval("var w = new java.io.StringWriter(); gw.internal.gosu.template.NoArg.render(w); return w.toString()"));
   }
+
+  public void testRenderTemplateToStream() throws ParseResultsException {
+    Assert.assertEquals("No Arg Template", GosuTestUtil.eval("var out = new java.io.ByteArrayOutputStream(); gw.internal.gosu.template.NoArg.renderToStream(out); return out.toString(\"UTF-8\")"));
+    Assert.assertEquals("One Arg Template: bar1", GosuTestUtil.eval("var out = new java.io.ByteArrayOutputStream(); gw.internal.gosu.template.OneArg.renderToStream(out, \"bar1\"); return out.toString(\"UTF-8\")"));
+  }
   
+  public void testFlushDirective() throws ParseResultsException {
+    Assert.assertEquals("Before flush after flush: x", GosuTestUtil.eval("return gw.internal.gosu.template.Flushed.renderToString(\"x\")"));
+    Assert.assertEquals("Before flush after flush: x", GosuTestUtil.eval("var out = new java.io.ByteArrayOutputStream(); gw.internal.gosu.template.Flushed.renderToStream(out, \"x\"); return out.toString(\"UTF-8\")"));
+  }
+
+  public void testRenderAsync() throws ParseResultsException {
+    Assert.assertEquals("Before flush after flush: x", GosuTestUtil.eval("var out = gw.internal.gosu.template.Flushed.renderAsync(\"x\"); var s = gw.util.StreamUtil.getContent(new java.io.InputStreamReader(out, \"UTF-8\")); out.close(); return s"));
+  }
+
   public void testEvaluateStringLiteralInTemplate() throws ParseResultsException {
     Assert.assertEquals("evaluated string", GosuTestUtil.eval("return gw.internal.gosu.template.NoArgEval.renderToString()"));
   }
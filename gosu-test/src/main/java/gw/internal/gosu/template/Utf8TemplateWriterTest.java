@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.gosu.template;
+
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.gs.ITemplateType;
+import gw.test.TestClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Renders templates to streams and checks the bytes are what encoding the rendered string would give.
+ */
+public class Utf8TemplateWriterTest extends TestClass
+{
+  private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+  private static final String TEMPLATE = "gw.internal.gosu.template.Utf8Text";
+  private static final String SUPPLEMENTARY = "😀"; // U+1F600
+  private static final int BUFFER_SIZE = 8192;
+
+  public void testMultiByteStaticTextAndExpressions()
+  {
+    assertSameBytes( "é € " + SUPPLEMENTARY, "ü 中 𝄞" );
+    assertSameBytes( "", "" );
+  }
+
+  public void testSurrogatePairSplitAcrossBuffer()
+  {
+    // the pair's high surrogate lands on either side of the buffer's end for some padding
+    for( int iPad = BUFFER_SIZE - 64; iPad < BUFFER_SIZE + 8; iPad++ )
+    {
+      assertSameBytes( pad( iPad ) + SUPPLEMENTARY + "é", "€" );
+      assertSameBytes( "x", pad( iPad ) + SUPPLEMENTARY );
+    }
+  }
+
+  public void testUnpairedSurrogates()
+  {
+    // a high surrogate before static text, one at the end of the output, and a stray low surrogate
+    assertSameBytes( "a\uD83D", "b\uD83D" );
+    assertSameBytes( "\uDE00a", "\uD83D😀" );
+  }
+
+  public void testWriterEncodesLikeString() throws IOException
+  {
+    String str = pad( BUFFER_SIZE - 1 ) + SUPPLEMENTARY + "é€中" + SUPPLEMENTARY + "\uD83D";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Utf8TemplateWriter writer = new Utf8TemplateWriter( out );
+    for( int i = 0; i < str.length(); i++ )
+    {
+      writer.write( str.charAt( i ) );
+    }
+    writer.writeEncoded( "é".getBytes( UTF_8 ) );
+    writer.write( str.toCharArray(), 0, str.length() );
+    writer.finish();
+    assertTrue( Arrays.equals( (str + "é" + str).getBytes( UTF_8 ), out.toByteArray() ) );
+  }
+
+  private static void assertSameBytes( String p1, String p2 )
+  {
+    byte[] expected = TemplateRenderer.renderToString( getTemplate(), p1, p2 ).getBytes( UTF_8 );
+    byte[] actual = render( p1, p2 );
+    assertEquals( new String( expected, UTF_8 ), new String( actual, UTF_8 ) );
+    assertTrue( Arrays.equals( expected, actual ) );
+  }
+
+  private static byte[] render( String p1, String p2 )
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TemplateRenderer.renderToStream( getTemplate(), out, new Object[]{p1, p2} );
+    return out.toByteArray();
+  }
+
+  private static ITemplateType getTemplate()
+  {
+    return (ITemplateType)TypeSystem.getByFullName( TEMPLATE );
+  }
+
+  private static String pad( int iLength )
+  {
+    char[] chars = new char[iLength];
+    Arrays.fill( chars, 'a' );
+    return new String( chars );
+  }
+}
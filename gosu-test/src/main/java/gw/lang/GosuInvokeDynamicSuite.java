@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.lang;
+
+import gw.lang.reflect.gs.BytecodeOptions;
+import gw.test.Suite;
+import gw.test.TestEnvironment;
+import junit.framework.Test;
+
+/**
+ * Runs the dynamic and structural member access tests with invokedynamic call sites, see
+ * {@link BytecodeOptions#isInvokeDynamic()}. The option is read as classes are compiled, so it is
+ * turned on before any test class compiles; run this suite in its own VM.
+ */
+public class GosuInvokeDynamicSuite extends Suite
+{
+  public static Test suite()
+  {
+    BytecodeOptions.setInvokeDynamic( true );
+    return new GosuInvokeDynamicSuite()
+            .withTestEnvironment( new TestEnvironment() )
+            .withTest( "gw.internal.gosu.parser.classTests.gwtest.dynamic.DynamicTypeTest" )
+            .withTest( "gw.internal.gosu.parser.classTests.gwtest.dynamic.DynamicDispatchTest" )
+            .withTest( "gw.internal.gosu.parser.classTests.gwtest.dynamic.ExpandoTest" )
+            .withTest( "gw.internal.gosu.parser.classTests.gwtest.dynamic.CustomExpandoTest" )
+            .withTest( "gw.internal.gosu.parser.structural.StructuralTypeTest" )
+            .withTest( "gw.internal.gosu.compiler.InvokeDynamicTest" )
+            ;
+  }
+
+  public static void main( String[] args )
+  {
+    System.exit( new GosuInvokeDynamicSuite().runViaStaticSuiteMethod() ? 0 : 1 );
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.lang.gosuc;
+
+import gw.test.TestClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ */
+public class GosucCompilerTest extends TestClass {
+  private static final List<String> TYPES = Arrays.asList(
+    "gw.internal.gosu.parser.classTests.gwtest.inner.OuterFoo",
+    "gw.internal.gosu.parser.classTests.gwtest.inner.CanReferenceOuterFromInner",
+    "gw.internal.gosu.parser.classTests.gwtest.inner.InnerCanImplInnerInterface",
+    "gw.internal.gosu.parser.classTests.gwtest.anonymous.CanConstructAnonymousClassJavaInterface",
+    "gw.internal.gosu.parser.classTests.gwtest.dynamic.TestCls",
+    "gw.internal.gosu.parser.structural.FooStructureImpl",
+    "gw.internal.gosu.parser.structural.EchoImpl",
+    "gw.internal.gosu.parser.structural.GenericEchoImpl",
+    "gw.internal.gosu.parser.structural.PropertyStructImpl",
+    "gw.internal.gosu.parser.structural.StructuralTypeTest" );
+
+  public void testParallelCompileWritesTheSameFilesAsSerialCompile() throws IOException {
+    File serialDir = Files.createTempDirectory( "gosuc-serial" ).toFile();
+    File parallelDir = Files.createTempDirectory( "gosuc-parallel" ).toFile();
+    try {
+      assertEquals( TYPES.size(), new GosucCompiler( 1, serialDir ).compile( null, TYPES ).size() );
+      assertEquals( TYPES.size(), new GosucCompiler( 4, parallelDir ).compile( null, TYPES ).size() );
+
+      Map<String, byte[]> serial = readFiles( serialDir, "", new TreeMap<String, byte[]>() );
+      Map<String, byte[]> parallel = readFiles( parallelDir, "", new TreeMap<String, byte[]>() );
+      assertTrue( serial.containsKey( "gw/internal/gosu/parser/classTests/gwtest/inner/OuterFoo$InnerFoo.class" ) );
+      assertEquals( serial.keySet(), parallel.keySet() );
+      for( String path : serial.keySet() ) {
+        assertTrue( path, Arrays.equals( serial.get( path ), parallel.get( path ) ) );
+      }
+    }
+    finally {
+      delete( serialDir );
+      delete( parallelDir );
+    }
+  }
+
+  private static Map<String, byte[]> readFiles( File dir, String strPath, Map<String, byte[]> files ) throws IOException {
+    File[] children = dir.listFiles();
+    if( children != null ) {
+      for( File child : children ) {
+        if( child.isDirectory() ) {
+          readFiles( child, strPath + child.getName() + '/', files );
+        }
+        else {
+          files.put( strPath + child.getName(), Files.readAllBytes( child.toPath() ) );
+        }
+      }
+    }
+    return files;
+  }
+
+  private static void delete( File file ) {
+    File[] children = file.listFiles();
+    if( children != null ) {
+      for( File child : children ) {
+        delete( child );
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import gw.test.TestClass;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link BoundedHandoff} implementation.
+ */
+public class BoundedHandoffTest extends TestClass {
+
+  public void testItemsThenEnd() throws Exception {
+    Object consumer = new Object();
+    BoundedHandoff<String> handoff = new BoundedHandoff<String>(consumer, 4);
+    handoff.put("a");
+    handoff.put("b");
+    handoff.end();
+    assertEquals("a", handoff.take());
+    assertEquals("b", handoff.take());
+    assertNull(handoff.take());
+    assertNull(handoff.take());
+  }
+
+  public void testFailureIsThrownAfterEarlierItems() throws Exception {
+    Object consumer = new Object();
+    BoundedHandoff<String> handoff = new BoundedHandoff<String>(consumer, 4);
+    handoff.put("a");
+    handoff.fail(new IllegalStateException("Broken"));
+    assertEquals("a", handoff.take());
+    try {
+      handoff.take();
+      fail();
+    }
+    catch (ExecutionException e) {
+      assertEquals("Broken", e.getCause().getMessage());
+    }
+    assertNull(handoff.take());
+  }
+
+  public void testCloseStopsBlockedProducer() throws Exception {
+    Object consumer = new Object();
+    final BoundedHandoff<String> handoff = new BoundedHandoff<String>(consumer, 1);
+    handoff.put("a");
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          handoff.put("b");
+        }
+        catch (CancellationException e) {
+          cancelled.countDown();
+        }
+      }
+    };
+    producer.start();
+    handoff.close();
+    assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+    assertTrue(handoff.isClosed());
+    try {
+      handoff.take();
+      fail();
+    }
+    catch (CancellationException e) {
+      // expected
+    }
+  }
+
+  public void testCloseWakesBlockedConsumer() throws Exception {
+    Object consumer = new Object();
+    final BoundedHandoff<String> handoff = new BoundedHandoff<String>(consumer, 1);
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          handoff.take();
+        }
+        catch (CancellationException e) {
+          cancelled.countDown();
+        }
+        catch (Exception e) {
+          // not counted
+        }
+      }
+    };
+    reader.start();
+    Thread.sleep(50);
+    handoff.close();
+    assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  public void testDroppedConsumerStopsProducer() throws Exception {
+    BoundedHandoff<String> handoff = new BoundedHandoff<String>(new Object(), 1);
+    handoff.put("a");
+    System.gc();
+    try {
+      // the queue is full, so this waits until it sees the consumer is gone
+      handoff.put("b");
+      fail();
+    }
+    catch (CancellationException e) {
+      // expected
+    }
+  }
+}
@@ -15,6 +15,10 @@ package gw.util.concurrent;
 
 import gw.test.TestClass;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Tests the {@link Cache} implementation.
  *
@@ -224,6 +228,132 @@ public class CacheTest extends TestClass {
     assertEquals(1, cache.getHits());
   }
 
+  public void testFrequentEntriesSurviveScan() {
+    final AtomicInteger loads = new AtomicInteger();
+    Cache<Integer,String> cache = new Cache<Integer,String>("testCache", 100, new Cache.MissHandler<Integer,String>() {
+      @Override
+      public String load(Integer key) {
+        loads.incrementAndGet();
+        return "v" + key;
+      }
+    });
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        cache.get(i);
+      }
+    }
+    for (int i = 1000; i < 2000; i++) {
+      cache.get(i);
+    }
+    assertTrue(cache.getUtilizedSize() <= 100);
+
+    loads.set(0);
+    for (int i = 0; i < 50; i++) {
+      cache.get(i);
+    }
+    assertTrue("hot entries were evicted by a scan: " + loads.get(), loads.get() < 10);
+  }
+
+  public void testWeightedSize() {
+    Cache<Integer,String> cache = Cache.makeWeighted("testCache", 10,
+      new Cache.Weigher<Integer,String>() {
+        @Override
+        public int weigh(Integer key, String value) {
+          return value.length();
+        }
+      },
+      new Cache.MissHandler<Integer,String>() {
+        @Override
+        public String load(Integer key) {
+          return LOAD[key];
+        }
+      });
+    assertEquals(LOAD[3], cache.get(THREE));
+    assertEquals(5, cache.getWeightedSize());
+    cache.put(FOUR, LOAD[4]);
+    assertEquals(9, cache.getWeightedSize());
+    cache.put(ONE, LOAD[1]);
+    assertTrue(cache.getWeightedSize() <= 10);
+
+    cache.evict(ONE);
+    cache.evict(THREE);
+    cache.evict(FOUR);
+    assertEquals(0, cache.getWeightedSize());
+    assertEquals(0, cache.getUtilizedSize());
+  }
+
+  public void testExpireAfterAccess() throws InterruptedException {
+    Cache<Integer,String> cache = Cache.makeExpiring("testCache", 10, 50, TimeUnit.MILLISECONDS, new Cache.MissHandler<Integer,String>() {
+      @Override
+      public String load(Integer key) {
+        return LOAD[key];
+      }
+    });
+    assertEquals(LOAD[1], cache.get(ONE));
+    assertEquals(LOAD[1], cache.getIfPresent(ONE));
+    Thread.sleep(100);
+    assertNull(cache.getIfPresent(ONE));
+
+    int counts[] = getCounts(cache);
+    assertEquals(LOAD[1], cache.get(ONE));
+    assertMiss(counts, cache);
+  }
+
+  public void testConcurrentMissesLoadOnce() throws InterruptedException {
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Cache<Integer,String> cache = new Cache<Integer,String>("testCache", 10, new Cache.MissHandler<Integer,String>() {
+      @Override
+      public String load(Integer key) {
+        loads.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        return LOAD[key];
+      }
+    });
+    final String[] results = new String[8];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        public void run() {
+          results[index] = cache.get(TWO);
+        }
+      };
+      threads[i].start();
+    }
+    Thread.sleep(100);
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, loads.get());
+    for (String result : results) {
+      assertEquals(LOAD[2], result);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testLoadCallingBackIntoCache() {
+    final Cache<Integer,String>[] cache = new Cache[1];
+    cache[0] = new Cache<Integer,String>("testCache", 10, new Cache.MissHandler<Integer,String>() {
+      @Override
+      public String load(Integer key) {
+        return key == 0 ? LOAD[0] : cache[0].get(key - 1) + LOAD[key];
+      }
+    });
+    assertEquals(LOAD[0] + LOAD[1] + LOAD[2], cache[0].get(TWO));
+  }
+
+  public void testCountsSaturateAtIntMax() {
+    assertEquals(5, Cache.saturatedCast(5));
+    assertEquals(Integer.MAX_VALUE, Cache.saturatedCast(Integer.MAX_VALUE + 1L));
+    assertEquals(Integer.MAX_VALUE, Cache.saturatedCast(Long.MAX_VALUE));
+  }
+
   private void assertHit(int[] counts, Cache cache) {
     assertEquals(counts[0] + 1, cache.getRequests());
     assertEquals(counts[1], cache.getMisses());
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.concurrent;
+
+import gw.test.TestClass;
+
+/**
+ * Tests the {@link ShardedCache} implementation.
+ */
+public class ShardedCacheTest extends TestClass {
+
+  public void testGetLoadsOnMissAndCountsAcrossShards() {
+    ShardedCache<Integer, String> cache = ShardedCache.make("testCache", 1000, new Cache.MissHandler<Integer, String>() {
+      @Override
+      public String load(Integer key) {
+        return "v" + key;
+      }
+    });
+    for (int i = 0; i < 100; i++) {
+      assertEquals("v" + i, cache.get(i));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals("v" + i, cache.get(i));
+    }
+    assertEquals(100, cache.getUtilizedSize());
+    assertEquals(200, cache.getRequests());
+    assertEquals(100, cache.getMisses());
+    assertEquals(100, cache.getHits());
+  }
+
+  public void testGetIfPresentDoesNotLoad() {
+    ShardedCache<Integer, String> cache = ShardedCache.make("testCache", 1000, null);
+    assertNull(cache.getIfPresent(1));
+    cache.put(1, "one");
+    assertEquals("one", cache.getIfPresent(1));
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+
+    cache.evict(1);
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testSizeIsBoundedAndSplitBetweenShards() {
+    ShardedCache<Integer, String> cache = ShardedCache.make("testCache", 256, null);
+    assertTrue(Integer.bitCount(cache.getShardCount()) == 1);
+    assertTrue(cache.getConfiguredSize() <= 256);
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i, "v" + i);
+    }
+    assertTrue(cache.getUtilizedSize() <= cache.getConfiguredSize());
+
+    cache.clear();
+    assertEquals(0, cache.getUtilizedSize());
+    assertEquals(0, cache.getRequests());
+  }
+}
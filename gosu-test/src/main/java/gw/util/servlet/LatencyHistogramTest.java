@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.servlet;
+
+import gw.test.TestClass;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ */
+public class LatencyHistogramTest extends TestClass
+{
+  public void testEmpty()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals( 0, histogram.getCount() );
+    assertEquals( 0, histogram.getMeanMicros() );
+    assertEquals( 0, histogram.getMaxMicros() );
+    assertEquals( 0, histogram.getPercentileMicros( 50 ) );
+  }
+
+  public void testPercentilesAreBucketUpperBounds()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for( int i = 0; i < 90; i++ )
+    {
+      histogram.record( TimeUnit.MICROSECONDS.toNanos( 10 ) );
+    }
+    for( int i = 0; i < 9; i++ )
+    {
+      histogram.record( TimeUnit.MICROSECONDS.toNanos( 300 ) );
+    }
+    histogram.record( TimeUnit.MICROSECONDS.toNanos( 5000 ) );
+    assertEquals( 100, histogram.getCount() );
+    assertEquals( (90 * 10 + 9 * 300 + 5000) / 100, histogram.getMeanMicros() );
+    assertEquals( 5000, histogram.getMaxMicros() );
+    // 10us is in the 8-15us bucket, 300us in the 256-511us bucket
+    assertEquals( 15, histogram.getPercentileMicros( 50 ) );
+    assertEquals( 15, histogram.getPercentileMicros( 90 ) );
+    assertEquals( 511, histogram.getPercentileMicros( 91 ) );
+    assertEquals( 511, histogram.getPercentileMicros( 99 ) );
+    // the 4096-8191us bucket is capped at the max
+    assertEquals( 5000, histogram.getPercentileMicros( 100 ) );
+  }
+
+  public void testBucketBoundaries()
+  {
+    assertEquals( 0, getBucketUpperBound( 0 ) );
+    assertEquals( 0, getBucketUpperBound( 999 ) ); // under a microsecond
+    assertEquals( 1, getBucketUpperBound( 1000 ) );
+    assertEquals( 3, getBucketUpperBound( TimeUnit.MICROSECONDS.toNanos( 2 ) ) );
+    assertEquals( 7, getBucketUpperBound( TimeUnit.MICROSECONDS.toNanos( 7 ) ) );
+    assertEquals( 15, getBucketUpperBound( TimeUnit.MICROSECONDS.toNanos( 8 ) ) );
+    assertEquals( 0, getBucketUpperBound( -5000 ) );
+  }
+
+  public void testLatenciesPastLastBucketAreCountedInIt()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( TimeUnit.MICROSECONDS.toNanos( 1 ) );
+    histogram.record( TimeUnit.DAYS.toNanos( 1 ) );
+    assertEquals( 2, histogram.getCount() );
+    assertEquals( TimeUnit.DAYS.toMicros( 1 ), histogram.getMaxMicros() );
+    assertEquals( (1L << 31) - 1, histogram.getPercentileMicros( 100 ) );
+  }
+
+  public void testToString()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( TimeUnit.MICROSECONDS.toNanos( 10 ) );
+    assertEquals( "Count:1, Mean:10us, p50:10us, p90:10us, p99:10us, Max:10us", histogram.toString() );
+  }
+
+  private static long getBucketUpperBound( long lNanos )
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( lNanos );
+    // a larger max, so the percentile isn't capped at the recorded latency
+    histogram.record( TimeUnit.SECONDS.toNanos( 1 ) );
+    return histogram.getPercentileMicros( 50 );
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.util.servlet;
+
+import gw.test.TestClass;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ */
+public class TemplateCacheTest extends TestClass
+{
+  private ExecutorService _compiler;
+  private CountingCache _cache;
+
+  @Override
+  public void beforeTestMethod()
+  {
+    super.beforeTestMethod();
+    _compiler = Executors.newSingleThreadExecutor();
+    _cache = new CountingCache( _compiler );
+  }
+
+  @Override
+  public void afterTestMethod( Throwable possibleException )
+  {
+    _compiler.shutdownNow();
+    super.afterTestMethod( possibleException );
+  }
+
+  public void testCachedTemplateIsReused() throws Exception
+  {
+    TemplateCache.Template template = _cache.get( "a.Page" );
+    assertNotNull( template );
+    assertSame( template, _cache.get( "a.Page" ) );
+    assertEquals( 1, _cache.getCompiles( "a.Page" ) );
+  }
+
+  public void testMissingTemplateIsLookedUpAgain() throws Exception
+  {
+    assertNull( _cache.get( "a.Missing" ) );
+    assertNull( _cache.get( "a.Missing" ) );
+    assertEquals( 2, _cache.getCompiles( "a.Missing" ) );
+  }
+
+  public void testRefreshCompilesTemplatesAgainInBackground() throws Exception
+  {
+    TemplateCache.Template template = _cache.get( "a.Page" );
+    _cache.invalidate();
+    awaitCompiler();
+    assertEquals( 2, _cache.getCompiles( "a.Page" ) );
+    TemplateCache.Template recompiled = _cache.get( "a.Page" );
+    assertNotSame( template, recompiled );
+    assertEquals( 2, _cache.getCompiles( "a.Page" ) );
+  }
+
+  public void testRefreshOfManyTypesCompilesEachTemplateOnce() throws Exception
+  {
+    _cache.get( "a.Page" );
+    _cache.get( "b.Page" );
+    CountDownLatch release = blockCompiler();
+    for( int i = 0; i < 100; i++ )
+    {
+      // the type system notifies once per refreshed type
+      _cache.invalidate();
+    }
+    release.countDown();
+    awaitCompiler();
+    assertEquals( 2, _cache.getCompiles( "a.Page" ) );
+    assertEquals( 2, _cache.getCompiles( "b.Page" ) );
+  }
+
+  public void testRequestDoesNotWaitForQueuedRecompile() throws Exception
+  {
+    _cache.get( "a.Page" );
+    CountDownLatch release = blockCompiler();
+    _cache.invalidate();
+    assertNotNull( _cache.get( "a.Page" ) );
+    release.countDown();
+    awaitCompiler();
+    // the queued compile finds the template the request compiled
+    assertEquals( 2, _cache.getCompiles( "a.Page" ) );
+  }
+
+  public void testFailedCompileIsRemoved() throws Exception
+  {
+    _cache._bFail = true;
+    try
+    {
+      _cache.get( "a.Page" );
+      fail();
+    }
+    catch( ExecutionException e )
+    {
+      assertEquals( "Compile failed", e.getCause().getMessage() );
+    }
+    _cache._bFail = false;
+    assertNotNull( _cache.get( "a.Page" ) );
+    assertEquals( 2, _cache.getCompiles( "a.Page" ) );
+  }
+
+  public void testWarmUpCompilesInBackground() throws Exception
+  {
+    _cache.compileInBackground( "a.Page" );
+    awaitCompiler();
+    assertEquals( 1, _cache.getCompiles( "a.Page" ) );
+    assertNotNull( _cache.get( "a.Page" ) );
+    assertEquals( 1, _cache.getCompiles( "a.Page" ) );
+  }
+
+  private CountDownLatch blockCompiler() throws InterruptedException
+  {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    _compiler.execute( new Runnable()
+    {
+      public void run()
+      {
+        started.countDown();
+        try
+        {
+          release.await();
+        }
+        catch( InterruptedException e )
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    } );
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    return release;
+  }
+
+  private void awaitCompiler() throws Exception
+  {
+    // the compiler runs one task at a time, in order
+    _compiler.submit( new Runnable()
+    {
+      public void run()
+      {
+      }
+    } ).get( 10, TimeUnit.SECONDS );
+  }
+
+  /**
+   * Compiles a template for any name but "Missing" ones, counting the compiles.
+   */
+  private static class CountingCache extends TemplateCache
+  {
+    private final Map<String, AtomicInteger> _compiles = new ConcurrentHashMap<String, AtomicInteger>();
+    private volatile boolean _bFail;
+
+    CountingCache( ExecutorService compiler )
+    {
+      super( compiler );
+    }
+
+    @Override
+    Template compile( String strType )
+    {
+      AtomicInteger count = _compiles.get( strType );
+      if( count == null )
+      {
+        _compiles.put( strType, count = new AtomicInteger() );
+      }
+      count.incrementAndGet();
+      if( _bFail )
+      {
+        throw new IllegalStateException( "Compile failed" );
+      }
+      return strType.endsWith( "Missing" ) ? null : new Template( null, null );
+    }
+
+    int getCompiles( String strType )
+    {
+      AtomicInteger count = _compiles.get( strType );
+      return count == null ? 0 : count.get();
+    }
+  }
+}
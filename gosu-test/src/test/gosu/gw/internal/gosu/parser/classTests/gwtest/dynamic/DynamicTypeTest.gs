@@ -53,6 +53,17 @@ class DynamicTypeTest extends gw.BaseVerifyErrantTest {
     assertNull( dyn?.Foo )
   }
 
+  function testPropertyOnManyReceiverTypesAtOneSite() {
+    var values : List<Dynamic> = {"a", new StringBuilder( "ab" ), new StringBuffer( "abc" ), new String[] {"a", "b", "c", "d"},
+                                  "abcde", new StringBuilder( "abcdef" ), new int[7], "abcdefgh"}
+    var lengths = new ArrayList<Integer>()
+    for( i in 0..|3 ) {
+      for( v in values ) {
+        lengths.add( v.length )
+      }
+    }
+    assertEquals( {1, 2, 3, 4, 5, 6, 7, 8, 1, 2, 3, 4, 5, 6, 7, 8, 1, 2, 3, 4, 5, 6, 7, 8}, lengths )
+  }
 
   //
   // Methods
@@ -62,6 +73,17 @@ class DynamicTypeTest extends gw.BaseVerifyErrantTest {
     assertEquals( 'h', dyn.charAt( 0 ) )
   }
 
+  function testMethodOnManyReceiverTypesAtOneSite() {
+    var values : List<Dynamic> = {"a", new StringBuilder( "b" ), new StringBuffer( "c" ), 1, 2L, 3.0, true, 'x'}
+    var strings = new ArrayList<String>()
+    for( i in 0..|2 ) {
+      for( v in values ) {
+        strings.add( v.toString() )
+      }
+    }
+    assertEquals( {"a", "b", "c", "1", "2", "3.0", "true", "x", "a", "b", "c", "1", "2", "3.0", "true", "x"}, strings )
+  }
+
   function testDeclaredMethodFromDeclaredMethod() {
     var dyn : Dynamic = "hello"
     assertEquals( 'e', dyn.substring( 1 ).charAt( 0 ) )
@@ -2,6 +2,7 @@ package gw.internal.gosu.parser.classTests.gwtest.dynamic
 
 uses dynamic.Dynamic
 uses java.lang.*
+uses gw.lang.reflect.Expando
 uses gw.lang.reflect.IExpando
 uses java.util.Map
 uses java.util.HashMap
@@ -81,4 +82,88 @@ class ExpandoTest extends gw.BaseVerifyErrantTest {
     assertEquals( "POS", car.Model )
     assertEquals( 2003, car.Year)
   }
-}
\ No newline at end of file
+
+  function testSameFieldsShareShape() {
+    var first = new Expando()
+    first.setFieldValue( "Make", "Acura" )
+    first.setFieldValue( "Year", 1991 )
+    var second = new Expando()
+    second.setFieldValue( "Make", "Audi" )
+    second.setFieldValue( "Year", 2003 )
+    assertSame( first.Shape, second.Shape )
+    assertEquals( "Acura", first.getFieldValue( "Make" ) )
+    assertEquals( 2003, second.getFieldValue( "Year" ) )
+  }
+
+  function testMapViewKeepsOrderAndRemoves() {
+    var expando = new Expando()
+    expando.setFieldValue( "C", 3 )
+    expando.setFieldValue( "A", 1 )
+    expando.setFieldValue( "B", 2 )
+    var map = expando.getMap() as Map<String, Object>
+    assertEquals( {"C", "A", "B"}, map.keySet().toList() )
+    assertEquals( 1, map.remove( "A" ) )
+    assertEquals( {"C", "B"}, map.keySet().toList() )
+    assertNull( expando.getFieldValue( "A" ) )
+    assertEquals( 2, expando.getFieldValue( "B" ) )
+    map.put( "A", 4 )
+    assertEquals( {"C", "B", "A"}, map.keySet().toList() )
+    assertEquals( 4, expando.getFieldValue( "A" ) )
+  }
+
+  function testNullFieldNameIsRejected() {
+    var expando = new Expando()
+    expando.setFieldValue( "A", 1 )
+    assertNull( expando.getFieldValue( null ) )
+    try {
+      expando.setFieldValue( null, 2 )
+      fail()
+    }
+    catch( e: IllegalArgumentException ) {
+      // expected
+    }
+    try {
+      (expando.getMap() as Map<String, Object>).put( null, 2 )
+      fail()
+    }
+    catch( e: IllegalArgumentException ) {
+      // expected
+    }
+    assertEquals( {"A"}, expando.getMap().keySet().toList() )
+  }
+
+  function testManyFieldsUseOwnShape() {
+    var first = new Expando()
+    var second = new Expando()
+    for( i in 0..|20 ) {
+      first.setFieldValue( "F" + i, i )
+      second.setFieldValue( "F" + i, i )
+    }
+    assertTrue( first.Shape.DictionaryMode )
+    assertNotSame( first.Shape, second.Shape )
+    var map = first.getMap() as Map<String, Object>
+    assertEquals( 3, map.remove( "F3" ) )
+    assertEquals( 13, first.getFieldValue( "F13" ) )
+    assertEquals( 19, map.size() )
+    var it = map.entrySet().iterator()
+    while( it.hasNext() ) {
+      it.next()
+      it.remove()
+    }
+    assertTrue( map.Empty )
+    assertEquals( 5, second.getFieldValue( "F5" ) )
+  }
+
+  function testRemoveKeepsSharedShape() {
+    var expando = new Expando()
+    expando.setFieldValue( "A", 1 )
+    expando.setFieldValue( "B", 2 )
+    expando.setFieldValue( "C", 3 )
+    expando.getMap().remove( "B" )
+    var other = new Expando()
+    other.setFieldValue( "A", 1 )
+    other.setFieldValue( "C", 3 )
+    assertSame( other.Shape, expando.Shape )
+    assertEquals( 3, expando.getFieldValue( "C" ) )
+  }
+}
@@ -0,0 +1,5 @@
+package gw.internal.gosu.parser.structural
+
+structure HasLength {
+  function length() : int
+}
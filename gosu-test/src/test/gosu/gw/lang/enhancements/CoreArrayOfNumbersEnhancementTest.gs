@@ -8,6 +8,7 @@ uses java.lang.Float
 uses java.math.BigDecimal
 uses java.math.BigInteger
 uses java.lang.ArithmeticException
+uses java.lang.IllegalStateException
 
 class CoreArrayOfNumbersEnhancementTest extends TestClass
 {  
@@ -58,4 +59,16 @@ class CoreArrayOfNumbersEnhancementTest extends TestClass
     assertEquals( 0.0 as BigDecimal, new float[]{-2.0, -1.0, 0.0, 1.0, 2.0}.average() )
   }
 
-}
\ No newline at end of file
+  function testMinMax() {
+    assertEquals( -2, new int[]{3, -2, 7}.min() )
+    assertEquals( 7, new int[]{3, -2, 7}.max() )
+    assertEquals( -2 as long, new long[]{3, -2, 7}.min() )
+    assertEquals( 7 as long, new long[]{3, -2, 7}.max() )
+    assertEquals( -2.5, new double[]{3, -2.5, 7}.min(), 0.0 )
+    assertEquals( 7.0, new double[]{3, -2.5, 7}.max(), 0.0 )
+    assertEquals( 4, new int[]{4}.min() )
+    assertCausesException( \ -> new int[0].min(), IllegalStateException )
+    assertCausesException( \ -> new double[0].max(), IllegalStateException )
+  }
+
+}
@@ -52,4 +52,16 @@ class CoreIterableOfNumbersEnhancementTest extends TestClass
     assertEquals( 0.0 as BigDecimal, {-2.0, -1.0, 0.0, 1.0, 2.0}.average() )
   }
 
+  function testAverageOfLongsPastOverflow() {
+    assertEquals( Long.MAX_VALUE as BigDecimal, {Long.MAX_VALUE, Long.MAX_VALUE}.average() )
+    assertEquals( 1.5 as BigDecimal, new ArrayList<Number>(){1, 2 as Long, 1.5 as BigDecimal}.average() )
+  }
+
+  function testSumOfIntervals() {
+    assertEquals( 55 as Integer, (1..10).sum() )
+    assertEquals( 45 as Integer, (1..|10).sum() )
+    assertEquals( 25 as Integer, (1..10).step( 2 ).sum() )
+    assertEquals( 55 as Long, (1L..10L).sum() )
+  }
+
 }
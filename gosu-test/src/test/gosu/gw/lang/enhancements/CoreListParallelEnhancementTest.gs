@@ -0,0 +1,74 @@
+package gw.lang.enhancements
+
+uses gw.test.TestClass
+uses java.lang.Integer
+uses java.lang.Thread
+uses java.math.BigDecimal
+uses java.util.ArrayList
+uses java.util.LinkedList
+uses java.util.concurrent.ConcurrentHashMap
+uses java.util.concurrent.ForkJoinPool
+
+class CoreListParallelEnhancementTest extends TestClass {
+
+  function testSmallListsMatchSequential() {
+    var list = {1, 2, 3, 4}
+    assertEquals( list.map( \ e -> e * 2 ), list.parallelMap( \ e -> e * 2 ) )
+    assertEquals( list.where( \ e -> e % 2 == 0 ), list.parallelWhere( \ e -> e % 2 == 0 ) )
+    assertEquals( {}, new ArrayList<Integer>().parallelMap( \ e -> e * 2 ) )
+  }
+
+  function testMapPreservesOrder() {
+    var list = makeList( 100000 )
+    assertEquals( list.map( \ e -> e * 3 ), list.parallelMap( \ e -> e * 3 ) )
+  }
+
+  function testWherePreservesOrder() {
+    var list = makeList( 100000 )
+    assertEquals( list.where( \ e -> e % 7 == 0 ), list.parallelWhere( \ e -> e % 7 == 0 ) )
+  }
+
+  function testLinkedList() {
+    var list = new LinkedList<Integer>( makeList( 10000 ) )
+    assertEquals( list.map( \ e -> e + 1 ), list.parallelMap( \ e -> e + 1 ) )
+  }
+
+  function testReduce() {
+    var list = makeList( 100000 )
+    var expected = list.reduce( 0L, \ v, e -> v + e )
+    assertEquals( expected, list.parallelReduce( 0L, \ v, e -> v + e, \ v1, v2 -> v1 + v2 ) )
+  }
+
+  function testSums() {
+    var list = makeList( 100000 )
+    assertEquals( list.sum( \ e -> e as int ), list.parallelSum( \ e -> e as int ) )
+    assertEquals( list.sum( \ e -> e as long ), list.parallelSum( \ e -> e as long ) )
+    assertEquals( list.sum( \ e -> e as double ), list.parallelSum( \ e -> e as double ), 0.0 )
+    assertEquals( list.sum( \ e -> e as BigDecimal ), list.parallelSum( \ e -> e as BigDecimal ) )
+  }
+
+  function testCustomPool() {
+    var pool = new ForkJoinPool( 2 )
+    try {
+      var threads = new ConcurrentHashMap<Thread, Boolean>()
+      var list = makeList( 100000 )
+      list.parallelMap( \ e -> {
+        threads.put( Thread.currentThread(), true )
+        return e
+      }, pool )
+      assertFalse( threads.containsKey( Thread.currentThread() ) )
+      assertTrue( threads.size() <= 2 )
+    }
+    finally {
+      pool.shutdown()
+    }
+  }
+
+  private function makeList( size : int ) : List<Integer> {
+    var list = new ArrayList<Integer>( size )
+    for( i in 0..|size ) {
+      list.add( i )
+    }
+    return list
+  }
+}
@@ -0,0 +1,96 @@
+package gw.util
+
+uses gw.test.TestClass
+uses java.lang.Integer
+uses java.util.ArrayList
+
+class SequenceTest extends TestClass {
+
+  function testNothingIsEvaluatedUntilTerminalOperation() {
+    var calls = 0
+    var seq = {1, 2, 3}.asSequence().map( \ e -> {
+      calls++
+      return e * 2
+    } )
+    assertEquals( 0, calls )
+    assertEquals( {2, 4, 6}, seq.toList() )
+    assertEquals( 3, calls )
+  }
+
+  function testChainIsEvaluatedInOnePass() {
+    var order = new ArrayList<String>()
+    var result = {1, 2, 3}.asSequence()
+      .where( \ e -> {
+        order.add( "where" + e )
+        return e != 2
+      } )
+      .map( \ e -> {
+        order.add( "map" + e )
+        return e * 10
+      } )
+      .toList()
+    assertEquals( {10, 30}, result )
+    assertEquals( {"where1", "map1", "where2", "where3", "map3"}, order )
+  }
+
+  function testFirstWhereStopsReadingSource() {
+    var calls = 0
+    var result = {1, 2, 3, 4, 5}.asSequence()
+      .map( \ e -> {
+        calls++
+        return e * e
+      } )
+      .firstWhere( \ e -> e > 3 )
+    assertEquals( 4, result )
+    assertEquals( 2, calls )
+    assertNull( {1, 2}.asSequence().firstWhere( \ e -> e > 5 ) )
+    assertNull( new ArrayList<Integer>().asSequence().first() )
+  }
+
+  function testFlatMap() {
+    assertEquals( {1, 1, 2, 1, 2, 3}, {1, 2, 3}.asSequence().flatMap( \ e -> (1..e).toList() ).toList() )
+    assertEquals( {1, 1}, {1, 2, 3}.asSequence().flatMap( \ e -> (1..e).toList() ).take( 2 ).toList() )
+  }
+
+  function testWhereTypeIs() {
+    var objs : List<Object> = {1, "a", 2, "b"}
+    assertEquals( {"a", "b"}, objs.asSequence().whereTypeIs( String ).toList() )
+  }
+
+  function testTakeAndSkip() {
+    var calls = 0
+    var seq = {1, 2, 3, 4, 5}.asSequence().map( \ e -> {
+      calls++
+      return e
+    } )
+    assertEquals( {1, 2}, seq.take( 2 ).toList() )
+    assertEquals( 2, calls )
+    assertEquals( {}, seq.take( 0 ).toList() )
+    assertEquals( {4, 5}, seq.skip( 3 ).toList() )
+    assertEquals( {3}, seq.skip( 2 ).take( 1 ).toList() )
+    assertTrue( seq.take( 2 ).allMatch( \ e -> e < 3 ) )
+    assertFalse( seq.take( 2 ).hasMatch( \ e -> e > 2 ) )
+  }
+
+  function testDistinct() {
+    assertEquals( {1, 2, 3}, {1, 2, 1, 3, 2}.asSequence().distinct().toList() )
+  }
+
+  function testTerminalOperations() {
+    var seq = {1, 2, 3, 4}.asSequence()
+    assertEquals( 4, seq.Count )
+    assertEquals( 2, seq.countWhere( \ e -> e % 2 == 0 ) )
+    assertTrue( seq.hasMatch( \ e -> e == 3 ) )
+    assertFalse( seq.hasMatch( \ e -> e == 5 ) )
+    assertTrue( seq.allMatch( \ e -> e > 0 ) )
+    assertFalse( seq.allMatch( \ e -> e > 1 ) )
+    assertEquals( 10, seq.reduce( 0, \ sum, e -> sum + e ) )
+    assertEquals( "1, 2, 3, 4", seq.join( ", " ) )
+    assertEquals( {1, 2, 3, 4}.toSet(), seq.toSet() )
+  }
+
+  function testArraySequence() {
+    var arr = new String[] {"a", "bb", "ccc"}
+    assertEquals( {2, 3}, arr.asSequence().map( \ s -> s.length() ).where( \ l -> l > 1 ).toList() )
+  }
+}
@@ -16,8 +16,11 @@ uses gw.xml.XmlParseOptions
 uses gw.xml.ws.AsyncResponse
 uses gw.xml.ws.WsdlFault
 uses gw.xml.ws.WebServiceException
+uses java.util.concurrent.ConcurrentLinkedQueue
+uses java.util.concurrent.CountDownLatch
 uses java.util.concurrent.TimeUnit
 uses java.util.concurrent.TimeoutException
+uses java.util.concurrent.atomic.AtomicBoolean
 uses gw.xsd.w3c.xml.attributes.Lang
 uses gw.internal.xml.ws.AsyncResponseInternal
 uses java.io.ByteArrayInputStream
@@ -31,16 +34,22 @@ uses java.util.Collections
 uses gw.internal.xml.ws.rt.DigestAuthentication
 uses gw.xml.ws.HttpHeaders
 uses gw.internal.xml.ws.server.WebservicesServletBase
+uses gw.config.CommonServices
 
 final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T, E> implements AsyncResponseInternal<T, E> {
 
   var _port : WsdlPortImpl
   var _opTypeData : WsdlOperationInfo
-  var _thread : Thread
+  var _charset : String
+  var _claimed = new AtomicBoolean()
+  var _doneLatch = new CountDownLatch( 1 )
+  // counted down once the request is sent, after _executeStartNanos is set
+  var _executingLatch = new CountDownLatch( 1 )
+  var _executeStartNanos : long
+  var _callbacks = new ConcurrentLinkedQueue<block( response : AsyncResponse<T, E> )>()
   var _requestEnvelope : E
   var _responseEnvelope : E
   var _throwable : Throwable
-  var _done : boolean
   var _soapVersion : SoapVersion
   var _started : boolean
   var _requestTransform( is : InputStream ) : InputStream
@@ -59,7 +68,7 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
    */
   construct( opTypeData : WsdlOperationInfo, port : WsdlPortImpl, reqEnv : E, schemaAccess : XmlSchemaAccess, soapVersion : SoapVersion, portTypePackageName : String ) {
     var encoding = port.Config.XmlSerializationOptions.Encoding
-    var charset = encoding == null ? "utf-8" : encoding.name().toLowerCase()
+    _charset = encoding == null ? "utf-8" : encoding.name().toLowerCase()
     _schemaAccess = schemaAccess
     _soapVersion = soapVersion
     _requestTransform = port.Config.RequestTransform
@@ -68,126 +77,155 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
     _opTypeData = opTypeData
     _port = port
     _requestEnvelope = reqEnv
-    _thread = new Thread( "WSI-AsyncResponse" ) {
-      override function run()
-      {
-        var is : InputStream
-        var challenge : String
-        try {
-          var httpHeaders = port.Config.Http.RequestHeaders
-          while ( true ) {
-            var conn = gw.internal.xml.ws.WebservicesClientConnector.forURI( port.Address )
-            if ( _soapVersion == SOAP_12 ) {
-              var contentType = "application/soap+xml;charset=${charset}"
-              if ( opTypeData != null && opTypeData.SoapAction != null ) {
-                contentType += '; action="${opTypeData.SoapAction}"'
-              }
-              if ( httpHeaders.getHeader( "Content-Type" ) == null ) {
-                conn.setHttpHeader( "Content-Type", contentType )
-              }
-            }
-            else {
-              if ( httpHeaders.getHeader( "Content-Type" ) == null ) {
-                conn.setHttpHeader( "Content-Type", "text/xml;charset=${charset}" )
-              }
-              if ( httpHeaders.getHeader( "SOAPAction" ) == null ) {
-                // quoted SOAPAction is required by BP 1.0, even if not specified in WSDL
-                var soapAction = '"' + ( (opTypeData == null || opTypeData.SoapAction == null) ? "" : opTypeData.SoapAction ) + '"'
-                conn.setHttpHeader( "SOAPAction", soapAction )
-              }
-            }
-            if ( challenge != null ) {
-              // we already checked that digest authentication was specified before setting the 'challenge' variable to non-null
-              var username = port.Config.Http.Authentication.Digest.Username
-              var password = port.Config.Http.Authentication.Digest.Password
-              var header = DigestAuthentication.generateDigestAuthorizationHeader( challenge, username, password, port.Address.toString() )
-              conn.setHttpHeader( "Authorization", header )
-            }
-            // the triple null check is needed due to Jira PL-14416
-            else if ( port.Config != null && port.Config.Http != null && port.Config.Http.Authentication != null && port.Config.Http.Authentication.Basic != null ) {
-              var username = port.Config.Http.Authentication.Basic.Username
-              var password = port.Config.Http.Authentication.Basic.Password
-              if ( username == null ) {
-                throw new IllegalArgumentException( "HTTP Basic Authentication: Username is null" )
-              }
-              if ( password == null ) {
-                throw new IllegalArgumentException( "HTTP Basic Authentication: Password is null" )
-              }
-              var base64UsernamePassword = Base64Util.encode( StreamUtil.toBytes( username + ':' + password ) )
-              if ( httpHeaders.getHeader( "Authorization" ) == null ) {
-                conn.setHttpHeader( "Authorization", "Basic " + base64UsernamePassword )
+  }
+
+  /**
+   * Sends the request and reads the response. Runs at most once, on a pool thread or on a thread
+   * that would otherwise block waiting for a pool thread to pick the request up.
+   */
+  private function execute() {
+    if ( not _claimed.compareAndSet( false, true ) ) {
+      return
+    }
+    _executeStartNanos = System.nanoTime()
+    _executingLatch.countDown()
+    var is : InputStream
+    var challenge : String
+    try {
+      var httpHeaders = _port.Config.Http.RequestHeaders
+      while ( true ) {
+        var conn = gw.internal.xml.ws.WebservicesClientConnector.forURI( _port.Address )
+        if ( _soapVersion == SOAP_12 ) {
+          var contentType = "application/soap+xml;charset=${_charset}"
+          if ( _opTypeData != null && _opTypeData.SoapAction != null ) {
+            contentType += '; action="${_opTypeData.SoapAction}"'
+          }
+          if ( httpHeaders.getHeader( "Content-Type" ) == null ) {
+            conn.setHttpHeader( "Content-Type", contentType )
+          }
+        }
+        else {
+          if ( httpHeaders.getHeader( "Content-Type" ) == null ) {
+            conn.setHttpHeader( "Content-Type", "text/xml;charset=${_charset}" )
+          }
+          if ( httpHeaders.getHeader( "SOAPAction" ) == null ) {
+            // quoted SOAPAction is required by BP 1.0, even if not specified in WSDL
+            var soapAction = '"' + ( (_opTypeData == null || _opTypeData.SoapAction == null) ? "" : _opTypeData.SoapAction ) + '"'
+            conn.setHttpHeader( "SOAPAction", soapAction )
+          }
+        }
+        if ( challenge != null ) {
+          // we already checked that digest authentication was specified before setting the 'challenge' variable to non-null
+          var username = _port.Config.Http.Authentication.Digest.Username
+          var password = _port.Config.Http.Authentication.Digest.Password
+          var header = DigestAuthentication.generateDigestAuthorizationHeader( challenge, username, password, _port.Address.toString() )
+          conn.setHttpHeader( "Authorization", header )
+        }
+        // the triple null check is needed due to Jira PL-14416
+        else if ( _port.Config != null && _port.Config.Http != null && _port.Config.Http.Authentication != null && _port.Config.Http.Authentication.Basic != null ) {
+          var username = _port.Config.Http.Authentication.Basic.Username
+          var password = _port.Config.Http.Authentication.Basic.Password
+          if ( username == null ) {
+            throw new IllegalArgumentException( "HTTP Basic Authentication: Username is null" )
+          }
+          if ( password == null ) {
+            throw new IllegalArgumentException( "HTTP Basic Authentication: Password is null" )
+          }
+          var base64UsernamePassword = Base64Util.encode( StreamUtil.toBytes( username + ':' + password ) )
+          if ( httpHeaders.getHeader( "Authorization" ) == null ) {
+            conn.setHttpHeader( "Authorization", "Basic " + base64UsernamePassword )
+          }
+        }
+        for ( headerName in httpHeaders.HeaderNames ) {
+          conn.setHttpHeader( headerName, httpHeaders.getHeader( headerName ) )
+        }
+        var out = conn.OutputStream
+        if ( RequestTransform != null ) {
+          var ris = RequestTransform( new ByteArrayInputStream( _requestEnvelope.bytes( _port.Config.XmlSerializationOptions ) ) )
+          if ( ris == null ) {
+            ris = new ByteArrayInputStream( {} )
+          }
+          StreamUtil.copy( ris, out )
+        }
+        else {
+          _requestEnvelope.writeTo( out, _port.Config.XmlSerializationOptions )
+        }
+        out.close()
+        // _opTypeData == null means document_literal() request
+        // _opTypeData.OutputInfo == null means one-way request
+        if ( _opTypeData == null or _opTypeData.OutputInfo != null ) {
+          is = conn.Response.InputStream
+          if ( conn.Response.ResponseCode == 401 && challenge == null ) {
+            // check for digest authentication challenge
+            if ( _port.Config != null and _port.Config.Http != null and _port.Config.Http.Authentication != null and _port.Config.Http.Authentication.Digest != null ) {
+              var tmp = conn.Response.getResponseHeader( "WWW-Authenticate" )
+              if ( tmp != null && tmp.startsWith( "Digest " ) ) {
+                challenge = tmp
+                if ( is != null ) {
+                  is.close()
+                }
+                continue
               }
             }
-            for ( headerName in httpHeaders.HeaderNames ) {
-              conn.setHttpHeader( headerName, httpHeaders.getHeader( headerName ) )
+          }
+          _responseHttpHeaders = conn.Response.getResponseHeaders()
+          conn.Response.checkResponse( is )
+          if ( ResponseTransform != null ) {
+            is = ResponseTransform( is )
+            if ( is == null ) {
+              is = new ByteArrayInputStream( {} )
             }
-            var out = conn.OutputStream
-            if ( RequestTransform != null ) {
-              var ris = RequestTransform( new ByteArrayInputStream( _requestEnvelope.bytes( port.Config.XmlSerializationOptions ) ) )
-              if ( ris == null ) {
-                ris = new ByteArrayInputStream( {} )
-              }
-              StreamUtil.copy( ris, out )
+          }
+          if (_responseEnvelope == null) {
+            var xml = XmlElement.parse( is, getXmlParseOptions( _port.Config.XmlParseOptions ) )
+            if ( xml typeis E ) {
+              _responseEnvelope = xml
             }
             else {
-              _requestEnvelope.writeTo( out, port.Config.XmlSerializationOptions )
-            }
-            out.close()
-            // opTypeData == null means document_literal() request
-            // opTypeData.OutputInfo == null means one-way request
-            if ( opTypeData == null or opTypeData.OutputInfo != null ) {
-              is = conn.Response.InputStream
-              if ( conn.Response.ResponseCode == 401 && challenge == null ) {
-                // check for digest authentication challenge
-                if ( port.Config != null and port.Config.Http != null and port.Config.Http.Authentication != null and port.Config.Http.Authentication.Digest != null ) {
-                  var tmp = conn.Response.getResponseHeader( "WWW-Authenticate" )
-                  if ( tmp != null && tmp.startsWith( "Digest " ) ) {
-                    challenge = tmp
-                    if ( is != null ) {
-                      is.close()
-                    }
-                    continue
-                  }
-                }
-              }
-              _responseHttpHeaders = conn.Response.getResponseHeaders()
-              conn.Response.checkResponse( is )
-              if ( ResponseTransform != null ) {
-                is = ResponseTransform( is )
-                if ( is == null ) {
-                  is = new ByteArrayInputStream( {} )
-                }
-              }
-              if (_responseEnvelope == null) {
-                var xml = XmlElement.parse( is, getXmlParseOptions( port.Config.XmlParseOptions ) )
-                if ( xml typeis E ) {
-                  _responseEnvelope = xml
-                }
-                else {
-                  var x = E.Type.Name
-                  throw new WebServiceException( "Expected ${ x } but received ${ typeof xml }:\n${ xml.asUTFString( XmlSerializationOptions.debug() ) }" )
-                }
-              }
+              var x = E.Type.Name
+              throw new WebServiceException( "Expected ${ x } but received ${ typeof xml }:\n${ xml.asUTFString( XmlSerializationOptions.debug() ) }" )
             }
-            break
-          }
-        } 
-        catch (t : Throwable) {
-          _throwable = t
-        } 
-        finally {
-          using ( _thread as IMonitorLock ) {
-            _done = true
-            _thread.notifyAll()
-          }
-          if ( is != null ) {
-            is.close()
           }
         }
+        break
+      }
+    } 
+    catch (t : Throwable) {
+      _throwable = t
+    } 
+    finally {
+      try {
+        if ( is != null ) {
+          is.close()
+        }
+      }
+      finally {
+        complete()
       }
     }
   }
-  
+
+  private function complete() {
+    _executingLatch.countDown()
+    _doneLatch.countDown()
+    notifyCallbacks()
+  }
+
+  // each callback is polled off the queue exactly once, by whichever thread gets to it after completion
+  private function notifyCallbacks() {
+    var callback = _callbacks.poll()
+    while ( callback != null ) {
+      try {
+        callback( this )
+      }
+      catch ( t : Throwable ) {
+        // one failing callback mustn't keep the others from being called
+        CommonServices.getEntityAccess().getLogger().error( "Exception in AsyncResponse callback", t )
+      }
+      callback = _callbacks.poll()
+    }
+  }
+
   private function getXmlParseOptions( userRequestedParseOptions : XmlParseOptions ) : XmlParseOptions {
     var options = userRequestedParseOptions.copy()
     options.AdditionalSchemas.addAll( {
@@ -266,7 +304,8 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
 
   /**
    * Returns the response envelope. This call will block until the request completes or
-   * the timeout occurs.
+   * the timeout occurs. Time the request spends waiting for a pool thread does not count
+   * against the timeout.
    *
    * @param timeout
    * @param unit
@@ -278,30 +317,27 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
       return _responseEnvelope
     }
     start()
-    var endTime = System.currentTimeMillis() + unit.toMillis( timeout )
-    using ( _thread as IMonitorLock ) {
-      if (timeout == 0) {
-        if (!_done) {
-          throw new TimeoutException()
-        }
-      } else if (timeout > 0) {
-        while (!_done) {
-          var remaining = endTime - System.currentTimeMillis()
-          if (remaining <= 0) {
-            throw new TimeoutException()
-          }
-          _thread.wait( remaining )
-        }
-      } else {
-        while (!_done) {
-          _thread.wait()
-        }
+    if (timeout == 0) {
+      if (_doneLatch.Count > 0) {
+        throw new TimeoutException()
       }
-      if (_throwable != null) {
-        throw GosuExceptionUtil.forceThrow( _throwable )
+    } else if (timeout > 0) {
+      // the timeout covers the call, not the time the request waited for a pool thread
+      var waitStartNanos = System.nanoTime()
+      _executingLatch.await()
+      var sinceNanos = _executeStartNanos - waitStartNanos > 0 ? _executeStartNanos : waitStartNanos
+      if (!_doneLatch.await( unit.toNanos( timeout ) - (System.nanoTime() - sinceNanos), TimeUnit.NANOSECONDS )) {
+        throw new TimeoutException()
       }
-      return _responseEnvelope
+    } else {
+      // rather than wait for a busy pool, run the request here if no thread has picked it up yet
+      execute()
+      _doneLatch.await()
+    }
+    if (_throwable != null) {
+      throw GosuExceptionUtil.forceThrow( _throwable )
     }
+    return _responseEnvelope
   }
 
   /**
@@ -346,7 +382,10 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
     if ( ! _started ) {
       _started = true
       if ( _responseEnvelope == null ) {
-        _thread.start()
+        AsyncResponseExecutor.execute( \ -> execute() )
+      }
+      else {
+        complete()
       }
     }
   }
@@ -354,12 +393,30 @@ final class AsyncResponseImpl<T, E extends XmlElement> extends AsyncResponse<T,
   override function run()
   {
     if ( _started ) {
-      throw new IllegalStateException( "Thread is already started" )
+      throw new IllegalStateException( "Request is already started" )
     }
     _started = true
     if ( _responseEnvelope == null ) {
-      _thread.run()
+      execute()
     }
+    else {
+      complete()
+    }
+  }
+
+  override function whenComplete( callback( response : AsyncResponse<T, E> ) ) : AsyncResponse<T, E>
+  {
+    _callbacks.add( callback )
+    start()
+    if ( Done ) {
+      notifyCallbacks()
+    }
+    return this
+  }
+
+  override property get Done() : boolean
+  {
+    return _doneLatch.Count == 0
   }
 
   override property get RequestTransform() : block( is : InputStream ) : InputStream {
@@ -21,12 +21,9 @@ class HttpWebservicesResponse extends WebservicesResponse {
   }
 
   override property get InputStream() : InputStream {
-    if ( _conn.ResponseCode >= 400 ) {
-      return _conn.ErrorStream
-    }
-    else {
-      return _conn.InputStream
-    }
+    var is = _conn.ResponseCode >= 400 ? _conn.ErrorStream : _conn.InputStream
+    // reading the response to the end on close keeps the connection alive for reuse
+    return is == null ? null : new KeepAliveInputStream( is )
   }
   
   override property get ResponseCode() : int {
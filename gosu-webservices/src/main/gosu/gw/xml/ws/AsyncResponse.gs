@@ -19,7 +19,10 @@ uses java.util.concurrent.TimeoutException
  * Any call that returns information from the response will cause the request to be started,
  * assuming it has not already been started.
  *
- * Although this class can itself spawn a separate thread, calls into it are not intended to be thread safe.
+ * Started requests run on a shared, bounded pool of threads rather than a thread each. Use whenComplete
+ * to be called back when a request finishes instead of blocking a thread on get().
+ *
+ * Apart from whenComplete and Done, calls into this class are not intended to be thread safe.
  */
 abstract class AsyncResponse<T, E extends XmlElement> {
 
@@ -91,6 +94,22 @@ abstract class AsyncResponse<T, E extends XmlElement> {
    */
   abstract function start()
 
+  /**
+   * Registers a block to be called once the request has completed, successfully or not, and starts
+   * the request if it has not been started. The block is called on the thread that completed the
+   * request, or right away on the calling thread if the request is already complete. Calling get()
+   * from the block returns the result, or throws the failure, without blocking.
+   *
+   * @param callback the block to call with this response
+   * @return this response
+   */
+  abstract function whenComplete( callback( response : AsyncResponse<T, E> ) ) : AsyncResponse<T, E>
+
+  /**
+   * True once the request has completed, successfully or not.
+   */
+  abstract property get Done() : boolean
+
   /**
    * A transform to be applied to the request before it is sent.
    */
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml.ws;
+
+import gw.util.concurrent.DaemonExecutors;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the requests of async web service calls. Requests share a bounded pool of daemon threads
+ * instead of starting a thread each, so many calls can be in flight without as many OS threads;
+ * requests beyond the pool size wait in a queue. On a JVM with virtual threads, setting
+ * {@link #VIRTUAL_THREADS_SYSTEM_PROP} runs each request on its own virtual thread instead.
+ */
+public class AsyncResponseExecutor {
+
+  /** System property for the number of threads running async requests */
+  public static final String THREADS_SYSTEM_PROP = "gosu.ws.async.threads";
+  /** System property to run async requests on virtual threads, when the JVM supports them */
+  public static final String VIRTUAL_THREADS_SYSTEM_PROP = "gosu.ws.async.virtualThreads";
+
+  private AsyncResponseExecutor() {
+  }
+
+  public static void execute( Runnable request ) {
+    Holder.EXECUTOR.execute( request );
+  }
+
+  private static ExecutorService makeExecutor() {
+    if ( Boolean.getBoolean( VIRTUAL_THREADS_SYSTEM_PROP ) ) {
+      try {
+        Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+        return (ExecutorService) factory.invoke( null );
+      }
+      catch ( NoSuchMethodException e ) {
+        // no virtual threads in this JVM, use the pool
+      }
+      catch ( Exception e ) {
+        throw new RuntimeException( e );
+      }
+    }
+    return DaemonExecutors.newBoundedPool( "WSI-AsyncResponse", THREADS_SYSTEM_PROP );
+  }
+
+  private static class Holder {
+    static final ExecutorService EXECUTOR = makeExecutor();
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml.ws.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Wraps an HTTP response stream so that closing it first reads whatever the reader left unread,
+ * such as trailing whitespace after an XML document. A fully read response lets
+ * HttpURLConnection return the connection to its keep-alive cache for the next request to the
+ * same server instead of closing the socket.
+ */
+public class KeepAliveInputStream extends FilterInputStream {
+
+  // past this much unread content, reconnecting is cheaper than reading it
+  private static final int MAX_DRAIN = 64 * 1024;
+
+  public KeepAliveInputStream( InputStream in ) {
+    super( in );
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      byte[] buffer = new byte[ 4096 ];
+      int drained = 0;
+      while ( drained < MAX_DRAIN ) {
+        int read = in.read( buffer );
+        if ( read < 0 ) {
+          break;
+        }
+        drained += read;
+      }
+    }
+    catch ( IOException ex ) {
+      // the connection is unusable anyway, just close it
+    }
+    finally {
+      in.close();
+    }
+  }
+
+}
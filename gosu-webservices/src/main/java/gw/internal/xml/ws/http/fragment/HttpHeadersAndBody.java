@@ -5,20 +5,50 @@
 package gw.internal.xml.ws.http.fragment;
 
 import gw.internal.xml.ws.http.HttpParseContext;
+import gw.internal.xml.ws.server.SpoolingOutputStream;
 import gw.util.Pair;
 import gw.util.StreamUtil;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 public class HttpHeadersAndBody extends HttpFragment {
 
   private final List<Pair<HttpToken,HttpFieldValue>> _httpHeaders = new ArrayList<Pair<HttpToken, HttpFieldValue>>();
-  private final byte[] _body;
+  private byte[] _body;
+  private final SpoolingOutputStream _spooledBody;
 
   public HttpHeadersAndBody( HttpParseContext context ) {
+    parseHeaders( context );
+    // everything left is the body
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    while ( true ) {
+      Byte b = context.get();
+      if ( b == null ) {
+        break;
+      }
+      body.write( b );
+      context.next();
+    }
+    _body = body.toByteArray();
+    _spooledBody = null;
+  }
+
+  /**
+   * Creates a part whose body was spooled while streaming the enclosing message.
+   * @param headers the headers, up to and including the empty line that ends them
+   * @param body the body
+   */
+  public HttpHeadersAndBody( HttpParseContext headers, SpoolingOutputStream body ) {
+    parseHeaders( headers );
+    _spooledBody = body;
+  }
+
+  private void parseHeaders( HttpParseContext context ) {
     while ( true ) {
       Byte b = context.get();
       if ( b == 13 ) {
@@ -41,17 +71,6 @@ public class HttpHeadersAndBody extends HttpFragment {
       HttpFieldValue httpHeaderValue = new HttpFieldValue( context );
       _httpHeaders.add( new Pair<HttpToken, HttpFieldValue>( httpHeaderName, httpHeaderValue ) );
     }
-    // everything left is the body
-    ByteArrayOutputStream body = new ByteArrayOutputStream();
-    while ( true ) {
-      Byte b = context.get();
-      if ( b == null ) {
-        break;
-      }
-      body.write( b );
-      context.next();
-    }
-    _body = body.toByteArray();
   }
 
   public List<Pair<HttpToken, HttpFieldValue>> getHttpHeaders() {
@@ -59,7 +78,33 @@ public class HttpHeadersAndBody extends HttpFragment {
   }
 
   public byte[] getBody() {
+    if ( _body == null ) {
+      try {
+        _body = StreamUtil.getContent( _spooledBody.getInputStream() );
+      }
+      catch ( IOException e ) {
+        throw new RuntimeException( e );
+      }
+    }
     return _body;
   }
 
+  /**
+   * Returns the body without reading it into memory if it was spooled.
+   * @return a new input stream over the body
+   * @throws IOException if the spooled body cannot be read
+   */
+  public InputStream getBodyInputStream() throws IOException {
+    return _body != null ? new ByteArrayInputStream( _body ) : _spooledBody.getInputStream();
+  }
+
+  /**
+   * Deletes the spooled body, if any.
+   */
+  public void dispose() {
+    if ( _spooledBody != null ) {
+      _spooledBody.dispose();
+    }
+  }
+
 }
@@ -4,12 +4,18 @@
 
 package gw.internal.xml.ws.http.fragment;
 
+import gw.internal.xml.ws.http.HttpException;
 import gw.internal.xml.ws.http.HttpParseContext;
+import gw.internal.xml.ws.server.DevNullOutputStream;
+import gw.internal.xml.ws.server.SpoolingOutputStream;
 import gw.util.Pair;
 import gw.xml.ws.WebServiceException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
@@ -70,6 +76,50 @@ public class HttpMultipartRelatedContent extends HttpFragment {
 
   }
 
+  /**
+   * Parses the parts while streaming the message, spooling each part's body instead of
+   * reading the whole message into memory first. Call {@link #dispose()} when done with the parts.
+   */
+  public HttpMultipartRelatedContent( InputStream in, HttpMediaType contentType ) throws IOException {
+    String boundary = contentType.getFirstParameter( "boundary" );
+    if ( boundary == null ) {
+      throw new WebServiceException( "Boundary not specified." );
+    }
+    _start = contentType.getFirstParameter( "start" );
+    // the CRLF before the first boundary is optional, so pretend the message starts with one
+    BoundaryScanner scanner = new BoundaryScanner( in, ( "\r\n--" + boundary ).getBytes( "US-ASCII" ) );
+    if ( ! scanner.copyToDelimiter( new DevNullOutputStream() ) ) {
+      throw new EOFException( "Unexpected end of file" );
+    }
+    try {
+      while ( true ) {
+        int c1 = scanner.read();
+        int c2 = scanner.read();
+        if ( c1 == '-' && c2 == '-' ) {
+          break; // final boundary found
+        }
+        if ( c1 != 13 || c2 != 10 ) {
+          throw new HttpException( "Expected CRLF after boundary but found " + c1 + " " + c2 );
+        }
+        byte[] headers = scanner.readHeaders();
+        SpoolingOutputStream body = new SpoolingOutputStream();
+        _parts.add( new HttpHeadersAndBody( new HttpParseContext( headers ), body ) );
+        if ( ! scanner.copyToDelimiter( body ) ) {
+          throw new EOFException( "Unexpected end of file" );
+        }
+        body.close();
+      }
+    }
+    catch ( IOException ex ) {
+      dispose();
+      throw ex;
+    }
+    catch ( RuntimeException ex ) {
+      dispose();
+      throw ex;
+    }
+  }
+
   private boolean boundaryStart( HttpParseContext context, boolean firstBoundary ) {
     if ( context.get() == 13 || context.get() == '-' ) {
       // possible boundary start
@@ -120,4 +170,130 @@ public class HttpMultipartRelatedContent extends HttpFragment {
     return _parts;
   }
 
+  /**
+   * Deletes the spooled bodies of the parts.
+   */
+  public void dispose() {
+    for ( HttpHeadersAndBody part : _parts ) {
+      part.dispose();
+    }
+  }
+
+  /**
+   * Reads a stream in blocks, splitting it at each occurrence of a delimiter.
+   */
+  private static class BoundaryScanner {
+    private static final int MAX_HEADERS_SIZE = 64 * 1024;
+
+    private final InputStream _in;
+    private final byte[] _delimiter;
+    private final byte[] _buffer;
+    private int _pos;
+    private int _limit;
+    private boolean _eof;
+
+    BoundaryScanner( InputStream in, byte[] delimiter ) {
+      _in = in;
+      _delimiter = delimiter;
+      _buffer = new byte[ Math.max( 8192, delimiter.length * 2 ) ];
+      _buffer[0] = 13;
+      _buffer[1] = 10;
+      _limit = 2;
+    }
+
+    /**
+     * Writes everything up to the next delimiter and skips the delimiter.
+     * @return false if the stream ended before a delimiter was found
+     */
+    boolean copyToDelimiter( OutputStream out ) throws IOException {
+      while ( true ) {
+        fill( _delimiter.length );
+        int index = indexOfDelimiter();
+        if ( index >= 0 ) {
+          out.write( _buffer, _pos, index - _pos );
+          _pos = index + _delimiter.length;
+          return true;
+        }
+        // keep a possible partial delimiter at the end of the buffer
+        int safe = _eof ? _limit - _pos : Math.max( 0, _limit - _pos - ( _delimiter.length - 1 ) );
+        out.write( _buffer, _pos, safe );
+        _pos += safe;
+        if ( _eof ) {
+          return false;
+        }
+      }
+    }
+
+    /**
+     * @return the headers of a part, up to and including the empty line that ends them
+     */
+    byte[] readHeaders() throws IOException {
+      ByteArrayOutputStream headers = new ByteArrayOutputStream();
+      int last = -1;
+      boolean bLineStart = true;
+      while ( true ) {
+        int b = read();
+        if ( b < 0 ) {
+          throw new EOFException( "Unexpected end of file" );
+        }
+        headers.write( b );
+        if ( headers.size() > MAX_HEADERS_SIZE ) {
+          throw new HttpException( "Part headers exceed " + MAX_HEADERS_SIZE + " bytes" );
+        }
+        if ( b == 10 && last == 13 ) {
+          if ( bLineStart ) {
+            return headers.toByteArray();
+          }
+          bLineStart = true;
+        }
+        else if ( b != 13 ) {
+          bLineStart = false;
+        }
+        last = b;
+      }
+    }
+
+    int read() throws IOException {
+      fill( 1 );
+      return _pos < _limit ? _buffer[ _pos++ ] & 0xff : -1;
+    }
+
+    private void fill( int minimum ) throws IOException {
+      if ( _limit - _pos >= minimum || _eof ) {
+        return;
+      }
+      System.arraycopy( _buffer, _pos, _buffer, 0, _limit - _pos );
+      _limit -= _pos;
+      _pos = 0;
+      while ( _limit < _buffer.length ) {
+        int read = _in.read( _buffer, _limit, _buffer.length - _limit );
+        if ( read < 0 ) {
+          _eof = true;
+          break;
+        }
+        _limit += read;
+        if ( _limit - _pos >= minimum && _in.available() <= 0 ) {
+          break;
+        }
+      }
+    }
+
+    private int indexOfDelimiter() {
+      byte first = _delimiter[0];
+      outer:
+      for ( int i = _pos; i <= _limit - _delimiter.length; i++ ) {
+        if ( _buffer[i] != first ) {
+          continue;
+        }
+        for ( int j = 1; j < _delimiter.length; j++ ) {
+          if ( _buffer[ i + j ] != _delimiter[j] ) {
+            continue outer;
+          }
+        }
+        return i;
+      }
+      return -1;
+    }
+  }
+
 }
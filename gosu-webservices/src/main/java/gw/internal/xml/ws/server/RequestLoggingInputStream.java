@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml.ws.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Passes a request through to its reader while keeping a copy of the first bytes read, so that
+ * the request can be debug logged without reading all of it into memory up front.
+ */
+public class RequestLoggingInputStream extends FilterInputStream {
+
+  /** System property for the maximum number of request bytes written to the debug log */
+  public static final String LIMIT_SYSTEM_PROP = "gosu.ws.debug.log.limit";
+
+  private static final int DEFAULT_LIMIT = Integer.getInteger( LIMIT_SYSTEM_PROP, 1024 * 1024 );
+
+  private final ByteArrayOutputStream _logged = new ByteArrayOutputStream();
+  private final int _limit;
+  private long _total;
+
+  public RequestLoggingInputStream( InputStream in ) {
+    this( in, DEFAULT_LIMIT );
+  }
+
+  public RequestLoggingInputStream( InputStream in, int limit ) {
+    super( in );
+    _limit = limit;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if ( b >= 0 ) {
+      if ( _total < _limit ) {
+        _logged.write( b );
+      }
+      _total++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    int read = super.read( b, off, len );
+    if ( read > 0 ) {
+      if ( _total < _limit ) {
+        _logged.write( b, off, (int) Math.min( read, _limit - _total ) );
+      }
+      _total += read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    // read rather than skip so the log shows everything the reader consumed
+    byte[] buffer = new byte[ (int) Math.min( n, 8192 ) ];
+    long skipped = 0;
+    while ( skipped < n ) {
+      int read = read( buffer, 0, (int) Math.min( n - skipped, buffer.length ) );
+      if ( read < 0 ) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * @param charset the request's character set, or null for UTF-8
+   * @return the bytes read so far as text, noting how many were left out
+   */
+  public String getLoggedContent( String charset ) throws UnsupportedEncodingException {
+    String content = _logged.toString( charset == null ? "UTF-8" : charset );
+    if ( _total > _limit ) {
+      content += "\n... (" + ( _total - _limit ) + " more bytes)";
+    }
+    return content;
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml.ws.server;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream that keeps its content in memory until it grows past a threshold, after which
+ * the content is moved to a temporary file. Once written, the content can be read any number of
+ * times until {@link #dispose()} deletes the file, closing any input streams still open on it.
+ */
+public class SpoolingOutputStream extends OutputStream {
+
+  /** System property for the number of bytes kept in memory before spooling to disk */
+  public static final String THRESHOLD_SYSTEM_PROP = "gosu.ws.spool.threshold";
+
+  private static final int DEFAULT_THRESHOLD = Integer.getInteger( THRESHOLD_SYSTEM_PROP, 1024 * 1024 );
+
+  private final int _threshold;
+  private MemoryBuffer _memory = new MemoryBuffer();
+  private File _file;
+  private OutputStream _fileOut;
+  private long _size;
+  private final List<InputStream> _fileIns = new ArrayList<InputStream>();
+
+  public SpoolingOutputStream() {
+    this( DEFAULT_THRESHOLD );
+  }
+
+  public SpoolingOutputStream( int threshold ) {
+    _threshold = threshold;
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    target( 1 ).write( b );
+    _size++;
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    target( len ).write( b, off, len );
+    _size += len;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if ( _fileOut != null ) {
+      _fileOut.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( _fileOut != null ) {
+      _fileOut.close();
+      _fileOut = null;
+    }
+  }
+
+  public long size() {
+    return _size;
+  }
+
+  public boolean isSpooled() {
+    return _file != null;
+  }
+
+  /**
+   * Closes this stream for writing and returns its content.
+   * @return a new input stream over everything written so far
+   * @throws IOException if the spool file cannot be opened
+   */
+  public InputStream getInputStream() throws IOException {
+    close();
+    if ( _memory != null ) {
+      return _memory.toInputStream();
+    }
+    if ( _file == null ) {
+      throw new IOException( "Spooled content has been disposed" );
+    }
+    InputStream in = new FileInputStream( _file );
+    _fileIns.add( in );
+    return in;
+  }
+
+  /**
+   * Releases the content, deleting the spool file if there is one.
+   */
+  public void dispose() {
+    try {
+      close();
+    }
+    catch ( IOException ex ) {
+      // nothing else to do with it, the file is deleted anyway
+    }
+    _memory = null;
+    for ( InputStream in : _fileIns ) {
+      try {
+        in.close();
+      }
+      catch ( IOException ex ) {
+        // closing a file input stream doesn't fail in practice, and the file is deleted anyway
+      }
+    }
+    _fileIns.clear();
+    if ( _file != null ) {
+      _file.delete();
+      _file = null;
+    }
+  }
+
+  private OutputStream target( int len ) throws IOException {
+    if ( _memory == null ) {
+      if ( _fileOut == null ) {
+        throw new IOException( "Stream is closed" );
+      }
+      return _fileOut;
+    }
+    if ( _size + len > _threshold ) {
+      _file = File.createTempFile( "gosu-ws", ".spool" );
+      _fileOut = new BufferedOutputStream( new FileOutputStream( _file ) );
+      _memory.writeTo( _fileOut );
+      _memory = null;
+      return _fileOut;
+    }
+    return _memory;
+  }
+
+  private static class MemoryBuffer extends ByteArrayOutputStream {
+    InputStream toInputStream() {
+      return new ByteArrayInputStream( buf, 0, count );
+    }
+  }
+
+}
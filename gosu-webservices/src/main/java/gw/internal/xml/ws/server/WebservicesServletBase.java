@@ -68,15 +68,13 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 import javax.xml.validation.Schema;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -440,12 +438,16 @@ public abstract class WebservicesServletBase extends HttpServlet implements ITyp
       context.setRequestHttpHeaders( request.getHttpHeaders() );
       context.setHttpServletRequest( request.getHttpServletRequest() );
 
+      // a response to be transformed is spooled rather than held in memory, everything else goes straight out
+      SpoolingOutputStream responseSpool = null;
       OutputStream os;
       if ( webservice._responseTransform != null ) {
-        os = new ByteArrayOutputStream();
+        os = responseSpool = new SpoolingOutputStream();
       } else {
         os = responseAdapter.getOutputStream();
       }
+      HttpMultipartRelatedContent multipartContent = null;
+      SpoolingOutputStream rootPartSpool = null;
 
       // Once we have the soap version, we can now return a fault for anything erroneous, so we start the try/catch here
       try {
@@ -458,31 +460,38 @@ public abstract class WebservicesServletBase extends HttpServlet implements ITyp
         if ( contentTypeString != null ) {
           HttpMediaType httpMediaType = new HttpMediaType( new HttpParseContext( contentTypeString.getBytes( "US-ASCII" ) ) );
           if ( httpMediaType.getMediaType().equals( "multipart/related" ) ) {
-            is = XopUtil.getInputStream( new HttpMultipartRelatedContent( new HttpParseContext( StreamUtil.getContent( is ) ), httpMediaType ) );
+            // parts are spooled as they stream in, and the root part is rewritten with its attachments inlined
+            multipartContent = new HttpMultipartRelatedContent( is, httpMediaType );
+            rootPartSpool = new SpoolingOutputStream();
+            XopUtil.writeRootPart( multipartContent, rootPartSpool );
+            is = rootPartSpool.getInputStream();
           }
           charset = httpMediaType.getFirstParameter( "charset" );
         }
 
-       // log request if desired
+       // log request if desired, capturing it as the parser reads it
         ILogger wsLogger = getLogger(webservice._serviceInfo.getWebserviceType().getName());
+        RequestLoggingInputStream loggingStream = null;
         if (wsLogger.isDebugEnabled()) {
-          ByteArrayOutputStream baos = new ByteArrayOutputStream();
-          StreamUtil.copy(is,baos);
-          wsLogger.debug(">>>\n" + (charset == null ? baos.toString("UTF-8") : baos.toString(charset)));
-          is = new ByteArrayInputStream(baos.toByteArray());
+          is = loggingStream = new RequestLoggingInputStream(is);
         }
 
         if ( webservice._requestTransform != null ) {
           is = (InputStream) webservice._requestTransform.invoke( is );
         }
-        // if charset is specified in content-type http header, use that, otherwise use charset embedded in XML
-        if ( charset == null ) {
-          envelope = XmlElementInternals.instance().parse( is, webservice._parseOptions, webservice._typeResolver );
+        try {
+          // if charset is specified in content-type http header, use that, otherwise use charset embedded in XML
+          if ( charset == null ) {
+            envelope = XmlElementInternals.instance().parse( is, webservice._parseOptions, webservice._typeResolver );
+          }
+          else {
+            envelope = XmlElementInternals.instance().parse( new InputStreamReader( is, charset ), webservice._parseOptions, webservice._typeResolver );
+          }
         }
-        else {
-          byte[] content = StreamUtil.getContent( is );
-          String xmlString = new String( content, charset );
-          envelope = XmlElementInternals.instance().parse( new StringReader( xmlString ), webservice._parseOptions, webservice._typeResolver );
+        finally {
+          if (loggingStream != null) {
+            wsLogger.debug(">>>\n" + loggingStream.getLoggedContent(charset));
+          }
         }
         context.setRequestEnvelope( envelope );
         context.setRequestSoapHeaders( getHeadersFromEnvelope( envelope, soapVersion ) );
@@ -540,13 +549,20 @@ public abstract class WebservicesServletBase extends HttpServlet implements ITyp
         logWsdlFault(wsdlFault.getDetail() != null, throwable);
       } finally {
         try {
-          if ( webservice._responseTransform != null ) {
-            ByteArrayOutputStream baos = (ByteArrayOutputStream) os;
-            byte[] bytes = baos.toByteArray();
-            InputStream in = (InputStream) webservice._responseTransform.invoke( new ByteArrayInputStream( bytes ) );
+          if ( responseSpool != null ) {
+            InputStream in = (InputStream) webservice._responseTransform.invoke( responseSpool.getInputStream() );
             StreamUtil.copy( in, responseAdapter.getOutputStream() );
           }
         } finally {
+          if ( responseSpool != null ) {
+            responseSpool.dispose();
+          }
+          if ( rootPartSpool != null ) {
+            rootPartSpool.dispose();
+          }
+          if ( multipartContent != null ) {
+            multipartContent.dispose();
+          }
           for ( Callable callable : finallyList ) {
             try {
               callable.call();
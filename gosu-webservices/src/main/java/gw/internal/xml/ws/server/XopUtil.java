@@ -10,13 +10,16 @@ import gw.internal.xml.ws.http.fragment.HttpHeadersAndBody;
 import gw.internal.xml.ws.http.fragment.HttpMultipartRelatedContent;
 import gw.internal.xml.ws.http.fragment.HttpToken;
 import gw.util.Pair;
+import gw.xml.BinaryData;
 import gw.xml.XmlElement;
 import gw.xml.XmlSimpleValue;
 import gw.xml.ws.WebServiceException;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -24,17 +27,38 @@ import java.util.List;
 
 public class XopUtil {
 
-  public static InputStream getInputStream( HttpMultipartRelatedContent content ) throws URISyntaxException {
-    HttpHeadersAndBody rootPart = content.getRootPart();
-    XmlElement xml = XmlElement.parse( rootPart.getBody() );
-    substituteXopIncludes( xml, content );
+  public static InputStream getInputStream( HttpMultipartRelatedContent content ) throws URISyntaxException, IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    xml.writeTo( baos );
+    writeRootPart( content, baos );
     return new ByteArrayInputStream( baos.toByteArray() );
   }
 
+  // writes the root part with its xop:include elements replaced by the content they refer to
+  public static void writeRootPart( HttpMultipartRelatedContent content, OutputStream out ) throws URISyntaxException, IOException {
+    HttpHeadersAndBody rootPart = content.getRootPart();
+    XmlElement xml;
+    InputStream body = rootPart.getBodyInputStream();
+    try {
+      xml = XmlElement.parse( body );
+    }
+    finally {
+      body.close();
+    }
+    List<InputStream> includes = new ArrayList<InputStream>();
+    try {
+      substituteXopIncludes( xml, content, includes );
+      xml.writeTo( out );
+    }
+    finally {
+      // the included parts' streams have been read into the written XML
+      for ( InputStream include : includes ) {
+        include.close();
+      }
+    }
+  }
+
   // recursively searches the specified XML for xop:include elements, and replaces them with the appropriate included content
-  private static void substituteXopIncludes( XmlElement xml, HttpMultipartRelatedContent content ) throws URISyntaxException {
+  private static void substituteXopIncludes( XmlElement xml, HttpMultipartRelatedContent content, List<InputStream> includes ) throws URISyntaxException, IOException {
     List<XmlElement> children = new ArrayList<XmlElement>( xml.getChildren( Include.$QNAME ) ); // make safe copy of list since it gets modified during iteration
     for ( XmlElement xopInclude : children ) {
       URI contentIdUrl = new URI( xopInclude.getAttributeValue( "href" ) );
@@ -56,10 +80,12 @@ public class XopUtil {
       if ( foundPart == null ) {
         throw new WebServiceException( "XOP Include not found for content id " + contentId );
       }
-      xml.setSimpleValue( XmlSimpleValue.makeBase64BinaryInstance( foundPart.getBody() ) );
+      InputStream include = foundPart.getBodyInputStream();
+      includes.add( include );
+      xml.setSimpleValue( XmlSimpleValue.makeBase64BinaryInstance( new BinaryData( include ) ) );
     }
     for ( XmlElement child : xml.getChildren() ) {
-      substituteXopIncludes( child, content );
+      substituteXopIncludes( child, content, includes );
     }
   }
 
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml.ws;
+
+import gw.internal.xml.ws.rt.WsdlPortImpl;
+import gw.lang.Gosu;
+import gw.lang.function.Function1;
+import gw.lang.reflect.IMethodInfo;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.xml.XmlElement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Runs async calls against a stand-in for a SOAP server: the port's address is a file holding a
+ * canned response envelope, which the file connector returns for any request. The request
+ * transform runs on whichever thread sends the request, so it records that thread and can hold
+ * the request in flight.
+ */
+public class AsyncResponseITCase {
+
+  private static final String SERVICE = "gw.internal.xml.ws.itcase.stub.StubService";
+  private static final String RESPONSE = "/gw/internal/xml/ws/itcase/pong.xml";
+
+  @BeforeClass
+  public static void beforeTestClass() {
+    // A single pool thread, so a held request keeps the pool busy
+    System.setProperty( AsyncResponseExecutor.THREADS_SYSTEM_PROP, "1" );
+    Gosu.init();
+  }
+
+  @Test
+  public void startedRequestRunsOnPoolThread() throws Exception {
+    AsyncResponseInternal response = call();
+    Request request = new Request( false );
+    setRequestTransform( response, request );
+    response.start();
+    assertThat( ((XmlElement)response.get()).getQName() ).isEqualTo( new QName( "urn:gosu:itcase:stub", "pong" ) );
+    assertThat( request._thread ).startsWith( "WSI-AsyncResponse-" );
+    assertThat( isDone( response ) ).isTrue();
+  }
+
+  @Test
+  public void callbacksRunInOrderOnceRequestCompletes() throws Exception {
+    AsyncResponseInternal response = call();
+    Request request = new Request( true );
+    setRequestTransform( response, request );
+    List<String> calls = Collections.synchronizedList( new ArrayList<String>() );
+    CountDownLatch called = new CountDownLatch( 2 );
+    Callback first = new Callback( "first", calls, called );
+    Callback second = new Callback( "second", calls, called );
+    whenComplete( response, first );
+    whenComplete( response, second );
+    assertThat( request._started.await( 10, TimeUnit.SECONDS ) ).isTrue();
+    assertThat( calls ).isEmpty();
+    assertThat( isDone( response ) ).isFalse();
+
+    request._release.countDown();
+    assertThat( called.await( 10, TimeUnit.SECONDS ) ).isTrue();
+    assertThat( calls ).containsExactly( "first done", "second done" );
+    assertThat( first._thread ).isEqualTo( request._thread );
+    assertThat( second._thread ).isEqualTo( request._thread );
+
+    // Registered after completion, so called right away on this thread
+    Callback third = new Callback( "third", calls, new CountDownLatch( 1 ) );
+    whenComplete( response, third );
+    assertThat( calls ).containsExactly( "first done", "second done", "third done" );
+    assertThat( third._thread ).isEqualTo( Thread.currentThread().getName() );
+  }
+
+  @Test
+  public void blockingCallerRunsRequestThePoolHasNotPickedUp() throws Exception {
+    AsyncResponseInternal busy = call();
+    Request held = new Request( true );
+    setRequestTransform( busy, held );
+    busy.start();
+    assertThat( held._started.await( 10, TimeUnit.SECONDS ) ).isTrue();
+    try {
+      // The only pool thread is held, so this request waits in the queue until get() runs it here
+      AsyncResponseInternal queued = call();
+      Request request = new Request( false );
+      setRequestTransform( queued, request );
+      queued.start();
+      assertThat( queued.get() ).isNotNull();
+      assertThat( request._thread ).isEqualTo( Thread.currentThread().getName() );
+    }
+    finally {
+      held._release.countDown();
+    }
+    assertThat( busy.get() ).isNotNull();
+  }
+
+  @Test
+  public void timeoutDoesNotCountTimeWaitingForPoolThread() throws Exception {
+    AsyncResponseInternal busy = call();
+    final Request held = new Request( true );
+    setRequestTransform( busy, held );
+    busy.start();
+    assertThat( held._started.await( 10, TimeUnit.SECONDS ) ).isTrue();
+    AsyncResponseInternal queued = call();
+    Request request = new Request( false );
+    setRequestTransform( queued, request );
+    queued.start();
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 500 );
+        }
+        catch ( InterruptedException e ) {
+          // release it anyway
+        }
+        held._release.countDown();
+      }
+    }.start();
+    // Queued for longer than the timeout, then runs on the pool thread well within it
+    assertThat( queued.get( 200, TimeUnit.MILLISECONDS ) ).isNotNull();
+    assertThat( request._thread ).startsWith( "WSI-AsyncResponse-" );
+    assertThat( busy.get() ).isNotNull();
+  }
+
+  private static AsyncResponseInternal call() throws Exception {
+    IType service = TypeSystem.getByFullName( SERVICE );
+    WsdlPortImpl port = (WsdlPortImpl)service.getTypeInfo().getConstructor().getConstructor().newInstance();
+    port.getConfig().setServerOverrideUrl( AsyncResponseITCase.class.getResource( RESPONSE ).toURI() );
+    XmlElement ping = new XmlElement( new QName( "urn:gosu:itcase:stub", "ping" ) );
+    return (AsyncResponseInternal)getMethod( TypeSystem.getFromObject( port ), "async_document_literal" ).getCallHandler().handleCall( port, ping );
+  }
+
+  private static void setRequestTransform( AsyncResponseInternal response, Function1 transform ) {
+    TypeSystem.getFromObject( response ).getTypeInfo().getProperty( "RequestTransform" ).getAccessor().setValue( response, transform );
+  }
+
+  private static void whenComplete( AsyncResponseInternal response, Function1 callback ) {
+    getMethod( TypeSystem.getFromObject( response ), "whenComplete" ).getCallHandler().handleCall( response, callback );
+  }
+
+  private static boolean isDone( AsyncResponseInternal response ) {
+    return (Boolean)TypeSystem.getFromObject( response ).getTypeInfo().getProperty( "Done" ).getAccessor().getValue( response );
+  }
+
+  private static IMethodInfo getMethod( IType type, String name ) {
+    for ( IMethodInfo method : type.getTypeInfo().getMethods() ) {
+      if ( method.getDisplayName().equals( name ) ) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException( "No method " + name + " on " + type );
+  }
+
+  private static class Request extends Function1 {
+    private final CountDownLatch _started = new CountDownLatch( 1 );
+    private final CountDownLatch _release = new CountDownLatch( 1 );
+    private final boolean _bHold;
+    private volatile String _thread;
+
+    Request( boolean bHold ) {
+      _bHold = bHold;
+    }
+
+    @Override
+    public Object invoke( Object in ) {
+      _thread = Thread.currentThread().getName();
+      _started.countDown();
+      if ( _bHold ) {
+        try {
+          _release.await();
+        }
+        catch ( InterruptedException e ) {
+          throw new RuntimeException( e );
+        }
+      }
+      return in;
+    }
+  }
+
+  private static class Callback extends Function1 {
+    private final String _name;
+    private final List<String> _calls;
+    private final CountDownLatch _called;
+    private volatile String _thread;
+
+    Callback( String name, List<String> calls, CountDownLatch called ) {
+      _name = name;
+      _calls = calls;
+      _called = called;
+    }
+
+    @Override
+    public Object invoke( Object response ) {
+      // get() must not block in a callback
+      ((AsyncResponseInternal)response).get( 0, TimeUnit.MILLISECONDS );
+      _thread = Thread.currentThread().getName();
+      _calls.add( _name + ( isDone( (AsyncResponseInternal)response ) ? " done" : " not done" ) );
+      _called.countDown();
+      return null;
+    }
+  }
+
+}
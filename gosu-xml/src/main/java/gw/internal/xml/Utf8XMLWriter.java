@@ -0,0 +1,470 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml;
+
+import gw.util.concurrent.Cache;
+import gw.xml.XmlSerializationOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes UTF-8 encoded XML to a stream or channel. Produces the same output as XMLWriter, but escapes and
+ * encodes text straight into a byte buffer that is reused between documents written on the same thread,
+ * instead of going through intermediate strings and a Writer. Element and attribute names are encoded once
+ * and shared between documents, and end tags reuse the bytes of their start tags.
+ */
+public class Utf8XMLWriter implements IXMLWriter {
+
+  private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+  private static final int BUFFER_SIZE = 8192;
+  private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>();
+
+  private static final Cache<String, byte[]> NAMES = new Cache<String, byte[]>( "XML name bytes", 4096, new Cache.MissHandler<String, byte[]>() {
+    @Override
+    public byte[] load( String name ) {
+      return encodeStrictly( XMLWriter.xmlEncode( name, false ) );
+    }
+  } );
+
+  private static final byte[] LT = ascii( "&lt;" );
+  private static final byte[] GT = ascii( "&gt;" );
+  private static final byte[] AMP = ascii( "&amp;" );
+  private static final byte[] QUOT = ascii( "&quot;" );
+  private static final byte[] APOS = ascii( "&apos;" );
+  private static final byte[] TAB = ascii( "&#9;" );
+  private static final byte[] LF = ascii( "&#10;" );
+  private static final byte[] CR = ascii( "&#13;" );
+
+  private final OutputStream _out;
+  private final WritableByteChannel _channel;
+  private final XmlSerializationOptions _options;
+  private final byte[] _lineSeparator;
+  private final List<byte[]> _indents = new ArrayList<byte[]>();
+  private byte[] _buffer;
+  private int _count;
+  private boolean gotRoot = false; // got root tag already?
+
+  // element name stack for tracking element recursion
+  private final ArrayList<byte[]> _elementNameStack = new ArrayList<byte[]>();
+
+  private byte[] _elementName = null; // the encoded name of the current element
+  private boolean _gotValue = false; // does the current element have a value set
+  private boolean _gotSubelements = false; // does the current element have any subelements
+  private boolean _writeNewLine = false;
+
+  Utf8XMLWriter( OutputStream out, XmlSerializationOptions options ) throws IOException {
+    this( out, null, options );
+  }
+
+  Utf8XMLWriter( WritableByteChannel channel, XmlSerializationOptions options ) throws IOException {
+    this( null, channel, options );
+  }
+
+  private Utf8XMLWriter( OutputStream out, WritableByteChannel channel, XmlSerializationOptions options ) throws IOException {
+    _out = out;
+    _channel = channel;
+    _options = options;
+    _lineSeparator = options.getLineSeparator().getBytes( UTF_8 );
+    _buffer = BUFFERS.get();
+    if ( _buffer == null ) {
+      _buffer = new byte[ BUFFER_SIZE ];
+    }
+    else {
+      BUFFERS.remove(); // ours until finish(), in case another document is written on this thread meanwhile
+    }
+    if ( options.getXmlDeclaration() ) {
+      writeAscii( "<?xml version=\"1.0\"" );
+      if ( options.getEncoding() != null ) {
+        writeAscii( " encoding=\"UTF-8\"" );
+      }
+      writeAscii( "?>" );
+    }
+  }
+
+  /**
+   * Returns true if this writer can produce the encoding requested by the options.
+   */
+  static boolean supports( XmlSerializationOptions options ) {
+    return options.getEncoding() == null || options.getEncoding().equals( UTF_8 );
+  }
+
+  public void newLine() throws IOException {
+    _writeNewLine = true;
+  }
+
+  public void writeComment( String comment ) throws IOException {
+    if ( _options.getComments() && comment != null ) {
+      if ( gotRoot ) {
+        finishStartElement();
+      }
+      if ( _options.getPretty() ) {
+        writeNewLine();
+        writeIndent( 0 );
+      }
+      writeAscii( "<!--" );
+      for ( int i = 0; i < comment.length(); i++ ) {
+        char ch = comment.charAt( i );
+        i = writeChar( comment, i, ch );
+        if ( ch == '-' ) {
+          if ( i == comment.length() - 1 || comment.charAt( i + 1 ) == '-' ) {
+            writeByte( ' ' );
+          }
+        }
+      }
+      writeAscii( "-->" );
+    }
+  }
+
+  public void startElement( String name ) throws IOException {
+    if ( name == null ) {
+      throw new NullPointerException( "name" );
+    }
+    if ( _elementName == null ) {
+      if ( gotRoot ) {
+        throw new IllegalStateException( "XML only allows one root element" );
+      }
+      gotRoot = true;
+      writeExplicitNewLineIfNecessary();
+    }
+    else {
+      finishStartElement();
+    }
+    if ( _options.getPretty() ) {
+      writeNewLine();
+      writeIndent( 0 );
+    }
+    byte[] encodedName = NAMES.get( name );
+    writeByte( '<' );
+    writeBytes( encodedName );
+    _elementNameStack.add( _elementName );
+    _elementName = encodedName;
+    _gotValue = false;
+    _gotSubelements = false;
+  }
+
+  public void endElement() throws IOException {
+    if ( _elementName == null ) {
+      throw new IllegalStateException( "No enclosing element for endElement()" );
+    }
+    if ( ! _gotValue ) {
+      writeByte( '/' );
+      writeByte( '>' );
+    }
+    else {
+      writeExplicitNewLineIfNecessary();
+      if ( _options.getPretty() && _gotSubelements ) {
+        writeNewLine();
+        writeIndent( -1 );
+      }
+      writeByte( '<' );
+      writeByte( '/' );
+      writeBytes( _elementName );
+      writeByte( '>' );
+    }
+    _elementName = _elementNameStack.remove( _elementNameStack.size() - 1 );
+    _gotValue = true;
+    _gotSubelements = true;
+  }
+
+  public void addText( String text ) throws IOException {
+    if ( _elementName == null ) {
+      throw new IllegalStateException( "No enclosing element for addText()" );
+    }
+    if ( text == null || text.length() == 0 ) {
+      return; // ignore call
+    }
+    finishStartElement();
+    writeEscaped( text, (char) 0 );
+  }
+
+  public void addAttribute( String attrName, String attrValue ) throws IOException {
+    if ( _elementName == null ) {
+      throw new IllegalStateException( "No enclosing element for addAttribute()" );
+    }
+    if ( _gotValue ) {
+      throw new IllegalStateException( "Attributes cannot be added once an element contains data" );
+    }
+    if ( _writeNewLine || _options.getAttributeNewLine() ) {
+      _writeNewLine = false;
+      writeBytes( _lineSeparator );
+      writeIndent( _options.getAttributeIndent() );
+    }
+    else {
+      writeByte( ' ' );
+    }
+    writeBytes( NAMES.get( attrName ) );
+    writeByte( '=' );
+    if ( attrValue == null ) {
+      attrValue = "";
+    }
+    // quote with whichever quote character comes first in the value, as XMLWriter does
+    char quote = '"';
+    for ( int i = 0; i < attrValue.length(); i++ ) {
+      char ch = attrValue.charAt( i );
+      if ( ch == '"' ) {
+        quote = '\'';
+        break;
+      }
+      if ( ch == '\'' ) {
+        break;
+      }
+    }
+    writeByte( quote );
+    writeEscaped( attrValue, quote );
+    writeByte( quote );
+  }
+
+  public void writeElement( String name, Map<String, String> attributes, String body ) throws IOException {
+    assert name != null;
+    startElement( name );
+    if ( attributes != null ) {
+      for ( Map.Entry<String, String> attribute : attributes.entrySet() ) {
+        addAttribute( attribute.getKey(), attribute.getValue() );
+      }
+    }
+    if ( body != null ) addText( body );
+    endElement();
+  }
+
+  public void finish() throws IOException {
+    flushBuffer();
+    if ( _out != null ) {
+      _out.flush();
+    }
+    BUFFERS.set( _buffer );
+    if ( _elementName != null ) {
+      throw new IllegalStateException( "Elements must be balanced before calling finish" );
+    }
+    if ( ! gotRoot ) {
+      throw new IllegalStateException( "An XML document must have a root element" );
+    }
+  }
+
+  public void addElement( String name, String value ) throws IOException {
+    startElement( name );
+    addText( value );
+    endElement();
+  }
+
+  @Override
+  public XmlSerializationOptions getWriterOptions() {
+    return _options;
+  }
+
+  private void finishStartElement() throws IOException {
+    if ( ! _gotValue ) {
+      writeByte( '>' );
+      _gotValue = true;
+    }
+  }
+
+  private void writeNewLine() throws IOException {
+    writeBytes( _lineSeparator );
+  }
+
+  private void writeExplicitNewLineIfNecessary() throws IOException {
+    if ( _writeNewLine ) {
+      _writeNewLine = false;
+      writeBytes( _lineSeparator );
+    }
+  }
+
+  private void writeIndent( int additionalLevels ) throws IOException {
+    int depth = _elementNameStack.size() + additionalLevels;
+    while ( _indents.size() <= depth ) {
+      _indents.add( XMLWriter.copy( _options.getIndent(), _indents.size() ).getBytes( UTF_8 ) );
+    }
+    writeBytes( _indents.get( depth ) );
+  }
+
+  /**
+   * Escapes and encodes text the way XMLWriter.xmlEncode() does.
+   * @param quote the quote character around an attribute value, or 0 for element text
+   */
+  private void writeEscaped( String text, char quote ) throws IOException {
+    boolean attribute = quote != 0;
+    for ( int i = 0; i < text.length(); i++ ) {
+      char ch = text.charAt( i );
+      switch ( ch ) {
+        case '<':
+          writeBytes( LT );
+          break;
+        case '>':
+          writeBytes( GT );
+          break;
+        case '&':
+          writeBytes( AMP );
+          break;
+        case '"':
+          if ( quote == '"' ) {
+            writeBytes( QUOT );
+          }
+          else {
+            writeByte( ch );
+          }
+          break;
+        case '\'':
+          if ( quote == '\'' ) {
+            writeBytes( APOS );
+          }
+          else {
+            writeByte( ch );
+          }
+          break;
+        case 0x0009: // tab
+          if ( attribute ) {
+            writeBytes( TAB );
+          }
+          else {
+            writeByte( ch );
+          }
+          break;
+        case 0x000A: // linefeed
+          if ( attribute ) {
+            writeBytes( LF );
+          }
+          else {
+            writeByte( ch );
+          }
+          break;
+        case 0x000D: // carriage return
+          if ( attribute ) {
+            writeBytes( CR );
+          }
+          else {
+            writeByte( ch );
+          }
+          break;
+        default:
+          if ( ch < 32 || ch >= 0xFFFE ) {
+            throw new IllegalArgumentException( "UTF-16 Codepoint 0x" + Integer.toString( ch, 16 ) + " is not valid for XML content" );
+          }
+          i = writeChar( text, i, ch );
+      }
+    }
+  }
+
+  /**
+   * Encodes the character at index i as UTF-8.
+   * @return the index of the last character consumed, which is past i for a surrogate pair
+   */
+  private int writeChar( String text, int i, char ch ) throws IOException {
+    if ( ch < 0x80 ) {
+      writeByte( ch );
+    }
+    else if ( ch < 0x800 ) {
+      ensureRoom( 2 );
+      _buffer[ _count++ ] = (byte) ( 0xC0 | ( ch >> 6 ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( ch & 0x3F ) );
+    }
+    else if ( Character.isSurrogate( ch ) ) {
+      if ( ! Character.isHighSurrogate( ch ) || i + 1 == text.length() || ! Character.isLowSurrogate( text.charAt( i + 1 ) ) ) {
+        throw new RuntimeException( "attempting to encode '" + text + "'", new MalformedInputException( 1 ) );
+      }
+      int codePoint = Character.toCodePoint( ch, text.charAt( ++i ) );
+      ensureRoom( 4 );
+      _buffer[ _count++ ] = (byte) ( 0xF0 | ( codePoint >> 18 ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( codePoint & 0x3F ) );
+    }
+    else {
+      ensureRoom( 3 );
+      _buffer[ _count++ ] = (byte) ( 0xE0 | ( ch >> 12 ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( ( ch >> 6 ) & 0x3F ) );
+      _buffer[ _count++ ] = (byte) ( 0x80 | ( ch & 0x3F ) );
+    }
+    return i;
+  }
+
+  private void writeAscii( String str ) throws IOException {
+    for ( int i = 0; i < str.length(); i++ ) {
+      writeByte( str.charAt( i ) );
+    }
+  }
+
+  private void writeByte( int b ) throws IOException {
+    if ( _count == _buffer.length ) {
+      flushBuffer();
+    }
+    _buffer[ _count++ ] = (byte) b;
+  }
+
+  private void writeBytes( byte[] bytes ) throws IOException {
+    if ( bytes.length > _buffer.length - _count ) {
+      flushBuffer();
+      if ( bytes.length > _buffer.length ) {
+        writeThrough( bytes );
+        return;
+      }
+    }
+    System.arraycopy( bytes, 0, _buffer, _count, bytes.length );
+    _count += bytes.length;
+  }
+
+  private void ensureRoom( int length ) throws IOException {
+    if ( _buffer.length - _count < length ) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if ( _count > 0 ) {
+      if ( _out != null ) {
+        _out.write( _buffer, 0, _count );
+      }
+      else {
+        ByteBuffer bytes = ByteBuffer.wrap( _buffer, 0, _count );
+        while ( bytes.hasRemaining() ) {
+          _channel.write( bytes );
+        }
+      }
+      _count = 0;
+    }
+  }
+
+  private void writeThrough( byte[] bytes ) throws IOException {
+    if ( _out != null ) {
+      _out.write( bytes );
+    }
+    else {
+      ByteBuffer buffer = ByteBuffer.wrap( bytes );
+      while ( buffer.hasRemaining() ) {
+        _channel.write( buffer );
+      }
+    }
+  }
+
+  private static byte[] encodeStrictly( String str ) {
+    try {
+      ByteBuffer encoded = UTF_8.newEncoder()
+              .onMalformedInput( CodingErrorAction.REPORT )
+              .onUnmappableCharacter( CodingErrorAction.REPORT )
+              .encode( CharBuffer.wrap( str ) );
+      byte[] bytes = new byte[ encoded.remaining() ];
+      encoded.get( bytes );
+      return bytes;
+    }
+    catch ( CharacterCodingException e ) {
+      throw new RuntimeException( "attempting to encode '" + str + "'", e );
+    }
+  }
+
+  private static byte[] ascii( String str ) {
+    return str.getBytes( UTF_8 );
+  }
+
+}
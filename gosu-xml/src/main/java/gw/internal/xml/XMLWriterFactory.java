@@ -8,6 +8,8 @@ import gw.xml.XmlSerializationOptions;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * A factory for creating XMLWriter objects.
@@ -17,17 +19,36 @@ public final class XMLWriterFactory {
     private XmlSerializationOptions _options = new XmlSerializationOptions();
 
     /**
-     * Creates a new XMLWriter that writes to the specified output stream. UTF-8 encoding will be used.
+     * Creates a new XML writer that writes to the specified output stream, in the encoding given by the options.
+     * UTF-8 output is encoded directly into bytes by a Utf8XMLWriter.
      *
      * @param os      the output stream to write XML to
      * @param options the XML writer options for the writer
-     * @return the new XMLWriter
+     * @return the new XML writer
      * @throws IOException if an I/O error occurs writing to the stream
      */
-    public static XMLWriter newDefaultXMLWriter(OutputStream os, XmlSerializationOptions options) throws IOException {
+    public static IXMLWriter newDefaultXMLWriter(OutputStream os, XmlSerializationOptions options) throws IOException {
+        if (Utf8XMLWriter.supports(options)) {
+            return new Utf8XMLWriter(os, options);
+        }
         return new XMLWriter(os, options);
     }
 
+    /**
+     * Creates a new XML writer that writes to the specified channel, in the encoding given by the options.
+     *
+     * @param channel the channel to write XML to
+     * @param options the XML writer options for the writer
+     * @return the new XML writer
+     * @throws IOException if an I/O error occurs writing to the channel
+     */
+    public static IXMLWriter newDefaultXMLWriter(WritableByteChannel channel, XmlSerializationOptions options) throws IOException {
+        if (Utf8XMLWriter.supports(options)) {
+            return new Utf8XMLWriter(channel, options);
+        }
+        return new XMLWriter(Channels.newOutputStream(channel), options);
+    }
+
     public static XMLWriter newDefaultXMLWriter(OutputStream os) throws IOException {
         return new XMLWriter(os, new XmlSerializationOptions());
     }
@@ -13,7 +13,7 @@ import gw.xml.XmlElement;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,7 +38,7 @@ public class XmlDeserializationContext {
     _parent = parent;
     if ( parent == null ) {
       _idrefs = new ArrayList<Pair<String, IDREFSimpleValueFactory.Value>>( );
-      _ids = new HashMap<String, XmlElement>();
+      _ids = new LinkedHashMap<String, XmlElement>();
       _namespaces = new ScopedMap<String, String>();
       _namespaces.put( XMLConstants.DEFAULT_NS_PREFIX, XMLConstants.NULL_NS_URI );
       _namespaces.put( XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI );
@@ -8,6 +8,7 @@ import gw.internal.xml.xsd.typeprovider.XmlSchemaIndex;
 import gw.lang.reflect.IType;
 import gw.xml.BinaryData;
 import gw.xml.XmlElement;
+import gw.xml.XmlElementIterator;
 import gw.xml.XmlParseOptions;
 import gw.xml.XmlSerializationOptions;
 import gw.xml.XmlTypeInstance;
@@ -19,6 +20,7 @@ import java.io.Reader;
 import java.net.URI;
 import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +50,8 @@ public abstract class XmlElementInternals {
 
   public abstract void writeTo( XmlElement element, OutputStream out, XmlSerializationOptions options );
 
+  public abstract void writeTo( XmlElement element, WritableByteChannel channel, XmlSerializationOptions options );
+
   public abstract void doDeclareNamespace( XmlElement element, String nsuri, String suggestedPrefix, Map<String, URI> _uriCache );
 
   public abstract void checkSetTypeInstance( XmlElement element, XmlTypeInstance xmlTypeInstance );
@@ -84,6 +88,10 @@ public abstract class XmlElementInternals {
 
   public abstract XmlElement parse( InputStream inputStream, URL schemaEF, XmlSchemaLocalResourceResolver resolver, XmlParserCallback callback );
 
+  public abstract XmlElementIterator stream( InputStream stream, String description, QName recordName, IType recordType, XmlParseOptions options );
+
+  public abstract XmlElementIterator stream( Reader reader, String description, QName recordName, IType recordType, XmlParseOptions options );
+
   public abstract XmlElement parse( IType type, Reader stream, String description, boolean validating, HashMap<String, BinaryData> attachments, XmlParseOptions options );
 
   public abstract XmlElement parse( IType type, InputStream stream, String description, boolean validating, HashMap<String, BinaryData> attachments, XmlParseOptions options, String systemId );
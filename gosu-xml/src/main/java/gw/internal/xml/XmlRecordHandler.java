@@ -0,0 +1,23 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml;
+
+import gw.xml.XmlElement;
+
+/**
+ * Receives the record elements of a streaming parse. A record is handed over once its end tag
+ * has been parsed, and is then removed from its parent so that the parser does not hold on to it.
+ */
+public interface XmlRecordHandler {
+
+  /**
+   * Called with each element outside of any record when its start tag is parsed.
+   * @return true if the element is a record
+   */
+  boolean isRecord( XmlElement element );
+
+  void onRecord( XmlElement record );
+
+}
@@ -17,11 +17,14 @@ import gw.util.StreamUtil;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
 import javax.xml.namespace.QName;
@@ -193,6 +196,15 @@ public class XmlElement extends XmlBase implements IXmlMixedContent {
      XmlElementInternals.instance().writeTo( this, out, options );
   }
 
+  /**
+   * Serializes this element to the specified channel using UTF-8 encoding. The channel will not be closed.
+   * @param channel the channel where the data should be written
+   * @param options the options to control serialization
+   */
+  public void writeTo( WritableByteChannel channel, XmlSerializationOptions options ) {
+    XmlElementInternals.instance().writeTo( this, channel, options );
+  }
+
   /**
    * Explicitly declares an XML namespace and a suggested prefix at this level.
    * The prefix that actually ends up being bound to the namespace may not be the same as the suggested prefix.
@@ -355,6 +367,90 @@ public class XmlElement extends XmlBase implements IXmlMixedContent {
     return XmlElementInternals.instance().parse( url, options );
   }
 
+  /**
+   * Streams the record elements with the specified name from the specified input stream, without building
+   * the rest of the document. The input stream will be closed once the document has been read or the
+   * iterator has been closed.
+   * @param stream The stream containing the XML
+   * @param recordName The qualified name of the record elements
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( InputStream stream, QName recordName ) {
+    return stream( stream, recordName, null );
+  }
+
+  /**
+   * Streams the record elements with the specified name from the specified input stream, without building
+   * the rest of the document. The input stream will be closed once the document has been read or the
+   * iterator has been closed.
+   * @param stream The stream containing the XML
+   * @param recordName The qualified name of the record elements
+   * @param options parsing options
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( InputStream stream, QName recordName, XmlParseOptions options ) {
+    return XmlElementInternals.instance().stream( stream, "input stream", recordName, null, options );
+  }
+
+  /**
+   * Streams the record elements of the specified schema type from the specified input stream, without
+   * building the rest of the document. The input stream will be closed once the document has been read
+   * or the iterator has been closed.
+   * @param stream The stream containing the XML
+   * @param recordType The element type of the records, including any element in its substitution group
+   * @param options parsing options
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( InputStream stream, IType recordType, XmlParseOptions options ) {
+    return XmlElementInternals.instance().stream( stream, "input stream", null, recordType, options );
+  }
+
+  /**
+   * Streams the record elements with the specified name from the specified reader, without building
+   * the rest of the document. The reader will be closed once the document has been read or the
+   * iterator has been closed.
+   * @param reader The reader containing the XML
+   * @param recordName The qualified name of the record elements
+   * @param options parsing options
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( Reader reader, QName recordName, XmlParseOptions options ) {
+    return XmlElementInternals.instance().stream( reader, "input reader", recordName, null, options );
+  }
+
+  /**
+   * Streams the record elements with the specified name from the specified file, without building
+   * the rest of the document.
+   * @param file The file containing the XML
+   * @param recordName The qualified name of the record elements
+   * @param options parsing options
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( File file, QName recordName, XmlParseOptions options ) {
+    return XmlElementInternals.instance().stream( openFile( file ), file.getPath(), recordName, null, options );
+  }
+
+  /**
+   * Streams the record elements of the specified schema type from the specified file, without building
+   * the rest of the document.
+   * @param file The file containing the XML
+   * @param recordType The element type of the records, including any element in its substitution group
+   * @param options parsing options
+   * @return An iterator over the record elements
+   */
+  public static XmlElementIterator stream( File file, IType recordType, XmlParseOptions options ) {
+    return XmlElementInternals.instance().stream( openFile( file ), file.getPath(), null, recordType, options );
+  }
+
+  private static InputStream openFile( File file ) {
+    try {
+      return new FileInputStream( file );
+    }
+    catch ( IOException ex ) {
+      throw new XmlException( "Unable to parse file " + file, ex );
+    }
+  }
+
   /**
    * Returns the backing type instance of this element.
    * @return the backing type instance of this element
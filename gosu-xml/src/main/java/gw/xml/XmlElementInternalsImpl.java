@@ -14,6 +14,7 @@ import gw.internal.xml.XmlDeserializationContext;
 import gw.internal.xml.XmlElementInternals;
 import gw.internal.xml.XmlMixedContentList;
 import gw.internal.xml.XmlParserCallback;
+import gw.internal.xml.XmlRecordHandler;
 import gw.internal.xml.XmlSchemaAccessImpl;
 import gw.internal.xml.XmlSchemaLocalResourceResolver;
 import gw.internal.xml.XmlSerializationContext;
@@ -65,10 +66,13 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -174,6 +178,26 @@ class XmlElementInternalsImpl extends XmlElementInternals {
     }
   }
 
+  @Override
+  public void writeTo( XmlElement element, WritableByteChannel channel, XmlSerializationOptions options ) {
+    if ( options == null ) {
+      options = new XmlSerializationOptions();
+    }
+    if ( element._type != null && options.getValidate() ) {
+      // validation reads back the serialized bytes anyway, nothing to gain from writing to the channel directly
+      writeTo( element, Channels.newOutputStream( channel ), options );
+      return;
+    }
+    try {
+      IXMLWriter writer = XMLWriterFactory.newDefaultXMLWriter( channel, options );
+      writeTo( element, writer, new XmlSerializationContext(), false );
+      writer.finish();
+    }
+    catch ( IOException ex ) {
+      throw GosuExceptionUtil.convertToRuntimeException( ex );
+    }
+  }
+
   private static int _cacheHits = 0;
   private static int _cacheMisses = 0;
 
@@ -652,6 +676,10 @@ class XmlElementInternalsImpl extends XmlElementInternals {
   }
 
   public XmlElement parse( final IType type, InputSource source, final String description, List<XmlSchemaIndex> schemaIndexes, XmlTypeResolver typeResolver, XmlParseOptions options, final XmlParserCallback callback, final URL schemaEF ) {
+    return parse( type, source, description, schemaIndexes, typeResolver, options, callback, schemaEF, null );
+  }
+
+  public XmlElement parse( final IType type, InputSource source, final String description, List<XmlSchemaIndex> schemaIndexes, XmlTypeResolver typeResolver, XmlParseOptions options, final XmlParserCallback callback, final URL schemaEF, final XmlRecordHandler recordHandler ) {
     if ( options == null ) {
       options = DEFAULT_PARSE_OPTIONS;
     }
@@ -703,6 +731,8 @@ class XmlElementInternalsImpl extends XmlElementInternals {
         private XmlDeserializationContext _context = new XmlDeserializationContext( new XmlDeserializationContext( null ) );
         private LinkedHashMap<String, String> _locallyDeclaredNamespaces = new LinkedHashMap<String, String>();
         private Map<String,URI> _uriCache = new HashMap<String, URI>();
+        private XmlElement _record;
+        private int _iIdsBeforeRecord;
 
         {
           _context.setMatchHandler( new XmlSchemaAnyMatchHandler( null ) ); // for root element
@@ -756,6 +786,16 @@ class XmlElementInternalsImpl extends XmlElementInternals {
             }
           }
           _context = _context.getParent();
+          //noinspection ObjectEquality
+          if ( _record != null && _record == parent ) {
+            // release the record before handing it over, the parser has no further use for it
+            XmlMixedContentList siblings = _context.getCurrentElement().getTypeInstance()._children;
+            siblings.remove( siblings.size() - 1 );
+            _record = null;
+            linkResolvedIdrefs( _context );
+            releaseRecordIds( _context, _iIdsBeforeRecord );
+            recordHandler.onRecord( parent );
+          }
         }
 
         @Override
@@ -824,6 +864,10 @@ class XmlElementInternalsImpl extends XmlElementInternals {
             }
             XmlElementInternals.instance().addNamespacesToElementFromParse( element, _context.getNamespaces(), _uriCache );
             resolveXsiTypeAndNil( element, fschemaIndexes, types.getSecond(), attributes, _context );
+            if ( recordHandler != null && _record == null && element != rootElement[0] && recordHandler.isRecord( element ) ) {
+              _record = element;
+              _iIdsBeforeRecord = _context.getIds().size();
+            }
             XmlTypeInstance typeInstance = element.getTypeInstance();
             XmlSchemaTypeSchemaInfo schemaInfo = XmlTypeInstanceInternalsImpl.instance().getSchemaInfo( typeInstance );
             _context.setSchemaInfo( schemaInfo );
@@ -1078,6 +1122,36 @@ class XmlElementInternalsImpl extends XmlElementInternals {
     }
   }
 
+  /**
+   * Links the IDREFs parsed so far whose IDs have been seen, leaving the rest for the end of the document.
+   */
+  private void linkResolvedIdrefs( XmlDeserializationContext context ) {
+    final Map<String, XmlElement> ids = context.getIds();
+    Iterator<Pair<String, IDREFSimpleValueFactory.Value>> it = context.getIdrefs().iterator();
+    while ( it.hasNext() ) {
+      Pair<String, IDREFSimpleValueFactory.Value> pair = it.next();
+      XmlElement element = ids.get( pair.getFirst() );
+      if ( element != null ) {
+        pair.getSecond().setElement( element );
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Forgets the IDs seen since a streamed record started, which are the most recently added ones, so the
+   * parser doesn't keep every record that has an ID. IDREFs to them must have been linked already.
+   */
+  private void releaseRecordIds( XmlDeserializationContext context, int iIdsBeforeRecord ) {
+    Iterator<XmlElement> it = context.getIds().values().iterator();
+    for ( int i = 0; it.hasNext(); i++ ) {
+      it.next();
+      if ( i >= iIdsBeforeRecord ) {
+        it.remove();
+      }
+    }
+  }
+
   private void linkIdrefs( XmlDeserializationContext context ) {
     final Map<String, XmlElement> ids = context.getIds();
     for ( Pair<String, IDREFSimpleValueFactory.Value> pair : context.getIdrefs() ) {
@@ -1386,6 +1460,43 @@ class XmlElementInternalsImpl extends XmlElementInternals {
     }
   }
 
+  @Override
+  public XmlElementIterator stream( InputStream stream, String description, QName recordName, IType recordType, XmlParseOptions options ) {
+    return stream( new InputSource( stream ), description, recordName, recordType, options );
+  }
+
+  @Override
+  public XmlElementIterator stream( Reader reader, String description, QName recordName, IType recordType, XmlParseOptions options ) {
+    return stream( new InputSource( reader ), description, recordName, recordType, options );
+  }
+
+  private XmlElementIterator stream( final InputSource source, final String description, QName recordName, IType recordType, final XmlParseOptions options ) {
+    // a schema-typed record brings its own schema, as parsing with that type as the root would
+    XmlSchemaIndex<?> schemaIndex = recordType == null ? null : XmlSchemaIndex.getSchemaIndexByType( recordType );
+    final List<XmlSchemaIndex> schemaIndexes = addSchemaIndexesFromParseOptions( schemaIndex, options );
+    return new XmlElementIterator( recordName, recordType, description, new XmlElementIterator.Source() {
+      @Override
+      public void parse( XmlRecordHandler handler ) {
+        XmlElementInternalsImpl.this.parse( null, source, description, schemaIndexes, null, options, null, null, handler );
+      }
+
+      @Override
+      public void close() {
+        try {
+          if ( source.getByteStream() != null ) {
+            source.getByteStream().close();
+          }
+          if ( source.getCharacterStream() != null ) {
+            source.getCharacterStream().close();
+          }
+        }
+        catch ( IOException e ) {
+          // ignore
+        }
+      }
+    } );
+  }
+
   public XmlElement create( QName qName, IType type, IType xmlTypeInstanceType, XmlTypeInstance xmlTypeInstance ) {
     return new XmlElement( qName, type, xmlTypeInstanceType, xmlTypeInstance );
   }
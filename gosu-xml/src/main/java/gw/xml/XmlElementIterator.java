@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.xml;
+
+import gw.internal.xml.XmlRecordHandler;
+import gw.lang.PublishInGosu;
+import gw.lang.reflect.IType;
+import gw.lang.reflect.TypeSystem;
+import gw.lang.reflect.module.IModule;
+import gw.util.concurrent.BoundedHandoff;
+import gw.util.concurrent.DaemonExecutors;
+
+import javax.xml.namespace.QName;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Iterates over the repeated record elements of an XML document without building the whole document.
+ * Records are parsed, typed and validated exactly as XmlElement.parse() would, but each record is
+ * removed from the document as soon as its end tag is read, so memory use is proportional to a single
+ * record rather than to the document. Records nested inside another record are part of that record and
+ * are not returned separately.
+ * <p/>
+ * The document is parsed on a background thread that stays at most a few records ahead of the caller.
+ * Documents are parsed on a pool of {@link #THREADS_SYSTEM_PROP} daemon threads; iterators beyond that
+ * wait for a thread, so an iterator left open without being read to the end holds on to one.
+ * A parse or validation error is thrown from hasNext() or next() once the records before it have been
+ * returned. Call close() when done with the iterator before reaching the end of the document. An
+ * iterator that is dropped without being closed stops its parser once it has been garbage collected.
+ * <p/>
+ * The IDs of a record's elements are forgotten once the record has been returned, so an IDREF can refer
+ * to an ID in its own record, in a later record or outside any record, but not to one in an earlier
+ * record. Such an IDREF is reported as an error at the end of the document.
+ */
+@PublishInGosu
+public class XmlElementIterator implements Iterator<XmlElement>, Iterable<XmlElement>, Closeable {
+
+  /** System property for the number of parsed records that may wait for the caller */
+  public static final String LOOKAHEAD_SYSTEM_PROP = "gosu.xml.stream.lookahead";
+  /** System property for the number of threads parsing documents */
+  public static final String THREADS_SYSTEM_PROP = "gosu.xml.stream.threads";
+
+  private static final int LOOKAHEAD = Integer.getInteger( LOOKAHEAD_SYSTEM_PROP, 16 );
+  private static final ExecutorService EXECUTOR = DaemonExecutors.newBoundedPool( "XmlElementIterator", THREADS_SYSTEM_PROP );
+
+  private final Producer _producer;
+  private boolean _started;
+  private boolean _done;
+  private XmlElement _next;
+
+  XmlElementIterator( QName recordName, IType recordType, String description, Source source ) {
+    if ( recordName == null && recordType == null ) {
+      throw new IllegalArgumentException( "A record name or type is required" );
+    }
+    _producer = new Producer( this, recordName, recordType, description, source );
+  }
+
+  /**
+   * The document being streamed.
+   */
+  interface Source {
+
+    /**
+     * Parses the document, handing each record to the handler.
+     */
+    void parse( XmlRecordHandler handler );
+
+    /**
+     * Closes the document's stream or reader.
+     */
+    void close();
+
+  }
+
+  @Override
+  public boolean hasNext() {
+    if ( _next == null && ! _done ) {
+      if ( _producer._handoff.isClosed() ) {
+        throw new IllegalStateException( "Iterator is closed" );
+      }
+      start();
+      try {
+        _next = _producer._handoff.take();
+      }
+      catch ( InterruptedException ex ) {
+        Thread.currentThread().interrupt();
+        throw new XmlException( "Interrupted while parsing XML from " + _producer._description, ex );
+      }
+      catch ( CancellationException ex ) {
+        // closed on another thread
+        throw new IllegalStateException( "Iterator is closed" );
+      }
+      catch ( ExecutionException ex ) {
+        _done = true;
+        Throwable t = ex.getCause();
+        // rethrow on this thread so the caller's stack shows up too
+        throw new XmlException( t.getMessage(), t );
+      }
+      if ( _next == null ) {
+        _done = true;
+      }
+    }
+    return _next != null;
+  }
+
+  @Override
+  public XmlElement next() {
+    if ( ! hasNext() ) {
+      throw new NoSuchElementException();
+    }
+    XmlElement next = _next;
+    _next = null;
+    return next;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Iterator<XmlElement> iterator() {
+    return this;
+  }
+
+  /**
+   * Stops parsing and releases the document, closing its stream or reader. Records already returned
+   * remain usable.
+   */
+  @Override
+  public void close() {
+    _producer._handoff.close();
+    _done = true;
+    _next = null;
+    if ( ! _started ) {
+      // no parser thread to close the source
+      _started = true;
+      _producer._source.close();
+    }
+  }
+
+  private void start() {
+    if ( _started ) {
+      return;
+    }
+    _started = true;
+    EXECUTOR.execute( _producer );
+  }
+
+  /**
+   * Runs the parser and hands the records to the iterator. Only the handoff refers to the iterator,
+   * weakly, so an iterator the caller has dropped can be collected, which stops the parser.
+   */
+  private static class Producer implements Runnable, XmlRecordHandler {
+
+    private final BoundedHandoff<XmlElement> _handoff;
+    private final QName _recordName;
+    private final IType _recordType;
+    private final String _description;
+    private final Source _source;
+    private final IModule _module;
+
+    Producer( XmlElementIterator consumer, QName recordName, IType recordType, String description, Source source ) {
+      _handoff = new BoundedHandoff<XmlElement>( consumer, LOOKAHEAD );
+      _recordName = recordName;
+      _recordType = recordType;
+      _description = description;
+      _source = source;
+      _module = TypeSystem.getCurrentModule();
+    }
+
+    @Override
+    public void run() {
+      TypeSystem.pushModule( _module );
+      try {
+        // skip the parse if closed while waiting for a thread
+        if ( ! _handoff.isClosed() ) {
+          _source.parse( this );
+          _handoff.end();
+        }
+      }
+      catch ( Throwable t ) {
+        _handoff.fail( t );
+      }
+      finally {
+        try {
+          _source.close();
+        }
+        finally {
+          TypeSystem.popModule( _module );
+        }
+      }
+    }
+
+    @Override
+    public boolean isRecord( XmlElement element ) {
+      if ( _recordName != null ) {
+        return _recordName.equals( element.getQName() );
+      }
+      return _recordType.isAssignableFrom( element.getIntrinsicType() );
+    }
+
+    @Override
+    public void onRecord( XmlElement record ) {
+      if ( _handoff.isClosed() ) {
+        throw new CancellationException();
+      }
+      _handoff.put( record );
+    }
+
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.internal.xml;
+
+import gw.xml.XmlSerializationOptions;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Writes the same document with XMLWriter and Utf8XMLWriter and compares the bytes.
+ */
+public class Utf8XMLWriterITCase {
+
+  private static final String TEXT = "plain <tag> & \"quoted\" 'single' \t tab \r\n newline ]]> café € 中文 😀 end";
+
+  @Test
+  public void defaultOptions() throws IOException {
+    assertSameBytes( new XmlSerializationOptions() );
+  }
+
+  @Test
+  public void notPretty() throws IOException {
+    XmlSerializationOptions options = new XmlSerializationOptions();
+    options.setPretty( false );
+    assertSameBytes( options );
+  }
+
+  @Test
+  public void sortedAttributesOnNewLines() throws IOException {
+    XmlSerializationOptions options = new XmlSerializationOptions();
+    options.setSort( true );
+    options.setAttributeNewLine( true );
+    options.setAttributeIndent( 3 );
+    options.setIndent( "\t" );
+    options.setLineSeparator( "\r\n" );
+    assertSameBytes( options );
+  }
+
+  @Test
+  public void explicitEncodingWithoutComments() throws IOException {
+    XmlSerializationOptions options = new XmlSerializationOptions();
+    options.setEncoding( Charset.forName( "UTF-8" ) );
+    options.setComments( false );
+    assertSameBytes( options );
+  }
+
+  @Test
+  public void textLongerThanBuffer() throws IOException {
+    // multi-byte characters at every offset around the buffer size
+    StringBuilder sb = new StringBuilder();
+    while ( sb.length() < 20000 ) {
+      sb.append( "xé€😀&" );
+    }
+    String text = sb.toString();
+    for ( int i = 0; i < 4; i++ ) {
+      String shifted = text.substring( i );
+      XmlSerializationOptions options = new XmlSerializationOptions();
+      assertThat( write( options, true, shifted ) ).isEqualTo( write( options, false, shifted ) );
+    }
+  }
+
+  @Test
+  public void channelGetsSameBytesAsStream() throws IOException {
+    XmlSerializationOptions options = new XmlSerializationOptions();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeDocument( new Utf8XMLWriter( Channels.newChannel( out ), options ), TEXT );
+    assertThat( out.toByteArray() ).isEqualTo( write( options, false, TEXT ) );
+  }
+
+  private static void assertSameBytes( XmlSerializationOptions options ) throws IOException {
+    byte[] expected = write( options, false, TEXT );
+    byte[] actual = write( options, true, TEXT );
+    assertThat( new String( actual, "UTF-8" ) ).isEqualTo( new String( expected, "UTF-8" ) );
+    assertThat( actual ).isEqualTo( expected );
+  }
+
+  private static byte[] write( XmlSerializationOptions options, boolean bUtf8Writer, String text ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeDocument( bUtf8Writer ? new Utf8XMLWriter( out, options ) : new XMLWriter( out, options ), text );
+    return out.toByteArray();
+  }
+
+  private static void writeDocument( IXMLWriter writer, String text ) throws IOException {
+    writer.startElement( "ns:root" );
+    writer.addAttribute( "xmlns:ns", "urn:test" );
+    writer.addAttribute( "double", "has \"double\" quotes" );
+    writer.addAttribute( "single", "has 'single' quotes" );
+    writer.addAttribute( "both", "has \"double\" and 'single'" );
+    writer.addAttribute( "text", text );
+    writer.writeComment( "comment " + text );
+    writer.newLine();
+    writer.startElement( "café" );
+    writer.addAttribute( "中", "文" );
+    writer.addText( text );
+    writer.endElement();
+    writer.startElement( "empty" );
+    writer.endElement();
+    writer.startElement( "nested" );
+    writer.addElement( "child", text );
+    Map<String, String> attributes = new LinkedHashMap<String, String>();
+    attributes.put( "b", "<&>" );
+    attributes.put( "a", "é" );
+    writer.writeElement( "element", attributes, text );
+    writer.writeElement( "bodiless", attributes, null );
+    writer.endElement();
+    writer.addText( "tail €" );
+    writer.endElement();
+    writer.finish();
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Guidewire Software, Inc.
+ */
+
+package gw.xml;
+
+import gw.lang.Gosu;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class XmlElementIteratorITCase {
+
+  private static final QName RECORD = new QName( "record" );
+
+  @BeforeClass
+  public static void beforeTestClass() {
+    Gosu.init();
+  }
+
+  @Test
+  public void streamsEachRecordAndClosesStreamAtEnd() throws Exception {
+    TrackingStream in = new TrackingStream( document( 3, "" ) );
+    List<String> ids = new ArrayList<String>();
+    for ( XmlElement record : XmlElement.stream( in, RECORD ) ) {
+      ids.add( record.getAttributeValue( "n" ) );
+      assertThat( record.getText() ).isEqualTo( "text" + record.getAttributeValue( "n" ) );
+    }
+    assertThat( ids ).containsExactly( "0", "1", "2" );
+    awaitClosed( in );
+  }
+
+  @Test
+  public void parsesNoFurtherThanLookaheadAhead() throws Exception {
+    TrackingStream in = new TrackingStream( document( 100000, "" ) );
+    XmlElementIterator it = XmlElement.stream( in, RECORD );
+    try {
+      assertThat( it.next().getAttributeValue( "n" ) ).isEqualTo( "0" );
+      Thread.sleep( 200 );
+      assertThat( in._iRead ).isLessThan( in._iLength / 2 );
+    }
+    finally {
+      it.close();
+    }
+  }
+
+  @Test
+  public void closeBeforeHasNextClosesStream() throws Exception {
+    TrackingStream in = new TrackingStream( document( 3, "" ) );
+    XmlElementIterator it = XmlElement.stream( in, RECORD );
+    it.close();
+    assertThat( in._bClosed ).isTrue();
+    try {
+      it.hasNext();
+      fail( "Expected IllegalStateException" );
+    }
+    catch ( IllegalStateException ex ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void closeMidwayStopsParserAndClosesStream() throws Exception {
+    TrackingStream in = new TrackingStream( document( 100000, "" ) );
+    XmlElementIterator it = XmlElement.stream( in, RECORD );
+    XmlElement first = it.next();
+    it.close();
+    awaitClosed( in );
+    assertThat( in._iRead ).isLessThan( in._iLength );
+    // records already returned remain usable
+    assertThat( first.getAttributeValue( "n" ) ).isEqualTo( "0" );
+  }
+
+  @Test
+  public void droppedIteratorStopsParserAndClosesStream() throws Exception {
+    TrackingStream in = new TrackingStream( document( 100000, "" ) );
+    XmlElement.stream( in, RECORD ).next();
+    long deadline = System.currentTimeMillis() + 10000;
+    while ( ! in._bClosed && System.currentTimeMillis() < deadline ) {
+      System.gc();
+      Thread.sleep( 50 );
+    }
+    assertThat( in._bClosed ).isTrue();
+  }
+
+  @Test
+  public void parseErrorIsThrownAfterEarlierRecords() throws Exception {
+    TrackingStream in = new TrackingStream( document( 2, "<broken>" ) );
+    XmlElementIterator it = XmlElement.stream( in, RECORD );
+    assertThat( it.next().getAttributeValue( "n" ) ).isEqualTo( "0" );
+    assertThat( it.next().getAttributeValue( "n" ) ).isEqualTo( "1" );
+    try {
+      it.hasNext();
+      fail( "Expected XmlException" );
+    }
+    catch ( XmlException ex ) {
+      // expected
+    }
+    assertThat( it.hasNext() ).isFalse();
+    awaitClosed( in );
+  }
+
+  private static byte[] document( int iRecords, String trailer ) {
+    StringBuilder sb = new StringBuilder( "<root>" );
+    for ( int i = 0; i < iRecords; i++ ) {
+      sb.append( "<record n=\"" ).append( i ).append( "\">text" ).append( i ).append( "</record>" );
+    }
+    sb.append( trailer ).append( "</root>" );
+    return sb.toString().getBytes( StandardCharsets.UTF_8 );
+  }
+
+  private static void awaitClosed( TrackingStream in ) throws InterruptedException {
+    // the parser thread closes the stream once it is done
+    long deadline = System.currentTimeMillis() + 10000;
+    while ( ! in._bClosed && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertThat( in._bClosed ).isTrue();
+  }
+
+  private static class TrackingStream extends ByteArrayInputStream {
+    private final int _iLength;
+    private volatile int _iRead;
+    private volatile boolean _bClosed;
+
+    TrackingStream( byte[] bytes ) {
+      super( bytes );
+      _iLength = bytes.length;
+    }
+
+    @Override
+    public synchronized int read( byte[] b, int off, int len ) {
+      int n = super.read( b, off, len );
+      _iRead = pos;
+      return n;
+    }
+
+    @Override
+    public synchronized int read() {
+      int n = super.read();
+      _iRead = pos;
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      _bClosed = true;
+      super.close();
+    }
+  }
+
+}